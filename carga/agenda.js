@@ -0,0 +1,65 @@
+// Carga mista da API de agenda para comparar threads de plataforma e threads virtuais.
+// Uso: k6 run -e BASE_URL=http://localhost:8080 -e VUS=400 carga/agenda.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const VUS = parseInt(__ENV.VUS || '400');
+const DURACAO = __ENV.DURACAO || '2m';
+
+// Médicos e pacientes 1..3 vêm dos dados iniciais (V2__Insert_Dados_Iniciais.sql)
+const MEDICOS = [{ id: 1, unidadeId: 1 }, { id: 2, unidadeId: 2 }, { id: 3, unidadeId: 1 }];
+const PACIENTES = [1, 2, 3];
+
+// 200, 201, 400 e 409 são respostas de negócio; 503 indica pool de conexões esgotado (medido à parte)
+http.setResponseCallback(http.expectedStatuses(200, 201, 400, 409));
+
+export const options = {
+    scenarios: {
+        agenda: {
+            executor: 'ramping-vus',
+            startVUs: 0,
+            stages: [
+                { duration: '20s', target: VUS },
+                { duration: DURACAO, target: VUS },
+                { duration: '10s', target: 0 },
+            ],
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+export default function () {
+    const sorteio = Math.random();
+    if (sorteio < 0.6) {
+        const resposta = http.get(`${BASE_URL}/api/consultas?limite=20`, { tags: { operacao: 'listar-consultas' } });
+        check(resposta, { 'listar consultas 200': (r) => r.status === 200 });
+    } else if (sorteio < 0.8) {
+        const especialidadeId = 1 + Math.floor(Math.random() * 3);
+        const resposta = http.get(`${BASE_URL}/api/lista-espera?especialidadeId=${especialidadeId}`,
+            { tags: { operacao: 'listar-lista-espera' } });
+        check(resposta, { 'listar lista de espera 200': (r) => r.status === 200 });
+    } else {
+        const resposta = http.post(`${BASE_URL}/api/consultas`, JSON.stringify(novoAgendamento()), {
+            headers: { 'Content-Type': 'application/json' },
+            tags: { operacao: 'agendar' },
+        });
+        // 409: horário já ocupado por outro agendamento concorrente
+        check(resposta, { 'agendar 201 ou 409': (r) => r.status === 201 || r.status === 409 });
+    }
+}
+
+// Horário aleatório de meia em meia hora nos próximos 365 dias
+function novoAgendamento() {
+    const medico = MEDICOS[Math.floor(Math.random() * MEDICOS.length)];
+    const inicio = new Date();
+    inicio.setUTCMinutes(0, 0, 0);
+    const dataHora = new Date(inicio.getTime() + (48 + Math.floor(Math.random() * 365 * 48)) * 30 * 60 * 1000);
+    return {
+        pacienteId: PACIENTES[Math.floor(Math.random() * PACIENTES.length)],
+        medicoId: medico.id,
+        unidadeId: medico.unidadeId,
+        dataHora: dataHora.toISOString().substring(0, 19),
+        observacoes: 'carga',
+    };
+}
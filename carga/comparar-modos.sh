@@ -0,0 +1,76 @@
+#!/usr/bin/env bash
+# Compara a API em threads de plataforma (padrão) e no perfil threads-virtuais com a mesma carga k6.
+# Pré-requisitos: MySQL e LocalStack no Docker (docker compose up -d mysql localstack), JDK 21, jq e
+# k6 (ou Docker, usando a imagem grafana/k6). Resultados em carga/resultados/<modo>.json e .log.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+VUS="${VUS:-400}"
+DURACAO="${DURACAO:-2m}"
+PORTA="${PORTA:-8080}"
+RESULTADOS=carga/resultados
+mkdir -p "$RESULTADOS"
+
+DATASOURCE="jdbc:mysql://localhost:3307/vaga_liberada_db?createDatabaseIfNotExist=true&serverTimezone=UTC&useSSL=false&allowPublicKeyRetrieval=true&useCursorFetch=true"
+
+./mvnw -q -DskipTests package
+JAR=$(ls target/vaga_liberada_agenda-*.jar | grep -v plain | head -n 1)
+
+executar_k6() {
+    local modo=$1
+    if command -v k6 >/dev/null 2>&1; then
+        k6 run -q -e BASE_URL="http://localhost:$PORTA" -e VUS="$VUS" -e DURACAO="$DURACAO" \
+            --summary-export "$RESULTADOS/$modo.json" carga/agenda.js
+    else
+        docker run --rm --network host -v "$PWD/carga:/carga" grafana/k6 run -q \
+            -e BASE_URL="http://localhost:$PORTA" -e VUS="$VUS" -e DURACAO="$DURACAO" \
+            --summary-export "/carga/resultados/$modo.json" /carga/agenda.js
+    fi
+}
+
+medir() {
+    local modo=$1 perfil=$2
+    echo ">> Modo $modo"
+    # -Djdk.tracePinnedThreads=short imprime no log cada thread virtual presa à carrier
+    java -Djdk.tracePinnedThreads=short -jar "$JAR" \
+        --server.port="$PORTA" \
+        --spring.profiles.active="$perfil" \
+        --spring.datasource.url="$DATASOURCE" \
+        --spring.cloud.aws.sqs.endpoint=http://localhost:4566 \
+        --spring.cloud.aws.sns.endpoint=http://localhost:4566 \
+        > "$RESULTADOS/$modo.log" 2>&1 &
+    local pid=$!
+    trap "kill $pid 2>/dev/null || true" EXIT
+
+    until curl -sf "http://localhost:$PORTA/actuator/health" >/dev/null; do
+        kill -0 "$pid" 2>/dev/null || { echo "API não subiu, veja $RESULTADOS/$modo.log"; exit 1; }
+        sleep 1
+    done
+
+    executar_k6 "$modo"
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    trap - EXIT
+}
+
+medir plataforma default
+medir threads-virtuais threads-virtuais
+
+resumo() {
+    jq -r --arg modo "$1" '[$modo,
+        (.metrics.http_reqs.rate | floor),
+        .metrics.http_req_duration["p(50)"],
+        .metrics.http_req_duration["p(95)"],
+        .metrics.http_req_duration["p(99)"],
+        (.metrics.http_req_failed.value * 100)] | @tsv' "$RESULTADOS/$1.json"
+}
+
+echo
+{
+    printf 'modo\treq/s\tp50 ms\tp95 ms\tp99 ms\tfalhas %%\n'
+    resumo plataforma
+    resumo threads-virtuais
+} | column -t -s $'\t'
+echo
+echo "Pinning registrado (threads-virtuais): $(grep -c 'presa à carrier\|onPinned' "$RESULTADOS/threads-virtuais.log" || true) ocorrências"
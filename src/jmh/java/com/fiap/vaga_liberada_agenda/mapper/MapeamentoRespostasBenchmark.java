@@ -0,0 +1,105 @@
+package com.fiap.vaga_liberada_agenda.mapper;
+
+import com.fiap.vaga_liberada_agenda.dto.projection.ConsultaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.ListaEsperaProjection;
+import com.fiap.vaga_liberada_agenda.dto.response.ConsultaResponse;
+import com.fiap.vaga_liberada_agenda.dto.response.ListaEsperaResponse;
+import com.fiap.vaga_liberada_agenda.entity.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversões MapStruct usadas em toda listagem e exportação: entidade (com associações) e projeção
+ * para os DTOs de resposta de consulta e lista de espera.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapeamentoRespostasBenchmark {
+
+    private final ConsultaMapper consultaMapper = new ConsultaMapperImpl();
+    private final ListaEsperaMapper listaEsperaMapper = new ListaEsperaMapperImpl();
+
+    private Consulta consulta;
+    private ConsultaProjection consultaProjection;
+    private ListaEspera listaEspera;
+    private ListaEsperaProjection listaEsperaProjection;
+
+    @Setup
+    public void setup() {
+        LocalDateTime dataHora = LocalDateTime.now().plusDays(3);
+
+        Especialidade especialidade = new Especialidade();
+        especialidade.setId(1);
+        especialidade.setNome("Cardiologia");
+
+        UnidadeSaude unidade = new UnidadeSaude();
+        unidade.setId(1);
+        unidade.setNome("UBS Centro");
+
+        Medico medico = new Medico();
+        medico.setId(1);
+        medico.setNome("Dr. João Silva");
+        medico.setCrm("CRM123456");
+        medico.setEspecialidade(especialidade);
+        medico.setUnidade(unidade);
+
+        Paciente paciente = new Paciente();
+        paciente.setId(1);
+        paciente.setNome("Roberto Ferreira");
+
+        consulta = new Consulta();
+        consulta.setId(1);
+        consulta.setPaciente(paciente);
+        consulta.setMedico(medico);
+        consulta.setUnidade(unidade);
+        consulta.setDataHora(dataHora);
+        consulta.setStatus(StatusConsulta.PENDENTE_CONFIRMACAO);
+        consulta.setObservacoes("Primeira consulta de rotina");
+        consulta.setLembreteEnviado(false);
+        consulta.setDataLimiteConfirmacao(dataHora.minusMinutes(30));
+
+        consultaProjection = new ConsultaProjection(1, 1, "Roberto Ferreira", 1, "Dr. João Silva", "CRM123456",
+                1, "UBS Centro", dataHora, StatusConsulta.PENDENTE_CONFIRMACAO, "Primeira consulta de rotina",
+                false, null, dataHora.minusMinutes(30), null);
+
+        listaEspera = new ListaEspera();
+        listaEspera.setId(1);
+        listaEspera.setPaciente(paciente);
+        listaEspera.setEspecialidade(especialidade);
+        listaEspera.setMedico(medico);
+        listaEspera.setUnidade(unidade);
+        listaEspera.setPrioridade(2);
+        listaEspera.setDataCadastro(LocalDateTime.now().minusDays(10));
+        listaEspera.setStatus(StatusListaEspera.ATIVA);
+
+        listaEsperaProjection = new ListaEsperaProjection(1, 1, "Roberto Ferreira", 1, "Cardiologia", 1,
+                "Dr. João Silva", 1, "UBS Centro", LocalDateTime.now().minusDays(10), 2, StatusListaEspera.ATIVA,
+                null, null);
+    }
+
+    @Benchmark
+    public ConsultaResponse consultaDeEntidade() {
+        return consultaMapper.toResponse(consulta);
+    }
+
+    @Benchmark
+    public ConsultaResponse consultaDeProjecao() {
+        return consultaMapper.toResponse(consultaProjection);
+    }
+
+    @Benchmark
+    public ListaEsperaResponse listaEsperaDeEntidadeComDetalhes() {
+        return listaEsperaMapper.toResponseWithDetails(listaEspera);
+    }
+
+    @Benchmark
+    public ListaEsperaResponse listaEsperaDeProjecao() {
+        return listaEsperaMapper.toResponse(listaEsperaProjection);
+    }
+}
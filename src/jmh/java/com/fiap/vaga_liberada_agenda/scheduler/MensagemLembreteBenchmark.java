@@ -0,0 +1,61 @@
+package com.fiap.vaga_liberada_agenda.scheduler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fiap.vaga_liberada_agenda.dto.projection.LembreteConsultaProjection;
+import com.fiap.vaga_liberada_agenda.entity.StatusConsulta;
+import com.fiap.vaga_liberada_agenda.service.CodificadorMensagemNotificacao;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Montagem do JSON de lembrete feita pelo NotificacaoScheduler para cada consulta da janela de 24h:
+ * o caminho antigo com String.format contra o payload tipado codificado pelo JsonGenerator. Com o
+ * profiler gc do perfil benchmark, gc.alloc.rate.norm mostra os bytes alocados por mensagem.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MensagemLembreteBenchmark {
+
+    private static final DateTimeFormatter FORMATO_DATA_HORA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    private LembreteConsultaProjection consulta;
+    private CodificadorMensagemNotificacao codificador;
+
+    @Setup
+    public void setup() {
+        consulta = new LembreteConsultaProjection(1234, 42, "Roberto Ferreira", "UBS Centro",
+                LocalDateTime.now().plusHours(24), StatusConsulta.PENDENTE_CONFIRMACAO);
+        codificador = new CodificadorMensagemNotificacao(new ObjectMapper());
+    }
+
+    @Benchmark
+    public String codificadorJson() {
+        return codificador.codificar(NotificacaoScheduler.montarMensagem(consulta));
+    }
+
+    // Implementação anterior, mantida como referência
+    @Benchmark
+    public String stringFormat() {
+        String linkConfirmacao = "http://localhost:8080/confirmacao.html?id=" + consulta.consultaId();
+        String tipoMensagem = consulta.status() == StatusConsulta.PENDENTE_CONFIRMACAO
+                ? "confirme sua consulta"
+                : "lembrete: sua consulta";
+        return String.format(
+                "{\"pacienteId\": %d, \"consultaId\": %d, \"mensagem\": \"Olá %s, %s para %s na %s. Por favor, confirme sua presença clicando no link: %s\" }",
+                consulta.pacienteId(),
+                consulta.consultaId(),
+                consulta.pacienteNome(),
+                tipoMensagem,
+                consulta.dataHora().format(FORMATO_DATA_HORA),
+                consulta.unidadeNome(),
+                linkConfirmacao
+        );
+    }
+}
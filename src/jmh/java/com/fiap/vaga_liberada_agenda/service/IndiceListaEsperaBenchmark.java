@@ -0,0 +1,75 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.dto.projection.EntradaFilaProjection;
+import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
+import com.fiap.vaga_liberada_agenda.repository.ListaEsperaRepository;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Índice em memória da lista de espera isolado do banco: lote de próximos candidatos por
+ * especialidade, pela chave completa (especialidade, médico, unidade) e por distância da unidade
+ * (pacientes espalhados num quadrado de cerca de 110 km em torno do centro de São Paulo).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndiceListaEsperaBenchmark {
+
+    private static final int ESPECIALIDADES = 10;
+    private static final int MEDICOS_POR_ESPECIALIDADE = 5;
+    private static final double LATITUDE_UNIDADE = -23.55052;
+    private static final double LONGITUDE_UNIDADE = -46.63331;
+
+    @Param({"1000", "100000"})
+    public int tamanhoFila;
+
+    private IndiceListaEspera indice;
+
+    @Setup
+    public void setup() {
+        LocalDateTime base = LocalDateTime.now().minusYears(1);
+        List<EntradaFilaProjection> entradas = new ArrayList<>(tamanhoFila);
+        for (int i = 1; i <= tamanhoFila; i++) {
+            int especialidadeId = 1 + i % ESPECIALIDADES;
+            // Metade sem preferência de médico/unidade, como na fila real
+            Integer medicoId = i % 2 == 0 ? especialidadeId * 100 + i % MEDICOS_POR_ESPECIALIDADE : null;
+            Integer unidadeId = medicoId != null ? 1 : null;
+            // Coordenadas pseudoaleatórias determinísticas em um quadrado de 1 grau centrado na unidade
+            BigDecimal latitude = BigDecimal.valueOf(LATITUDE_UNIDADE - 0.5 + (i * 7919L % 10000) / 10000.0);
+            BigDecimal longitude = BigDecimal.valueOf(LONGITUDE_UNIDADE - 0.5 + (i * 104729L % 10000) / 10000.0);
+            entradas.add(new EntradaFilaProjection(i, especialidadeId, medicoId, unidadeId, i % 5, base.plusMinutes(i),
+                    latitude, longitude));
+        }
+
+        ListaEsperaRepository repository = Mockito.mock(ListaEsperaRepository.class);
+        Mockito.when(repository.buscarEntradasFila(StatusListaEspera.ATIVA)).thenReturn(entradas);
+        indice = new IndiceListaEspera(repository);
+        indice.reconstruir();
+    }
+
+    @Benchmark
+    public List<Integer> proximosPorEspecialidade() {
+        return indice.proximos(3, null, null, 10);
+    }
+
+    @Benchmark
+    public List<Integer> proximosPorChave() {
+        return indice.proximos(3, 302, 1, 10);
+    }
+
+    @Benchmark
+    public List<Integer> proximosPorDistancia() {
+        return indice.proximosPorDistancia(3, LATITUDE_UNIDADE, LONGITUDE_UNIDADE, 10, Duration.ofHours(1), 10);
+    }
+}
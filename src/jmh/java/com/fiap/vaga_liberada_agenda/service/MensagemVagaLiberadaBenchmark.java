@@ -0,0 +1,76 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fiap.vaga_liberada_agenda.entity.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Montagem do JSON de oferta de vaga feita em LiberacaoVagaService.oferecerVagaParaListaEspera: o
+ * caminho antigo com String.format contra o payload tipado codificado pelo JsonGenerator. Com o
+ * profiler gc do perfil benchmark, gc.alloc.rate.norm mostra os bytes alocados por mensagem.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MensagemVagaLiberadaBenchmark {
+
+    private Consulta consulta;
+    private ListaEspera listaEspera;
+    private CodificadorMensagemNotificacao codificador;
+
+    @Setup
+    public void setup() {
+        Medico medico = new Medico();
+        medico.setId(1);
+        medico.setNome("Dr. João Silva");
+
+        UnidadeSaude unidade = new UnidadeSaude();
+        unidade.setId(1);
+        unidade.setNome("UBS Centro");
+
+        Paciente paciente = new Paciente();
+        paciente.setId(42);
+        paciente.setNome("Juliana Rocha");
+
+        consulta = new Consulta();
+        consulta.setId(1234);
+        consulta.setMedico(medico);
+        consulta.setUnidade(unidade);
+        consulta.setDataHora(LocalDateTime.now().plusDays(2).withHour(14).withMinute(30));
+
+        listaEspera = new ListaEspera();
+        listaEspera.setId(77);
+        listaEspera.setPaciente(paciente);
+
+        codificador = new CodificadorMensagemNotificacao(new ObjectMapper());
+    }
+
+    @Benchmark
+    public String codificadorJson() {
+        return codificador.codificar(LiberacaoVagaService.montarMensagemVagaLiberada(consulta, listaEspera));
+    }
+
+    // Implementação anterior, mantida como referência
+    @Benchmark
+    public String stringFormat() {
+        return String.format(
+                "{\"pacienteId\": %d, \"consultaId\": %d, \"listaEsperaId\": %d, " +
+                "\"mensagem\": \"Olá %s, uma vaga foi liberada! Você tem uma consulta disponível em %s às %s com Dr(a). %s na %s. " +
+                "Por favor, confirme sua presença através do sistema.\"}",
+                listaEspera.getPaciente().getId(),
+                consulta.getId(),
+                listaEspera.getId(),
+                listaEspera.getPaciente().getNome(),
+                consulta.getDataHora().toLocalDate(),
+                consulta.getDataHora().toLocalTime(),
+                consulta.getMedico().getNome(),
+                consulta.getUnidade().getNome()
+        );
+    }
+}
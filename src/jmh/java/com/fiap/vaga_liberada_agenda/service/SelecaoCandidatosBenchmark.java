@@ -0,0 +1,131 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.VagaLiberadaAgendaApplication;
+import com.fiap.vaga_liberada_agenda.entity.*;
+import com.fiap.vaga_liberada_agenda.repository.*;
+import io.awspring.cloud.sqs.operations.SqsTemplate;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escolha do próximo candidato da lista de espera ao liberar uma vaga, com a aplicação real sobre o
+ * H2 do perfil de teste: pelo banco (LIMIT na consulta ordenada, usado enquanto o índice não está
+ * pronto) e pelo índice em memória (ids do índice + leitura dos candidatos por id). O índice isolado
+ * é medido em {@link IndiceListaEsperaBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SelecaoCandidatosBenchmark {
+
+    @Param({"1000", "20000"})
+    public int tamanhoFila;
+
+    // Filtro da busca: só especialidade, ou a chave completa (especialidade, médico, unidade)
+    @Param({"especialidade", "chave"})
+    public String filtro;
+
+    private ConfigurableApplicationContext contexto;
+    private LiberacaoVagaService servicoComIndice;
+    private LiberacaoVagaService servicoSemIndice;
+
+    private Integer especialidadeId;
+    private Integer medicoId;
+    private Integer unidadeId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        contexto = new SpringApplicationBuilder(VagaLiberadaAgendaApplication.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                .properties("agenda.notificacao.outbox.intervalo-ms=3600000", "logging.level.root=WARN")
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("sqsTemplate", Mockito.mock(SqsTemplate.class)))
+                .run();
+
+        Medico medico = criarMedico();
+        especialidadeId = medico.getEspecialidade().getId();
+        unidadeId = medico.getUnidade().getId();
+        medicoId = medico.getId();
+        popularFila(medico);
+
+        ListaEsperaRepository listaEsperaRepository = contexto.getBean(ListaEsperaRepository.class);
+        contexto.getBean(IndiceListaEspera.class).reconstruir();
+        servicoComIndice = contexto.getBean(LiberacaoVagaService.class);
+        // Índice nunca reconstruído: a busca cai no caminho pelo banco
+        servicoSemIndice = new LiberacaoVagaService(contexto.getBean(ConsultaRepository.class), listaEsperaRepository,
+                contexto.getBean(NotificacaoService.class), new IndiceListaEspera(listaEsperaRepository),
+                contexto, contexto.getBean(MetricasLiberacaoVaga.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<ListaEspera> bancoH2() {
+        return servicoSemIndice.buscarProximos(especialidadeId, medicoFiltro(), unidadeFiltro(), Set.of(), 1);
+    }
+
+    @Benchmark
+    public List<ListaEspera> indiceEmMemoria() {
+        return servicoComIndice.buscarProximos(especialidadeId, medicoFiltro(), unidadeFiltro(), Set.of(), 1);
+    }
+
+    private Integer medicoFiltro() {
+        return "chave".equals(filtro) ? medicoId : null;
+    }
+
+    private Integer unidadeFiltro() {
+        return "chave".equals(filtro) ? unidadeId : null;
+    }
+
+    private Medico criarMedico() {
+        Especialidade especialidade = new Especialidade();
+        especialidade.setNome("Especialidade benchmark");
+        especialidade = contexto.getBean(EspecialidadeRepository.class).save(especialidade);
+
+        UnidadeSaude unidade = new UnidadeSaude();
+        unidade.setNome("Unidade benchmark");
+        unidade.setLatitude(new BigDecimal("-23.55052000"));
+        unidade.setLongitude(new BigDecimal("-46.63330800"));
+        unidade = contexto.getBean(UnidadeSaudeRepository.class).save(unidade);
+
+        Medico medico = new Medico();
+        medico.setNome("Dr. Benchmark");
+        medico.setCrm("CRM-BENCH");
+        medico.setEspecialidade(especialidade);
+        medico.setUnidade(unidade);
+        return contexto.getBean(MedicoRepository.class).save(medico);
+    }
+
+    // Metade da fila sem preferência de médico/unidade e metade com a chave completa; prioridades 0..4
+    private void popularFila(Medico medico) {
+        Paciente paciente = new Paciente();
+        paciente.setNome("Paciente benchmark");
+        paciente.setCpf("99999999999");
+        paciente = contexto.getBean(PacienteRepository.class).save(paciente);
+
+        contexto.getBean(JdbcTemplate.class).update(
+                "INSERT INTO lista_espera (paciente_id, especialidade_id, medico_id, unidade_id, data_cadastro, prioridade, status, versao) " +
+                "SELECT CAST(? AS INT), CAST(? AS INT), CASE WHEN MOD(\"X\", 2) = 0 THEN CAST(? AS INT) END, " +
+                "CASE WHEN MOD(\"X\", 2) = 0 THEN CAST(? AS INT) END, " +
+                "DATEADD('MINUTE', \"X\", CAST(? AS TIMESTAMP)), MOD(\"X\", 5), 'ATIVA', 0 " +
+                "FROM SYSTEM_RANGE(1, CAST(? AS INT))",
+                paciente.getId(), medico.getEspecialidade().getId(), medico.getId(), medico.getUnidade().getId(),
+                LocalDateTime.now().minusYears(1), tamanhoFila);
+    }
+}
@@ -0,0 +1,54 @@
+package com.fiap.vaga_liberada_agenda.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Um agendador por job {@code @Scheduled}: sem isso todos dividem o executor padrão de thread única e
+ * uma varredura longa de confirmações atrasa os lembretes e o relay do outbox. Cada job referencia o
+ * seu agendador pelo atributo {@code scheduler}. Com {@code spring.threads.virtual.enabled=true} a
+ * thread de cada agendador passa a ser virtual, mantendo uma execução por vez de cada job.
+ */
+@Configuration
+public class AgendadoresConfig {
+
+    public static final String AGENDADOR_CONFIRMACAO = "agendadorConfirmacao";
+    public static final String AGENDADOR_LEMBRETES = "agendadorLembretes";
+    public static final String AGENDADOR_OUTBOX = "agendadorOutbox";
+
+    @Value("${agenda.agendadores.encerramento.timeout-segundos:30}")
+    private int timeoutEncerramentoSegundos = 30;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean threadsVirtuais = false;
+
+    @Bean(AGENDADOR_CONFIRMACAO)
+    public ThreadPoolTaskScheduler agendadorConfirmacao() {
+        return agendador("agenda-confirmacao-");
+    }
+
+    @Bean(AGENDADOR_LEMBRETES)
+    public ThreadPoolTaskScheduler agendadorLembretes() {
+        return agendador("agenda-lembretes-");
+    }
+
+    @Bean(AGENDADOR_OUTBOX)
+    public ThreadPoolTaskScheduler agendadorOutbox() {
+        return agendador("agenda-outbox-");
+    }
+
+    // Uma thread basta: o mesmo job nunca executa em paralelo consigo mesmo
+    private ThreadPoolTaskScheduler agendador(String prefixo) {
+        ThreadPoolTaskScheduler agendador = new ThreadPoolTaskScheduler();
+        agendador.setPoolSize(1);
+        agendador.setThreadNamePrefix(prefixo);
+        if (threadsVirtuais) {
+            agendador.setThreadFactory(Thread.ofVirtual().name(prefixo, 1).factory());
+        }
+        agendador.setWaitForTasksToCompleteOnShutdown(true);
+        agendador.setAwaitTerminationSeconds(timeoutEncerramentoSegundos);
+        return agendador;
+    }
+}
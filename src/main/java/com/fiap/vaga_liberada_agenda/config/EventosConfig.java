@@ -0,0 +1,48 @@
+package com.fiap.vaga_liberada_agenda.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Executor dos consumidores de eventos de domínio ({@code @Async(EXECUTOR_EVENTOS)} junto de
+ * {@code @TransactionalEventListener}): rodam depois do commit, fora da thread da requisição ou da
+ * liberação de vagas. Com a fila cheia o evento é tratado na própria thread que publicou (backpressure)
+ * em vez de ser descartado.
+ */
+@Configuration
+@EnableAsync
+public class EventosConfig {
+
+    public static final String EXECUTOR_EVENTOS = "executorEventos";
+
+    @Value("${agenda.eventos.threads:2}")
+    private int threads = 2;
+
+    @Value("${agenda.eventos.fila.capacidade:10000}")
+    private int capacidadeFila = 10000;
+
+    @Value("${agenda.agendadores.encerramento.timeout-segundos:30}")
+    private int timeoutEncerramentoSegundos = 30;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean threadsVirtuais = false;
+
+    @Bean(EXECUTOR_EVENTOS)
+    public ThreadPoolTaskExecutor executorEventos() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(capacidadeFila);
+        executor.setThreadNamePrefix("agenda-eventos-");
+        executor.setVirtualThreads(threadsVirtuais);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(timeoutEncerramentoSegundos);
+        return executor;
+    }
+}
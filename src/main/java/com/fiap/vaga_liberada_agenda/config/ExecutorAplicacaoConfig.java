@@ -0,0 +1,50 @@
+package com.fiap.vaga_liberada_agenda.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.SimpleAsyncTaskExecutorBuilder;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Executor padrão da aplicação ({@code applicationTaskExecutor}). O Spring Boot só o cria quando não há
+ * nenhum outro {@code Executor} no contexto, e os agendadores por job e o executor de eventos fazem a
+ * auto-configuração desistir: sem esta declaração as requisições assíncronas do MVC e qualquer
+ * {@code @Async} sem qualificador ficam sem o executor configurado. Os builders são os da
+ * auto-configuração, então valem as propriedades {@code spring.task.execution.*}; com
+ * {@code spring.threads.virtual.enabled=true} o executor passa a usar threads virtuais.
+ */
+@Configuration
+public class ExecutorAplicacaoConfig implements WebMvcConfigurer {
+
+    private final ThreadPoolTaskExecutorBuilder threadPoolTaskExecutorBuilder;
+    private final SimpleAsyncTaskExecutorBuilder simpleAsyncTaskExecutorBuilder;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean threadsVirtuais = false;
+
+    public ExecutorAplicacaoConfig(ThreadPoolTaskExecutorBuilder threadPoolTaskExecutorBuilder,
+                                   SimpleAsyncTaskExecutorBuilder simpleAsyncTaskExecutorBuilder) {
+        this.threadPoolTaskExecutorBuilder = threadPoolTaskExecutorBuilder;
+        this.simpleAsyncTaskExecutorBuilder = simpleAsyncTaskExecutorBuilder;
+    }
+
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        if (threadsVirtuais) {
+            return simpleAsyncTaskExecutorBuilder.build();
+        }
+        return threadPoolTaskExecutorBuilder.build();
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(applicationTaskExecutor());
+    }
+}
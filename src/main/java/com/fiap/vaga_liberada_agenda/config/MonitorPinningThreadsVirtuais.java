@@ -0,0 +1,83 @@
+package com.fiap.vaga_liberada_agenda.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Diagnóstico de pinning: assina o evento JFR {@code jdk.VirtualThreadPinned}, emitido quando uma
+ * thread virtual bloqueia dentro de um {@code synchronized} (ou código nativo) e prende a carrier
+ * thread. Cada ocorrência acima do limiar entra no timer {@code agenda.threads-virtuais.pinning} e é
+ * logada com o topo da pilha, apontando o driver ou a biblioteca responsável.
+ */
+@Component
+@ConditionalOnProperty(name = "agenda.diagnostico.pinning.habilitado", havingValue = "true")
+@Slf4j
+public class MonitorPinningThreadsVirtuais {
+
+    static final String EVENTO_PINNING = "jdk.VirtualThreadPinned";
+    private static final int QUADROS_LOGADOS = 8;
+
+    private final Timer pinning;
+    private final Duration limiar;
+
+    private RecordingStream stream;
+
+    public MonitorPinningThreadsVirtuais(
+            MeterRegistry meterRegistry,
+            @Value("${agenda.diagnostico.pinning.limiar:PT0.02S}") Duration limiar) {
+        this.limiar = limiar;
+        this.pinning = Timer.builder("agenda.threads-virtuais.pinning")
+                .description("Tempo em que threads virtuais ficaram presas à carrier thread")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public synchronized void iniciar() {
+        if (stream != null) {
+            return;
+        }
+        stream = new RecordingStream();
+        stream.enable(EVENTO_PINNING).withThreshold(limiar).withStackTrace();
+        stream.onEvent(EVENTO_PINNING, this::registrar);
+        stream.startAsync();
+        log.info("Monitor de pinning de threads virtuais ativo (limiar {} ms)", limiar.toMillis());
+    }
+
+    @PreDestroy
+    public synchronized void parar() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    private void registrar(RecordedEvent evento) {
+        pinning.record(evento.getDuration());
+        log.warn("Thread virtual presa à carrier por {} ms:\n{}", evento.getDuration().toMillis(), pilha(evento));
+    }
+
+    private static String pilha(RecordedEvent evento) {
+        if (evento.getStackTrace() == null) {
+            return "\t(sem pilha)";
+        }
+        List<RecordedFrame> quadros = evento.getStackTrace().getFrames();
+        return quadros.stream()
+                .limit(QUADROS_LOGADOS)
+                .map(quadro -> "\tat " + quadro.getMethod().getType().getName() + "." + quadro.getMethod().getName()
+                        + ":" + quadro.getLineNumber())
+                .collect(Collectors.joining("\n"));
+    }
+}
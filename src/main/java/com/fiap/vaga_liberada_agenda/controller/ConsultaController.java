@@ -1,15 +1,19 @@
 package com.fiap.vaga_liberada_agenda.controller;
 
 import com.fiap.vaga_liberada_agenda.dto.request.ConsultaRequest;
+import com.fiap.vaga_liberada_agenda.dto.response.AgendamentoLoteResponse;
 import com.fiap.vaga_liberada_agenda.dto.response.ConsultaResponse;
 import com.fiap.vaga_liberada_agenda.entity.StatusConsulta;
+import com.fiap.vaga_liberada_agenda.service.AgendamentoLoteService;
 import com.fiap.vaga_liberada_agenda.service.ConsultaService;
 import com.fiap.vaga_liberada_agenda.service.LiberacaoVagaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -20,6 +24,8 @@ public class ConsultaController {
 
     private final ConsultaService consultaService;
     private final LiberacaoVagaService liberacaoVagaService;
+    private final AgendamentoLoteService agendamentoLoteService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<ConsultaResponse> agendar(@Valid @RequestBody ConsultaRequest request) {
@@ -27,34 +33,47 @@ public class ConsultaController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    // Carga de agenda em lote: 200 mesmo com rejeições, com o resultado (id ou erro) de cada consulta
+    @PostMapping("/lote")
+    public ResponseEntity<AgendamentoLoteResponse> agendarEmLote(@RequestBody List<ConsultaRequest> requests) {
+        return ResponseEntity.ok(agendamentoLoteService.agendar(requests));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ConsultaResponse> buscarPorId(@PathVariable Integer id) {
         ConsultaResponse response = consultaService.buscarPorId(id);
         return ResponseEntity.ok(response);
     }
 
+    // Paginação por cursor: o próximo cursor vem no cabeçalho X-Proximo-Cursor (ausente na última página)
     @GetMapping
     public ResponseEntity<List<ConsultaResponse>> listar(
             @RequestParam(required = false) Integer pacienteId,
-            @RequestParam(required = false) String status) {
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Integer aposId,
+            @RequestParam(required = false) Integer limite) {
         
         if (pacienteId != null) {
-            List<ConsultaResponse> response = consultaService.listarPorPaciente(pacienteId);
-            return ResponseEntity.ok(response);
+            return RespostasHttp.comCursor(consultaService.listarPorPaciente(pacienteId, aposId, limite));
         }
         
         if (status != null) {
+            StatusConsulta statusConsulta;
             try {
-                StatusConsulta statusConsulta = StatusConsulta.valueOf(status.toUpperCase());
-                List<ConsultaResponse> response = consultaService.listarPorStatus(statusConsulta);
-                return ResponseEntity.ok(response);
+                statusConsulta = StatusConsulta.valueOf(status.toUpperCase());
             } catch (IllegalArgumentException e) {
                 return ResponseEntity.badRequest().build();
             }
+            return RespostasHttp.comCursor(consultaService.listarPorStatus(statusConsulta, aposId, limite));
         }
         
-        List<ConsultaResponse> response = consultaService.listarTodas();
-        return ResponseEntity.ok(response);
+        return RespostasHttp.comCursor(consultaService.listarTodas(aposId, limite));
+    }
+
+    // Exportação completa em NDJSON (uma consulta por linha), em memória constante
+    @GetMapping(produces = RespostasHttp.MEDIA_TYPE_NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportar() {
+        return RespostasHttp.ndjson(objectMapper, consultaService::exportar);
     }
 
     @PostMapping("/{id}/confirmar")
@@ -1,14 +1,20 @@
 package com.fiap.vaga_liberada_agenda.controller;
 
 import com.fiap.vaga_liberada_agenda.dto.request.ListaEsperaRequest;
+import com.fiap.vaga_liberada_agenda.dto.response.ImportacaoListaEsperaResponse;
 import com.fiap.vaga_liberada_agenda.dto.response.ListaEsperaResponse;
+import com.fiap.vaga_liberada_agenda.service.ImportacaoListaEsperaService;
 import com.fiap.vaga_liberada_agenda.service.ListaEsperaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,7 +23,11 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class ListaEsperaController {
 
+    static final String MEDIA_TYPE_CSV = "text/csv";
+
     private final ListaEsperaService listaEsperaService;
+    private final ImportacaoListaEsperaService importacaoListaEsperaService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<ListaEsperaResponse> adicionarNaLista(@Valid @RequestBody ListaEsperaRequest request) {
@@ -25,6 +35,18 @@ public class ListaEsperaController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    // Importação em massa: NDJSON (um ListaEsperaRequest por linha) ou CSV com cabeçalho.
+    // Responde 200 com o resultado de cada linha, mesmo quando parte delas é rejeitada.
+    @PostMapping(value = "/importacao", consumes = RespostasHttp.MEDIA_TYPE_NDJSON)
+    public ResponseEntity<ImportacaoListaEsperaResponse> importarNdjson(InputStream corpo) throws IOException {
+        return ResponseEntity.ok(importacaoListaEsperaService.importarNdjson(corpo));
+    }
+
+    @PostMapping(value = "/importacao", consumes = MEDIA_TYPE_CSV)
+    public ResponseEntity<ImportacaoListaEsperaResponse> importarCsv(InputStream corpo) throws IOException {
+        return ResponseEntity.ok(importacaoListaEsperaService.importarCsv(corpo));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ListaEsperaResponse> buscarPorId(@PathVariable Integer id) {
         ListaEsperaResponse response = listaEsperaService.buscarPorId(id);
@@ -35,14 +57,22 @@ public class ListaEsperaController {
     public ResponseEntity<List<ListaEsperaResponse>> listar(
             @RequestParam(required = false) Integer especialidadeId,
             @RequestParam(required = false) Integer medicoId,
-            @RequestParam(required = false) Integer unidadeId) {
-        // Se não houver filtros, retorna todos; caso contrário, retorna filtrado
+            @RequestParam(required = false) Integer unidadeId,
+            @RequestParam(required = false) Integer aposId,
+            @RequestParam(required = false) Integer limite) {
+        // Paginado por cursor (próximo cursor no cabeçalho X-Proximo-Cursor): sem filtros, todos os
+        // registros em ordem de id; com filtros, a fila ATIVA filtrada em ordem de prioridade
         if (especialidadeId == null && medicoId == null && unidadeId == null) {
-            List<ListaEsperaResponse> response = listaEsperaService.listarTodos();
-            return ResponseEntity.ok(response);
+            return RespostasHttp.comCursor(listaEsperaService.listarTodos(aposId, limite));
         }
-        List<ListaEsperaResponse> response = listaEsperaService.listarPorFiltros(especialidadeId, medicoId, unidadeId);
-        return ResponseEntity.ok(response);
+        return RespostasHttp.comCursor(
+                listaEsperaService.listarPorFiltros(especialidadeId, medicoId, unidadeId, aposId, limite));
+    }
+
+    // Exportação completa em NDJSON (um registro por linha), em memória constante
+    @GetMapping(produces = RespostasHttp.MEDIA_TYPE_NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportar() {
+        return RespostasHttp.ndjson(objectMapper, listaEsperaService::exportar);
     }
 
     @GetMapping("/proximo")
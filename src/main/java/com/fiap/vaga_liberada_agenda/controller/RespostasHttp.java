@@ -0,0 +1,46 @@
+package com.fiap.vaga_liberada_agenda.controller;
+
+import com.fiap.vaga_liberada_agenda.dto.response.PaginaResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Formatos de resposta comuns aos controllers: listagens paginadas por cursor e exportações NDJSON
+final class RespostasHttp {
+
+    static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+    static final String CABECALHO_PROXIMO_CURSOR = "X-Proximo-Cursor";
+
+    private RespostasHttp() {
+    }
+
+    // Itens da página no corpo; o próximo cursor vai no cabeçalho X-Proximo-Cursor (ausente na última página)
+    static <T> ResponseEntity<List<T>> comCursor(PaginaResponse<T> pagina) {
+        ResponseEntity.BodyBuilder resposta = ResponseEntity.ok();
+        if (pagina.proximoCursor() != null) {
+            resposta.header(CABECALHO_PROXIMO_CURSOR, String.valueOf(pagina.proximoCursor()));
+        }
+        return resposta.body(pagina.itens());
+    }
+
+    // Exportação em NDJSON (um item por linha) escrita à medida que a exportação entrega os itens
+    static <T> ResponseEntity<StreamingResponseBody> ndjson(ObjectMapper objectMapper, Consumer<Consumer<T>> exportacao) {
+        StreamingResponseBody corpo = saida -> exportacao.accept(item -> {
+            try {
+                saida.write(objectMapper.writeValueAsBytes(item));
+                saida.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(MEDIA_TYPE_NDJSON))
+                .body(corpo);
+    }
+}
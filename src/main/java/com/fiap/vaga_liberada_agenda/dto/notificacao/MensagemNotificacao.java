@@ -0,0 +1,10 @@
+package com.fiap.vaga_liberada_agenda.dto.notificacao;
+
+// Payload das notificações publicadas no SQS; listaEsperaId só é preenchido nas ofertas de vaga
+public record MensagemNotificacao(
+        Integer pacienteId,
+        Integer consultaId,
+        Integer listaEsperaId,
+        String mensagem
+) {
+}
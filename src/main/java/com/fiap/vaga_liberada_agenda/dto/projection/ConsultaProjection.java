@@ -0,0 +1,25 @@
+package com.fiap.vaga_liberada_agenda.dto.projection;
+
+import com.fiap.vaga_liberada_agenda.entity.StatusConsulta;
+
+import java.time.LocalDateTime;
+
+// Dados de ConsultaResponse lidos em uma única consulta com joins (sem carregar as associações lazy)
+public record ConsultaProjection(
+        Integer id,
+        Integer pacienteId,
+        String pacienteNome,
+        Integer medicoId,
+        String medicoNome,
+        String medicoCrm,
+        Integer unidadeId,
+        String unidadeNome,
+        LocalDateTime dataHora,
+        StatusConsulta status,
+        String observacoes,
+        Boolean lembreteEnviado,
+        LocalDateTime confirmadaEm,
+        LocalDateTime dataLimiteConfirmacao,
+        LocalDateTime vagaOferecidaEm
+) {
+}
@@ -0,0 +1,12 @@
+package com.fiap.vaga_liberada_agenda.dto.projection;
+
+import java.math.BigDecimal;
+
+// Paciente existente com as suas coordenadas (importação da lista de espera: valida o lote e alimenta o
+// índice em memória sem carregar cada paciente)
+public record CoordenadasPacienteProjection(
+        Integer id,
+        BigDecimal latitude,
+        BigDecimal longitude
+) {
+}
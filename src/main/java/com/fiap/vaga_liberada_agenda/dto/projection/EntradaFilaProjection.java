@@ -0,0 +1,27 @@
+package com.fiap.vaga_liberada_agenda.dto.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Campos mínimos de um registro da lista de espera usados pelo índice de prioridade em memória,
+// com as coordenadas do paciente para a busca por distância (nulas quando o cadastro não as tem)
+public record EntradaFilaProjection(
+        Integer id,
+        Integer especialidadeId,
+        Integer medicoId,
+        Integer unidadeId,
+        Integer prioridade,
+        LocalDateTime dataCadastro,
+        BigDecimal latitude,
+        BigDecimal longitude
+) {
+
+    public EntradaFilaProjection(Integer id, Integer especialidadeId, Integer medicoId, Integer unidadeId,
+                                 Integer prioridade, LocalDateTime dataCadastro) {
+        this(id, especialidadeId, medicoId, unidadeId, prioridade, dataCadastro, null, null);
+    }
+
+    public boolean temCoordenadas() {
+        return latitude != null && longitude != null;
+    }
+}
@@ -0,0 +1,8 @@
+package com.fiap.vaga_liberada_agenda.dto.projection;
+
+// Dados imutáveis da especialidade guardados no cache de referência
+public record EspecialidadeReferenciaProjection(
+        Integer id,
+        String nome
+) {
+}
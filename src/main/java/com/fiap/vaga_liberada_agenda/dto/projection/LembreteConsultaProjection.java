@@ -0,0 +1,16 @@
+package com.fiap.vaga_liberada_agenda.dto.projection;
+
+import com.fiap.vaga_liberada_agenda.entity.StatusConsulta;
+
+import java.time.LocalDateTime;
+
+// Campos usados na mensagem de lembrete, lidos em uma única consulta (sem carregar paciente/unidade)
+public record LembreteConsultaProjection(
+        Integer consultaId,
+        Integer pacienteId,
+        String pacienteNome,
+        String unidadeNome,
+        LocalDateTime dataHora,
+        StatusConsulta status
+) {
+}
@@ -0,0 +1,24 @@
+package com.fiap.vaga_liberada_agenda.dto.projection;
+
+import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
+
+import java.time.LocalDateTime;
+
+// Dados de ListaEsperaResponse lidos em uma única consulta com joins (sem carregar as associações lazy)
+public record ListaEsperaProjection(
+        Integer id,
+        Integer pacienteId,
+        String pacienteNome,
+        Integer especialidadeId,
+        String especialidadeNome,
+        Integer medicoId,
+        String medicoNome,
+        Integer unidadeId,
+        String unidadeNome,
+        LocalDateTime dataCadastro,
+        Integer prioridade,
+        StatusListaEspera status,
+        Integer consultaOferecidaId,
+        LocalDateTime dataOferta
+) {
+}
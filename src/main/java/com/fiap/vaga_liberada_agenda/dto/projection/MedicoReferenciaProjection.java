@@ -0,0 +1,12 @@
+package com.fiap.vaga_liberada_agenda.dto.projection;
+
+// Dados imutáveis do médico guardados no cache de referência (as associações ficam só como ids)
+public record MedicoReferenciaProjection(
+        Integer id,
+        String nome,
+        String crm,
+        Boolean ativo,
+        Integer especialidadeId,
+        Integer unidadeId
+) {
+}
@@ -0,0 +1,10 @@
+package com.fiap.vaga_liberada_agenda.dto.projection;
+
+import java.time.LocalDateTime;
+
+// Consulta com oferta de vaga aguardando resposta, usada para reidratar os prazos de expiração na subida
+public record OfertaPendenteProjection(
+        Integer consultaId,
+        LocalDateTime dataOferta
+) {
+}
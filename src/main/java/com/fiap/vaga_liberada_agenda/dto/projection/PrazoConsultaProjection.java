@@ -0,0 +1,12 @@
+package com.fiap.vaga_liberada_agenda.dto.projection;
+
+import java.time.LocalDateTime;
+
+// Cursor (data_limite_confirmacao, id) da paginação keyset de consultas pendentes de confirmação;
+// a especialidade do médico define a partição em que a vaga é liberada
+public record PrazoConsultaProjection(
+        Integer id,
+        LocalDateTime dataLimiteConfirmacao,
+        Integer especialidadeId
+) {
+}
@@ -0,0 +1,10 @@
+package com.fiap.vaga_liberada_agenda.dto.projection;
+
+import java.time.LocalDateTime;
+
+// Horário ocupado por uma consulta ativa de um médico (detecção de conflitos no agendamento em lote)
+public record SlotOcupadoProjection(
+        Integer medicoId,
+        LocalDateTime dataHora
+) {
+}
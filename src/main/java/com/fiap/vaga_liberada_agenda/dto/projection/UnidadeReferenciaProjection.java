@@ -0,0 +1,12 @@
+package com.fiap.vaga_liberada_agenda.dto.projection;
+
+import java.math.BigDecimal;
+
+// Dados imutáveis da unidade de saúde guardados no cache de referência
+public record UnidadeReferenciaProjection(
+        Integer id,
+        String nome,
+        BigDecimal latitude,
+        BigDecimal longitude
+) {
+}
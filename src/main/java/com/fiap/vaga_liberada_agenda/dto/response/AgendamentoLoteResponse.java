@@ -0,0 +1,21 @@
+package com.fiap.vaga_liberada_agenda.dto.response;
+
+import java.util.List;
+
+// Resultado do agendamento em lote, com o desfecho de cada consulta na ordem em que foi enviada
+public record AgendamentoLoteResponse(
+        int total,
+        int agendadas,
+        int rejeitadas,
+        List<Item> itens
+) {
+
+    // indice é a posição da consulta na lista enviada (a partir de 0); consultaId preenchido quando
+    // agendada, erro quando rejeitada
+    public record Item(
+            int indice,
+            Integer consultaId,
+            String erro
+    ) {
+    }
+}
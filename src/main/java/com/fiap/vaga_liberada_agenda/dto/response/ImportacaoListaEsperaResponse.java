@@ -0,0 +1,20 @@
+package com.fiap.vaga_liberada_agenda.dto.response;
+
+import java.util.List;
+
+// Resultado de uma importação em massa da lista de espera, com o desfecho de cada linha do arquivo
+public record ImportacaoListaEsperaResponse(
+        int total,
+        int importados,
+        int rejeitados,
+        List<Linha> linhas
+) {
+
+    // listaEsperaId preenchido quando a linha foi importada; erro quando foi rejeitada
+    public record Linha(
+            int linha,
+            Integer listaEsperaId,
+            String erro
+    ) {
+    }
+}
@@ -0,0 +1,32 @@
+package com.fiap.vaga_liberada_agenda.dto.response;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Página de uma listagem paginada por cursor (id do último item da página); proximoCursor é nulo na última página
+public record PaginaResponse<T>(
+        List<T> itens,
+        Integer proximoCursor
+) {
+
+    public static final int LIMITE_PADRAO = 50;
+    public static final int LIMITE_MAXIMO = 500;
+
+    public static int limiteEfetivo(Integer limite) {
+        if (limite == null) {
+            return LIMITE_PADRAO;
+        }
+        if (limite < 1) {
+            throw new IllegalArgumentException("O limite da página deve ser maior que zero");
+        }
+        return Math.min(limite, LIMITE_MAXIMO);
+    }
+
+    // Os registros devem ter sido buscados com limite + 1: o excedente indica que há próxima página
+    public static <E, T> PaginaResponse<T> de(List<E> registros, int limite, Function<E, Integer> id, Function<E, T> mapper) {
+        boolean haMais = registros.size() > limite;
+        List<E> pagina = haMais ? registros.subList(0, limite) : registros;
+        Integer proximoCursor = haMais ? id.apply(pagina.get(pagina.size() - 1)) : null;
+        return new PaginaResponse<>(pagina.stream().map(mapper).toList(), proximoCursor);
+    }
+}
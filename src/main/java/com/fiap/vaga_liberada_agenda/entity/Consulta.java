@@ -4,18 +4,19 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import lombok.ToString;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "consultas")
+@Table(name = "consultas", uniqueConstraints = @UniqueConstraint(
+        name = Consulta.UK_MEDICO_SLOT_ATIVO, columnNames = {"medico_id", "slot_ativo"}))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@ToString(exclude = "vagaOferecidaParaListaEspera")
 public class Consulta {
 
+    public static final String UK_MEDICO_SLOT_ATIVO = "uk_consultas_medico_slot_ativo";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
@@ -51,10 +52,21 @@ public class Consulta {
     @Column(name = "data_limite_confirmacao")
     private LocalDateTime dataLimiteConfirmacao;
 
-    @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "vaga_oferecida_para_lista_espera_id")
-    private ListaEspera vagaOferecidaParaListaEspera;
-
     @Column(name = "vaga_oferecida_em")
     private LocalDateTime vagaOferecidaEm;
+
+    // Instante da última liberação da vaga; mantido após a reocupação
+    @Column(name = "liberada_em")
+    private LocalDateTime liberadaEm;
+
+    // Horário ocupado enquanto a consulta está ativa (AGENDADA/PENDENTE_CONFIRMACAO), nulo nos demais
+    // status. Gerada pelo banco (mesma definição da migration V6) e não relida após escritas; serve ao índice
+    // único (medico_id, slot_ativo)
+    @Column(name = "slot_ativo", insertable = false, updatable = false,
+            columnDefinition = "TIMESTAMP GENERATED ALWAYS AS (CASE WHEN status IN ('AGENDADA', 'PENDENTE_CONFIRMACAO') THEN data_hora END)")
+    private LocalDateTime slotAtivo;
+
+    // Controle de concorrência otimista: escritas a partir de uma leitura desatualizada falham no flush
+    @Version
+    private Long versao;
 }
@@ -9,13 +9,22 @@ import lombok.ToString;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "lista_espera")
+// Índices da fila (migration V7) e das ofertas (V9) repetidos aqui para que o schema gerado nos testes tenha os mesmos planos
+@Table(name = "lista_espera", indexes = {
+        @Index(name = "idx_lista_espera_fila", columnList = "status, prioridade DESC, data_cadastro, id"),
+        @Index(name = "idx_lista_espera_fila_especialidade",
+                columnList = "status, especialidade_id, prioridade DESC, data_cadastro, id"),
+        @Index(name = "idx_lista_espera_fila_chave",
+                columnList = "status, especialidade_id, medico_id, unidade_id, prioridade DESC, data_cadastro, id"),
+        @Index(name = "idx_lista_espera_oferta", columnList = "consulta_oferecida_id, status")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @ToString(exclude = "consultaOferecida")
 public class ListaEspera {
 
+    // IDENTITY: as inserções em massa gravam pelo lote JDBC de ListaEsperaRepository.inserirEmLote
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
@@ -53,6 +62,9 @@ public class ListaEspera {
     @Column(name = "data_oferta")
     private LocalDateTime dataOferta;
 
+    @Version
+    private Long versao;
+
     @PrePersist
     protected void onCreate() {
         if (dataCadastro == null) {
@@ -33,14 +33,32 @@ public class Notificacao {
     @Column(nullable = false, length = 10)
     private TipoNotificacao tipo = TipoNotificacao.EMAIL;
 
-    @Column(name = "enviada_em", updatable = false)
+    @Column(name = "enviada_em")
     private LocalDateTime enviadaEm;
 
     @Column(nullable = false)
     private Boolean lida = false;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status_envio", nullable = false, length = 20)
+    private StatusEnvioNotificacao statusEnvio = StatusEnvioNotificacao.PENDENTE;
+
+    @Column(nullable = false)
+    private Integer tentativas = 0;
+
+    @Column(name = "ultimo_erro", length = 500)
+    private String ultimoErro;
+
+    // Enquanto ENVIANDO: fim da reserva do lote pelo relay (vencida, o registro pode ser reivindicado de novo).
+    // PENDENTE após falha: fim do backoff; antes disso o relay não tenta de novo
+    @Column(name = "proxima_tentativa_em")
+    private LocalDateTime proximaTentativaEm;
+
+    @Column(name = "criada_em", updatable = false)
+    private LocalDateTime criadaEm;
+
     @PrePersist
     protected void onCreate() {
-        enviadaEm = LocalDateTime.now();
+        criadaEm = LocalDateTime.now();
     }
 }
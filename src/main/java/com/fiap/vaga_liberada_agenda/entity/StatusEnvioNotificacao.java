@@ -0,0 +1,8 @@
+package com.fiap.vaga_liberada_agenda.entity;
+
+public enum StatusEnvioNotificacao {
+    PENDENTE,
+    ENVIANDO,
+    ENVIADA,
+    FALHA
+}
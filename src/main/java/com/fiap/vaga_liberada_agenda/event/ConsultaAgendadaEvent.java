@@ -0,0 +1,11 @@
+package com.fiap.vaga_liberada_agenda.event;
+
+import java.time.LocalDateTime;
+
+// Publicado quando uma consulta é agendada e passa a aguardar confirmação até dataLimiteConfirmacao
+public record ConsultaAgendadaEvent(
+        Integer consultaId,
+        Integer especialidadeId,
+        LocalDateTime dataLimiteConfirmacao
+) {
+}
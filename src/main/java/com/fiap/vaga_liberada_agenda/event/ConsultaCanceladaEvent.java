@@ -0,0 +1,8 @@
+package com.fiap.vaga_liberada_agenda.event;
+
+// Publicado quando a consulta é cancelada ou o paciente desiste dela
+public record ConsultaCanceladaEvent(
+        Integer consultaId,
+        Integer especialidadeId
+) {
+}
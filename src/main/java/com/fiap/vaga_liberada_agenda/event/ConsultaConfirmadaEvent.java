@@ -0,0 +1,8 @@
+package com.fiap.vaga_liberada_agenda.event;
+
+// Publicado quando o paciente confirma a consulta dentro do prazo
+public record ConsultaConfirmadaEvent(
+        Integer consultaId,
+        Integer especialidadeId
+) {
+}
@@ -0,0 +1,8 @@
+package com.fiap.vaga_liberada_agenda.event;
+
+// Publicado quando uma notificação é gravada no outbox, pendente de envio ao SQS
+public record NotificacaoRegistradaEvent(
+        Integer pacienteId,
+        Integer consultaId
+) {
+}
@@ -0,0 +1,9 @@
+package com.fiap.vaga_liberada_agenda.event;
+
+// Publicado quando o prazo da oferta vence sem aceite e o registro da lista de espera volta à fila
+public record OfertaExpiradaEvent(
+        Integer consultaId,
+        Integer listaEsperaId,
+        Integer especialidadeId
+) {
+}
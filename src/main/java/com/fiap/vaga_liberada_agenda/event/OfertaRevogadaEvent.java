@@ -0,0 +1,9 @@
+package com.fiap.vaga_liberada_agenda.event;
+
+// Publicado para cada oferta paralela da mesma vaga desfeita porque outro registro da lista de espera aceitou primeiro
+public record OfertaRevogadaEvent(
+        Integer consultaId,
+        Integer listaEsperaId,
+        Integer especialidadeId
+) {
+}
@@ -0,0 +1,12 @@
+package com.fiap.vaga_liberada_agenda.event;
+
+import java.time.LocalDateTime;
+
+// Publicado quando o paciente da lista de espera aceita a vaga oferecida e a consulta passa a ser dele
+public record VagaAceitaEvent(
+        Integer consultaId,
+        Integer listaEsperaId,
+        Integer especialidadeId,
+        LocalDateTime aceitaEm
+) {
+}
@@ -0,0 +1,11 @@
+package com.fiap.vaga_liberada_agenda.event;
+
+import java.time.LocalDateTime;
+
+// Publicado quando a consulta passa a LIBERADA (desistência ou prazo de confirmação vencido)
+public record VagaLiberadaEvent(
+        Integer consultaId,
+        Integer especialidadeId,
+        LocalDateTime liberadaEm
+) {
+}
@@ -0,0 +1,14 @@
+package com.fiap.vaga_liberada_agenda.event;
+
+import java.time.LocalDateTime;
+
+// Publicado quando uma vaga liberada é oferecida a um paciente da lista de espera
+public record VagaOferecidaEvent(
+        Integer consultaId,
+        Integer listaEsperaId,
+        Integer especialidadeId,
+        LocalDateTime liberadaEm,
+        LocalDateTime oferecidaEm,
+        LocalDateTime expiraEm
+) {
+}
@@ -0,0 +1,12 @@
+package com.fiap.vaga_liberada_agenda.exception;
+
+/**
+ * Operação perdeu a disputa por um recurso já alterado por outra requisição
+ * (ex.: vaga aceita ou expirada entre a leitura e a escrita). Respondida com 409.
+ */
+public class ConflitoException extends RuntimeException {
+
+    public ConflitoException(String mensagem) {
+        super(mensagem);
+    }
+}
@@ -1,8 +1,12 @@
 package com.fiap.vaga_liberada_agenda.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -25,6 +29,31 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(error);
     }
 
+    // Conflito de concorrência: a requisição perdedora recebe 409 sem nova tentativa no servidor
+    @ExceptionHandler({ConflitoException.class, ConcurrencyFailureException.class})
+    public ResponseEntity<Map<String, String>> handleConflito(RuntimeException ex) {
+        log.warn("Conflito de concorrência: {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("mensagem", ex instanceof ConflitoException
+                ? ex.getMessage()
+                : "O registro foi alterado por outra operação. Tente novamente");
+        error.put("status", String.valueOf(HttpStatus.CONFLICT.value()));
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
+    // Pool de conexões esgotado (connection-timeout do Hikari): com threads virtuais o pool é o limite
+    // de concorrência, então o excesso recebe 503 rápido em vez de esperar indefinidamente
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public ResponseEntity<Map<String, String>> handleIndisponivel(RuntimeException ex) {
+        log.warn("Banco de dados indisponível ou pool de conexões esgotado: {}", ex.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("mensagem", "Serviço temporariamente sobrecarregado. Tente novamente");
+        error.put("status", String.valueOf(HttpStatus.SERVICE_UNAVAILABLE.value()));
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, Object>> handleValidationExceptions(MethodArgumentNotValidException ex) {
         log.error("Erro de validação de campos: {}", ex.getMessage());
@@ -1,5 +1,8 @@
 package com.fiap.vaga_liberada_agenda.mapper;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.ConsultaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.MedicoReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection;
 import com.fiap.vaga_liberada_agenda.dto.response.ConsultaResponse;
 import com.fiap.vaga_liberada_agenda.entity.Consulta;
 import org.mapstruct.Mapper;
@@ -17,4 +20,17 @@ public interface ConsultaMapper {
     @Mapping(target = "unidadeId", source = "unidade.id")
     @Mapping(target = "unidadeNome", source = "unidade.nome")
     ConsultaResponse toResponse(Consulta consulta);
+
+    ConsultaResponse toResponse(ConsultaProjection projecao);
+
+    // Médico e unidade vindos do cache de referência: os proxies da consulta recém-gravada não são inicializados
+    @Mapping(target = "id", source = "consulta.id")
+    @Mapping(target = "pacienteId", source = "consulta.paciente.id")
+    @Mapping(target = "pacienteNome", source = "consulta.paciente.nome")
+    @Mapping(target = "medicoId", source = "medico.id")
+    @Mapping(target = "medicoNome", source = "medico.nome")
+    @Mapping(target = "medicoCrm", source = "medico.crm")
+    @Mapping(target = "unidadeId", source = "unidade.id")
+    @Mapping(target = "unidadeNome", source = "unidade.nome")
+    ConsultaResponse toResponse(Consulta consulta, MedicoReferenciaProjection medico, UnidadeReferenciaProjection unidade);
 }
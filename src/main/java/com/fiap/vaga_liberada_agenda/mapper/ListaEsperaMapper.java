@@ -1,5 +1,9 @@
 package com.fiap.vaga_liberada_agenda.mapper;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.EspecialidadeReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.ListaEsperaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.MedicoReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection;
 import com.fiap.vaga_liberada_agenda.dto.response.ListaEsperaResponse;
 import com.fiap.vaga_liberada_agenda.entity.ListaEspera;
 import org.mapstruct.Mapper;
@@ -20,6 +24,22 @@ public interface ListaEsperaMapper {
     @Mapping(target = "consultaOferecidaId", source = "consultaOferecida.id", ignore = true)
     ListaEsperaResponse toResponse(ListaEspera listaEspera);
 
+    ListaEsperaResponse toResponse(ListaEsperaProjection projecao);
+
+    // Especialidade, médico e unidade (opcionais) vindos do cache de referência, sem inicializar os proxies do registro
+    @Mapping(target = "id", source = "listaEspera.id")
+    @Mapping(target = "pacienteId", source = "listaEspera.paciente.id")
+    @Mapping(target = "pacienteNome", source = "listaEspera.paciente.nome")
+    @Mapping(target = "especialidadeId", source = "especialidade.id")
+    @Mapping(target = "especialidadeNome", source = "especialidade.nome")
+    @Mapping(target = "medicoId", source = "medico.id")
+    @Mapping(target = "medicoNome", source = "medico.nome")
+    @Mapping(target = "unidadeId", source = "unidade.id")
+    @Mapping(target = "unidadeNome", source = "unidade.nome")
+    @Mapping(target = "consultaOferecidaId", ignore = true)
+    ListaEsperaResponse toResponse(ListaEspera listaEspera, EspecialidadeReferenciaProjection especialidade,
+                                   MedicoReferenciaProjection medico, UnidadeReferenciaProjection unidade);
+
     default ListaEsperaResponse toResponseWithDetails(ListaEspera listaEspera) {
         ListaEsperaResponse response = toResponse(listaEspera);
         if (listaEspera.getMedico() != null) {
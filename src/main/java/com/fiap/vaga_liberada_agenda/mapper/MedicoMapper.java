@@ -1,5 +1,7 @@
 package com.fiap.vaga_liberada_agenda.mapper;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.EspecialidadeReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection;
 import com.fiap.vaga_liberada_agenda.dto.request.MedicoRequest;
 import com.fiap.vaga_liberada_agenda.dto.response.MedicoResponse;
 import com.fiap.vaga_liberada_agenda.entity.Medico;
@@ -17,6 +19,15 @@ public interface MedicoMapper {
     @Mapping(target = "unidadeNome", source = "unidade.nome")
     MedicoResponse toResponse(Medico medico);
 
+    // Especialidade e unidade vindas do cache de referência, sem inicializar os proxies do médico
+    @Mapping(target = "id", source = "medico.id")
+    @Mapping(target = "nome", source = "medico.nome")
+    @Mapping(target = "especialidadeId", source = "especialidade.id")
+    @Mapping(target = "especialidadeNome", source = "especialidade.nome")
+    @Mapping(target = "unidadeId", source = "unidade.id")
+    @Mapping(target = "unidadeNome", source = "unidade.nome")
+    MedicoResponse toResponse(Medico medico, EspecialidadeReferenciaProjection especialidade, UnidadeReferenciaProjection unidade);
+
     @Mapping(target = "especialidade", ignore = true)
     @Mapping(target = "unidade", ignore = true)
     Medico toEntity(MedicoRequest request);
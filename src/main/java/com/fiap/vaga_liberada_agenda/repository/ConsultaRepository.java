@@ -1,31 +1,83 @@
 package com.fiap.vaga_liberada_agenda.repository;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.ConsultaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.LembreteConsultaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.PrazoConsultaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.SlotOcupadoProjection;
 import com.fiap.vaga_liberada_agenda.entity.Consulta;
+import com.fiap.vaga_liberada_agenda.entity.Paciente;
 import com.fiap.vaga_liberada_agenda.entity.StatusConsulta;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface ConsultaRepository extends JpaRepository<Consulta, Integer> {
-    // Procura consultas agendadas, dentro do horário X e Y, que ainda não tiveram lembrete enviado
-    @Query("SELECT c FROM Consulta c WHERE c.dataHora BETWEEN :inicio AND :fim AND c.status = :status AND (c.lembreteEnviado IS NULL OR c.lembreteEnviado = false)")
-    List<Consulta> buscarConsultasParaNotificar(
+public interface ConsultaRepository extends JpaRepository<Consulta, Integer>, ConsultaRepositoryCustom {
+    // Lote de consultas que ainda não tiveram lembrete enviado, dentro do horário X e Y, após o cursor (id)
+    @Query("SELECT new com.fiap.vaga_liberada_agenda.dto.projection.LembreteConsultaProjection(" +
+           "c.id, p.id, p.nome, u.nome, c.dataHora, c.status) " +
+           "FROM Consulta c JOIN c.paciente p JOIN c.unidade u " +
+           "WHERE c.dataHora BETWEEN :inicio AND :fim AND c.status IN :status " +
+           "AND (c.lembreteEnviado IS NULL OR c.lembreteEnviado = false) " +
+           "AND c.id > :ultimoId " +
+           "ORDER BY c.id ASC")
+    List<LembreteConsultaProjection> buscarLembretesPendentes(
             @Param("inicio") LocalDateTime inicio,
             @Param("fim") LocalDateTime fim,
-            @Param("status") StatusConsulta status
+            @Param("status") Collection<StatusConsulta> status,
+            @Param("ultimoId") Integer ultimoId,
+            Limit limite
+    );
+
+    // Marca o lembrete como enviado para um lote de consultas em um único UPDATE; incrementa a versão, como
+    // faria o flush da entidade, para que quem leu a consulta antes falhe no lock otimista ao gravá-la
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Consulta c SET c.lembreteEnviado = true, c.versao = c.versao + 1 WHERE c.id IN :ids")
+    int marcarLembretesEnviados(@Param("ids") Collection<Integer> ids);
+
+    // Reivindica a vaga oferecida em um único UPDATE condicional: só uma transação encontra a
+    // consulta ainda LIBERADA com oferta pendente para este registro da lista de espera (com a vaga
+    // oferecida a vários registros, o primeiro aceite vence); as demais recebem 0 linhas
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Consulta c SET c.paciente = :paciente, " +
+           "c.status = com.fiap.vaga_liberada_agenda.entity.StatusConsulta.AGENDADA, " +
+           "c.confirmadaEm = :agora, c.versao = c.versao + 1 " +
+           "WHERE c.id = :id AND c.status = com.fiap.vaga_liberada_agenda.entity.StatusConsulta.LIBERADA " +
+           "AND EXISTS (SELECT 1 FROM ListaEspera le WHERE le.id = :listaEsperaId " +
+           "AND le.consultaOferecida.id = c.id " +
+           "AND le.status = com.fiap.vaga_liberada_agenda.entity.StatusListaEspera.AGUARDANDO_RESPOSTA)")
+    int reivindicarVagaOferecida(
+            @Param("id") Integer id,
+            @Param("listaEsperaId") Integer listaEsperaId,
+            @Param("paciente") Paciente paciente,
+            @Param("agora") LocalDateTime agora
     );
     
-    // Busca consultas pendentes de confirmação que já passaram do prazo
-    @Query("SELECT c FROM Consulta c WHERE c.status = :status " +
+    // Lote de prazos de confirmação pendentes até :ate, após o cursor (dataLimiteConfirmacao, id), usando idx_consultas_status_data_limite
+    @Query("SELECT new com.fiap.vaga_liberada_agenda.dto.projection.PrazoConsultaProjection(c.id, c.dataLimiteConfirmacao, m.especialidade.id) " +
+           "FROM Consulta c JOIN c.medico m WHERE c.status = :status " +
            "AND c.dataLimiteConfirmacao IS NOT NULL " +
-           "AND c.dataLimiteConfirmacao <= :agora " +
-           "AND c.confirmadaEm IS NULL")
-    List<Consulta> buscarConsultasNaoConfirmadas(
+           "AND c.dataLimiteConfirmacao <= :ate " +
+           "AND c.confirmadaEm IS NULL " +
+           "AND (c.dataLimiteConfirmacao > :ultimoLimite " +
+           "OR (c.dataLimiteConfirmacao = :ultimoLimite AND c.id > :ultimoId)) " +
+           "ORDER BY c.dataLimiteConfirmacao ASC, c.id ASC")
+    List<PrazoConsultaProjection> buscarLoteNaoConfirmadas(
             @Param("status") StatusConsulta status,
-            @Param("agora") LocalDateTime agora
+            @Param("ate") LocalDateTime ate,
+            @Param("ultimoLimite") LocalDateTime ultimoLimite,
+            @Param("ultimoId") Integer ultimoId,
+            Limit limite
     );
     
     // Busca consultas por status
@@ -34,6 +86,33 @@ public interface ConsultaRepository extends JpaRepository<Consulta, Integer> {
     // Busca consultas por paciente
     List<Consulta> findByPacienteId(Integer pacienteId);
     
+    // Leitura de ConsultaResponse em um único SELECT com joins (sem N+1 no mapper)
+    String SELECT_CONSULTA_RESPONSE = "SELECT new com.fiap.vaga_liberada_agenda.dto.projection.ConsultaProjection(" +
+           "c.id, p.id, p.nome, m.id, m.nome, m.crm, u.id, u.nome, c.dataHora, c.status, c.observacoes, " +
+           "c.lembreteEnviado, c.confirmadaEm, c.dataLimiteConfirmacao, c.vagaOferecidaEm) " +
+           "FROM Consulta c LEFT JOIN c.paciente p LEFT JOIN c.medico m LEFT JOIN c.unidade u ";
+
+    @Query(SELECT_CONSULTA_RESPONSE + "WHERE c.id = :id")
+    Optional<ConsultaProjection> buscarProjecaoPorId(@Param("id") Integer id);
+    
+    // Página da listagem (keyset em id)
+    @Query(SELECT_CONSULTA_RESPONSE +
+           "WHERE c.id > :aposId " +
+           "AND (:pacienteId IS NULL OR p.id = :pacienteId) " +
+           "AND (:status IS NULL OR c.status = :status) " +
+           "ORDER BY c.id ASC")
+    List<ConsultaProjection> buscarPagina(
+            @Param("aposId") Integer aposId,
+            @Param("pacienteId") Integer pacienteId,
+            @Param("status") StatusConsulta status,
+            Limit limite
+    );
+    
+    // Exportação completa em streaming (cursor no servidor com useCursorFetch no MySQL)
+    @Query(SELECT_CONSULTA_RESPONSE + "ORDER BY c.id ASC")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<ConsultaProjection> streamTodas();
+    
     // Verifica se já existe consulta agendada no mesmo horário
     @Query("SELECT COUNT(c) > 0 FROM Consulta c WHERE c.medico.id = :medicoId " +
            "AND c.dataHora = :dataHora " +
@@ -43,6 +122,20 @@ public interface ConsultaRepository extends JpaRepository<Consulta, Integer> {
             @Param("dataHora") LocalDateTime dataHora
     );
     
+    @Query("SELECT c.liberadaEm FROM Consulta c WHERE c.id = :id")
+    Optional<LocalDateTime> buscarLiberadaEm(@Param("id") Integer id);
+
+    // Horários ocupados (consultas ativas) dos médicos no intervalo: conflitos de um lote em uma consulta
+    @Query("SELECT new com.fiap.vaga_liberada_agenda.dto.projection.SlotOcupadoProjection(c.medico.id, c.dataHora) " +
+           "FROM Consulta c WHERE c.medico.id IN :medicoIds " +
+           "AND c.dataHora BETWEEN :inicio AND :fim " +
+           "AND c.status IN ('AGENDADA', 'PENDENTE_CONFIRMACAO')")
+    List<SlotOcupadoProjection> buscarSlotsOcupados(
+            @Param("medicoIds") Collection<Integer> medicoIds,
+            @Param("inicio") LocalDateTime inicio,
+            @Param("fim") LocalDateTime fim
+    );
+
     // Verifica se há consultas para um médico
     @Query("SELECT COUNT(c) > 0 FROM Consulta c WHERE c.medico.id = :medicoId")
     boolean existsByMedicoId(@Param("medicoId") Integer medicoId);
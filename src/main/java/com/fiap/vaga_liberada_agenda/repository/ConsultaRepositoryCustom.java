@@ -0,0 +1,12 @@
+package com.fiap.vaga_liberada_agenda.repository;
+
+import com.fiap.vaga_liberada_agenda.entity.Consulta;
+
+import java.util.List;
+
+// Escrita de consultas novas fora do Hibernate, que não agrupa INSERTs de ids IDENTITY em lotes JDBC
+public interface ConsultaRepositoryCustom {
+
+    // Grava as consultas em um único lote JDBC (na transação corrente) e preenche o id de cada uma
+    void inserirEmLote(List<Consulta> consultas);
+}
@@ -0,0 +1,68 @@
+package com.fiap.vaga_liberada_agenda.repository;
+
+import com.fiap.vaga_liberada_agenda.entity.Consulta;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+class ConsultaRepositoryImpl implements ConsultaRepositoryCustom {
+
+    // slot_ativo é gerado pelo banco; versao começa em 0 como no persist do Hibernate
+    private static final String INSERIR_CONSULTA = "INSERT INTO consultas (paciente_id, medico_id, unidade_id, " +
+            "data_hora, status, observacoes, lembrete_enviado, data_limite_confirmacao, versao) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    ConsultaRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void inserirEmLote(List<Consulta> consultas) {
+        if (consultas.isEmpty()) {
+            return;
+        }
+        // No MySQL, com rewriteBatchedStatements, o lote sai como um INSERT multi-linha
+        KeyHolder chaves = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERIR_CONSULTA, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Consulta consulta = consultas.get(i);
+                        ps.setInt(1, consulta.getPaciente().getId());
+                        ps.setInt(2, consulta.getMedico().getId());
+                        ps.setInt(3, consulta.getUnidade().getId());
+                        ps.setTimestamp(4, Timestamp.valueOf(consulta.getDataHora()));
+                        ps.setString(5, consulta.getStatus().name());
+                        ps.setString(6, consulta.getObservacoes());
+                        ps.setBoolean(7, Boolean.TRUE.equals(consulta.getLembreteEnviado()));
+                        if (consulta.getDataLimiteConfirmacao() != null) {
+                            ps.setTimestamp(8, Timestamp.valueOf(consulta.getDataLimiteConfirmacao()));
+                        } else {
+                            ps.setNull(8, Types.TIMESTAMP);
+                        }
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return consultas.size();
+                    }
+                }, chaves);
+
+        // Uma chave por linha, na ordem do lote (o nome da coluna varia entre drivers)
+        List<Map<String, Object>> ids = chaves.getKeyList();
+        for (int i = 0; i < consultas.size(); i++) {
+            consultas.get(i).setId(((Number) ids.get(i).values().iterator().next()).intValue());
+            consultas.get(i).setVersao(0L);
+        }
+    }
+}
@@ -1,9 +1,25 @@
 package com.fiap.vaga_liberada_agenda.repository;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.EspecialidadeReferenciaProjection;
 import com.fiap.vaga_liberada_agenda.entity.Especialidade;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
 @Repository
 public interface EspecialidadeRepository extends JpaRepository<Especialidade, Integer> {
+
+    // Quais dos ids informados existem (validação em massa das importações, uma consulta por lote)
+    @Query("SELECT e.id FROM Especialidade e WHERE e.id IN :ids")
+    Set<Integer> buscarIdsExistentes(@Param("ids") Collection<Integer> ids);
+
+    // Dados da especialidade para o cache de referência
+    @Query("SELECT new com.fiap.vaga_liberada_agenda.dto.projection.EspecialidadeReferenciaProjection(e.id, e.nome) " +
+           "FROM Especialidade e WHERE e.id = :id")
+    Optional<EspecialidadeReferenciaProjection> buscarReferencia(@Param("id") Integer id);
 }
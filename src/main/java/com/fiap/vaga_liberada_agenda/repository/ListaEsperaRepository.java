@@ -1,15 +1,26 @@
 package com.fiap.vaga_liberada_agenda.repository;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.EntradaFilaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.ListaEsperaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.OfertaPendenteProjection;
 import com.fiap.vaga_liberada_agenda.entity.ListaEspera;
 import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
-public interface ListaEsperaRepository extends JpaRepository<ListaEspera, Integer> {
+public interface ListaEsperaRepository extends JpaRepository<ListaEspera, Integer>, ListaEsperaRepositoryCustom {
     
     List<ListaEspera> findByStatus(StatusListaEspera status);
     
@@ -23,32 +34,67 @@ public interface ListaEsperaRepository extends JpaRepository<ListaEspera, Intege
     
     Optional<ListaEspera> findFirstByStatusOrderByDataCadastroAsc(StatusListaEspera status);
     
-    @Query("SELECT le FROM ListaEspera le WHERE le.status = :status " +
-           "AND (:especialidadeId IS NULL OR le.especialidade.id = :especialidadeId) " +
-           "AND (:medicoId IS NULL OR le.medico.id = :medicoId) " +
-           "AND (:unidadeId IS NULL OR le.unidade.id = :unidadeId) " +
-           "ORDER BY le.prioridade DESC, le.dataCadastro ASC")
-    List<ListaEspera> findByFiltros(
-            @Param("status") StatusListaEspera status,
-            @Param("especialidadeId") Integer especialidadeId,
-            @Param("medicoId") Integer medicoId,
-            @Param("unidadeId") Integer unidadeId
-    );
-    
-    @Query("SELECT le FROM ListaEspera le WHERE le.status = :status " +
-           "AND (:especialidadeId IS NULL OR le.especialidade.id = :especialidadeId) " +
-           "AND (:medicoId IS NULL OR le.medico.id = :medicoId) " +
-           "AND (:unidadeId IS NULL OR le.unidade.id = :unidadeId) " +
-           "ORDER BY le.prioridade DESC, le.dataCadastro ASC")
-    Optional<ListaEspera> findFirstByFiltros(
-            @Param("status") StatusListaEspera status,
-            @Param("especialidadeId") Integer especialidadeId,
-            @Param("medicoId") Integer medicoId,
-            @Param("unidadeId") Integer unidadeId
-    );
-    
+    // Leitura de ListaEsperaResponse em um único SELECT com joins (sem N+1 no mapper)
+    String SELECT_LISTA_ESPERA_RESPONSE = "SELECT new com.fiap.vaga_liberada_agenda.dto.projection.ListaEsperaProjection(" +
+           "le.id, p.id, p.nome, e.id, e.nome, m.id, m.nome, u.id, u.nome, " +
+           "le.dataCadastro, le.prioridade, le.status, co.id, le.dataOferta) " +
+           "FROM ListaEspera le JOIN le.paciente p JOIN le.especialidade e " +
+           "LEFT JOIN le.medico m LEFT JOIN le.unidade u LEFT JOIN le.consultaOferecida co ";
+
+    @Query(SELECT_LISTA_ESPERA_RESPONSE + "WHERE le.id = :id")
+    Optional<ListaEsperaProjection> buscarProjecaoPorId(@Param("id") Integer id);
+
+    // Página da listagem (keyset em id)
+    @Query(SELECT_LISTA_ESPERA_RESPONSE + "WHERE le.id > :aposId ORDER BY le.id ASC")
+    List<ListaEsperaProjection> buscarPagina(@Param("aposId") Integer aposId, Limit limite);
+
+    // Exportação completa em streaming (cursor no servidor com useCursorFetch no MySQL)
+    @Query(SELECT_LISTA_ESPERA_RESPONSE + "ORDER BY le.id ASC")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<ListaEsperaProjection> streamTodos();
+
+    // Carga do índice de prioridade em memória (apenas os campos usados na ordenação/filtro e as
+    // coordenadas do paciente para a grade geográfica)
+    @Query("SELECT new com.fiap.vaga_liberada_agenda.dto.projection.EntradaFilaProjection(" +
+           "le.id, e.id, m.id, u.id, le.prioridade, le.dataCadastro, p.latitude, p.longitude) " +
+           "FROM ListaEspera le JOIN le.especialidade e JOIN le.paciente p LEFT JOIN le.medico m LEFT JOIN le.unidade u " +
+           "WHERE le.status = :status")
+    List<EntradaFilaProjection> buscarEntradasFila(@Param("status") StatusListaEspera status);
+
+    // Consultas com ofertas aguardando resposta, para reidratar os prazos de expiração (um prazo por
+    // consulta: as ofertas feitas em paralelo vencem juntas)
+    @Query("SELECT new com.fiap.vaga_liberada_agenda.dto.projection.OfertaPendenteProjection(" +
+           "c.id, MIN(le.dataOferta)) " +
+           "FROM ListaEspera le JOIN le.consultaOferecida c " +
+           "WHERE le.status = :status AND le.dataOferta IS NOT NULL " +
+           "GROUP BY c.id")
+    List<OfertaPendenteProjection> buscarOfertasPendentes(@Param("status") StatusListaEspera status);
+
+    // Ofertas da consulta no status informado, pelo índice idx_lista_espera_oferta. O paciente vem na mesma
+    // consulta: a devolução à fila lê as suas coordenadas e a notificação, o seu nome
+    @Query("SELECT le FROM ListaEspera le JOIN FETCH le.paciente " +
+           "WHERE le.consultaOferecida.id = :consultaId AND le.status = :status")
+    List<ListaEspera> findByConsultaOferecidaIdAndStatus(@Param("consultaId") Integer consultaId,
+                                                         @Param("status") StatusListaEspera status);
+
+    // Encerra a oferta aceita somente se ainda estiver aguardando resposta para esta consulta
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ListaEspera le SET le.status = com.fiap.vaga_liberada_agenda.entity.StatusListaEspera.ATENDIDA, " +
+           "le.versao = le.versao + 1 " +
+           "WHERE le.id = :id AND le.status = com.fiap.vaga_liberada_agenda.entity.StatusListaEspera.AGUARDANDO_RESPOSTA " +
+           "AND le.consultaOferecida.id = :consultaId")
+    int marcarOfertaAtendida(@Param("id") Integer id, @Param("consultaId") Integer consultaId);
+
     // Verifica se há registros ativos na lista de espera para um paciente
     @Query("SELECT COUNT(le) > 0 FROM ListaEspera le WHERE le.paciente.id = :pacienteId " +
            "AND le.status IN ('ATIVA', 'AGUARDANDO_RESPOSTA')")
     boolean existsPacienteAtivoNaLista(@Param("pacienteId") Integer pacienteId);
+
+    // Pacientes do lote que já têm registro no status informado (deduplicação das importações)
+    @Query("SELECT DISTINCT le.paciente.id FROM ListaEspera le " +
+           "WHERE le.paciente.id IN :pacienteIds AND le.status = :status")
+    Set<Integer> buscarPacientesComStatus(@Param("pacienteIds") Collection<Integer> pacienteIds,
+                                          @Param("status") StatusListaEspera status);
+
+    long countByStatus(StatusListaEspera status);
 }
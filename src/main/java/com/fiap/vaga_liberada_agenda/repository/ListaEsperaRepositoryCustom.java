@@ -0,0 +1,28 @@
+package com.fiap.vaga_liberada_agenda.repository;
+
+import com.fiap.vaga_liberada_agenda.dto.projection.ListaEsperaProjection;
+import com.fiap.vaga_liberada_agenda.entity.ListaEspera;
+import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+
+// Consultas da fila com filtros opcionais, ordenadas por prioridade DESC, data de cadastro ASC (filtro nulo = qualquer valor)
+public interface ListaEsperaRepositoryCustom {
+
+    int LIMITE_MAXIMO_CANDIDATOS = 100;
+
+    // Próximos candidatos da fila, sempre com LIMIT no banco (1 a LIMITE_MAXIMO_CANDIDATOS)
+    List<ListaEspera> buscarProximosCandidatos(StatusListaEspera status, Integer especialidadeId,
+                                               Integer medicoId, Integer unidadeId, int quantidade);
+
+    // Página da fila filtrada: aposId é o id do último registro da página anterior (nulo = primeira
+    // página) e a continuação segue a ordem da fila (prioridade, data de cadastro, id)
+    List<ListaEsperaProjection> buscarProjecoesPorFiltros(StatusListaEspera status, Integer especialidadeId,
+                                                          Integer medicoId, Integer unidadeId,
+                                                          Integer aposId, Limit limite);
+
+    // Grava os registros novos em um único lote JDBC (na transação corrente) e preenche id, versão e
+    // data de cadastro de cada um: o Hibernate não agrupa INSERTs de ids IDENTITY
+    void inserirEmLote(List<ListaEspera> registros);
+}
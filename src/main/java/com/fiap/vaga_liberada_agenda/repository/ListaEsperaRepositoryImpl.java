@@ -0,0 +1,158 @@
+package com.fiap.vaga_liberada_agenda.repository;
+
+import com.fiap.vaga_liberada_agenda.dto.projection.ListaEsperaProjection;
+import com.fiap.vaga_liberada_agenda.entity.*;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+class ListaEsperaRepositoryImpl implements ListaEsperaRepositoryCustom {
+
+    // versao começa em 0 como no persist do Hibernate
+    private static final String INSERIR_LISTA_ESPERA = "INSERT INTO lista_espera (paciente_id, especialidade_id, " +
+            "medico_id, unidade_id, data_cadastro, prioridade, status, versao) VALUES (?, ?, ?, ?, ?, ?, ?, 0)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    ListaEsperaRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<ListaEspera> buscarProximosCandidatos(StatusListaEspera status, Integer especialidadeId,
+                                                      Integer medicoId, Integer unidadeId, int quantidade) {
+        if (quantidade < 1 || quantidade > LIMITE_MAXIMO_CANDIDATOS) {
+            throw new IllegalArgumentException("A quantidade de candidatos deve estar entre 1 e " + LIMITE_MAXIMO_CANDIDATOS);
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ListaEspera> query = cb.createQuery(ListaEspera.class);
+        Root<ListaEspera> le = query.from(ListaEspera.class);
+        query.select(le);
+        filtrarEOrdenar(query, le, cb, status, especialidadeId, medicoId, unidadeId);
+
+        // LIMIT sobre o índice da fila: só os primeiros registros na ordem do índice são lidos
+        return entityManager.createQuery(query).setMaxResults(quantidade).getResultList();
+    }
+
+    @Override
+    public List<ListaEsperaProjection> buscarProjecoesPorFiltros(StatusListaEspera status, Integer especialidadeId,
+                                                                 Integer medicoId, Integer unidadeId,
+                                                                 Integer aposId, Limit limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ListaEsperaProjection> query = cb.createQuery(ListaEsperaProjection.class);
+        Root<ListaEspera> le = query.from(ListaEspera.class);
+        Join<ListaEspera, Paciente> p = le.join("paciente");
+        Join<ListaEspera, Especialidade> e = le.join("especialidade");
+        Join<ListaEspera, Medico> m = le.join("medico", JoinType.LEFT);
+        Join<ListaEspera, UnidadeSaude> u = le.join("unidade", JoinType.LEFT);
+        Join<ListaEspera, Consulta> co = le.join("consultaOferecida", JoinType.LEFT);
+
+        // Mesmas colunas de ListaEsperaRepository.SELECT_LISTA_ESPERA_RESPONSE
+        query.select(cb.construct(ListaEsperaProjection.class,
+                le.get("id"), p.get("id"), p.get("nome"), e.get("id"), e.get("nome"),
+                m.get("id"), m.get("nome"), u.get("id"), u.get("nome"),
+                le.get("dataCadastro"), le.get("prioridade"), le.get("status"), co.get("id"), le.get("dataOferta")));
+        filtrarEOrdenar(query, le, cb, status, especialidadeId, medicoId, unidadeId);
+        if (aposId != null) {
+            query.where(query.getRestriction(), aposDoCursor(query, le, cb, aposId));
+        }
+
+        TypedQuery<ListaEsperaProjection> consulta = entityManager.createQuery(query);
+        if (limite.isLimited()) {
+            consulta.setMaxResults(limite.max());
+        }
+        return consulta.getResultList();
+    }
+
+    @Override
+    public void inserirEmLote(List<ListaEspera> registros) {
+        if (registros.isEmpty()) {
+            return;
+        }
+        LocalDateTime agora = LocalDateTime.now();
+        registros.stream().filter(registro -> registro.getDataCadastro() == null)
+                .forEach(registro -> registro.setDataCadastro(agora));
+
+        // No MySQL, com rewriteBatchedStatements, o lote sai como um INSERT multi-linha
+        KeyHolder chaves = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERIR_LISTA_ESPERA, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ListaEspera registro = registros.get(i);
+                        ps.setInt(1, registro.getPaciente().getId());
+                        ps.setInt(2, registro.getEspecialidade().getId());
+                        if (registro.getMedico() != null) {
+                            ps.setInt(3, registro.getMedico().getId());
+                        } else {
+                            ps.setNull(3, Types.INTEGER);
+                        }
+                        if (registro.getUnidade() != null) {
+                            ps.setInt(4, registro.getUnidade().getId());
+                        } else {
+                            ps.setNull(4, Types.INTEGER);
+                        }
+                        ps.setTimestamp(5, Timestamp.valueOf(registro.getDataCadastro()));
+                        ps.setInt(6, registro.getPrioridade() != null ? registro.getPrioridade() : 0);
+                        ps.setString(7, registro.getStatus().name());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return registros.size();
+                    }
+                }, chaves);
+
+        // Uma chave por linha, na ordem do lote (o nome da coluna varia entre drivers)
+        List<Map<String, Object>> ids = chaves.getKeyList();
+        for (int i = 0; i < registros.size(); i++) {
+            registros.get(i).setId(((Number) ids.get(i).values().iterator().next()).intValue());
+            registros.get(i).setVersao(0L);
+        }
+    }
+
+    // Keyset na ordem da fila: registros depois do cursor em (prioridade DESC, data_cadastro ASC, id ASC),
+    // lidos do próprio registro do cursor (os registros da fila não são apagados, só mudam de status)
+    private static Predicate aposDoCursor(CriteriaQuery<?> query, Root<ListaEspera> le, CriteriaBuilder cb, Integer aposId) {
+        Root<ListaEspera> cursor = query.from(ListaEspera.class);
+        Path<Integer> prioridade = le.get("prioridade");
+        Path<Integer> prioridadeCursor = cursor.get("prioridade");
+        Path<LocalDateTime> dataCadastro = le.get("dataCadastro");
+        Path<LocalDateTime> dataCadastroCursor = cursor.get("dataCadastro");
+        return cb.and(
+                cb.equal(cursor.get("id"), aposId),
+                cb.or(
+                        cb.lessThan(prioridade, prioridadeCursor),
+                        cb.and(cb.equal(prioridade, prioridadeCursor), cb.or(
+                                cb.greaterThan(dataCadastro, dataCadastroCursor),
+                                cb.and(cb.equal(dataCadastro, dataCadastroCursor),
+                                        cb.greaterThan(le.<Integer>get("id"), cursor.<Integer>get("id")))))));
+    }
+
+    private static void filtrarEOrdenar(CriteriaQuery<?> query, Root<ListaEspera> le, CriteriaBuilder cb,
+                                        StatusListaEspera status, Integer especialidadeId,
+                                        Integer medicoId, Integer unidadeId) {
+        Specification<ListaEspera> filtros = ListaEsperaSpecifications.naFila(status, especialidadeId, medicoId, unidadeId);
+        query.where(filtros.toPredicate(le, query, cb));
+        // id desempata registros com a mesma prioridade e data, como no IndiceListaEspera
+        query.orderBy(cb.desc(le.get("prioridade")), cb.asc(le.get("dataCadastro")), cb.asc(le.get("id")));
+    }
+}
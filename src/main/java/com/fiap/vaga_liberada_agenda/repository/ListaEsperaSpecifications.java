@@ -0,0 +1,39 @@
+package com.fiap.vaga_liberada_agenda.repository;
+
+import com.fiap.vaga_liberada_agenda.entity.ListaEspera;
+import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filtros da fila de espera montados apenas com os parâmetros informados. Sem os
+ * {@code (:p IS NULL OR col = :p)} da JPQL estática, o banco enxerga só igualdades e pode
+ * percorrer os índices compostos idx_lista_espera_fila_* já na ordem da fila.
+ */
+public final class ListaEsperaSpecifications {
+
+    private ListaEsperaSpecifications() {
+    }
+
+    public static Specification<ListaEspera> naFila(StatusListaEspera status, Integer especialidadeId,
+                                                    Integer medicoId, Integer unidadeId) {
+        return (root, query, cb) -> {
+            List<Predicate> predicados = new ArrayList<>(4);
+            predicados.add(cb.equal(root.get("status"), status));
+            // Comparação direta com a FK (le.especialidade.id), sem join adicional
+            if (especialidadeId != null) {
+                predicados.add(cb.equal(root.get("especialidade").get("id"), especialidadeId));
+            }
+            if (medicoId != null) {
+                predicados.add(cb.equal(root.get("medico").get("id"), medicoId));
+            }
+            if (unidadeId != null) {
+                predicados.add(cb.equal(root.get("unidade").get("id"), unidadeId));
+            }
+            return cb.and(predicados.toArray(Predicate[]::new));
+        };
+    }
+}
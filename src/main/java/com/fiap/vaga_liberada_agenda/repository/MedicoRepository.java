@@ -1,13 +1,18 @@
 package com.fiap.vaga_liberada_agenda.repository;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.MedicoReferenciaProjection;
 import com.fiap.vaga_liberada_agenda.entity.Medico;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface MedicoRepository extends JpaRepository<Medico, Integer> {
@@ -51,4 +56,17 @@ public interface MedicoRepository extends JpaRepository<Medico, Integer> {
     Page<Medico> findByAtivo(
             Boolean ativo,
             org.springframework.data.domain.Pageable pageable);
+
+    // Quais dos ids informados existem (validação em massa das importações, uma consulta por lote)
+    @Query("SELECT m.id FROM Medico m WHERE m.id IN :ids")
+    Set<Integer> buscarIdsExistentes(@Param("ids") Collection<Integer> ids);
+
+    // Quais dos ids informados são de médicos ativos (agendamento em lote)
+    @Query("SELECT m.id FROM Medico m WHERE m.id IN :ids AND m.ativo = true")
+    Set<Integer> buscarIdsAtivos(@Param("ids") Collection<Integer> ids);
+
+    // Dados do médico para o cache de referência, sem carregar especialidade e unidade
+    @Query("SELECT new com.fiap.vaga_liberada_agenda.dto.projection.MedicoReferenciaProjection(" +
+           "m.id, m.nome, m.crm, m.ativo, m.especialidade.id, m.unidade.id) FROM Medico m WHERE m.id = :id")
+    Optional<MedicoReferenciaProjection> buscarReferencia(@Param("id") Integer id);
 }
@@ -0,0 +1,31 @@
+package com.fiap.vaga_liberada_agenda.repository;
+
+import com.fiap.vaga_liberada_agenda.entity.Notificacao;
+import com.fiap.vaga_liberada_agenda.entity.StatusEnvioNotificacao;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificacaoRepository extends JpaRepository<Notificacao, Integer> {
+
+    // Trava um lote de pendentes do outbox (e de lotes ENVIANDO cuja reserva venceu) para reivindicá-lo;
+    // linhas já travadas por outra instância do relay são puladas
+    @Query(value = "SELECT * FROM notificacoes WHERE status_envio IN ('PENDENTE', 'ENVIANDO') " +
+                   "AND (proxima_tentativa_em IS NULL OR proxima_tentativa_em <= :agora) " +
+                   "ORDER BY id LIMIT :limite FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Notificacao> bloquearPendentes(@Param("agora") LocalDateTime agora, @Param("limite") int limite);
+
+    // Marca as notificações publicadas de um lote em um único UPDATE
+    @Modifying
+    @Query("UPDATE Notificacao n SET n.statusEnvio = com.fiap.vaga_liberada_agenda.entity.StatusEnvioNotificacao.ENVIADA, " +
+           "n.enviadaEm = :enviadaEm, n.ultimoErro = null, n.proximaTentativaEm = null WHERE n.id IN :ids")
+    int marcarEnviadas(@Param("ids") List<Integer> ids, @Param("enviadaEm") LocalDateTime enviadaEm);
+
+    long countByStatusEnvio(StatusEnvioNotificacao statusEnvio);
+}
@@ -1,10 +1,16 @@
 package com.fiap.vaga_liberada_agenda.repository;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.CoordenadasPacienteProjection;
 import com.fiap.vaga_liberada_agenda.entity.Paciente;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface PacienteRepository extends JpaRepository<Paciente, Integer> {
@@ -16,4 +22,13 @@ public interface PacienteRepository extends JpaRepository<Paciente, Integer> {
     boolean existsByCpf(String cpf);
     
     boolean existsByCartaoSus(String cartaoSus);
+
+    // Quais dos ids informados existem (validação em massa das importações, uma consulta por lote)
+    @Query("SELECT p.id FROM Paciente p WHERE p.id IN :ids")
+    Set<Integer> buscarIdsExistentes(@Param("ids") Collection<Integer> ids);
+
+    // Como buscarIdsExistentes, trazendo as coordenadas usadas pelo índice da lista de espera
+    @Query("SELECT new com.fiap.vaga_liberada_agenda.dto.projection.CoordenadasPacienteProjection(" +
+           "p.id, p.latitude, p.longitude) FROM Paciente p WHERE p.id IN :ids")
+    List<CoordenadasPacienteProjection> buscarCoordenadas(@Param("ids") Collection<Integer> ids);
 }
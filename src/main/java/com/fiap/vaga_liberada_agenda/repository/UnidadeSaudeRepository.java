@@ -1,10 +1,16 @@
 package com.fiap.vaga_liberada_agenda.repository;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection;
 import com.fiap.vaga_liberada_agenda.entity.UnidadeSaude;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface UnidadeSaudeRepository extends JpaRepository<UnidadeSaude, Integer> {
@@ -16,4 +22,13 @@ public interface UnidadeSaudeRepository extends JpaRepository<UnidadeSaude, Inte
     List<UnidadeSaude> findByCidadeAndBairro(String cidade, String bairro);
     
     boolean existsByNome(String nome);
+
+    // Quais dos ids informados existem (validação em massa das importações, uma consulta por lote)
+    @Query("SELECT u.id FROM UnidadeSaude u WHERE u.id IN :ids")
+    Set<Integer> buscarIdsExistentes(@Param("ids") Collection<Integer> ids);
+
+    // Dados da unidade para o cache de referência
+    @Query("SELECT new com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection(" +
+           "u.id, u.nome, u.latitude, u.longitude) FROM UnidadeSaude u WHERE u.id = :id")
+    Optional<UnidadeReferenciaProjection> buscarReferencia(@Param("id") Integer id);
 }
@@ -1,51 +1,152 @@
 package com.fiap.vaga_liberada_agenda.scheduler;
 
-import com.fiap.vaga_liberada_agenda.entity.Consulta;
+import com.fiap.vaga_liberada_agenda.config.AgendadoresConfig;
+import com.fiap.vaga_liberada_agenda.dto.projection.PrazoConsultaProjection;
+import com.fiap.vaga_liberada_agenda.event.ConsultaAgendadaEvent;
+import com.fiap.vaga_liberada_agenda.event.ConsultaCanceladaEvent;
+import com.fiap.vaga_liberada_agenda.event.ConsultaConfirmadaEvent;
 import com.fiap.vaga_liberada_agenda.service.ConsultaService;
 import com.fiap.vaga_liberada_agenda.service.LiberacaoVagaService;
-import jakarta.transaction.Transactional;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Libera a vaga de cada consulta não confirmada no instante do prazo (data_limite_confirmacao), em
+ * vez de descobrir os prazos vencidos numa varredura horária. O prazo é registrado após o commit do
+ * agendamento e removido na confirmação, no cancelamento ou na desistência. Só ficam em memória os
+ * prazos dentro do horizonte: a carga periódica pelo índice idx_consultas_status_data_limite traz os
+ * que entram nele e, na subida da aplicação, reidrata a fila (prazos já vencidos disparam na hora).
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class ConfirmacaoScheduler {
 
+    // Cursor inicial da paginação keyset (anterior a qualquer data limite possível)
+    private static final LocalDateTime INICIO_CURSOR = LocalDateTime.of(1970, 1, 1, 0, 0);
+
     private final ConsultaService consultaService;
     private final LiberacaoVagaService liberacaoVagaService;
+    private final ParticoesLiberacaoVagas particoesLiberacao;
+    private final MeterRegistry meterRegistry;
 
-    // Executa a cada hora (3600000 ms)
-    @Scheduled(fixedRate = 3600000)
-    @Transactional
-    public void verificarConsultasNaoConfirmadas() {
-        log.info("Verificando consultas não confirmadas para liberação de vagas...");
+    private final FilaPrazos<PrazoConfirmacao> prazosConfirmacao = new FilaPrazos<>("prazo-confirmacao", this::liberarVaga);
 
-        try {
-            List<Consulta> consultasNaoConfirmadas = consultaService.verificarConsultasNaoConfirmadas();
+    @Value("${agenda.confirmacao.tamanho-lote:200}")
+    private int tamanhoLote = 200;
+
+    // Deve ser maior que o intervalo da carga, para que nenhum prazo vença antes de ser registrado
+    @Value("${agenda.confirmacao.horizonte:PT24H}")
+    private Duration horizonte = Duration.ofHours(24);
+
+    @PostConstruct
+    public void iniciar() {
+        prazosConfirmacao.iniciar();
+    }
+
+    @PreDestroy
+    public void parar() {
+        prazosConfirmacao.parar();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoAgendarConsulta(ConsultaAgendadaEvent evento) {
+        if (evento.dataLimiteConfirmacao().isAfter(LocalDateTime.now().plus(horizonte))) {
+            // Fora do horizonte: entra na fila pela carga periódica
+            return;
+        }
+        log.debug("Registrando prazo de confirmação da consulta ID: {} para {}", evento.consultaId(), evento.dataLimiteConfirmacao());
+        prazosConfirmacao.agendar(new PrazoConfirmacao(evento.consultaId(), evento.especialidadeId()), evento.dataLimiteConfirmacao());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoConfirmarConsulta(ConsultaConfirmadaEvent evento) {
+        prazosConfirmacao.cancelar(new PrazoConfirmacao(evento.consultaId(), evento.especialidadeId()));
+    }
 
-            if (consultasNaoConfirmadas.isEmpty()) {
-                log.debug("Nenhuma consulta não confirmada encontrada.");
-                return;
-            }
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoCancelarConsulta(ConsultaCanceladaEvent evento) {
+        prazosConfirmacao.cancelar(new PrazoConfirmacao(evento.consultaId(), evento.especialidadeId()));
+    }
+
+    // Executa a cada hora (3600000 ms), a primeira vez na subida
+    // Registra os prazos pendentes que vencem dentro do horizonte e ainda não estão na fila; uma consulta
+    // confirmada entre a leitura e o registro só gera um disparo ignorado por liberarVagaNaoConfirmada
+    @Scheduled(fixedRate = 3600000, scheduler = AgendadoresConfig.AGENDADOR_CONFIRMACAO)
+    public void carregarPrazos() {
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        LocalDateTime ate = LocalDateTime.now().plus(horizonte);
+        int lidos = 0;
+        int registrados = 0;
+
+        try {
+            LocalDateTime ultimoLimite = INICIO_CURSOR;
+            Integer ultimoId = 0;
+            List<PrazoConsultaProjection> lote;
 
-            log.info("Encontradas {} consultas não confirmadas. Liberando vagas...", consultasNaoConfirmadas.size());
+            do {
+                lote = consultaService.verificarConsultasNaoConfirmadas(ate, ultimoLimite, ultimoId, tamanhoLote);
+                for (PrazoConsultaProjection pendente : lote) {
+                    PrazoConfirmacao prazo = new PrazoConfirmacao(pendente.id(), pendente.especialidadeId());
+                    if (!prazosConfirmacao.isAgendado(prazo)) {
+                        prazosConfirmacao.agendar(prazo, pendente.dataLimiteConfirmacao());
+                        registrados++;
+                    }
+                }
+                lidos += lote.size();
 
-            for (Consulta consulta : consultasNaoConfirmadas) {
-                try {
-                    liberacaoVagaService.liberarVaga(consulta);
-                    log.info("Vaga liberada para consulta ID: {}", consulta.getId());
-                } catch (Exception e) {
-                    log.error("Erro ao liberar vaga da consulta ID: {}", consulta.getId(), e);
+                if (!lote.isEmpty()) {
+                    PrazoConsultaProjection ultima = lote.get(lote.size() - 1);
+                    ultimoLimite = ultima.dataLimiteConfirmacao();
+                    ultimoId = ultima.id();
                 }
-            }
+            } while (lote.size() == tamanhoLote);
 
         } catch (Exception e) {
-            log.error("Erro ao verificar consultas não confirmadas", e);
+            log.error("Erro ao carregar prazos de confirmação", e);
+        } finally {
+            amostra.stop(meterRegistry.timer("agenda.confirmacao.execucao"));
         }
+
+        log.info("Carga de prazos de confirmação até {}: {} pendentes, {} registrados, {} na fila",
+                ate, lidos, registrados, prazosConfirmacao.tamanho());
+    }
+
+    public int prazosPendentes() {
+        return prazosConfirmacao.tamanho();
+    }
+
+    // Chamado pela fila de prazos no vencimento: a liberação segue para a partição da especialidade,
+    // e a thread da fila fica livre para os próximos prazos
+    CompletableFuture<Boolean> liberarVaga(PrazoConfirmacao prazo) {
+        Integer consultaId = prazo.consultaId();
+        return particoesLiberacao.enviar(prazo.especialidadeId(), () -> liberacaoVagaService.liberarVagaNaoConfirmada(consultaId))
+                .whenComplete((liberada, erro) -> {
+                    if (erro != null) {
+                        meterRegistry.counter("agenda.confirmacao.vagas", "resultado", "falha").increment();
+                        log.error("Erro ao liberar vaga da consulta ID: {}", consultaId, erro);
+                    } else if (liberada) {
+                        meterRegistry.counter("agenda.confirmacao.vagas", "resultado", "liberada").increment();
+                        log.info("Vaga liberada para consulta ID: {}", consultaId);
+                    } else {
+                        meterRegistry.counter("agenda.confirmacao.vagas", "resultado", "ignorada").increment();
+                    }
+                });
+    }
+
+    record PrazoConfirmacao(Integer consultaId, Integer especialidadeId) {
     }
 }
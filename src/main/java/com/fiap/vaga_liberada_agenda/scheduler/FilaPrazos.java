@@ -0,0 +1,104 @@
+package com.fiap.vaga_liberada_agenda.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Fila de prazos baseada em {@link DelayQueue}: executa a ação de cada chave exatamente quando o
+ * prazo vence, em uma thread dedicada. Reagendar uma chave substitui o prazo anterior e cancelar
+ * apenas invalida o prazo pendente (O(1)), que é descartado quando sair da fila.
+ */
+@Slf4j
+public class FilaPrazos<K> {
+
+    private final String nome;
+    private final Consumer<K> acao;
+    private final DelayQueue<Prazo<K>> fila = new DelayQueue<>();
+    private final Map<K, Prazo<K>> pendentes = new ConcurrentHashMap<>();
+
+    private volatile Thread executor;
+
+    public FilaPrazos(String nome, Consumer<K> acao) {
+        this.nome = nome;
+        this.acao = acao;
+    }
+
+    public void agendar(K chave, LocalDateTime expiraEm) {
+        long atrasoNanos = Duration.between(LocalDateTime.now(), expiraEm).toNanos();
+        Prazo<K> prazo = new Prazo<>(chave, System.nanoTime() + atrasoNanos);
+        pendentes.put(chave, prazo);
+        fila.put(prazo);
+    }
+
+    public void cancelar(K chave) {
+        pendentes.remove(chave);
+    }
+
+    public boolean isAgendado(K chave) {
+        return pendentes.containsKey(chave);
+    }
+
+    public int tamanho() {
+        return pendentes.size();
+    }
+
+    public synchronized void iniciar() {
+        if (executor != null) {
+            return;
+        }
+        executor = new Thread(this::processar, nome);
+        executor.setDaemon(true);
+        executor.start();
+    }
+
+    public synchronized void parar() {
+        if (executor != null) {
+            executor.interrupt();
+            executor = null;
+        }
+    }
+
+    private void processar() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Prazo<K> prazo = fila.take();
+                // Ignora prazos cancelados ou substituídos por um reagendamento
+                if (pendentes.remove(prazo.chave(), prazo)) {
+                    executar(prazo.chave());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.debug("Fila de prazos {} encerrada", nome);
+    }
+
+    private void executar(K chave) {
+        try {
+            acao.accept(chave);
+        } catch (Exception e) {
+            log.error("Erro ao processar prazo vencido {} na fila {}", chave, nome, e);
+        }
+    }
+
+    private record Prazo<K>(K chave, long venceEmNanos) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(venceEmNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed outro) {
+            return Long.compare(venceEmNanos, ((Prazo<?>) outro).venceEmNanos);
+        }
+    }
+}
@@ -1,97 +1,138 @@
 package com.fiap.vaga_liberada_agenda.scheduler;
 
-import com.fiap.vaga_liberada_agenda.entity.Consulta;
+import com.fiap.vaga_liberada_agenda.config.AgendadoresConfig;
+import com.fiap.vaga_liberada_agenda.dto.notificacao.MensagemNotificacao;
+import com.fiap.vaga_liberada_agenda.dto.projection.LembreteConsultaProjection;
 import com.fiap.vaga_liberada_agenda.entity.StatusConsulta;
 import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
 import com.fiap.vaga_liberada_agenda.service.NotificacaoService;
-import jakarta.transaction.Transactional;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class NotificacaoScheduler {
+
+    // Consultas AGENDADAS e PENDENTE_CONFIRMACAO recebem lembrete
+    private static final Set<StatusConsulta> STATUS_LEMBRETE =
+            Set.of(StatusConsulta.AGENDADA, StatusConsulta.PENDENTE_CONFIRMACAO);
+
+    // Define o formato desejado
+    private static final DateTimeFormatter FORMATO_DATA_HORA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    // URL Base (Em produção seria o domínio real, aqui é localhost)
+    private static final String LINK_CONFIRMACAO = "http://localhost:8080/confirmacao.html?id=";
+    // Capacidade inicial do texto do lembrete: cobre o texto fixo e nomes comuns sem realocar
+    private static final int TAMANHO_MENSAGEM = 192;
+
     private final ConsultaRepository consultaRepository;
     private final NotificacaoService notificacaoService;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${agenda.notificacao.lembrete.tamanho-lote:500}")
+    private int tamanhoLote = 500;
 
     // Executa a cada 60 segundos (60000 ms)
-    @Scheduled(fixedRate = 60000)
-    @Transactional
+    // Cada lote (uma leitura por projeção + um UPDATE em massa) roda em sua própria transação curta; um lote
+    // que falha é refeito consulta a consulta, para que um registro problemático não segure os demais
+    @Scheduled(fixedRate = 60000, scheduler = AgendadoresConfig.AGENDADOR_LEMBRETES)
     public void verificarConsultasProximas() {
         log.info("Verificando consultas próximas para notificação...");
 
         // Define a janela de tempo: Consultas que acontecem daqui a 24 horas (com margem de 1 hora)
-
         LocalDateTime inicioJanela = LocalDateTime.now();
         LocalDateTime fimJanela = inicioJanela.plusHours(24).plusMinutes(30);     // 24h30min a partir de agora
 
-        // Busca consultas AGENDADAS e PENDENTE_CONFIRMACAO
-        List<Consulta> consultasAgendadas = consultaRepository.buscarConsultasParaNotificar(
-                inicioJanela,
-                fimJanela,
-                StatusConsulta.AGENDADA
-        );
-        
-        List<Consulta> consultasPendentes = consultaRepository.buscarConsultasParaNotificar(
-                inicioJanela,
-                fimJanela,
-                StatusConsulta.PENDENTE_CONFIRMACAO
-        );
-        
-        List<Consulta> consultasProximas = new ArrayList<>();
-        consultasProximas.addAll(consultasAgendadas);
-        consultasProximas.addAll(consultasPendentes);
-
-        if (consultasProximas.isEmpty()) {
-            return;
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        int encontradas = 0;
+        Integer ultimoId = 0;
+        List<LembreteConsultaProjection> lote;
+
+        try {
+            do {
+                lote = consultaRepository.buscarLembretesPendentes(
+                        inicioJanela, fimJanela, STATUS_LEMBRETE, ultimoId, Limit.of(tamanhoLote));
+                if (lote.isEmpty()) {
+                    break;
+                }
+                processarLote(lote);
+                encontradas += lote.size();
+                ultimoId = lote.get(lote.size() - 1).consultaId();
+            } while (lote.size() == tamanhoLote);
+        } catch (Exception e) {
+            log.error("Erro ao buscar consultas para lembrete", e);
+        } finally {
+            amostra.stop(meterRegistry.timer("agenda.lembretes.execucao"));
         }
 
-        log.info("Encontradas {} consultas para confirmar.", consultasProximas.size());
-
+        if (encontradas > 0) {
+            log.info("Encontradas {} consultas para confirmar.", encontradas);
+        }
+    }
 
-        // Define o formato desejado
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+    // Se a transação do lote falhar (inclusive marcada rollback-only por um envio), nada do lote foi gravado:
+    // cada consulta é refeita na sua própria transação e só as que falharem de novo ficam para a próxima execução
+    void processarLote(List<LembreteConsultaProjection> lote) {
+        try {
+            transactionTemplate.execute(status -> notificar(lote));
+        } catch (Exception e) {
+            log.warn("Lote de {} lembretes falhou; reenviando consulta a consulta", lote.size(), e);
+            for (LembreteConsultaProjection consulta : lote) {
+                try {
+                    transactionTemplate.execute(status -> notificar(List.of(consulta)));
+                } catch (Exception erroConsulta) {
+                    log.error("Erro ao processar notificação da consulta ID: {}", consulta.consultaId(), erroConsulta);
+                }
+            }
+        }
+    }
 
-        for (Consulta consulta : consultasProximas) {
+    private int notificar(List<LembreteConsultaProjection> lote) {
+        List<Integer> notificadas = new ArrayList<>(lote.size());
+        for (LembreteConsultaProjection consulta : lote) {
             try {
-                // URL Base (Em produção seria o domínio real, aqui é localhost)
-                String linkConfirmacao = "http://localhost:8080/confirmacao.html?id=" + consulta.getId();
-                // 1. Monta a mensagem JSON (formato simples)
-                String tipoMensagem = consulta.getStatus() == StatusConsulta.PENDENTE_CONFIRMACAO 
-                        ? "confirme sua consulta" 
-                        : "lembrete: sua consulta";
-
-                String mensagemJson = String.format(
-                        "{\"pacienteId\": %d, \"consultaId\": %d, \"mensagem\": \"Olá %s, %s para %s na %s. Por favor, confirme sua presença clicando no link: %s\" }",
-                        consulta.getPaciente().getId(),
-                        consulta.getId(),
-                        consulta.getPaciente().getNome(),
-                        tipoMensagem,
-                        consulta.getDataHora().format(formatter),
-                        consulta.getUnidade().getNome(),
-                        linkConfirmacao
-                );
-
-
-                notificacaoService.enviar(mensagemJson);
-
-                // Marca como notificada para não enviar novamente
-                consulta.setLembreteEnviado(true);
-                consultaRepository.save(consulta);
-
-                log.info("Notificação enviada para consulta ID: {}", consulta.getId());
-
+                notificacaoService.enviar(montarMensagem(consulta));
+                notificadas.add(consulta.consultaId());
             } catch (Exception e) {
-                log.error("Erro ao processar notificação da consulta ID: {}", consulta.getId(), e);
+                log.error("Erro ao processar notificação da consulta ID: {}", consulta.consultaId(), e);
             }
         }
+
+        // Marca como notificadas para não enviar novamente
+        if (!notificadas.isEmpty()) {
+            consultaRepository.marcarLembretesEnviados(notificadas);
+            log.info("Notificações enfileiradas para {} consultas", notificadas.size());
+        }
+        return notificadas.size();
+    }
+
+    static MensagemNotificacao montarMensagem(LembreteConsultaProjection consulta) {
+        String tipoMensagem = consulta.status() == StatusConsulta.PENDENTE_CONFIRMACAO
+                ? "confirme sua consulta"
+                : "lembrete: sua consulta";
+
+        StringBuilder texto = new StringBuilder(TAMANHO_MENSAGEM)
+                .append("Olá ").append(consulta.pacienteNome())
+                .append(", ").append(tipoMensagem).append(" para ");
+        FORMATO_DATA_HORA.formatTo(consulta.dataHora(), texto);
+        texto.append(" na ").append(consulta.unidadeNome())
+                .append(". Por favor, confirme sua presença clicando no link: ")
+                .append(LINK_CONFIRMACAO).append(consulta.consultaId());
+        return new MensagemNotificacao(consulta.pacienteId(), consulta.consultaId(), null, texto.toString());
     }
 }
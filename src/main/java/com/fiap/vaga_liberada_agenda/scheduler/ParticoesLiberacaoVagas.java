@@ -0,0 +1,184 @@
+package com.fiap.vaga_liberada_agenda.scheduler;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Pool de liberação de vagas particionado por especialidade: cada partição tem uma fila limitada e
+ * uma única thread consumidora, então as liberações de uma especialidade executam na ordem de envio
+ * enquanto especialidades diferentes avançam em paralelo. Com a fila da partição cheia o chamador
+ * espera (backpressure). O trabalho é bloqueante (JDBC), por isso os consumidores usam threads
+ * virtuais por padrão; a concorrência real continua limitada pelo número de partições.
+ */
+@Component
+@Slf4j
+public class ParticoesLiberacaoVagas {
+
+    // Intervalo em que os consumidores verificam se o pool foi encerrado
+    private static final long ESPERA_POLL_MS = 100;
+
+    private final List<Particao> particoes;
+    private final boolean threadsVirtuais;
+    private final Duration timeoutEncerramento;
+
+    private volatile boolean ativo = true;
+
+    public ParticoesLiberacaoVagas(
+            MeterRegistry meterRegistry,
+            @Value("${agenda.liberacao.particoes:4}") int quantidade,
+            @Value("${agenda.liberacao.fila.capacidade:1000}") int capacidade,
+            @Value("${agenda.liberacao.threads-virtuais:true}") boolean threadsVirtuais,
+            @Value("${agenda.liberacao.encerramento.timeout:PT10S}") Duration timeoutEncerramento) {
+        if (quantidade < 1) {
+            throw new IllegalArgumentException("A quantidade de partições deve ser maior que zero");
+        }
+        this.threadsVirtuais = threadsVirtuais;
+        this.timeoutEncerramento = timeoutEncerramento;
+        this.particoes = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            particoes.add(new Particao(i, new ArrayBlockingQueue<>(capacidade), meterRegistry));
+        }
+    }
+
+    @PostConstruct
+    public synchronized void iniciar() {
+        for (Particao particao : particoes) {
+            if (particao.consumidor != null) {
+                continue;
+            }
+            String nome = "liberacao-vaga-" + particao.indice;
+            particao.consumidor = threadsVirtuais
+                    ? Thread.ofVirtual().name(nome).start(particao::consumir)
+                    : Thread.ofPlatform().name(nome).daemon(true).start(particao::consumir);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void parar() {
+        ativo = false;
+        long prazo = System.nanoTime() + timeoutEncerramento.toNanos();
+        for (Particao particao : particoes) {
+            if (particao.consumidor == null) {
+                continue;
+            }
+            try {
+                // Deixa a liberação em andamento terminar; o restante da fila volta na próxima varredura
+                particao.consumidor.join(Duration.ofNanos(Math.max(0, prazo - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            particao.consumidor = null;
+        }
+        for (Particao particao : particoes) {
+            List<Tarefa> restantes = new ArrayList<>();
+            particao.fila.drainTo(restantes);
+            restantes.forEach(tarefa -> tarefa.resultado().completeExceptionally(
+                    new RejectedExecutionException("Pool de liberação de vagas encerrado")));
+        }
+    }
+
+    /**
+     * Enfileira a tarefa na partição da especialidade. Tarefas da mesma especialidade executam uma
+     * por vez, na ordem em que foram enviadas; o futuro conclui com o retorno ou a exceção da tarefa.
+     */
+    public <T> CompletableFuture<T> enviar(Integer especialidadeId, Supplier<T> acao) {
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        if (!ativo) {
+            resultado.completeExceptionally(new RejectedExecutionException("Pool de liberação de vagas encerrado"));
+            return resultado;
+        }
+        Tarefa tarefa = new Tarefa(() -> {
+            try {
+                resultado.complete(acao.get());
+            } catch (Throwable e) {
+                resultado.completeExceptionally(e);
+            }
+        }, resultado, System.nanoTime());
+        try {
+            particoes.get(particaoDe(especialidadeId)).fila.put(tarefa);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resultado.completeExceptionally(e);
+        }
+        return resultado;
+    }
+
+    public int particaoDe(Integer especialidadeId) {
+        return Math.floorMod(Objects.hashCode(especialidadeId), particoes.size());
+    }
+
+    public int quantidadeParticoes() {
+        return particoes.size();
+    }
+
+    public int tamanhoFila() {
+        return particoes.stream().mapToInt(particao -> particao.fila.size()).sum();
+    }
+
+    private final class Particao {
+
+        private final int indice;
+        private final BlockingQueue<Tarefa> fila;
+        private final Timer espera;
+        private volatile Thread consumidor;
+
+        private Particao(int indice, BlockingQueue<Tarefa> fila, MeterRegistry meterRegistry) {
+            this.indice = indice;
+            this.fila = fila;
+            String tag = String.valueOf(indice);
+            Gauge.builder("agenda.liberacao.fila.tamanho", fila, BlockingQueue::size)
+                    .tag("particao", tag)
+                    .register(meterRegistry);
+            TimeGauge.builder("agenda.liberacao.atraso", this, TimeUnit.NANOSECONDS, Particao::idadeMaisAntiga)
+                    .description("Há quanto tempo a tarefa mais antiga da partição aguarda execução")
+                    .tag("particao", tag)
+                    .register(meterRegistry);
+            this.espera = Timer.builder("agenda.liberacao.espera")
+                    .description("Tempo entre o envio da liberação e o início da execução na partição")
+                    .tag("particao", tag)
+                    .register(meterRegistry);
+        }
+
+        private double idadeMaisAntiga() {
+            Tarefa cabeca = fila.peek();
+            return cabeca != null ? System.nanoTime() - cabeca.enviadaEmNanos() : 0;
+        }
+
+        private void consumir() {
+            while (ativo) {
+                try {
+                    Tarefa tarefa = fila.poll(ESPERA_POLL_MS, TimeUnit.MILLISECONDS);
+                    if (tarefa != null) {
+                        espera.record(System.nanoTime() - tarefa.enviadaEmNanos(), TimeUnit.NANOSECONDS);
+                        tarefa.execucao().run();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            log.debug("Partição {} do pool de liberação de vagas encerrada", indice);
+        }
+    }
+
+    private record Tarefa(Runnable execucao, CompletableFuture<?> resultado, long enviadaEmNanos) {
+    }
+}
@@ -0,0 +1,211 @@
+package com.fiap.vaga_liberada_agenda.scheduler;
+
+import com.fiap.vaga_liberada_agenda.config.AgendadoresConfig;
+import com.fiap.vaga_liberada_agenda.entity.Notificacao;
+import com.fiap.vaga_liberada_agenda.entity.StatusEnvioNotificacao;
+import com.fiap.vaga_liberada_agenda.event.NotificacaoRegistradaEvent;
+import com.fiap.vaga_liberada_agenda.repository.NotificacaoRepository;
+import com.fiap.vaga_liberada_agenda.service.PublicadorNotificacaoSqs;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Relay do outbox de notificações, em três passos para não segurar locks nem conexão durante a chamada
+ * ao SQS: numa transação curta trava um lote PENDENTE (FOR UPDATE SKIP LOCKED, o que permite várias
+ * instâncias em paralelo) e o reivindica como ENVIANDO até proxima_tentativa_em; publica fora da
+ * transação; e grava o resultado numa segunda transação curta. Entrega ao menos uma vez: se a instância
+ * cair antes de gravar o resultado, o lote volta a ser elegível quando a reserva vence e é reenviado.
+ * Cada notificação gravada dispara a drenagem logo após o commit ({@link NotificacaoRegistradaEvent});
+ * a execução periódica recolhe reenvios e registros de outras instâncias. Uma falha adia a notificação
+ * com backoff exponencial (proxima_tentativa_em), então nenhuma drenagem, nem as disparadas por novos
+ * registros, volta a insistir num SQS indisponível antes do prazo.
+ */
+@Component
+@ConditionalOnProperty(name = "agenda.notificacao.outbox.habilitado", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class RelayNotificacaoScheduler {
+
+    private static final int TAMANHO_MAXIMO_ERRO = 500;
+
+    private final NotificacaoRepository notificacaoRepository;
+    private final PublicadorNotificacaoSqs publicador;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    @Qualifier(AgendadoresConfig.AGENDADOR_OUTBOX)
+    private final TaskScheduler agendadorOutbox;
+
+    private final AtomicBoolean drenagemSolicitada = new AtomicBoolean();
+
+    @Value("${agenda.notificacao.outbox.tamanho-lote:100}")
+    private int tamanhoLote = 100;
+
+    @Value("${agenda.notificacao.outbox.max-tentativas:10}")
+    private int maxTentativas = 10;
+
+    @Value("${agenda.notificacao.outbox.timeout-envio:PT30S}")
+    private Duration timeoutEnvio = Duration.ofSeconds(30);
+
+    // Espera antes da primeira nova tentativa; dobra a cada falha até o máximo
+    @Value("${agenda.notificacao.outbox.backoff-inicial:PT30S}")
+    private Duration backoffInicial = Duration.ofSeconds(30);
+
+    @Value("${agenda.notificacao.outbox.backoff-maximo:PT30M}")
+    private Duration backoffMaximo = Duration.ofMinutes(30);
+
+    // Drenagem no agendador do outbox, nunca em paralelo com a execução periódica; vários registros em
+    // sequência disparam uma só drenagem, e os que chegarem durante ela disparam a seguinte
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoRegistrarNotificacao(NotificacaoRegistradaEvent evento) {
+        if (drenagemSolicitada.compareAndSet(false, true)) {
+            agendadorOutbox.schedule(() -> {
+                drenagemSolicitada.set(false);
+                drenarOutbox();
+            }, Instant.now());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${agenda.notificacao.outbox.intervalo-ms:30000}", scheduler = AgendadoresConfig.AGENDADOR_OUTBOX)
+    public void drenarOutbox() {
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        int total = 0;
+        try {
+            int enviadas;
+            do {
+                enviadas = processarLote();
+                total += enviadas;
+                // Só continua enquanto o lote sai cheio e sem falhas, para não repetir pendentes na mesma execução
+            } while (enviadas == tamanhoLote);
+        } catch (Exception e) {
+            log.error("Erro ao drenar outbox de notificações", e);
+        } finally {
+            amostra.stop(meterRegistry.timer("agenda.notificacao.outbox.execucao"));
+        }
+
+        if (total > 0) {
+            log.info("Relay do outbox enviou {} notificações", total);
+        }
+    }
+
+    // Cada passo com banco roda na sua transação; a espera pelo SQS fica entre elas, sem conexão nem locks
+    int processarLote() {
+        List<Notificacao> lote = transactionTemplate.execute(status -> reivindicarLote());
+        if (lote == null || lote.isEmpty()) {
+            return 0;
+        }
+
+        ResultadoEnvio resultado = enviar(lote);
+        LocalDateTime agora = LocalDateTime.now();
+        transactionTemplate.execute(status -> {
+            if (!resultado.enviadas().isEmpty()) {
+                notificacaoRepository.marcarEnviadas(resultado.enviadas(), agora);
+            }
+            if (!resultado.falhas().isEmpty()) {
+                notificacaoRepository.saveAll(resultado.falhas());
+            }
+            return null;
+        });
+
+        int enviadas = resultado.enviadas().size();
+        int falhas = resultado.falhas().size();
+        meterRegistry.counter("agenda.notificacao.outbox", "resultado", "enviada").increment(enviadas);
+        meterRegistry.counter("agenda.notificacao.outbox", "resultado", "falha").increment(falhas);
+
+        if (falhas > 0) {
+            log.warn("Relay do outbox: {} de {} notificações do lote não foram enviadas", falhas, lote.size());
+        }
+        return falhas == 0 ? enviadas : 0;
+    }
+
+    // Executado dentro da transação: trava o lote só o tempo de marcá-lo como ENVIANDO. A reserva cobre o
+    // prazo de envio com folga, para que outra instância não reivindique um lote ainda em envio
+    List<Notificacao> reivindicarLote() {
+        LocalDateTime agora = LocalDateTime.now();
+        List<Notificacao> pendentes = notificacaoRepository.bloquearPendentes(agora, tamanhoLote);
+        LocalDateTime reservaAte = agora.plus(timeoutEnvio.multipliedBy(2));
+        for (Notificacao notificacao : pendentes) {
+            notificacao.setStatusEnvio(StatusEnvioNotificacao.ENVIANDO);
+            notificacao.setProximaTentativaEm(reservaAte);
+        }
+        return pendentes;
+    }
+
+    // Publica o lote fora de transação; as falhas já saem com a tentativa registrada
+    private ResultadoEnvio enviar(List<Notificacao> lote) {
+        List<CompletableFuture<Void>> envios = new ArrayList<>(lote.size());
+        for (Notificacao notificacao : lote) {
+            envios.add(publicador.publicar(notificacao.getMensagem()));
+        }
+
+        long prazo = System.nanoTime() + timeoutEnvio.toNanos();
+        List<Integer> enviadas = new ArrayList<>(lote.size());
+        List<Notificacao> falhas = new ArrayList<>();
+        for (int i = 0; i < lote.size(); i++) {
+            Notificacao notificacao = lote.get(i);
+            try {
+                envios.get(i).get(Math.max(0, prazo - System.nanoTime()), TimeUnit.NANOSECONDS);
+                enviadas.add(notificacao.getId());
+            } catch (InterruptedException e) {
+                // Os que ainda não responderam ficam ENVIANDO e voltam quando a reserva vencer
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                registrarFalha(notificacao, e instanceof ExecutionException ? e.getCause() : e);
+                falhas.add(notificacao);
+            }
+        }
+        return new ResultadoEnvio(enviadas, falhas);
+    }
+
+    private void registrarFalha(Notificacao notificacao, Throwable erro) {
+        int tentativas = notificacao.getTentativas() + 1;
+        notificacao.setTentativas(tentativas);
+
+        String mensagemErro = erro != null && erro.getMessage() != null ? erro.getMessage() : String.valueOf(erro);
+        notificacao.setUltimoErro(mensagemErro.length() > TAMANHO_MAXIMO_ERRO
+                ? mensagemErro.substring(0, TAMANHO_MAXIMO_ERRO)
+                : mensagemErro);
+
+        if (tentativas >= maxTentativas) {
+            notificacao.setStatusEnvio(StatusEnvioNotificacao.FALHA);
+            notificacao.setProximaTentativaEm(null);
+            log.error("Notificação ID: {} marcada como FALHA após {} tentativas", notificacao.getId(), tentativas);
+        } else {
+            notificacao.setStatusEnvio(StatusEnvioNotificacao.PENDENTE);
+            notificacao.setProximaTentativaEm(LocalDateTime.now().plus(backoff(tentativas)));
+        }
+    }
+
+    // backoffInicial * 2^(tentativas - 1), limitado a backoffMaximo
+    Duration backoff(int tentativas) {
+        Duration espera = backoffInicial;
+        for (int i = 1; i < tentativas && espera.compareTo(backoffMaximo) < 0; i++) {
+            espera = espera.multipliedBy(2);
+        }
+        return espera.compareTo(backoffMaximo) > 0 ? backoffMaximo : espera;
+    }
+
+    private record ResultadoEnvio(List<Integer> enviadas, List<Notificacao> falhas) {
+    }
+}
@@ -1,58 +1,88 @@
 package com.fiap.vaga_liberada_agenda.scheduler;
 
-import com.fiap.vaga_liberada_agenda.entity.Consulta;
-import com.fiap.vaga_liberada_agenda.entity.StatusConsulta;
-import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
+import com.fiap.vaga_liberada_agenda.dto.projection.OfertaPendenteProjection;
+import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
+import com.fiap.vaga_liberada_agenda.event.VagaAceitaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaOferecidaEvent;
+import com.fiap.vaga_liberada_agenda.repository.ListaEsperaRepository;
 import com.fiap.vaga_liberada_agenda.service.LiberacaoVagaService;
-import jakarta.transaction.Transactional;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.List;
 
+/**
+ * Expira ofertas de vaga no instante exato do prazo (data da oferta + TTL) em vez de varrer
+ * periodicamente as consultas LIBERADA. Os prazos são registrados após o commit de cada oferta
+ * e reidratados a partir de lista_espera.data_oferta na subida da aplicação; o aceite remove o prazo.
+ * O prazo é por consulta: as ofertas paralelas da mesma vaga (agenda.oferta.fan-out) vencem juntas.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class TimeoutVagaScheduler {
 
-    private final ConsultaRepository consultaRepository;
+    private final ListaEsperaRepository listaEsperaRepository;
     private final LiberacaoVagaService liberacaoVagaService;
+    private final MeterRegistry meterRegistry;
 
-    // Executa a cada 30 minutos (1800000 ms)
-    @Scheduled(fixedRate = 1800000)
-    @Transactional
-    public void processarTimeoutsDeVagas() {
-        log.info("Verificando timeouts de vagas oferecidas...");
+    private final FilaPrazos<Integer> prazosOfertas = new FilaPrazos<>("timeout-vaga", this::expirarOferta);
 
-        try {
-            // Busca consultas liberadas que têm vaga oferecida
-            List<Consulta> consultasLiberadas = consultaRepository.findByStatus(StatusConsulta.LIBERADA);
-
-            if (consultasLiberadas.isEmpty()) {
-                log.debug("Nenhuma consulta liberada encontrada.");
-                return;
-            }
-
-            int processadas = 0;
-            for (Consulta consulta : consultasLiberadas) {
-                if (consulta.getVagaOferecidaParaListaEspera() != null) {
-                    try {
-                        liberacaoVagaService.processarTimeoutVaga(consulta);
-                        processadas++;
-                    } catch (Exception e) {
-                        log.error("Erro ao processar timeout da consulta ID: {}", consulta.getId(), e);
-                    }
-                }
-            }
-
-            if (processadas > 0) {
-                log.info("Processados {} timeouts de vagas oferecidas.", processadas);
-            }
+    @PostConstruct
+    public void iniciar() {
+        prazosOfertas.iniciar();
+    }
+
+    @PreDestroy
+    public void parar() {
+        prazosOfertas.parar();
+    }
 
+    @EventListener(ApplicationReadyEvent.class)
+    public void reidratarPrazos() {
+        List<OfertaPendenteProjection> ofertas = listaEsperaRepository.buscarOfertasPendentes(StatusListaEspera.AGUARDANDO_RESPOSTA);
+        ofertas.forEach(oferta -> prazosOfertas.agendar(
+                oferta.consultaId(), liberacaoVagaService.calcularExpiracaoOferta(oferta.dataOferta())));
+        log.info("Reidratados {} prazos de ofertas de vaga pendentes", ofertas.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoOferecerVaga(VagaOferecidaEvent evento) {
+        log.debug("Registrando prazo da oferta da consulta ID: {} para {}", evento.consultaId(), evento.expiraEm());
+        prazosOfertas.agendar(evento.consultaId(), evento.expiraEm());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoAceitarVaga(VagaAceitaEvent evento) {
+        prazosOfertas.cancelar(evento.consultaId());
+    }
+
+    public int ofertasPendentes() {
+        return prazosOfertas.tamanho();
+    }
+
+    void expirarOferta(Integer consultaId) {
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        try {
+            // Disparo antes do prazo no relógio de parede: o prazo volta para a fila em vez de se perder
+            liberacaoVagaService.processarTimeoutVaga(consultaId)
+                    .ifPresent(expiraEm -> prazosOfertas.agendar(consultaId, expiraEm));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // A oferta foi aceita (ou alterada) depois da leitura do timeout: nada a expirar
+            log.info("Timeout da consulta ID: {} descartado por alteração concorrente", consultaId);
         } catch (Exception e) {
-            log.error("Erro ao processar timeouts de vagas", e);
+            log.error("Erro ao processar timeout da consulta ID: {}", consultaId, e);
+        } finally {
+            amostra.stop(meterRegistry.timer("agenda.timeout-vaga.execucao"));
         }
     }
 }
@@ -0,0 +1,252 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.dto.projection.MedicoReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.SlotOcupadoProjection;
+import com.fiap.vaga_liberada_agenda.dto.request.ConsultaRequest;
+import com.fiap.vaga_liberada_agenda.dto.response.AgendamentoLoteResponse;
+import com.fiap.vaga_liberada_agenda.entity.Consulta;
+import com.fiap.vaga_liberada_agenda.entity.StatusConsulta;
+import com.fiap.vaga_liberada_agenda.event.ConsultaAgendadaEvent;
+import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
+import com.fiap.vaga_liberada_agenda.repository.MedicoRepository;
+import com.fiap.vaga_liberada_agenda.repository.PacienteRepository;
+import com.fiap.vaga_liberada_agenda.repository.UnidadeSaudeRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Carga de agendas em lote. As consultas são gravadas em lotes, cada um na sua transação: pacientes,
+ * médicos (existência e situação) e unidades são conferidos com consultas IN, e os horários já
+ * ocupados pelos médicos do lote com uma única consulta por intervalo. Horários repetidos dentro da
+ * própria carga também são rejeitados (vale a primeira ocorrência). As consultas aceitas saem em
+ * um lote JDBC por transação ({@link ConsultaRepository#inserirEmLote}). Se um agendamento
+ * concorrente ocupar um horário entre a verificação e o INSERT, o índice único rejeita o lote
+ * inteiro e ele é regravado uma consulta por vez. Cada consulta gravada publica
+ * {@link ConsultaAgendadaEvent}, que registra o prazo de confirmação após o commit do lote.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AgendamentoLoteService {
+
+    static final String ERRO_CONFLITO = "Já existe uma consulta agendada para este médico no horário informado";
+    private static final String ERRO_LOTE = "Erro ao gravar o lote da consulta; reenvie a consulta";
+
+    private final ConsultaRepository consultaRepository;
+    private final PacienteRepository pacienteRepository;
+    private final MedicoRepository medicoRepository;
+    private final UnidadeSaudeRepository unidadeSaudeRepository;
+    private final CacheReferenciaService cacheReferenciaService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+
+    // Consultas gravadas por transação (e por consulta IN de validação)
+    @Value("${agenda.consultas.lote.tamanho-lote:500}")
+    private int tamanhoLote = 500;
+
+    @Value("${agenda.consultas.lote.max-consultas:20000}")
+    private int maxConsultas = 20000;
+
+    public AgendamentoLoteResponse agendar(List<ConsultaRequest> requests) {
+        if (requests.size() > maxConsultas) {
+            throw new IllegalArgumentException("O lote excede o limite de " + maxConsultas + " consultas por requisição");
+        }
+        log.info("Agendando lote de {} consultas", requests.size());
+
+        List<Item> itens = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            Item item = new Item(i, requests.get(i));
+            item.erro = item.request == null ? "Consulta vazia" : validarCampos(item.request);
+            itens.add(item);
+        }
+
+        List<Item> validos = itens.stream().filter(item -> item.erro == null).toList();
+        // Horários já reservados por esta carga: a segunda consulta no mesmo horário do médico é rejeitada
+        Set<SlotOcupadoProjection> reservados = new HashSet<>();
+        for (int inicio = 0; inicio < validos.size(); inicio += tamanhoLote) {
+            List<Item> lote = validos.subList(inicio, Math.min(inicio + tamanhoLote, validos.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> gravarLote(lote, reservados));
+            } catch (DataIntegrityViolationException e) {
+                log.warn("Conflito ao gravar lote de {} consultas; gravando uma por vez", lote.size());
+                gravarIndividualmente(aceitos(lote), reservados);
+            } catch (DataAccessException | TransactionException e) {
+                log.error("Erro ao gravar lote de {} consultas", lote.size(), e);
+                // Nada do lote foi gravado: os horários reservados por ele ficam livres para os lotes seguintes
+                aceitos(lote).forEach(item -> {
+                    liberarReserva(item, reservados);
+                    item.erro = ERRO_LOTE;
+                });
+            }
+        }
+
+        List<AgendamentoLoteResponse.Item> resultados = itens.stream()
+                .map(item -> new AgendamentoLoteResponse.Item(item.indice, item.consultaId, item.erro))
+                .toList();
+        int agendadas = (int) resultados.stream().filter(resultado -> resultado.consultaId() != null).count();
+        log.info("Lote de consultas concluído: {} de {} agendadas", agendadas, itens.size());
+        return new AgendamentoLoteResponse(itens.size(), agendadas, itens.size() - agendadas, resultados);
+    }
+
+    // Executado dentro da transação do lote
+    private void gravarLote(List<Item> lote, Set<SlotOcupadoProjection> reservados) {
+        Set<Integer> pacientes = existentes(lote, ConsultaRequest::getPacienteId, pacienteRepository::buscarIdsExistentes);
+        Set<Integer> medicos = existentes(lote, ConsultaRequest::getMedicoId, medicoRepository::buscarIdsExistentes);
+        Set<Integer> medicosAtivos = existentes(lote, ConsultaRequest::getMedicoId, medicoRepository::buscarIdsAtivos);
+        Set<Integer> unidades = existentes(lote, ConsultaRequest::getUnidadeId, unidadeSaudeRepository::buscarIdsExistentes);
+        Set<SlotOcupadoProjection> ocupados = ocupados(lote, medicos);
+
+        List<Item> aceitos = new ArrayList<>(lote.size());
+        List<Consulta> novas = new ArrayList<>(lote.size());
+        for (Item item : lote) {
+            ConsultaRequest request = item.request;
+            if (!pacientes.contains(request.getPacienteId())) {
+                item.erro = "Paciente não encontrado com ID: " + request.getPacienteId();
+            } else if (!medicos.contains(request.getMedicoId())) {
+                item.erro = "Médico não encontrado com ID: " + request.getMedicoId();
+            } else if (!medicosAtivos.contains(request.getMedicoId())) {
+                item.erro = "Médico não está ativo";
+            } else if (!unidades.contains(request.getUnidadeId())) {
+                item.erro = "Unidade de saúde não encontrada com ID: " + request.getUnidadeId();
+            } else {
+                SlotOcupadoProjection slot = new SlotOcupadoProjection(request.getMedicoId(), request.getDataHora());
+                if (ocupados.contains(slot) || !reservados.add(slot)) {
+                    item.erro = ERRO_CONFLITO;
+                } else {
+                    item.slotReservado = slot;
+                    aceitos.add(item);
+                    novas.add(novaConsulta(request));
+                }
+            }
+        }
+
+        consultaRepository.inserirEmLote(novas);
+        for (int i = 0; i < novas.size(); i++) {
+            aceitos.get(i).consultaId = novas.get(i).getId();
+            publicarAgendamento(novas.get(i), aceitos.get(i).request);
+        }
+        log.debug("Lote de consultas gravado: {} de {} aceitas", novas.size(), lote.size());
+    }
+
+    // Caminho lento, só após conflito no lote: cada consulta na sua transação
+    private void gravarIndividualmente(List<Item> itens, Set<SlotOcupadoProjection> reservados) {
+        for (Item item : itens) {
+            try {
+                Consulta nova = transactionTemplate.execute(status -> {
+                    Consulta consulta = novaConsulta(item.request);
+                    consultaRepository.inserirEmLote(List.of(consulta));
+                    publicarAgendamento(consulta, item.request);
+                    return consulta;
+                });
+                item.consultaId = nova.getId();
+            } catch (DataIntegrityViolationException e) {
+                item.erro = ConsultaService.violouSlotAtivo(e) ? ERRO_CONFLITO : ERRO_LOTE;
+            } catch (DataAccessException | TransactionException e) {
+                log.error("Erro ao gravar consulta {} do lote", item.indice, e);
+                liberarReserva(item, reservados);
+                item.erro = ERRO_LOTE;
+            }
+        }
+    }
+
+    private static void liberarReserva(Item item, Set<SlotOcupadoProjection> reservados) {
+        if (item.slotReservado != null) {
+            reservados.remove(item.slotReservado);
+            item.slotReservado = null;
+        }
+    }
+
+    // Itens aceitos na tentativa do lote que sofreu rollback: voltam sem id
+    private static List<Item> aceitos(List<Item> lote) {
+        List<Item> aceitos = new ArrayList<>();
+        for (Item item : lote) {
+            if (item.erro == null) {
+                item.consultaId = null;
+                aceitos.add(item);
+            }
+        }
+        return aceitos;
+    }
+
+    private Set<SlotOcupadoProjection> ocupados(List<Item> lote, Set<Integer> medicos) {
+        if (medicos.isEmpty()) {
+            return Set.of();
+        }
+        LocalDateTime inicio = lote.stream().map(item -> item.request.getDataHora()).min(Comparator.naturalOrder()).orElseThrow();
+        LocalDateTime fim = lote.stream().map(item -> item.request.getDataHora()).max(Comparator.naturalOrder()).orElseThrow();
+        return new HashSet<>(consultaRepository.buscarSlotsOcupados(medicos, inicio, fim));
+    }
+
+    // Referências sem SELECT (só o id é lido na gravação): a existência já foi conferida pelas consultas do lote
+    private Consulta novaConsulta(ConsultaRequest request) {
+        Consulta consulta = new Consulta();
+        consulta.setPaciente(pacienteRepository.getReferenceById(request.getPacienteId()));
+        consulta.setMedico(medicoRepository.getReferenceById(request.getMedicoId()));
+        consulta.setUnidade(unidadeSaudeRepository.getReferenceById(request.getUnidadeId()));
+        consulta.setDataHora(request.getDataHora());
+        consulta.setStatus(StatusConsulta.PENDENTE_CONFIRMACAO);
+        consulta.setObservacoes(request.getObservacoes());
+        consulta.setLembreteEnviado(false);
+        consulta.setDataLimiteConfirmacao(request.getDataHora().minusMinutes(30));
+        return consulta;
+    }
+
+    // A especialidade vem do cache de médicos: as referências do lote não carregam o médico
+    private void publicarAgendamento(Consulta consulta, ConsultaRequest request) {
+        Integer especialidadeId = cacheReferenciaService.buscarMedico(request.getMedicoId())
+                .map(MedicoReferenciaProjection::especialidadeId)
+                .orElse(null);
+        eventPublisher.publishEvent(new ConsultaAgendadaEvent(
+                consulta.getId(), especialidadeId, consulta.getDataLimiteConfirmacao()));
+    }
+
+    private String validarCampos(ConsultaRequest request) {
+        Set<ConstraintViolation<ConsultaRequest>> violacoes = validator.validate(request);
+        if (violacoes.isEmpty()) {
+            return null;
+        }
+        return violacoes.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private static Set<Integer> existentes(List<Item> lote, Function<ConsultaRequest, Integer> campo,
+                                           Function<Set<Integer>, Set<Integer>> consulta) {
+        Set<Integer> ids = lote.stream()
+                .map(item -> campo.apply(item.request))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        return ids.isEmpty() ? Set.of() : consulta.apply(ids);
+    }
+
+    private static final class Item {
+
+        private final int indice;
+        private final ConsultaRequest request;
+        // Horário reservado em reservados por este item
+        private SlotOcupadoProjection slotReservado;
+        private Integer consultaId;
+        private String erro;
+
+        private Item(int indice, ConsultaRequest request) {
+            this.indice = indice;
+            this.request = request;
+        }
+    }
+}
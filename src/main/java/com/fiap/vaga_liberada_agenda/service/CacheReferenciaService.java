@@ -0,0 +1,82 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.dto.projection.EspecialidadeReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.MedicoReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.repository.EspecialidadeRepository;
+import com.fiap.vaga_liberada_agenda.repository.MedicoRepository;
+import com.fiap.vaga_liberada_agenda.repository.UnidadeSaudeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+/**
+ * Cache de leitura (Caffeine, com limite de tamanho e TTL) para os dados de referência usados na
+ * validação de agendamentos e da lista de espera. O cache guarda projeções imutáveis, nunca entidades:
+ * nada de associações lazy nem estado mutável compartilhado entre threads. Para associar o registro a
+ * uma entidade, use getReferenceById com o id da projeção. Alterações passam pelos serviços de
+ * cadastro, que invalidam a entrada.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CacheReferenciaService {
+
+    public static final String CACHE_MEDICOS = "medicos";
+    public static final String CACHE_UNIDADES = "unidades";
+    public static final String CACHE_ESPECIALIDADES = "especialidades";
+
+    private final MedicoRepository medicoRepository;
+    private final UnidadeSaudeRepository unidadeSaudeRepository;
+    private final EspecialidadeRepository especialidadeRepository;
+    private final CacheManager cacheManager;
+
+    @Cacheable(cacheNames = CACHE_MEDICOS, unless = "#result == null")
+    public Optional<MedicoReferenciaProjection> buscarMedico(Integer id) {
+        return medicoRepository.buscarReferencia(id);
+    }
+
+    @Cacheable(cacheNames = CACHE_UNIDADES, unless = "#result == null")
+    public Optional<UnidadeReferenciaProjection> buscarUnidade(Integer id) {
+        return unidadeSaudeRepository.buscarReferencia(id);
+    }
+
+    @Cacheable(cacheNames = CACHE_ESPECIALIDADES, unless = "#result == null")
+    public Optional<EspecialidadeReferenciaProjection> buscarEspecialidade(Integer id) {
+        return especialidadeRepository.buscarReferencia(id);
+    }
+
+    public void invalidarMedico(Integer id) {
+        invalidar(CACHE_MEDICOS, id);
+    }
+
+    public void invalidarUnidade(Integer id) {
+        invalidar(CACHE_UNIDADES, id);
+    }
+
+    // Remove já e de novo após o fim da transação, para descartar uma leitura concorrente
+    // que tenha recarregado o valor antigo antes do commit
+    private void invalidar(String nomeCache, Integer id) {
+        Cache cache = cacheManager.getCache(nomeCache);
+        if (cache == null) {
+            return;
+        }
+        cache.evict(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.evict(id);
+                }
+            });
+        }
+        log.debug("Entrada {} invalidada no cache {}", id, nomeCache);
+    }
+}
@@ -0,0 +1,62 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fiap.vaga_liberada_agenda.dto.notificacao.MensagemNotificacao;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Codifica {@link MensagemNotificacao} em JSON direto no {@link JsonGenerator}, sem passar pelo
+ * databind: os nomes dos campos são pré-serializados e o gerador escreve num {@link StringWriter}
+ * (só API pública do Jackson). O conteúdo (nome do paciente, unidade etc.) é sempre escapado.
+ */
+@Component
+public class CodificadorMensagemNotificacao {
+
+    private static final SerializedString PACIENTE_ID = new SerializedString("pacienteId");
+    private static final SerializedString CONSULTA_ID = new SerializedString("consultaId");
+    private static final SerializedString LISTA_ESPERA_ID = new SerializedString("listaEsperaId");
+    private static final SerializedString MENSAGEM = new SerializedString("mensagem");
+
+    // Cabe os ids e um texto de lembrete ou oferta típico sem realocar
+    private static final int TAMANHO_INICIAL = 256;
+
+    private final JsonFactory jsonFactory;
+
+    public CodificadorMensagemNotificacao(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public String codificar(MensagemNotificacao mensagem) {
+        StringWriter saida = new StringWriter(TAMANHO_INICIAL);
+        try (JsonGenerator gerador = jsonFactory.createGenerator(saida)) {
+            gerador.writeStartObject();
+            escreverNumero(gerador, PACIENTE_ID, mensagem.pacienteId());
+            escreverNumero(gerador, CONSULTA_ID, mensagem.consultaId());
+            escreverNumero(gerador, LISTA_ESPERA_ID, mensagem.listaEsperaId());
+            if (mensagem.mensagem() != null) {
+                gerador.writeFieldName(MENSAGEM);
+                gerador.writeString(mensagem.mensagem());
+            }
+            gerador.writeEndObject();
+        } catch (IOException e) {
+            // O destino é memória: só falha com um gerador em estado inválido
+            throw new UncheckedIOException("Erro ao codificar notificação", e);
+        }
+        return saida.toString();
+    }
+
+    // Campos nulos são omitidos
+    private static void escreverNumero(JsonGenerator gerador, SerializedString campo, Integer valor) throws IOException {
+        if (valor != null) {
+            gerador.writeFieldName(campo);
+            gerador.writeNumber(valor);
+        }
+    }
+}
@@ -1,18 +1,32 @@
 package com.fiap.vaga_liberada_agenda.service;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.ConsultaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.MedicoReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.PrazoConsultaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection;
 import com.fiap.vaga_liberada_agenda.dto.request.ConsultaRequest;
 import com.fiap.vaga_liberada_agenda.dto.response.ConsultaResponse;
+import com.fiap.vaga_liberada_agenda.dto.response.PaginaResponse;
 import com.fiap.vaga_liberada_agenda.entity.*;
+import com.fiap.vaga_liberada_agenda.event.ConsultaAgendadaEvent;
+import com.fiap.vaga_liberada_agenda.event.ConsultaCanceladaEvent;
+import com.fiap.vaga_liberada_agenda.event.ConsultaConfirmadaEvent;
+import com.fiap.vaga_liberada_agenda.exception.ConflitoException;
 import com.fiap.vaga_liberada_agenda.mapper.ConsultaMapper;
 import com.fiap.vaga_liberada_agenda.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -23,8 +37,10 @@ public class ConsultaService {
     private final PacienteRepository pacienteRepository;
     private final MedicoRepository medicoRepository;
     private final UnidadeSaudeRepository unidadeSaudeRepository;
+    private final CacheReferenciaService cacheReferenciaService;
     private final ConsultaMapper consultaMapper;
     private final LiberacaoVagaService liberacaoVagaService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public ConsultaResponse agendar(ConsultaRequest request) {
@@ -34,14 +50,14 @@ public class ConsultaService {
         Paciente paciente = pacienteRepository.findById(request.getPacienteId())
                 .orElseThrow(() -> new IllegalArgumentException("Paciente não encontrado com ID: " + request.getPacienteId()));
 
-        Medico medico = medicoRepository.findById(request.getMedicoId())
+        MedicoReferenciaProjection medico = cacheReferenciaService.buscarMedico(request.getMedicoId())
                 .orElseThrow(() -> new IllegalArgumentException("Médico não encontrado com ID: " + request.getMedicoId()));
 
-        if (!medico.getAtivo()) {
+        if (!medico.ativo()) {
             throw new IllegalArgumentException("Médico não está ativo");
         }
 
-        UnidadeSaude unidade = unidadeSaudeRepository.findById(request.getUnidadeId())
+        UnidadeReferenciaProjection unidade = cacheReferenciaService.buscarUnidade(request.getUnidadeId())
                 .orElseThrow(() -> new IllegalArgumentException("Unidade de saúde não encontrada com ID: " + request.getUnidadeId()));
 
         // Verificar se já existe consulta no mesmo horário
@@ -56,8 +72,8 @@ public class ConsultaService {
 
         Consulta consulta = new Consulta();
         consulta.setPaciente(paciente);
-        consulta.setMedico(medico);
-        consulta.setUnidade(unidade);
+        consulta.setMedico(medicoRepository.getReferenceById(medico.id()));
+        consulta.setUnidade(unidadeSaudeRepository.getReferenceById(unidade.id()));
         consulta.setDataHora(request.getDataHora());
         consulta.setStatus(StatusConsulta.PENDENTE_CONFIRMACAO);
         consulta.setObservacoes(request.getObservacoes());
@@ -65,10 +81,24 @@ public class ConsultaService {
 
         consulta.setDataLimiteConfirmacao(request.getDataHora().minusMinutes(30)); // Ajustado para 30 minutos
 
-        Consulta salva = consultaRepository.save(consulta);
+        // A verificação acima é só um atalho: sob concorrência, quem garante o horário único é o índice
+        // uk_consultas_medico_slot_ativo, verificado já no flush para devolver o conflito nesta chamada
+        Consulta salva;
+        try {
+            salva = consultaRepository.saveAndFlush(consulta);
+        } catch (DataIntegrityViolationException e) {
+            if (violouSlotAtivo(e)) {
+                throw new ConflitoException("Já existe uma consulta agendada para este médico no horário informado");
+            }
+            throw e;
+        }
         log.info("Consulta agendada com sucesso. ID: {}", salva.getId());
 
-        return consultaMapper.toResponse(salva);
+        // O prazo de confirmação é registrado no ConfirmacaoScheduler após o commit
+        eventPublisher.publishEvent(new ConsultaAgendadaEvent(
+                salva.getId(), medico.especialidadeId(), salva.getDataLimiteConfirmacao()));
+
+        return consultaMapper.toResponse(salva, medico, unidade);
     }
 
     @Transactional
@@ -93,6 +123,8 @@ public class ConsultaService {
         Consulta atualizada = consultaRepository.save(consulta);
         log.info("Consulta confirmada com sucesso. ID: {}", atualizada.getId());
 
+        eventPublisher.publishEvent(new ConsultaConfirmadaEvent(atualizada.getId(), especialidadeId(atualizada)));
+
         return consultaMapper.toResponse(atualizada);
     }
 
@@ -112,6 +144,8 @@ public class ConsultaService {
         Consulta atualizada = consultaRepository.save(consulta);
         log.info("Consulta cancelada com sucesso. ID: {}", atualizada.getId());
 
+        eventPublisher.publishEvent(new ConsultaCanceladaEvent(atualizada.getId(), especialidadeId(atualizada)));
+
         return consultaMapper.toResponse(atualizada);
     }
 
@@ -134,41 +168,72 @@ public class ConsultaService {
         log.info("Consulta cancelada com sucesso. ID: {}", atualizada.getId());
 
         liberacaoVagaService.liberarVaga(consulta);
+        eventPublisher.publishEvent(new ConsultaCanceladaEvent(atualizada.getId(), especialidadeId(atualizada)));
 
         return consultaMapper.toResponse(atualizada);
     }
 
-    public List<Consulta> verificarConsultasNaoConfirmadas() {
-        log.info("Verificando consultas não confirmadas");
-        LocalDateTime agora = LocalDateTime.now().plusHours(2);
-        return consultaRepository.buscarConsultasNaoConfirmadas(StatusConsulta.PENDENTE_CONFIRMACAO, agora);
+    // Prazos de confirmação pendentes até o instante informado, após o cursor (dataLimiteConfirmacao, id)
+    public List<PrazoConsultaProjection> verificarConsultasNaoConfirmadas(LocalDateTime ate, LocalDateTime ultimoLimite,
+                                                                          Integer ultimoId, int tamanhoLote) {
+        log.debug("Verificando consultas não confirmadas até {} após cursor ({}, {})", ate, ultimoLimite, ultimoId);
+        return consultaRepository.buscarLoteNaoConfirmadas(
+                StatusConsulta.PENDENTE_CONFIRMACAO, ate, ultimoLimite, ultimoId, Limit.of(tamanhoLote));
     }
 
     public ConsultaResponse buscarPorId(Integer id) {
         log.info("Buscando consulta por ID: {}", id);
-        Consulta consulta = consultaRepository.findById(id)
+        return consultaRepository.buscarProjecaoPorId(id)
+                .map(consultaMapper::toResponse)
                 .orElseThrow(() -> new IllegalArgumentException("Consulta não encontrada com ID: " + id));
-        return consultaMapper.toResponse(consulta);
     }
 
-    public List<ConsultaResponse> listarPorPaciente(Integer pacienteId) {
+    public PaginaResponse<ConsultaResponse> listarPorPaciente(Integer pacienteId, Integer aposId, Integer limite) {
         log.info("Listando consultas do paciente ID: {}", pacienteId);
-        return consultaRepository.findByPacienteId(pacienteId).stream()
-                .map(consultaMapper::toResponse)
-                .collect(Collectors.toList());
+        return listarPagina(pacienteId, null, aposId, limite);
     }
 
-    public List<ConsultaResponse> listarPorStatus(StatusConsulta status) {
+    public PaginaResponse<ConsultaResponse> listarPorStatus(StatusConsulta status, Integer aposId, Integer limite) {
         log.info("Listando consultas com status: {}", status);
-        return consultaRepository.findByStatus(status).stream()
-                .map(consultaMapper::toResponse)
-                .collect(Collectors.toList());
+        return listarPagina(null, status, aposId, limite);
     }
 
-    public List<ConsultaResponse> listarTodas() {
+    public PaginaResponse<ConsultaResponse> listarTodas(Integer aposId, Integer limite) {
         log.info("Listando todas as consultas");
-        return consultaRepository.findAll().stream()
-                .map(consultaMapper::toResponse)
-                .collect(Collectors.toList());
+        return listarPagina(null, null, aposId, limite);
+    }
+
+    // Exporta todas as consultas em streaming; as projeções não entram no contexto de persistência,
+    // então a memória não cresce com o tamanho da tabela
+    @Transactional(readOnly = true)
+    public long exportar(Consumer<ConsultaResponse> consumidor) {
+        log.info("Exportando todas as consultas");
+        long total = 0;
+        try (Stream<ConsultaProjection> consultas = consultaRepository.streamTodas()) {
+            Iterator<ConsultaProjection> iterator = consultas.iterator();
+            while (iterator.hasNext()) {
+                consumidor.accept(consultaMapper.toResponse(iterator.next()));
+                total++;
+            }
+        }
+        log.info("Exportação concluída: {} consultas", total);
+        return total;
+    }
+
+    // Violação do índice único (medico_id, slot_ativo): outro agendamento ocupou o horário antes
+    static boolean violouSlotAtivo(DataIntegrityViolationException e) {
+        String mensagem = e.getMostSpecificCause().getMessage();
+        return mensagem != null && mensagem.toLowerCase().contains(Consulta.UK_MEDICO_SLOT_ATIVO);
+    }
+
+    private static Integer especialidadeId(Consulta consulta) {
+        return consulta.getMedico().getEspecialidade().getId();
+    }
+
+    private PaginaResponse<ConsultaResponse> listarPagina(Integer pacienteId, StatusConsulta status, Integer aposId, Integer limite) {
+        int limiteEfetivo = PaginaResponse.limiteEfetivo(limite);
+        List<ConsultaProjection> consultas = consultaRepository.buscarPagina(
+                aposId != null ? aposId : 0, pacienteId, status, Limit.of(limiteEfetivo + 1));
+        return PaginaResponse.de(consultas, limiteEfetivo, ConsultaProjection::id, consultaMapper::toResponse);
     }
 }
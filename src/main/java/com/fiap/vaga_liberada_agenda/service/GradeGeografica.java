@@ -0,0 +1,63 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grade de células de {@value #TAMANHO_CELULA_GRAUS} grau (cerca de 5,5 km de latitude) usada como índice
+ * espacial do índice da lista de espera: a busca "a até N km" lê só as células que cobrem o raio e
+ * calcula a distância exata (haversine) apenas para os registros dessas células.
+ */
+final class GradeGeografica {
+
+    static final double TAMANHO_CELULA_GRAUS = 0.05;
+    private static final double RAIO_TERRA_KM = 6371.0;
+    private static final double KM_POR_GRAU_LATITUDE = 111.32;
+
+    private GradeGeografica() {
+    }
+
+    // Índices de linha e coluna combinados em um long (32 bits cada)
+    static long celula(double latitude, double longitude) {
+        return chave(indice(latitude), indice(longitude));
+    }
+
+    // Células do retângulo que contém o círculo de raioKm em torno do ponto
+    static List<Long> celulasNoRaio(double latitude, double longitude, double raioKm) {
+        double deltaLatitude = raioKm / KM_POR_GRAU_LATITUDE;
+        // Perto dos polos o grau de longitude encolhe; o limite evita divisão por zero e cobre todas as colunas
+        double cosseno = Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        double deltaLongitude = Math.min(raioKm / (KM_POR_GRAU_LATITUDE * cosseno), 180.0);
+
+        int linhaInicial = indice(latitude - deltaLatitude);
+        int linhaFinal = indice(latitude + deltaLatitude);
+        int colunaInicial = indice(longitude - deltaLongitude);
+        int colunaFinal = indice(longitude + deltaLongitude);
+
+        List<Long> celulas = new ArrayList<>((linhaFinal - linhaInicial + 1) * (colunaFinal - colunaInicial + 1));
+        for (int linha = linhaInicial; linha <= linhaFinal; linha++) {
+            for (int coluna = colunaInicial; coluna <= colunaFinal; coluna++) {
+                celulas.add(chave(linha, coluna));
+            }
+        }
+        return celulas;
+    }
+
+    // Distância em linha reta sobre a superfície da Terra (fórmula de haversine)
+    static double distanciaKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double deltaLatitude = Math.toRadians(latitude2 - latitude1);
+        double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(deltaLatitude / 2) * Math.sin(deltaLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(deltaLongitude / 2) * Math.sin(deltaLongitude / 2);
+        return 2 * RAIO_TERRA_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private static int indice(double graus) {
+        return (int) Math.floor(graus / TAMANHO_CELULA_GRAUS);
+    }
+
+    private static long chave(int linha, int coluna) {
+        return ((long) linha << 32) | (coluna & 0xFFFFFFFFL);
+    }
+}
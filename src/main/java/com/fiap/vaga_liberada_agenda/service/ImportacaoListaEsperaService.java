@@ -0,0 +1,320 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fiap.vaga_liberada_agenda.dto.projection.CoordenadasPacienteProjection;
+import com.fiap.vaga_liberada_agenda.dto.request.ListaEsperaRequest;
+import com.fiap.vaga_liberada_agenda.dto.response.ImportacaoListaEsperaResponse;
+import com.fiap.vaga_liberada_agenda.entity.ListaEspera;
+import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
+import com.fiap.vaga_liberada_agenda.repository.*;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Importação em massa da lista de espera a partir de NDJSON (um {@link ListaEsperaRequest} por linha)
+ * ou CSV com cabeçalho. As linhas são gravadas em lotes, cada um na sua transação: a existência de
+ * pacientes, especialidades, médicos e unidades é conferida com uma consulta IN por tabela, os
+ * pacientes que já estão na fila com outra, e os novos registros saem em lotes JDBC. O número de
+ * idas ao banco cresce com a quantidade de lotes, não de linhas. Cada linha recebe o seu resultado:
+ * uma linha inválida não impede a importação das demais.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImportacaoListaEsperaService {
+
+    static final String COLUNA_PACIENTE = "pacienteId";
+    static final String COLUNA_ESPECIALIDADE = "especialidadeId";
+    static final String COLUNA_MEDICO = "medicoId";
+    static final String COLUNA_UNIDADE = "unidadeId";
+    static final String COLUNA_PRIORIDADE = "prioridade";
+
+    private static final String ERRO_LOTE = "Erro ao gravar o lote da linha; reenvie a linha";
+
+    private final ListaEsperaRepository listaEsperaRepository;
+    private final PacienteRepository pacienteRepository;
+    private final EspecialidadeRepository especialidadeRepository;
+    private final MedicoRepository medicoRepository;
+    private final UnidadeSaudeRepository unidadeSaudeRepository;
+    private final IndiceListaEspera indiceListaEspera;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    // Linhas gravadas por transação (e por consulta IN de validação)
+    @Value("${agenda.lista-espera.importacao.tamanho-lote:500}")
+    private int tamanhoLote = 500;
+
+    @Value("${agenda.lista-espera.importacao.max-linhas:50000}")
+    private int maxLinhas = 50000;
+
+    public ImportacaoListaEsperaResponse importarNdjson(InputStream entrada) throws IOException {
+        List<Linha> linhas = new ArrayList<>();
+        try (BufferedReader leitor = leitor(entrada)) {
+            String texto;
+            int numero = 0;
+            while ((texto = leitor.readLine()) != null) {
+                numero++;
+                if (texto.isBlank()) {
+                    continue;
+                }
+                verificarLimite(linhas);
+                try {
+                    ListaEsperaRequest request = objectMapper.readValue(texto, ListaEsperaRequest.class);
+                    linhas.add(request != null ? new Linha(numero, request) : Linha.rejeitada(numero, "Linha sem registro"));
+                } catch (JsonProcessingException e) {
+                    linhas.add(Linha.rejeitada(numero, "JSON inválido: " + e.getOriginalMessage()));
+                }
+            }
+        }
+        return importar(linhas);
+    }
+
+    // Cabeçalho obrigatório com pacienteId e especialidadeId; medicoId, unidadeId e prioridade são
+    // opcionais. Separador vírgula ou ponto e vírgula, detectado pelo cabeçalho.
+    public ImportacaoListaEsperaResponse importarCsv(InputStream entrada) throws IOException {
+        List<Linha> linhas = new ArrayList<>();
+        try (BufferedReader leitor = leitor(entrada)) {
+            String cabecalho = leitor.readLine();
+            if (cabecalho == null || cabecalho.isBlank()) {
+                throw new IllegalArgumentException("Arquivo CSV sem cabeçalho");
+            }
+            if (cabecalho.charAt(0) == '\uFEFF') {
+                cabecalho = cabecalho.substring(1);
+            }
+            String separador = cabecalho.indexOf(';') >= 0 ? ";" : ",";
+            Map<String, Integer> colunas = colunas(cabecalho.split(separador, -1));
+
+            String texto;
+            int numero = 1;
+            while ((texto = leitor.readLine()) != null) {
+                numero++;
+                if (texto.isBlank()) {
+                    continue;
+                }
+                verificarLimite(linhas);
+                String[] valores = texto.split(separador, -1);
+                try {
+                    ListaEsperaRequest request = new ListaEsperaRequest();
+                    request.setPacienteId(inteiro(valores, colunas, COLUNA_PACIENTE));
+                    request.setEspecialidadeId(inteiro(valores, colunas, COLUNA_ESPECIALIDADE));
+                    request.setMedicoId(inteiro(valores, colunas, COLUNA_MEDICO));
+                    request.setUnidadeId(inteiro(valores, colunas, COLUNA_UNIDADE));
+                    Integer prioridade = inteiro(valores, colunas, COLUNA_PRIORIDADE);
+                    if (prioridade != null) {
+                        request.setPrioridade(prioridade);
+                    }
+                    linhas.add(new Linha(numero, request));
+                } catch (IllegalArgumentException e) {
+                    linhas.add(Linha.rejeitada(numero, e.getMessage()));
+                }
+            }
+        }
+        return importar(linhas);
+    }
+
+    ImportacaoListaEsperaResponse importar(List<Linha> linhas) {
+        log.info("Importando {} linhas na lista de espera", linhas.size());
+        for (Linha linha : linhas) {
+            if (linha.erro == null) {
+                linha.erro = validarCampos(linha.request);
+            }
+        }
+
+        List<Linha> validas = linhas.stream().filter(linha -> linha.erro == null).toList();
+        // Pacientes já importados neste arquivo: só a primeira linha de cada paciente entra na fila
+        Set<Integer> pacientesImportados = new HashSet<>();
+        for (int inicio = 0; inicio < validas.size(); inicio += tamanhoLote) {
+            List<Linha> lote = validas.subList(inicio, Math.min(inicio + tamanhoLote, validas.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> gravarLote(lote, pacientesImportados));
+            } catch (DataAccessException | TransactionException e) {
+                log.error("Erro ao gravar lote de {} linhas da importação da lista de espera", lote.size(), e);
+                // Rejeições do próprio lote continuam valendo; as linhas aceitas voltaram no rollback, mesmo
+                // que a falha tenha vindo antes de receberem id, e os seus pacientes podem vir em outro lote
+                for (Linha linha : lote) {
+                    if (linha.erro == null) {
+                        if (linha.aceita) {
+                            pacientesImportados.remove(linha.request.getPacienteId());
+                            linha.aceita = false;
+                            linha.listaEsperaId = null;
+                        }
+                        linha.erro = ERRO_LOTE;
+                    }
+                }
+            }
+        }
+
+        List<ImportacaoListaEsperaResponse.Linha> resultados = linhas.stream()
+                .map(linha -> new ImportacaoListaEsperaResponse.Linha(linha.numero, linha.listaEsperaId, linha.erro))
+                .toList();
+        int importados = (int) resultados.stream().filter(resultado -> resultado.listaEsperaId() != null).count();
+        log.info("Importação da lista de espera concluída: {} de {} linhas importadas", importados, linhas.size());
+        return new ImportacaoListaEsperaResponse(linhas.size(), importados, linhas.size() - importados, resultados);
+    }
+
+    // Executado dentro da transação do lote
+    private void gravarLote(List<Linha> lote, Set<Integer> pacientesImportados) {
+        Map<Integer, CoordenadasPacienteProjection> pacientes = coordenadasPacientes(lote);
+        Set<Integer> especialidades = existentes(lote, ListaEsperaRequest::getEspecialidadeId,
+                especialidadeRepository::buscarIdsExistentes);
+        Set<Integer> medicos = existentes(lote, ListaEsperaRequest::getMedicoId, medicoRepository::buscarIdsExistentes);
+        Set<Integer> unidades = existentes(lote, ListaEsperaRequest::getUnidadeId, unidadeSaudeRepository::buscarIdsExistentes);
+        Set<Integer> naFila = existentes(lote, ListaEsperaRequest::getPacienteId,
+                ids -> listaEsperaRepository.buscarPacientesComStatus(ids, StatusListaEspera.ATIVA));
+
+        List<Linha> aceitas = new ArrayList<>(lote.size());
+        List<ListaEspera> novas = new ArrayList<>(lote.size());
+        for (Linha linha : lote) {
+            ListaEsperaRequest request = linha.request;
+            if (!pacientes.containsKey(request.getPacienteId())) {
+                linha.erro = "Paciente não encontrado com ID: " + request.getPacienteId();
+            } else if (!especialidades.contains(request.getEspecialidadeId())) {
+                linha.erro = "Especialidade não encontrada com ID: " + request.getEspecialidadeId();
+            } else if (request.getMedicoId() != null && !medicos.contains(request.getMedicoId())) {
+                linha.erro = "Médico não encontrado com ID: " + request.getMedicoId();
+            } else if (request.getUnidadeId() != null && !unidades.contains(request.getUnidadeId())) {
+                linha.erro = "Unidade de saúde não encontrada com ID: " + request.getUnidadeId();
+            } else if (naFila.contains(request.getPacienteId()) || !pacientesImportados.add(request.getPacienteId())) {
+                linha.erro = "Paciente já está na lista de espera ativa";
+            } else {
+                linha.aceita = true;
+                aceitas.add(linha);
+                novas.add(novaEntrada(request));
+            }
+        }
+
+        listaEsperaRepository.inserirEmLote(novas);
+        for (int i = 0; i < novas.size(); i++) {
+            aceitas.get(i).listaEsperaId = novas.get(i).getId();
+            CoordenadasPacienteProjection coordenadas = pacientes.get(aceitas.get(i).request.getPacienteId());
+            indiceListaEspera.adicionar(novas.get(i), coordenadas.latitude(), coordenadas.longitude());
+        }
+        log.debug("Lote da importação gravado: {} de {} linhas aceitas", novas.size(), lote.size());
+    }
+
+    // Referências sem SELECT: a existência já foi conferida pelas consultas do lote
+    private ListaEspera novaEntrada(ListaEsperaRequest request) {
+        ListaEspera listaEspera = new ListaEspera();
+        listaEspera.setPaciente(pacienteRepository.getReferenceById(request.getPacienteId()));
+        listaEspera.setEspecialidade(especialidadeRepository.getReferenceById(request.getEspecialidadeId()));
+        if (request.getMedicoId() != null) {
+            listaEspera.setMedico(medicoRepository.getReferenceById(request.getMedicoId()));
+        }
+        if (request.getUnidadeId() != null) {
+            listaEspera.setUnidade(unidadeSaudeRepository.getReferenceById(request.getUnidadeId()));
+        }
+        listaEspera.setStatus(StatusListaEspera.ATIVA);
+        listaEspera.setPrioridade(request.getPrioridade() != null ? request.getPrioridade() : 0);
+        return listaEspera;
+    }
+
+    private String validarCampos(ListaEsperaRequest request) {
+        Set<ConstraintViolation<ListaEsperaRequest>> violacoes = validator.validate(request);
+        if (violacoes.isEmpty()) {
+            return null;
+        }
+        return violacoes.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    // Existência e coordenadas na mesma consulta IN: o índice em memória não precisa carregar cada paciente
+    private Map<Integer, CoordenadasPacienteProjection> coordenadasPacientes(List<Linha> lote) {
+        Set<Integer> ids = lote.stream()
+                .map(linha -> linha.request.getPacienteId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return pacienteRepository.buscarCoordenadas(ids).stream()
+                .collect(Collectors.toMap(CoordenadasPacienteProjection::id, Function.identity()));
+    }
+
+    private static Set<Integer> existentes(List<Linha> lote, Function<ListaEsperaRequest, Integer> campo,
+                                           Function<Set<Integer>, Set<Integer>> consulta) {
+        Set<Integer> ids = lote.stream()
+                .map(linha -> campo.apply(linha.request))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        return ids.isEmpty() ? Set.of() : consulta.apply(ids);
+    }
+
+    private void verificarLimite(List<Linha> linhas) {
+        if (linhas.size() >= maxLinhas) {
+            throw new IllegalArgumentException("O arquivo excede o limite de " + maxLinhas + " linhas por importação");
+        }
+    }
+
+    private static Map<String, Integer> colunas(String[] nomes) {
+        Map<String, Integer> colunas = new HashMap<>();
+        for (int i = 0; i < nomes.length; i++) {
+            for (String coluna : List.of(COLUNA_PACIENTE, COLUNA_ESPECIALIDADE, COLUNA_MEDICO, COLUNA_UNIDADE, COLUNA_PRIORIDADE)) {
+                if (coluna.equalsIgnoreCase(nomes[i].trim())) {
+                    colunas.put(coluna, i);
+                }
+            }
+        }
+        if (!colunas.containsKey(COLUNA_PACIENTE) || !colunas.containsKey(COLUNA_ESPECIALIDADE)) {
+            throw new IllegalArgumentException("O CSV deve ter as colunas " + COLUNA_PACIENTE + " e " + COLUNA_ESPECIALIDADE);
+        }
+        return colunas;
+    }
+
+    private static Integer inteiro(String[] valores, Map<String, Integer> colunas, String coluna) {
+        Integer posicao = colunas.get(coluna);
+        if (posicao == null || posicao >= valores.length || valores[posicao].isBlank()) {
+            return null;
+        }
+        String valor = valores[posicao].trim();
+        try {
+            return Integer.valueOf(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido na coluna " + coluna + ": " + valor);
+        }
+    }
+
+    private static BufferedReader leitor(InputStream entrada) {
+        return new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+    }
+
+    static final class Linha {
+
+        private final int numero;
+        private final ListaEsperaRequest request;
+        // Paciente reservado em pacientesImportados por esta linha
+        private boolean aceita;
+        private Integer listaEsperaId;
+        private String erro;
+
+        Linha(int numero, ListaEsperaRequest request) {
+            this.numero = numero;
+            this.request = request;
+        }
+
+        static Linha rejeitada(int numero, String erro) {
+            Linha linha = new Linha(numero, null);
+            linha.erro = erro;
+            return linha;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.dto.projection.EntradaFilaProjection;
+import com.fiap.vaga_liberada_agenda.entity.ListaEspera;
+import com.fiap.vaga_liberada_agenda.entity.Paciente;
+import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
+import com.fiap.vaga_liberada_agenda.repository.ListaEsperaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Índice em memória dos registros ATIVA da lista de espera, agrupados por
+ * (especialidade, médico, unidade) e ordenados por prioridade DESC, data de cadastro ASC.
+ * Responde "próximo da fila" em O(log n) sem ida ao banco; é reconstruído a partir do banco na subida.
+ * Os registros cujo paciente tem coordenadas também ficam numa {@link GradeGeografica} por especialidade,
+ * para a busca dos candidatos próximos à unidade da vaga.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IndiceListaEspera {
+
+    private static final Comparator<EntradaFilaProjection> ORDEM_FILA = Comparator
+            .comparing(EntradaFilaProjection::prioridade, Comparator.reverseOrder())
+            .thenComparing(EntradaFilaProjection::dataCadastro)
+            .thenComparing(EntradaFilaProjection::id);
+
+    // Busca por distância: prioridade DESC, cadastro acrescido da penalidade da distância ASC
+    private static final Comparator<CandidatoProximo> ORDEM_PROXIMIDADE = Comparator
+            .comparingInt((CandidatoProximo candidato) -> candidato.ponto().entrada().prioridade()).reversed()
+            .thenComparingLong(CandidatoProximo::cadastroAjustado)
+            .thenComparing(candidato -> candidato.ponto().entrada().id());
+
+    private final ListaEsperaRepository listaEsperaRepository;
+
+    private final Map<Integer, EntradaFilaProjection> porId = new ConcurrentHashMap<>();
+    private final Map<Integer, ConcurrentSkipListSet<EntradaFilaProjection>> porEspecialidade = new ConcurrentHashMap<>();
+    private final Map<Chave, ConcurrentSkipListSet<EntradaFilaProjection>> porChave = new ConcurrentHashMap<>();
+    // Especialidade -> célula da grade -> registros com o paciente naquela célula
+    private final Map<Integer, Map<Long, Set<PontoFila>>> porCelula = new ConcurrentHashMap<>();
+
+    private volatile boolean pronto = false;
+    // Alterações recebidas enquanto reconstruir lê o banco (guardado pelo monitor): a leitura pode não
+    // refleti-las e a limpeza dos mapas as descartaria, então são reaplicadas sobre o resultado
+    private List<Runnable> alteracoesDuranteReconstrucao;
+
+    private record Chave(Integer especialidadeId, Integer medicoId, Integer unidadeId) {
+    }
+
+    // Registro na grade com as coordenadas e o cadastro (segundos) já convertidos, fora do laço da busca
+    private record PontoFila(EntradaFilaProjection entrada, double latitude, double longitude, long cadastro) {
+
+        static PontoFila de(EntradaFilaProjection entrada) {
+            return new PontoFila(entrada, entrada.latitude().doubleValue(), entrada.longitude().doubleValue(),
+                    entrada.dataCadastro().toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+
+    // Candidato da busca por distância com o cadastro acrescido da penalidade da distância
+    private record CandidatoProximo(PontoFila ponto, long cadastroAjustado) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        log.info("Reconstruindo índice da lista de espera a partir do banco...");
+        synchronized (this) {
+            alteracoesDuranteReconstrucao = new ArrayList<>();
+        }
+        List<EntradaFilaProjection> entradas;
+        try {
+            entradas = listaEsperaRepository.buscarEntradasFila(StatusListaEspera.ATIVA);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                alteracoesDuranteReconstrucao = null;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            List<Runnable> alteracoes = alteracoesDuranteReconstrucao;
+            alteracoesDuranteReconstrucao = null;
+            porId.clear();
+            porEspecialidade.clear();
+            porChave.clear();
+            porCelula.clear();
+            entradas.forEach(this::indexar);
+            alteracoes.forEach(Runnable::run);
+            pronto = true;
+        }
+        log.info("Índice da lista de espera reconstruído com {} registros ativos", entradas.size());
+    }
+
+    public boolean isPronto() {
+        return pronto;
+    }
+
+    public int tamanho() {
+        return porId.size();
+    }
+
+    /**
+     * Próximo registro ATIVA que atende aos filtros (nulo = qualquer valor), com a mesma semântica de
+     * {@link ListaEsperaRepository#buscarProximosCandidatos}. A especialidade é obrigatória.
+     */
+    public Optional<Integer> proximo(Integer especialidadeId, Integer medicoId, Integer unidadeId) {
+        return proximos(especialidadeId, medicoId, unidadeId, 1).stream().findFirst();
+    }
+
+    // Até "quantidade" registros na ordem da fila, para o chamador pular candidatos inelegíveis
+    public List<Integer> proximos(Integer especialidadeId, Integer medicoId, Integer unidadeId, int quantidade) {
+        Objects.requireNonNull(especialidadeId, "especialidadeId é obrigatório para consultar o índice");
+
+        ConcurrentSkipListSet<EntradaFilaProjection> fila = medicoId != null && unidadeId != null
+                ? porChave.get(new Chave(especialidadeId, medicoId, unidadeId))
+                : porEspecialidade.get(especialidadeId);
+        if (fila == null) {
+            return List.of();
+        }
+        // Filtro parcial: percorre a fila da especialidade em ordem de prioridade
+        return fila.stream()
+                .filter(e -> medicoId == null || medicoId.equals(e.medicoId()))
+                .filter(e -> unidadeId == null || unidadeId.equals(e.unidadeId()))
+                .limit(quantidade)
+                .map(EntradaFilaProjection::id)
+                .toList();
+    }
+
+    /**
+     * Até "quantidade" registros da especialidade cujo paciente está a até raioKm do ponto (a unidade da
+     * vaga), ordenados por prioridade DESC e depois pela espera descontada da distância: cada km conta como
+     * ter se cadastrado "esperaPorKm" mais tarde. Pacientes sem coordenadas ficam de fora.
+     */
+    public List<Integer> proximosPorDistancia(Integer especialidadeId, double latitude, double longitude,
+                                              double raioKm, Duration esperaPorKm, int quantidade) {
+        Objects.requireNonNull(especialidadeId, "especialidadeId é obrigatório para consultar o índice");
+
+        Map<Long, Set<PontoFila>> grade = porCelula.get(especialidadeId);
+        if (grade == null) {
+            return List.of();
+        }
+
+        long segundosPorKm = esperaPorKm.toSeconds();
+        // Só os "quantidade" melhores ficam no heap (o pior no topo): O(n log k) em vez de ordenar o raio inteiro
+        PriorityQueue<CandidatoProximo> melhores = new PriorityQueue<>(quantidade + 1, ORDEM_PROXIMIDADE.reversed());
+        for (Long celula : GradeGeografica.celulasNoRaio(latitude, longitude, raioKm)) {
+            Set<PontoFila> pontos = grade.get(celula);
+            if (pontos == null) {
+                continue;
+            }
+            for (PontoFila ponto : pontos) {
+                // A célula é só o pré-filtro: os cantos do retângulo ficam fora do raio
+                double distancia = GradeGeografica.distanciaKm(latitude, longitude, ponto.latitude(), ponto.longitude());
+                if (distancia <= raioKm) {
+                    melhores.add(new CandidatoProximo(ponto, ponto.cadastro() + Math.round(distancia * segundosPorKm)));
+                    if (melhores.size() > quantidade) {
+                        melhores.poll();
+                    }
+                }
+            }
+        }
+
+        List<CandidatoProximo> ordenados = new ArrayList<>(melhores);
+        ordenados.sort(ORDEM_PROXIMIDADE);
+        return ordenados.stream()
+                .map(candidato -> candidato.ponto().entrada().id())
+                .toList();
+    }
+
+    // Registro passou a ATIVA: entra no índice somente após o commit da transação corrente
+    public void adicionar(ListaEspera listaEspera) {
+        EntradaFilaProjection entrada = paraEntrada(listaEspera);
+        aposCommit(() -> inserir(entrada));
+    }
+
+    // Para registros com o paciente por referência (getReferenceById): as coordenadas vêm do chamador
+    public void adicionar(ListaEspera listaEspera, BigDecimal latitude, BigDecimal longitude) {
+        EntradaFilaProjection entrada = paraEntrada(listaEspera, latitude, longitude);
+        aposCommit(() -> inserir(entrada));
+    }
+
+    // Registro deixou de ser ATIVA: sai do índice imediatamente e volta caso a transação sofra rollback
+    public void remover(Integer listaEsperaId) {
+        EntradaFilaProjection removida = retirar(listaEsperaId);
+        if (removida != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        inserir(removida);
+                    }
+                }
+            });
+        }
+    }
+
+    // Coordenadas do paciente mudaram: a entrada troca de célula na grade somente após o commit
+    public void reindexar(ListaEspera listaEspera) {
+        EntradaFilaProjection entrada = paraEntrada(listaEspera);
+        aposCommit(() -> substituir(entrada));
+    }
+
+    // Entrada obsoleta encontrada pelo chamador (registro já não está ATIVA no banco)
+    public void descartar(Integer listaEsperaId) {
+        retirar(listaEsperaId);
+    }
+
+    private synchronized void inserir(EntradaFilaProjection entrada) {
+        anotar(() -> inserir(entrada));
+        indexar(entrada);
+    }
+
+    private synchronized EntradaFilaProjection retirar(Integer listaEsperaId) {
+        anotar(() -> retirar(listaEsperaId));
+        return desindexar(listaEsperaId);
+    }
+
+    // Só recoloca o que ainda está no índice: o registro pode ter saído da fila enquanto isso
+    private synchronized void substituir(EntradaFilaProjection entrada) {
+        anotar(() -> substituir(entrada));
+        if (desindexar(entrada.id()) != null) {
+            indexar(entrada);
+        }
+    }
+
+    // Chamado com o monitor
+    private void anotar(Runnable alteracao) {
+        if (alteracoesDuranteReconstrucao != null) {
+            alteracoesDuranteReconstrucao.add(alteracao);
+        }
+    }
+
+    // Chamado com o monitor
+    private void indexar(EntradaFilaProjection entrada) {
+        desindexar(entrada.id());
+        porId.put(entrada.id(), entrada);
+        porEspecialidade.computeIfAbsent(entrada.especialidadeId(), k -> new ConcurrentSkipListSet<>(ORDEM_FILA))
+                .add(entrada);
+        porChave.computeIfAbsent(chaveDe(entrada), k -> new ConcurrentSkipListSet<>(ORDEM_FILA))
+                .add(entrada);
+        if (entrada.temCoordenadas()) {
+            PontoFila ponto = PontoFila.de(entrada);
+            porCelula.computeIfAbsent(entrada.especialidadeId(), k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(GradeGeografica.celula(ponto.latitude(), ponto.longitude()),
+                            k -> ConcurrentHashMap.newKeySet())
+                    .add(ponto);
+        }
+    }
+
+    // Chamado com o monitor
+    private EntradaFilaProjection desindexar(Integer listaEsperaId) {
+        EntradaFilaProjection entrada = porId.remove(listaEsperaId);
+        if (entrada == null) {
+            return null;
+        }
+        ConcurrentSkipListSet<EntradaFilaProjection> fila = porEspecialidade.get(entrada.especialidadeId());
+        if (fila != null) {
+            fila.remove(entrada);
+        }
+        ConcurrentSkipListSet<EntradaFilaProjection> filaChave = porChave.get(chaveDe(entrada));
+        if (filaChave != null) {
+            filaChave.remove(entrada);
+        }
+        if (entrada.temCoordenadas()) {
+            PontoFila ponto = PontoFila.de(entrada);
+            Map<Long, Set<PontoFila>> grade = porCelula.get(entrada.especialidadeId());
+            Set<PontoFila> celula = grade != null ? grade.get(GradeGeografica.celula(ponto.latitude(), ponto.longitude())) : null;
+            if (celula != null) {
+                celula.remove(ponto);
+            }
+        }
+        return entrada;
+    }
+
+    private static Chave chaveDe(EntradaFilaProjection entrada) {
+        return new Chave(entrada.especialidadeId(), entrada.medicoId(), entrada.unidadeId());
+    }
+
+    // Só lê as coordenadas de um paciente já carregado: inicializar o proxy custaria um SELECT por registro
+    private static EntradaFilaProjection paraEntrada(ListaEspera listaEspera) {
+        Paciente paciente = listaEspera.getPaciente();
+        if (paciente == null || !Hibernate.isInitialized(paciente)) {
+            return paraEntrada(listaEspera, null, null);
+        }
+        return paraEntrada(listaEspera, paciente.getLatitude(), paciente.getLongitude());
+    }
+
+    private static EntradaFilaProjection paraEntrada(ListaEspera listaEspera, BigDecimal latitude, BigDecimal longitude) {
+        return new EntradaFilaProjection(
+                listaEspera.getId(),
+                listaEspera.getEspecialidade().getId(),
+                listaEspera.getMedico() != null ? listaEspera.getMedico().getId() : null,
+                listaEspera.getUnidade() != null ? listaEspera.getUnidade().getId() : null,
+                listaEspera.getPrioridade() != null ? listaEspera.getPrioridade() : 0,
+                listaEspera.getDataCadastro() != null ? listaEspera.getDataCadastro() : LocalDateTime.now(),
+                latitude,
+                longitude
+        );
+    }
+
+    private static void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+}
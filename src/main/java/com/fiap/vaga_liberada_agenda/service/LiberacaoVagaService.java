@@ -1,164 +1,429 @@
 package com.fiap.vaga_liberada_agenda.service;
 
+import com.fiap.vaga_liberada_agenda.dto.notificacao.MensagemNotificacao;
 import com.fiap.vaga_liberada_agenda.entity.*;
+import com.fiap.vaga_liberada_agenda.event.OfertaExpiradaEvent;
+import com.fiap.vaga_liberada_agenda.event.OfertaRevogadaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaAceitaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaLiberadaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaOferecidaEvent;
+import com.fiap.vaga_liberada_agenda.exception.ConflitoException;
 import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
 import com.fiap.vaga_liberada_agenda.repository.ListaEsperaRepository;
+import com.fiap.vaga_liberada_agenda.repository.ListaEsperaRepositoryCustom;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Liberação de vagas: libera a consulta, oferece a vaga aos próximos da lista de espera, registra o aceite
+ * e trata o vencimento da oferta. Com {@code agenda.oferta.fan-out} maior que 1 a vaga é oferecida em
+ * paralelo aos K primeiros da fila; o primeiro aceite vence e as demais ofertas são revogadas. Cada
+ * transição publica um evento de domínio ({@link VagaLiberadaEvent}, {@link VagaOferecidaEvent},
+ * {@link VagaAceitaEvent}, {@link OfertaRevogadaEvent}, {@link OfertaExpiradaEvent}), entregue aos
+ * consumidores (métricas, prazos das ofertas) só após o commit.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class LiberacaoVagaService {
 
+    // Formatos equivalentes a toLocalDate()/toLocalTime() de horários sem segundos, compilados uma vez
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final DateTimeFormatter FORMATO_HORA = DateTimeFormatter.ofPattern("HH:mm");
+    // Capacidade inicial do texto da oferta: cobre o texto fixo e nomes comuns sem realocar
+    private static final int TAMANHO_MENSAGEM_VAGA = 256;
+
     private final ConsultaRepository consultaRepository;
     private final ListaEsperaRepository listaEsperaRepository;
     private final NotificacaoService notificacaoService;
+    private final IndiceListaEspera indiceListaEspera;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MetricasLiberacaoVaga metricas;
+
+    // Tempo que o paciente da lista de espera tem para aceitar a vaga oferecida
+    @Value("${agenda.oferta.ttl:PT2H}")
+    private Duration ttlOferta = Duration.ofHours(2);
+
+    // Registros da lista de espera que recebem a mesma vaga ao mesmo tempo (1 = um por vez, na ordem da fila)
+    @Value("${agenda.oferta.fan-out:1}")
+    private int fanOut = 1;
+
+    // Seleção por distância: depois dos registros do mesmo médico e unidade, a vaga vai primeiro aos
+    // pacientes a até raio-km da unidade, e só então ao restante da especialidade
+    @Value("${agenda.oferta.geo.habilitado:false}")
+    private boolean geoHabilitado = false;
+
+    @Value("${agenda.oferta.geo.raio-km:20}")
+    private double raioKm = 20;
+
+    // Quanto cada km de distância pesa contra o tempo de espera na ordenação (mesma prioridade)
+    @Value("${agenda.oferta.geo.espera-por-km:PT1H}")
+    private Duration esperaPorKm = Duration.ofHours(1);
+
+    // Candidatos lidos por vez ao procurar o próximo da fila
+    @Value("${agenda.lista-espera.lote-candidatos:10}")
+    private int loteCandidatos = 10;
 
     @Transactional
     public void liberarVaga(Consulta consulta) {
+        metricas.medir(MetricasLiberacaoVaga.OPERACAO_LIBERAR, () -> liberar(consulta));
+    }
+
+    private void liberar(Consulta consulta) {
         log.info("Liberando vaga para consulta ID: {}", consulta.getId());
 
         // Marca consulta como LIBERADA
         consulta.setStatus(StatusConsulta.LIBERADA);
+        consulta.setLiberadaEm(LocalDateTime.now());
         consultaRepository.save(consulta);
 
-        // Busca próximo da lista de espera
+        // Busca próximos da lista de espera
         Integer especialidadeId = consulta.getMedico().getEspecialidade().getId();
-        Integer medicoId = consulta.getMedico().getId();
-        Integer unidadeId = consulta.getUnidade().getId();
-
-        Optional<ListaEspera> proximo = listaEsperaRepository.findFirstByFiltros(
-                StatusListaEspera.ATIVA, especialidadeId, medicoId, unidadeId);
+        eventPublisher.publishEvent(new VagaLiberadaEvent(consulta.getId(), especialidadeId, consulta.getLiberadaEm()));
 
-        if (proximo.isEmpty()) {
-            // Tenta buscar apenas por especialidade
-            proximo = listaEsperaRepository.findFirstByFiltros(
-                    StatusListaEspera.ATIVA, especialidadeId, null, null);
-        }
+        List<ListaEspera> candidatos = buscarCandidatos(consulta, Set.of());
 
-        if (proximo.isPresent()) {
-            oferecerVagaParaListaEspera(consulta, proximo.get());
+        if (!candidatos.isEmpty()) {
+            oferecerVagaParaListaEspera(consulta, candidatos);
         } else {
             log.info("Nenhum paciente encontrado na lista de espera para a vaga liberada. Consulta ID: {}", consulta.getId());
         }
     }
 
+    // Libera a vaga de uma consulta cujo prazo de confirmação expirou, em transação própria
     @Transactional
-    public void oferecerVagaParaListaEspera(Consulta consulta, ListaEspera listaEspera) {
-        log.info("Oferecendo vaga da consulta ID: {} para paciente da lista de espera ID: {}",
-                consulta.getId(), listaEspera.getId());
+    public boolean liberarVagaNaoConfirmada(Integer consultaId) {
+        Consulta consulta = consultaRepository.findById(consultaId)
+                .orElseThrow(() -> new IllegalArgumentException("Consulta não encontrada com ID: " + consultaId));
+
+        // A consulta pode ter sido confirmada/cancelada entre a leitura do lote e este ponto
+        if (consulta.getStatus() != StatusConsulta.PENDENTE_CONFIRMACAO || consulta.getConfirmadaEm() != null) {
+            log.debug("Consulta ID: {} não está mais pendente de confirmação", consultaId);
+            return false;
+        }
 
-        // Atualiza lista de espera
-        listaEspera.setStatus(StatusListaEspera.AGUARDANDO_RESPOSTA);
-        listaEspera.setConsultaOferecida(consulta);
-        listaEspera.setDataOferta(LocalDateTime.now());
-        listaEsperaRepository.save(listaEspera);
+        liberarVaga(consulta);
+        return true;
+    }
+
+    @Transactional
+    public void oferecerVagaParaListaEspera(Consulta consulta, List<ListaEspera> candidatos) {
+        metricas.medir(MetricasLiberacaoVaga.OPERACAO_OFERECER, () -> oferecer(consulta, candidatos));
+    }
+
+    private void oferecer(Consulta consulta, List<ListaEspera> candidatos) {
+        // Todas as ofertas da rodada têm o mesmo instante e vencem juntas
+        LocalDateTime agora = LocalDateTime.now();
+
+        // Cada registro da lista de espera guarda a sua oferta (consulta oferecida e data)
+        for (ListaEspera listaEspera : candidatos) {
+            log.info("Oferecendo vaga da consulta ID: {} para paciente da lista de espera ID: {}",
+                    consulta.getId(), listaEspera.getId());
+            listaEspera.setStatus(StatusListaEspera.AGUARDANDO_RESPOSTA);
+            listaEspera.setConsultaOferecida(consulta);
+            listaEspera.setDataOferta(agora);
+            indiceListaEspera.remover(listaEspera.getId());
+        }
+        listaEsperaRepository.saveAll(candidatos);
 
         // Atualiza consulta
-        consulta.setVagaOferecidaParaListaEspera(listaEspera);
-        consulta.setVagaOferecidaEm(LocalDateTime.now());
+        consulta.setVagaOferecidaEm(agora);
         consultaRepository.save(consulta);
 
-        // Envia notificação
-        String mensagemJson = String.format(
-                "{\"pacienteId\": %d, \"consultaId\": %d, \"listaEsperaId\": %d, " +
-                "\"mensagem\": \"Olá %s, uma vaga foi liberada! Você tem uma consulta disponível em %s às %s com Dr(a). %s na %s. " +
-                "Por favor, confirme sua presença através do sistema.\"}",
-                listaEspera.getPaciente().getId(),
-                consulta.getId(),
-                listaEspera.getId(),
-                listaEspera.getPaciente().getNome(),
-                consulta.getDataHora().toLocalDate(),
-                consulta.getDataHora().toLocalTime(),
-                consulta.getMedico().getNome(),
-                consulta.getUnidade().getNome()
-        );
-
-        notificacaoService.enviar(mensagemJson);
-        log.info("Notificação de vaga liberada enviada para paciente ID: {}", listaEspera.getPaciente().getId());
+        // Envia notificações
+        LocalDateTime expiraEm = calcularExpiracaoOferta(agora);
+        for (ListaEspera listaEspera : candidatos) {
+            notificacaoService.enviar(montarMensagemVagaLiberada(consulta, listaEspera));
+            log.info("Notificação de vaga liberada enfileirada para paciente ID: {}", listaEspera.getPaciente().getId());
+
+            eventPublisher.publishEvent(new VagaOferecidaEvent(consulta.getId(), listaEspera.getId(),
+                    listaEspera.getEspecialidade().getId(), consulta.getLiberadaEm(), agora, expiraEm));
+        }
+    }
+
+    static MensagemNotificacao montarMensagemVagaLiberada(Consulta consulta, ListaEspera listaEspera) {
+        Paciente paciente = listaEspera.getPaciente();
+        StringBuilder texto = new StringBuilder(TAMANHO_MENSAGEM_VAGA)
+                .append("Olá ").append(paciente.getNome())
+                .append(", uma vaga foi liberada! Você tem uma consulta disponível em ");
+        FORMATO_DATA.formatTo(consulta.getDataHora(), texto);
+        texto.append(" às ");
+        FORMATO_HORA.formatTo(consulta.getDataHora(), texto);
+        texto.append(" com Dr(a). ").append(consulta.getMedico().getNome())
+                .append(" na ").append(consulta.getUnidade().getNome())
+                .append(". Por favor, confirme sua presença através do sistema.");
+        return new MensagemNotificacao(paciente.getId(), consulta.getId(), listaEspera.getId(), texto.toString());
+    }
+
+    static MensagemNotificacao montarMensagemOfertaRevogada(Integer consultaId, ListaEspera listaEspera) {
+        Paciente paciente = listaEspera.getPaciente();
+        String texto = "Olá " + paciente.getNome() + ", a vaga oferecida a você já foi preenchida por outro " +
+                "paciente da lista de espera. Você continua na fila e será avisado da próxima vaga.";
+        return new MensagemNotificacao(paciente.getId(), consultaId, listaEspera.getId(), texto);
+    }
+
+    public LocalDateTime calcularExpiracaoOferta(LocalDateTime dataOferta) {
+        return dataOferta.plus(ttlOferta);
     }
 
     @Transactional
     public void aceitarVaga(Integer consultaId, Integer listaEsperaId) {
-        log.info("Aceitando vaga - Consulta ID: {}, Lista Espera ID: {}", consultaId, listaEsperaId);
+        metricas.medir(MetricasLiberacaoVaga.OPERACAO_ACEITAR, () -> aceitar(consultaId, listaEsperaId));
+    }
 
-        Consulta consulta = consultaRepository.findById(consultaId)
-                .orElseThrow(() -> new IllegalArgumentException("Consulta não encontrada com ID: " + consultaId));
+    private void aceitar(Integer consultaId, Integer listaEsperaId) {
+        log.info("Aceitando vaga - Consulta ID: {}, Lista Espera ID: {}", consultaId, listaEsperaId);
 
         ListaEspera listaEspera = listaEsperaRepository.findById(listaEsperaId)
                 .orElseThrow(() -> new IllegalArgumentException("Registro não encontrado na lista de espera com ID: " + listaEsperaId));
 
-        if (consulta.getStatus() != StatusConsulta.LIBERADA) {
-            throw new IllegalArgumentException("Esta vaga não está mais disponível");
+        // A checagem de status e a escrita acontecem no mesmo UPDATE condicional: entre aceites
+        // simultâneos ou um aceite e o timeout da oferta, apenas um encontra a vaga disponível
+        LocalDateTime agora = LocalDateTime.now();
+        int consultasReivindicadas;
+        try {
+            consultasReivindicadas = consultaRepository.reivindicarVagaOferecida(
+                    consultaId, listaEsperaId, listaEspera.getPaciente(), agora);
+        } catch (DataIntegrityViolationException e) {
+            // Enquanto LIBERADA a consulta não ocupa o horário; um agendamento direto pode tê-lo tomado
+            if (ConsultaService.violouSlotAtivo(e)) {
+                throw new ConflitoException("O horário desta vaga já foi ocupado por outro agendamento");
+            }
+            throw e;
         }
-
-        if (listaEspera.getStatus() != StatusListaEspera.AGUARDANDO_RESPOSTA) {
-            throw new IllegalArgumentException("Esta vaga não está mais disponível para este paciente");
+        if (consultasReivindicadas == 0) {
+            if (!consultaRepository.existsById(consultaId)) {
+                throw new IllegalArgumentException("Consulta não encontrada com ID: " + consultaId);
+            }
+            throw new ConflitoException("Esta vaga não está mais disponível");
         }
 
-        // Atualiza consulta com o novo paciente
-        consulta.setPaciente(listaEspera.getPaciente());
-        consulta.setStatus(StatusConsulta.AGENDADA);
-        consulta.setConfirmadaEm(LocalDateTime.now());
-        consultaRepository.save(consulta);
+        // Desfaz a reivindicação da consulta (rollback) se a oferta já não estiver aguardando resposta
+        if (listaEsperaRepository.marcarOfertaAtendida(listaEsperaId, consultaId) == 0) {
+            throw new ConflitoException("Esta vaga não está mais disponível para este paciente");
+        }
+        indiceListaEspera.remover(listaEsperaId);
+        Integer especialidadeId = listaEspera.getEspecialidade().getId();
+        eventPublisher.publishEvent(new VagaAceitaEvent(consultaId, listaEsperaId, especialidadeId, agora));
 
-        // Atualiza lista de espera
-        listaEspera.setStatus(StatusListaEspera.ATENDIDA);
-        listaEsperaRepository.save(listaEspera);
+        revogarOfertasConcorrentes(consultaId, especialidadeId);
 
         log.info("Vaga aceita com sucesso. Consulta ID: {} agora pertence ao paciente ID: {}",
                 consultaId, listaEspera.getPaciente().getId());
     }
 
+    // Ofertas paralelas da mesma vaga ainda pendentes voltam à fila; o registro vencedor já está ATENDIDA
+    private void revogarOfertasConcorrentes(Integer consultaId, Integer especialidadeId) {
+        List<ListaEspera> revogadas = listaEsperaRepository.findByConsultaOferecidaIdAndStatus(
+                consultaId, StatusListaEspera.AGUARDANDO_RESPOSTA);
+        if (revogadas.isEmpty()) {
+            return;
+        }
+
+        devolverParaFila(revogadas);
+        for (ListaEspera listaEspera : revogadas) {
+            notificacaoService.enviar(montarMensagemOfertaRevogada(consultaId, listaEspera));
+            eventPublisher.publishEvent(new OfertaRevogadaEvent(consultaId, listaEspera.getId(), especialidadeId));
+        }
+        log.info("{} ofertas concorrentes da consulta ID: {} revogadas", revogadas.size(), consultaId);
+    }
+
+    private void devolverParaFila(List<ListaEspera> ofertas) {
+        for (ListaEspera listaEspera : ofertas) {
+            listaEspera.setStatus(StatusListaEspera.ATIVA);
+            listaEspera.setConsultaOferecida(null);
+            listaEspera.setDataOferta(null);
+        }
+        listaEsperaRepository.saveAll(ofertas);
+        ofertas.forEach(indiceListaEspera::adicionar);
+    }
+
+    /**
+     * Disparado pela fila de prazos quando a oferta da consulta vence. Retorna o prazo ainda pendente
+     * quando o disparo chegou antes do vencimento no relógio de parede (ajuste de relógio, NTP), para que
+     * o chamador o registre de novo; vazio quando a oferta expirou ou não há mais o que expirar.
+     */
     @Transactional
-    public void processarTimeoutVaga(Consulta consulta) {
+    public Optional<LocalDateTime> processarTimeoutVaga(Integer consultaId) {
+        Optional<Consulta> consulta = consultaRepository.findById(consultaId);
+
+        // A vaga pode ter sido aceita ou a consulta alterada antes do prazo vencer
+        if (consulta.isEmpty() || consulta.get().getStatus() != StatusConsulta.LIBERADA) {
+            log.debug("Consulta ID: {} não está mais liberada. Timeout ignorado", consultaId);
+            return Optional.empty();
+        }
+        return processarTimeoutVaga(consulta.get());
+    }
+
+    @Transactional
+    public Optional<LocalDateTime> processarTimeoutVaga(Consulta consulta) {
+        return metricas.medir(MetricasLiberacaoVaga.OPERACAO_TIMEOUT, () -> processarTimeout(consulta));
+    }
+
+    private Optional<LocalDateTime> processarTimeout(Consulta consulta) {
         log.info("Processando timeout de vaga oferecida. Consulta ID: {}", consulta.getId());
 
-        if (consulta.getVagaOferecidaParaListaEspera() == null) {
-            return;
+        List<ListaEspera> ofertas = listaEsperaRepository.findByConsultaOferecidaIdAndStatus(
+                consulta.getId(), StatusListaEspera.AGUARDANDO_RESPOSTA);
+        if (ofertas.isEmpty()) {
+            return Optional.empty();
         }
 
-        ListaEspera listaEspera = consulta.getVagaOferecidaParaListaEspera();
+        // Verifica se o prazo da oferta (agenda.oferta.ttl) já venceu; as ofertas da rodada vencem juntas
+        LocalDateTime dataOferta = ofertas.stream()
+                .map(ListaEspera::getDataOferta)
+                .filter(Objects::nonNull)
+                .min(LocalDateTime::compareTo)
+                .orElse(null);
+        if (dataOferta != null) {
+            LocalDateTime expiracao = calcularExpiracaoOferta(dataOferta);
+            if (LocalDateTime.now().isBefore(expiracao)) {
+                log.info("Timeout da consulta ID: {} disparado antes do prazo {}", consulta.getId(), expiracao);
+                return Optional.of(expiracao);
+            }
+        }
 
-        // Verifica se passou mais de 2 horas desde a oferta (configurável)
-        if (listaEspera.getDataOferta() != null &&
-            LocalDateTime.now().isAfter(listaEspera.getDataOferta().plusHours(2))) {
+        log.info("Timeout da vaga. Oferecendo para próximos da fila. Consulta ID: {}", consulta.getId());
 
-            log.info("Timeout da vaga. Oferecendo para próximo da fila. Consulta ID: {}", consulta.getId());
+        // Volta a lista de espera para ATIVA
+        devolverParaFila(ofertas);
 
-            // Volta a lista de espera para ATIVA
-            listaEspera.setStatus(StatusListaEspera.ATIVA);
-            listaEspera.setConsultaOferecida(null);
-            listaEspera.setDataOferta(null);
-            listaEsperaRepository.save(listaEspera);
+        // Limpa a oferta da consulta
+        consulta.setVagaOferecidaEm(null);
+        consultaRepository.save(consulta);
+
+        // Oferece para próximos da fila
+        Integer especialidadeId = consulta.getMedico().getEspecialidade().getId();
+        Set<Integer> expiradas = new HashSet<>();
+        for (ListaEspera listaEspera : ofertas) {
+            eventPublisher.publishEvent(new OfertaExpiradaEvent(consulta.getId(), listaEspera.getId(), especialidadeId));
+            expiradas.add(listaEspera.getId());
+        }
 
-            // Limpa a oferta da consulta
-            consulta.setVagaOferecidaParaListaEspera(null);
-            consulta.setVagaOferecidaEm(null);
-            consultaRepository.save(consulta);
+        // Os registros que deixaram a oferta expirar voltam à fila, mas não recebem a mesma vaga de novo
+        List<ListaEspera> candidatos = buscarCandidatos(consulta, expiradas);
+        if (!candidatos.isEmpty()) {
+            oferecerVagaParaListaEspera(consulta, candidatos);
+        }
+        return Optional.empty();
+    }
+
+    // Até agenda.oferta.fan-out candidatos para a vaga: primeiro os do mesmo médico e unidade, depois os
+    // pacientes próximos da unidade (agenda.oferta.geo) e por fim qualquer registro da especialidade
+    private List<ListaEspera> buscarCandidatos(Consulta consulta, Set<Integer> ignorar) {
+        Integer especialidadeId = consulta.getMedico().getEspecialidade().getId();
+        List<ListaEspera> candidatos = new ArrayList<>(buscarProximos(
+                especialidadeId, consulta.getMedico().getId(), consulta.getUnidade().getId(), ignorar, fanOut));
+
+        if (candidatos.size() < fanOut) {
+            candidatos.addAll(buscarProximosPorDistancia(especialidadeId, consulta.getUnidade(),
+                    ignorarTambem(ignorar, candidatos), fanOut - candidatos.size()));
+        }
+        if (candidatos.size() < fanOut) {
+            candidatos.addAll(buscarProximos(especialidadeId, null, null,
+                    ignorarTambem(ignorar, candidatos), fanOut - candidatos.size()));
+        }
+        return candidatos;
+    }
 
-            // Oferece para próximo da fila
-            Integer especialidadeId = consulta.getMedico().getEspecialidade().getId();
-            Integer medicoId = consulta.getMedico().getId();
-            Integer unidadeId = consulta.getUnidade().getId();
+    private static Set<Integer> ignorarTambem(Set<Integer> ignorar, List<ListaEspera> escolhidos) {
+        if (escolhidos.isEmpty()) {
+            return ignorar;
+        }
+        Set<Integer> ids = new HashSet<>(ignorar);
+        escolhidos.forEach(escolhido -> ids.add(escolhido.getId()));
+        return ids;
+    }
 
-            Optional<ListaEspera> proximo = listaEsperaRepository.findFirstByFiltros(
-                    StatusListaEspera.ATIVA, especialidadeId, medicoId, unidadeId);
+    // Até "quantidade" candidatos ATIVA, exceto os ignorados: lê um lote pequeno de candidatos (do índice em
+    // memória quando pronto, senão do banco com LIMIT) para pular inelegíveis sem uma ida ao banco por candidato
+    List<ListaEspera> buscarProximos(Integer especialidadeId, Integer medicoId, Integer unidadeId,
+                                     Set<Integer> ignorar, int quantidade) {
+        int lote = tamanhoLote(ignorar, quantidade);
 
-            if (proximo.isEmpty()) {
-                proximo = listaEsperaRepository.findFirstByFiltros(
-                        StatusListaEspera.ATIVA, especialidadeId, null, null);
+        if (!indiceListaEspera.isPronto()) {
+            return elegiveis(listaEsperaRepository.buscarProximosCandidatos(
+                    StatusListaEspera.ATIVA, especialidadeId, medicoId, unidadeId, lote), ignorar, quantidade);
+        }
+        return carregarDoIndice(() -> indiceListaEspera.proximos(especialidadeId, medicoId, unidadeId, lote),
+                ignorar, quantidade);
+    }
+
+    // Candidatos a até agenda.oferta.geo.raio-km da unidade, pela grade geográfica do índice em memória;
+    // sem o índice pronto (ou sem coordenadas da unidade) a seleção segue direto para a especialidade
+    List<ListaEspera> buscarProximosPorDistancia(Integer especialidadeId, UnidadeSaude unidade,
+                                                 Set<Integer> ignorar, int quantidade) {
+        if (!geoHabilitado || !indiceListaEspera.isPronto()
+                || unidade.getLatitude() == null || unidade.getLongitude() == null) {
+            return List.of();
+        }
+
+        int lote = tamanhoLote(ignorar, quantidade);
+        double latitude = unidade.getLatitude().doubleValue();
+        double longitude = unidade.getLongitude().doubleValue();
+        return carregarDoIndice(() -> indiceListaEspera.proximosPorDistancia(
+                especialidadeId, latitude, longitude, raioKm, esperaPorKm, lote), ignorar, quantidade);
+    }
+
+    // Os ignorados podem estar no topo da fila: o lote também cobre todos eles
+    private int tamanhoLote(Set<Integer> ignorar, int quantidade) {
+        return Math.min(Math.max(loteCandidatos, quantidade + ignorar.size()),
+                ListaEsperaRepositoryCustom.LIMITE_MAXIMO_CANDIDATOS);
+    }
+
+    private List<ListaEspera> carregarDoIndice(Supplier<List<Integer>> consultaIndice, Set<Integer> ignorar, int quantidade) {
+        while (true) {
+            List<Integer> candidatosIds = consultaIndice.get();
+            if (candidatosIds.isEmpty()) {
+                return List.of();
+            }
+
+            Map<Integer, ListaEspera> carregados = listaEsperaRepository.findAllById(candidatosIds).stream()
+                    .collect(Collectors.toMap(ListaEspera::getId, Function.identity()));
+            List<ListaEspera> ativos = new ArrayList<>(candidatosIds.size());
+            boolean descartouObsoleta = false;
+            for (Integer candidatoId : candidatosIds) {
+                ListaEspera candidato = carregados.get(candidatoId);
+                if (candidato != null && candidato.getStatus() == StatusListaEspera.ATIVA) {
+                    ativos.add(candidato);
+                } else {
+                    log.warn("Entrada obsoleta no índice da lista de espera descartada. ID: {}", candidatoId);
+                    indiceListaEspera.descartar(candidatoId);
+                    descartouObsoleta = true;
+                }
             }
 
-            if (proximo.isPresent() && !proximo.get().getId().equals(listaEspera.getId())) {
-                oferecerVagaParaListaEspera(consulta, proximo.get());
+            List<ListaEspera> elegiveis = elegiveis(ativos, ignorar, quantidade);
+            // Lote com entradas obsoletas e candidatos insuficientes: relê o lote, já sem as entradas descartadas
+            if (elegiveis.size() == quantidade || !descartouObsoleta) {
+                return elegiveis;
             }
         }
     }
+
+    private static List<ListaEspera> elegiveis(List<ListaEspera> candidatos, Set<Integer> ignorar, int quantidade) {
+        return candidatos.stream()
+                .filter(candidato -> !ignorar.contains(candidato.getId()))
+                .limit(quantidade)
+                .toList();
+    }
 }
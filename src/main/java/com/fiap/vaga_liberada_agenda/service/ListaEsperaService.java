@@ -1,18 +1,26 @@
 package com.fiap.vaga_liberada_agenda.service;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.EspecialidadeReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.ListaEsperaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.MedicoReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection;
 import com.fiap.vaga_liberada_agenda.dto.request.ListaEsperaRequest;
 import com.fiap.vaga_liberada_agenda.dto.response.ListaEsperaResponse;
+import com.fiap.vaga_liberada_agenda.dto.response.PaginaResponse;
 import com.fiap.vaga_liberada_agenda.entity.*;
 import com.fiap.vaga_liberada_agenda.mapper.ListaEsperaMapper;
 import com.fiap.vaga_liberada_agenda.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -24,7 +32,9 @@ public class ListaEsperaService {
     private final EspecialidadeRepository especialidadeRepository;
     private final MedicoRepository medicoRepository;
     private final UnidadeSaudeRepository unidadeSaudeRepository;
+    private final CacheReferenciaService cacheReferenciaService;
     private final ListaEsperaMapper listaEsperaMapper;
+    private final IndiceListaEspera indiceListaEspera;
 
     @Transactional
     public ListaEsperaResponse adicionarNaLista(ListaEsperaRequest request) {
@@ -34,7 +44,7 @@ public class ListaEsperaService {
         Paciente paciente = pacienteRepository.findById(request.getPacienteId())
                 .orElseThrow(() -> new IllegalArgumentException("Paciente não encontrado com ID: " + request.getPacienteId()));
 
-        Especialidade especialidade = especialidadeRepository.findById(request.getEspecialidadeId())
+        EspecialidadeReferenciaProjection especialidade = cacheReferenciaService.buscarEspecialidade(request.getEspecialidadeId())
                 .orElseThrow(() -> new IllegalArgumentException("Especialidade não encontrada com ID: " + request.getEspecialidadeId()));
 
         // Verificar se já existe na lista de espera ativa
@@ -46,48 +56,74 @@ public class ListaEsperaService {
 
         ListaEspera listaEspera = new ListaEspera();
         listaEspera.setPaciente(paciente);
-        listaEspera.setEspecialidade(especialidade);
+        listaEspera.setEspecialidade(especialidadeRepository.getReferenceById(especialidade.id()));
         listaEspera.setStatus(StatusListaEspera.ATIVA);
         listaEspera.setPrioridade(request.getPrioridade() != null ? request.getPrioridade() : 0);
 
+        MedicoReferenciaProjection medico = null;
         if (request.getMedicoId() != null) {
-            Medico medico = medicoRepository.findById(request.getMedicoId())
+            medico = cacheReferenciaService.buscarMedico(request.getMedicoId())
                     .orElseThrow(() -> new IllegalArgumentException("Médico não encontrado com ID: " + request.getMedicoId()));
-            listaEspera.setMedico(medico);
+            listaEspera.setMedico(medicoRepository.getReferenceById(medico.id()));
         }
 
+        UnidadeReferenciaProjection unidade = null;
         if (request.getUnidadeId() != null) {
-            UnidadeSaude unidade = unidadeSaudeRepository.findById(request.getUnidadeId())
+            unidade = cacheReferenciaService.buscarUnidade(request.getUnidadeId())
                     .orElseThrow(() -> new IllegalArgumentException("Unidade de saúde não encontrada com ID: " + request.getUnidadeId()));
-            listaEspera.setUnidade(unidade);
+            listaEspera.setUnidade(unidadeSaudeRepository.getReferenceById(unidade.id()));
         }
 
         ListaEspera salva = listaEsperaRepository.save(listaEspera);
+        indiceListaEspera.adicionar(salva);
         log.info("Paciente adicionado na lista de espera. ID: {}", salva.getId());
 
-        return listaEsperaMapper.toResponseWithDetails(salva);
+        return listaEsperaMapper.toResponse(salva, especialidade, medico, unidade);
     }
 
-    public List<ListaEsperaResponse> listarPorFiltros(Integer especialidadeId, Integer medicoId, Integer unidadeId) {
+    public PaginaResponse<ListaEsperaResponse> listarPorFiltros(Integer especialidadeId, Integer medicoId, Integer unidadeId,
+                                                                Integer aposId, Integer limite) {
         log.info("Listando lista de espera com filtros - especialidade: {}, médico: {}, unidade: {}",
                 especialidadeId, medicoId, unidadeId);
 
-        List<ListaEspera> lista = listaEsperaRepository.findByFiltros(
-                StatusListaEspera.ATIVA, especialidadeId, medicoId, unidadeId);
-
-        return lista.stream()
-                .map(listaEsperaMapper::toResponseWithDetails)
-                .collect(Collectors.toList());
+        int limiteEfetivo = PaginaResponse.limiteEfetivo(limite);
+        List<ListaEsperaProjection> lista = listaEsperaRepository.buscarProjecoesPorFiltros(
+                StatusListaEspera.ATIVA, especialidadeId, medicoId, unidadeId, aposId, Limit.of(limiteEfetivo + 1));
+        return PaginaResponse.de(lista, limiteEfetivo, ListaEsperaProjection::id, listaEsperaMapper::toResponse);
     }
 
     public Optional<ListaEsperaResponse> obterProximoDaFila(Integer especialidadeId, Integer medicoId, Integer unidadeId) {
         log.info("Obtendo próximo da fila - especialidade: {}, médico: {}, unidade: {}",
                 especialidadeId, medicoId, unidadeId);
 
-        Optional<ListaEspera> proximo = listaEsperaRepository.findFirstByFiltros(
-                StatusListaEspera.ATIVA, especialidadeId, medicoId, unidadeId);
+        Optional<ListaEsperaProjection> proximo;
+        if (indiceListaEspera.isPronto() && especialidadeId != null) {
+            proximo = proximoDoIndice(especialidadeId, medicoId, unidadeId);
+        } else {
+            proximo = listaEsperaRepository.buscarProjecoesPorFiltros(
+                    StatusListaEspera.ATIVA, especialidadeId, medicoId, unidadeId, null, Limit.of(1)).stream().findFirst();
+        }
 
-        return proximo.map(listaEsperaMapper::toResponseWithDetails);
+        return proximo.map(listaEsperaMapper::toResponse);
+    }
+
+    // Como na seleção de candidatos da oferta: entrada do índice que já não está ATIVA no banco é
+    // descartada e a consulta ao índice se repete, até achar um registro ATIVA ou esvaziar a fila
+    private Optional<ListaEsperaProjection> proximoDoIndice(Integer especialidadeId, Integer medicoId, Integer unidadeId) {
+        while (true) {
+            Optional<Integer> candidatoId = indiceListaEspera.proximo(especialidadeId, medicoId, unidadeId);
+            if (candidatoId.isEmpty()) {
+                return Optional.empty();
+            }
+
+            Optional<ListaEsperaProjection> candidato = listaEsperaRepository.buscarProjecaoPorId(candidatoId.get())
+                    .filter(projecao -> projecao.status() == StatusListaEspera.ATIVA);
+            if (candidato.isPresent()) {
+                return candidato;
+            }
+            log.warn("Entrada obsoleta no índice da lista de espera descartada. ID: {}", candidatoId.get());
+            indiceListaEspera.descartar(candidatoId.get());
+        }
     }
 
     @Transactional
@@ -103,20 +139,38 @@ public class ListaEsperaService {
 
         listaEspera.setStatus(StatusListaEspera.CANCELADA);
         listaEsperaRepository.save(listaEspera);
+        indiceListaEspera.remover(id);
         log.info("Registro removido da lista de espera. ID: {}", id);
     }
 
     public ListaEsperaResponse buscarPorId(Integer id) {
         log.info("Buscando lista de espera por ID: {}", id);
-        ListaEspera listaEspera = listaEsperaRepository.findById(id)
+        return listaEsperaRepository.buscarProjecaoPorId(id)
+                .map(listaEsperaMapper::toResponse)
                 .orElseThrow(() -> new IllegalArgumentException("Registro não encontrado na lista de espera com ID: " + id));
-        return listaEsperaMapper.toResponseWithDetails(listaEspera);
     }
 
-    public List<ListaEsperaResponse> listarTodos() {
+    public PaginaResponse<ListaEsperaResponse> listarTodos(Integer aposId, Integer limite) {
         log.info("Listando todos os registros da lista de espera");
-        return listaEsperaRepository.findAll().stream()
-                .map(listaEsperaMapper::toResponseWithDetails)
-                .collect(Collectors.toList());
+        int limiteEfetivo = PaginaResponse.limiteEfetivo(limite);
+        List<ListaEsperaProjection> registros = listaEsperaRepository.buscarPagina(
+                aposId != null ? aposId : 0, Limit.of(limiteEfetivo + 1));
+        return PaginaResponse.de(registros, limiteEfetivo, ListaEsperaProjection::id, listaEsperaMapper::toResponse);
+    }
+
+    // Exporta todos os registros em streaming; as projeções não entram no contexto de persistência
+    @Transactional(readOnly = true)
+    public long exportar(Consumer<ListaEsperaResponse> consumidor) {
+        log.info("Exportando todos os registros da lista de espera");
+        long total = 0;
+        try (Stream<ListaEsperaProjection> registros = listaEsperaRepository.streamTodos()) {
+            Iterator<ListaEsperaProjection> iterator = registros.iterator();
+            while (iterator.hasNext()) {
+                consumidor.accept(listaEsperaMapper.toResponse(iterator.next()));
+                total++;
+            }
+        }
+        log.info("Exportação concluída: {} registros da lista de espera", total);
+        return total;
     }
 }
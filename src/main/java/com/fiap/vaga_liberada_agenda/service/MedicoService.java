@@ -1,10 +1,10 @@
 package com.fiap.vaga_liberada_agenda.service;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.EspecialidadeReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection;
 import com.fiap.vaga_liberada_agenda.dto.request.MedicoRequest;
 import com.fiap.vaga_liberada_agenda.dto.response.MedicoResponse;
-import com.fiap.vaga_liberada_agenda.entity.Especialidade;
 import com.fiap.vaga_liberada_agenda.entity.Medico;
-import com.fiap.vaga_liberada_agenda.entity.UnidadeSaude;
 import com.fiap.vaga_liberada_agenda.mapper.MedicoMapper;
 import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
 import com.fiap.vaga_liberada_agenda.repository.EspecialidadeRepository;
@@ -28,6 +28,7 @@ public class MedicoService {
     private final MedicoRepository medicoRepository;
     private final EspecialidadeRepository especialidadeRepository;
     private final UnidadeSaudeRepository unidadeSaudeRepository;
+    private final CacheReferenciaService cacheReferenciaService;
     private final MedicoMapper medicoMapper;
     private final ConsultaRepository consultaRepository;
 
@@ -39,21 +40,21 @@ public class MedicoService {
             throw new IllegalArgumentException("CRM já cadastrado: " + request.getCrm());
         }
 
-        Especialidade especialidade = especialidadeRepository.findById(request.getEspecialidadeId())
+        EspecialidadeReferenciaProjection especialidade = cacheReferenciaService.buscarEspecialidade(request.getEspecialidadeId())
                 .orElseThrow(() -> new IllegalArgumentException("Especialidade não encontrada com ID: " + request.getEspecialidadeId()));
 
-        UnidadeSaude unidade = unidadeSaudeRepository.findById(request.getUnidadeId())
+        UnidadeReferenciaProjection unidade = cacheReferenciaService.buscarUnidade(request.getUnidadeId())
                 .orElseThrow(() -> new IllegalArgumentException("Unidade de Saúde não encontrada com ID: " + request.getUnidadeId()));
 
         Medico medico = medicoMapper.toEntity(request);
-        medico.setEspecialidade(especialidade);
-        medico.setUnidade(unidade);
+        medico.setEspecialidade(especialidadeRepository.getReferenceById(especialidade.id()));
+        medico.setUnidade(unidadeSaudeRepository.getReferenceById(unidade.id()));
         medico.setAtivo(request.getAtivo() != null ? request.getAtivo() : true);
 
         Medico medicoSalvo = medicoRepository.save(medico);
         log.info("Médico criado com sucesso. ID: {}", medicoSalvo.getId());
 
-        return medicoMapper.toResponse(medicoSalvo);
+        return medicoMapper.toResponse(medicoSalvo, especialidade, unidade);
     }
 
     public MedicoResponse buscarPorId(Integer id) {
@@ -110,23 +111,24 @@ public class MedicoService {
             }
         }
 
-        Especialidade especialidade = especialidadeRepository.findById(request.getEspecialidadeId())
+        EspecialidadeReferenciaProjection especialidade = cacheReferenciaService.buscarEspecialidade(request.getEspecialidadeId())
                 .orElseThrow(() -> new IllegalArgumentException("Especialidade não encontrada com ID: " + request.getEspecialidadeId()));
 
-        UnidadeSaude unidade = unidadeSaudeRepository.findById(request.getUnidadeId())
+        UnidadeReferenciaProjection unidade = cacheReferenciaService.buscarUnidade(request.getUnidadeId())
                 .orElseThrow(() -> new IllegalArgumentException("Unidade de Saúde não encontrada com ID: " + request.getUnidadeId()));
 
         medicoMapper.updateEntityFromRequest(request, medico);
-        medico.setEspecialidade(especialidade);
-        medico.setUnidade(unidade);
+        medico.setEspecialidade(especialidadeRepository.getReferenceById(especialidade.id()));
+        medico.setUnidade(unidadeSaudeRepository.getReferenceById(unidade.id()));
         if (request.getAtivo() != null) {
             medico.setAtivo(request.getAtivo());
         }
 
         Medico medicoAtualizado = medicoRepository.save(medico);
+        cacheReferenciaService.invalidarMedico(id);
         log.info("Médico atualizado com sucesso. ID: {}", medicoAtualizado.getId());
 
-        return medicoMapper.toResponse(medicoAtualizado);
+        return medicoMapper.toResponse(medicoAtualizado, especialidade, unidade);
     }
 
     @Transactional
@@ -136,6 +138,7 @@ public class MedicoService {
                 .orElseThrow(() -> new IllegalArgumentException("Médico não encontrado com ID: " + id));
         medico.setAtivo(false);
         medicoRepository.save(medico);
+        cacheReferenciaService.invalidarMedico(id);
         log.info("Médico desativado com sucesso. ID: {}", id);
     }
 
@@ -146,6 +149,7 @@ public class MedicoService {
                 .orElseThrow(() -> new IllegalArgumentException("Médico não encontrado com ID: " + id));
         medico.setAtivo(true);
         medicoRepository.save(medico);
+        cacheReferenciaService.invalidarMedico(id);
         log.info("Médico ativado com sucesso. ID: {}", id);
     }
 
@@ -162,6 +166,7 @@ public class MedicoService {
         }
         
         medicoRepository.deleteById(id);
+        cacheReferenciaService.invalidarMedico(id);
         log.info("Médico deletado com sucesso. ID: {}", id);
     }
 }
@@ -0,0 +1,138 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.config.EventosConfig;
+import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
+import com.fiap.vaga_liberada_agenda.event.OfertaExpiradaEvent;
+import com.fiap.vaga_liberada_agenda.event.OfertaRevogadaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaAceitaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaLiberadaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaOferecidaEvent;
+import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
+import com.fiap.vaga_liberada_agenda.repository.ListaEsperaRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Métricas do fluxo de liberação de vagas: duração de cada operação ({@code agenda.vaga.operacao},
+ * por operação e exceção), tempo entre a liberação da vaga e a oferta a um paciente da fila
+ * ({@code agenda.vaga.tempo-ate-oferta}) e até o aceite ({@code agenda.vaga.tempo-ate-reocupacao}),
+ * por especialidade, e o tamanho da lista de espera por status ({@code agenda.lista-espera.tamanho}).
+ * Os tempos e a contagem de transições ({@code agenda.vaga.eventos}) vêm dos eventos de domínio,
+ * consumidos após o commit no executor de eventos.
+ */
+@Component
+public class MetricasLiberacaoVaga {
+
+    static final String OPERACAO_LIBERAR = "liberar";
+    static final String OPERACAO_OFERECER = "oferecer";
+    static final String OPERACAO_ACEITAR = "aceitar";
+    static final String OPERACAO_TIMEOUT = "timeout";
+    private static final String SEM_EXCECAO = "nenhuma";
+
+    private final MeterRegistry meterRegistry;
+    private final ConsultaRepository consultaRepository;
+
+    public MetricasLiberacaoVaga(MeterRegistry meterRegistry, ListaEsperaRepository listaEsperaRepository,
+                                 ConsultaRepository consultaRepository) {
+        this.meterRegistry = meterRegistry;
+        this.consultaRepository = consultaRepository;
+        // Lidos a cada coleta: COUNT pelo prefixo status de idx_lista_espera_fila
+        for (StatusListaEspera status : List.of(StatusListaEspera.ATIVA, StatusListaEspera.AGUARDANDO_RESPOSTA)) {
+            Gauge.builder("agenda.lista-espera.tamanho", listaEsperaRepository, repositorio -> repositorio.countByStatus(status))
+                    .tag("status", status.name())
+                    .description("Registros da lista de espera no status")
+                    .register(meterRegistry);
+        }
+    }
+
+    public void medir(String operacao, Runnable corpo) {
+        medir(operacao, () -> {
+            corpo.run();
+            return null;
+        });
+    }
+
+    public <T> T medir(String operacao, Supplier<T> corpo) {
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        String excecao = SEM_EXCECAO;
+        try {
+            return corpo.get();
+        } catch (RuntimeException e) {
+            excecao = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            amostra.stop(Timer.builder("agenda.vaga.operacao")
+                    .tag("operacao", operacao)
+                    .tag("excecao", excecao)
+                    .register(meterRegistry));
+        }
+    }
+
+    @Async(EventosConfig.EXECUTOR_EVENTOS)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoLiberarVaga(VagaLiberadaEvent evento) {
+        contarEvento("liberada", evento.especialidadeId());
+    }
+
+    @Async(EventosConfig.EXECUTOR_EVENTOS)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoOferecerVaga(VagaOferecidaEvent evento) {
+        contarEvento("oferecida", evento.especialidadeId());
+        registrarOferta(evento.especialidadeId(), evento.liberadaEm(), evento.oferecidaEm());
+    }
+
+    // O início da medição é lido aqui, fora da transação do aceite
+    @Async(EventosConfig.EXECUTOR_EVENTOS)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoAceitarVaga(VagaAceitaEvent evento) {
+        contarEvento("aceita", evento.especialidadeId());
+        consultaRepository.buscarLiberadaEm(evento.consultaId()).ifPresent(liberadaEm ->
+                registrarReocupacao(evento.especialidadeId(), liberadaEm, evento.aceitaEm()));
+    }
+
+    @Async(EventosConfig.EXECUTOR_EVENTOS)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoExpirarOferta(OfertaExpiradaEvent evento) {
+        contarEvento("oferta-expirada", evento.especialidadeId());
+    }
+
+    @Async(EventosConfig.EXECUTOR_EVENTOS)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoRevogarOferta(OfertaRevogadaEvent evento) {
+        contarEvento("oferta-revogada", evento.especialidadeId());
+    }
+
+    // Da liberação (desistência, cancelamento ou prazo vencido) até a notificação de um paciente da fila
+    public void registrarOferta(Integer especialidadeId, LocalDateTime liberadaEm, LocalDateTime oferecidaEm) {
+        registrarDesdeLiberacao("agenda.vaga.tempo-ate-oferta", especialidadeId, liberadaEm, oferecidaEm);
+    }
+
+    // Da liberação até o aceite da vaga por um paciente da fila (time-to-refill)
+    public void registrarReocupacao(Integer especialidadeId, LocalDateTime liberadaEm, LocalDateTime aceitaEm) {
+        registrarDesdeLiberacao("agenda.vaga.tempo-ate-reocupacao", especialidadeId, liberadaEm, aceitaEm);
+    }
+
+    private void contarEvento(String evento, Integer especialidadeId) {
+        meterRegistry.counter("agenda.vaga.eventos", "evento", evento, "especialidade", String.valueOf(especialidadeId)).increment();
+    }
+
+    private void registrarDesdeLiberacao(String nome, Integer especialidadeId, LocalDateTime liberadaEm, LocalDateTime instante) {
+        // Consultas liberadas antes da coluna liberada_em existir não têm o início da medição
+        if (liberadaEm == null || instante.isBefore(liberadaEm)) {
+            return;
+        }
+        Timer.builder(nome)
+                .tag("especialidade", String.valueOf(especialidadeId))
+                .register(meterRegistry)
+                .record(Duration.between(liberadaEm, instante));
+    }
+}
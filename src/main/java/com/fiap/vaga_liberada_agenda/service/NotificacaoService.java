@@ -1,21 +1,100 @@
 package com.fiap.vaga_liberada_agenda.service;
 
-import io.awspring.cloud.sqs.operations.SqsTemplate;
+import com.fiap.vaga_liberada_agenda.dto.notificacao.MensagemNotificacao;
+import com.fiap.vaga_liberada_agenda.entity.Notificacao;
+import com.fiap.vaga_liberada_agenda.entity.StatusEnvioNotificacao;
+import com.fiap.vaga_liberada_agenda.event.NotificacaoRegistradaEvent;
+import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
+import com.fiap.vaga_liberada_agenda.repository.NotificacaoRepository;
+import com.fiap.vaga_liberada_agenda.repository.PacienteRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NotificacaoService {
 
-    private final SqsTemplate sqsTemplate;
-    private static final String QUEUE_NAME = "notificacao-agenda-queue";
+    private final PublicadorNotificacaoSqs publicador;
+    private final NotificacaoRepository notificacaoRepository;
+    private final PacienteRepository pacienteRepository;
+    private final ConsultaRepository consultaRepository;
+    private final CodificadorMensagemNotificacao codificador;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${agenda.notificacao.outbox.habilitado:true}")
+    private boolean outboxHabilitado = true;
+
+    public CompletableFuture<Void> enviar(MensagemNotificacao mensagem) {
+        return enviar(mensagem.pacienteId(), mensagem.consultaId(), codificador.codificar(mensagem));
+    }
+
+    // Com o outbox habilitado, a mensagem é gravada em notificacoes na transação do chamador e o
+    // RelayNotificacaoScheduler faz o envio ao SQS assim que a transação confirma (NotificacaoRegistradaEvent):
+    // o futuro conclui assim que o registro é aceito.
+    // Sem outbox, a mensagem é enfileirada no publicador (após o commit, se houver transação) e o
+    // futuro conclui com a confirmação do SQS.
+    // O timer agenda.notificacao.envio mede só a entrega ao outbox ou à fila do publicador; a
+    // confirmação do SQS fica em agenda.notificacao.latencia
+    public CompletableFuture<Void> enviar(Integer pacienteId, Integer consultaId, String mensagem) {
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        try {
+            return registrar(pacienteId, consultaId, mensagem);
+        } finally {
+            amostra.stop(meterRegistry.timer("agenda.notificacao.envio", "destino", outboxHabilitado ? "outbox" : "fila"));
+        }
+    }
+
+    private CompletableFuture<Void> registrar(Integer pacienteId, Integer consultaId, String mensagem) {
+        if (outboxHabilitado) {
+            // Referências sem SELECT: só as chaves estrangeiras são gravadas
+            Notificacao notificacao = new Notificacao();
+            notificacao.setPaciente(pacienteId != null ? pacienteRepository.getReferenceById(pacienteId) : null);
+            notificacao.setConsulta(consultaId != null ? consultaRepository.getReferenceById(consultaId) : null);
+            notificacao.setMensagem(mensagem);
+            notificacao.setStatusEnvio(StatusEnvioNotificacao.PENDENTE);
+            notificacaoRepository.save(notificacao);
+            eventPublisher.publishEvent(new NotificacaoRegistradaEvent(pacienteId, consultaId));
+            log.debug("Notificação gravada no outbox para paciente ID: {}", pacienteId);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            log.debug("Enfileirando mensagem para fila SQS: {}", PublicadorNotificacaoSqs.QUEUE_NAME);
+            return publicador.publicar(mensagem);
+        }
+
+        CompletableFuture<Void> resultado = new CompletableFuture<>();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                log.debug("Enfileirando mensagem para fila SQS após commit: {}", PublicadorNotificacaoSqs.QUEUE_NAME);
+                publicador.publicar(mensagem).whenComplete((ok, erro) -> {
+                    if (erro != null) {
+                        resultado.completeExceptionally(erro);
+                    } else {
+                        resultado.complete(null);
+                    }
+                });
+            }
 
-    public void enviar(String mensagem) {
-        log.info("Enviando mensagem para fila SQS: {}", QUEUE_NAME);
-        sqsTemplate.send(to -> to.queue(QUEUE_NAME).payload(mensagem));
-        log.info("Mensagem enviada com sucesso");
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    resultado.cancel(false);
+                }
+            }
+        });
+        return resultado;
     }
 }
@@ -3,6 +3,7 @@ package com.fiap.vaga_liberada_agenda.service;
 import com.fiap.vaga_liberada_agenda.dto.request.PacienteRequest;
 import com.fiap.vaga_liberada_agenda.dto.response.PacienteResponse;
 import com.fiap.vaga_liberada_agenda.entity.Paciente;
+import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
 import com.fiap.vaga_liberada_agenda.mapper.PacienteMapper;
 import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
 import com.fiap.vaga_liberada_agenda.repository.ListaEsperaRepository;
@@ -14,7 +15,9 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,6 +29,7 @@ public class PacienteService {
     private final PacienteMapper pacienteMapper;
     private final ConsultaRepository consultaRepository;
     private final ListaEsperaRepository listaEsperaRepository;
+    private final IndiceListaEspera indiceListaEspera;
 
     @Transactional
     public PacienteResponse criar(PacienteRequest request) {
@@ -95,11 +99,21 @@ public class PacienteService {
             }
         }
 
+        BigDecimal latitudeAnterior = paciente.getLatitude();
+        BigDecimal longitudeAnterior = paciente.getLongitude();
+
         pacienteMapper.updateEntityFromRequest(request, paciente);
 
         Paciente pacienteAtualizado = pacienteRepository.save(paciente);
         log.info("Paciente atualizado com sucesso. ID: {}", pacienteAtualizado.getId());
 
+        // O índice guarda as coordenadas de cada entrada ATIVA: sem isto a busca por distância usaria o endereço antigo
+        if (!Objects.equals(latitudeAnterior, pacienteAtualizado.getLatitude())
+                || !Objects.equals(longitudeAnterior, pacienteAtualizado.getLongitude())) {
+            listaEsperaRepository.findByPacienteIdAndStatus(id, StatusListaEspera.ATIVA)
+                    .forEach(indiceListaEspera::reindexar);
+        }
+
         return pacienteMapper.toResponse(pacienteAtualizado);
     }
 
@@ -0,0 +1,238 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import io.awspring.cloud.sqs.operations.SendResult;
+import io.awspring.cloud.sqs.operations.SqsTemplate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publicador assíncrono de notificações: as mensagens entram em uma fila limitada e são enviadas
+ * em lotes de até 10 (limite do SendMessageBatch do SQS), quando o lote enche ou o tempo de espera
+ * (linger) vence. Falhas são reenviadas com backoff exponencial e jitter; com a fila cheia o chamador
+ * espera até o timeout de enfileiramento (backpressure) e, depois disso, recebe o futuro com erro.
+ */
+@Component
+@Slf4j
+public class PublicadorNotificacaoSqs {
+
+    static final String QUEUE_NAME = "notificacao-agenda-queue";
+    static final int TAMANHO_MAXIMO_LOTE = 10;
+
+    private final SqsTemplate sqsTemplate;
+    private final BlockingQueue<MensagemPendente> fila;
+    private final Duration linger;
+    private final Duration timeoutEnfileiramento;
+    private final int maxTentativas;
+    private final Duration backoffBase;
+    private final ScheduledExecutorService reenvios = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "notificacao-sqs-reenvio");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Timer latencia;
+    private final DistributionSummary tamanhoLote;
+    private final Counter enviadas;
+    private final Counter falhas;
+    private final Counter rejeitadas;
+    private final Counter reenviadas;
+
+    private volatile boolean ativo = true;
+    private Thread despachante;
+
+    public PublicadorNotificacaoSqs(
+            SqsTemplate sqsTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${agenda.notificacao.fila.capacidade:10000}") int capacidade,
+            @Value("${agenda.notificacao.lote.linger:PT0.05S}") Duration linger,
+            @Value("${agenda.notificacao.enfileiramento.timeout:PT1S}") Duration timeoutEnfileiramento,
+            @Value("${agenda.notificacao.reenvio.max-tentativas:5}") int maxTentativas,
+            @Value("${agenda.notificacao.reenvio.backoff:PT0.2S}") Duration backoffBase) {
+        this.sqsTemplate = sqsTemplate;
+        this.fila = new ArrayBlockingQueue<>(capacidade);
+        this.linger = linger;
+        this.timeoutEnfileiramento = timeoutEnfileiramento;
+        this.maxTentativas = maxTentativas;
+        this.backoffBase = backoffBase;
+
+        Gauge.builder("agenda.notificacao.fila.tamanho", fila, BlockingQueue::size).register(meterRegistry);
+        this.latencia = Timer.builder("agenda.notificacao.latencia")
+                .description("Tempo entre o enfileiramento e a confirmação do envio ao SQS")
+                .register(meterRegistry);
+        this.tamanhoLote = DistributionSummary.builder("agenda.notificacao.lote.tamanho").register(meterRegistry);
+        this.enviadas = meterRegistry.counter("agenda.notificacao.mensagens", "resultado", "enviada");
+        this.falhas = meterRegistry.counter("agenda.notificacao.mensagens", "resultado", "falha");
+        this.rejeitadas = meterRegistry.counter("agenda.notificacao.mensagens", "resultado", "rejeitada");
+        this.reenviadas = meterRegistry.counter("agenda.notificacao.reenvios");
+    }
+
+    @PostConstruct
+    public synchronized void iniciar() {
+        if (despachante != null) {
+            return;
+        }
+        despachante = new Thread(this::despachar, "notificacao-sqs-despachante");
+        despachante.setDaemon(true);
+        despachante.start();
+    }
+
+    @PreDestroy
+    public synchronized void parar() {
+        ativo = false;
+        if (despachante != null) {
+            despachante.interrupt();
+            despachante = null;
+        }
+        // Envia o que ainda estiver na fila antes de encerrar
+        List<MensagemPendente> restantes = new ArrayList<>();
+        fila.drainTo(restantes);
+        for (int i = 0; i < restantes.size(); i += TAMANHO_MAXIMO_LOTE) {
+            publicarLote(restantes.subList(i, Math.min(i + TAMANHO_MAXIMO_LOTE, restantes.size())), 1);
+        }
+        reenvios.shutdown();
+    }
+
+    public CompletableFuture<Void> publicar(String mensagem) {
+        MensagemPendente pendente = new MensagemPendente(mensagem, System.nanoTime(), new CompletableFuture<>());
+        try {
+            if (!fila.offer(pendente, timeoutEnfileiramento.toNanos(), TimeUnit.NANOSECONDS)) {
+                rejeitadas.increment();
+                pendente.resultado().completeExceptionally(
+                        new RejectedExecutionException("Fila de notificações cheia. Mensagem descartada"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejeitadas.increment();
+            pendente.resultado().completeExceptionally(e);
+        }
+        return pendente.resultado();
+    }
+
+    public int tamanhoFila() {
+        return fila.size();
+    }
+
+    private void despachar() {
+        while (ativo && !Thread.currentThread().isInterrupted()) {
+            try {
+                MensagemPendente primeira = fila.poll(1, TimeUnit.SECONDS);
+                if (primeira == null) {
+                    continue;
+                }
+
+                List<MensagemPendente> lote = new ArrayList<>(TAMANHO_MAXIMO_LOTE);
+                lote.add(primeira);
+                long limite = System.nanoTime() + linger.toNanos();
+                while (lote.size() < TAMANHO_MAXIMO_LOTE) {
+                    MensagemPendente proxima = fila.poll(limite - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (proxima == null) {
+                        break;
+                    }
+                    lote.add(proxima);
+                }
+
+                publicarLote(lote, 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void publicarLote(List<MensagemPendente> lote, int tentativa) {
+        tamanhoLote.record(lote.size());
+
+        Map<UUID, MensagemPendente> porId = new HashMap<>();
+        List<Message<String>> mensagens = new ArrayList<>(lote.size());
+        for (MensagemPendente pendente : lote) {
+            Message<String> mensagem = MessageBuilder.withPayload(pendente.mensagem()).build();
+            porId.put(mensagem.getHeaders().getId(), pendente);
+            mensagens.add(mensagem);
+        }
+
+        CompletableFuture<SendResult.Batch<String>> envio;
+        try {
+            envio = sqsTemplate.sendManyAsync(QUEUE_NAME, mensagens);
+        } catch (Exception e) {
+            envio = CompletableFuture.failedFuture(e);
+        }
+        if (envio == null) {
+            envio = CompletableFuture.failedFuture(new IllegalStateException("SqsTemplate não retornou resultado do envio"));
+        }
+
+        envio.whenComplete((resultado, erro) -> {
+            if (erro != null) {
+                log.warn("Falha ao enviar lote de {} mensagens para fila SQS {} (tentativa {}): {}",
+                        lote.size(), QUEUE_NAME, tentativa, erro.getMessage());
+                reenviar(lote, tentativa, erro);
+                return;
+            }
+
+            List<MensagemPendente> falhadas = new ArrayList<>();
+            for (SendResult.Failed<String> falha : resultado.failed()) {
+                MensagemPendente pendente = porId.remove(falha.message().getHeaders().getId());
+                if (pendente != null) {
+                    falhadas.add(pendente);
+                }
+            }
+            porId.values().forEach(this::concluir);
+
+            if (!falhadas.isEmpty()) {
+                log.warn("{} mensagens do lote rejeitadas pelo SQS (tentativa {})", falhadas.size(), tentativa);
+                reenviar(falhadas, tentativa, new IllegalStateException("Mensagens rejeitadas pelo SQS"));
+            }
+        });
+    }
+
+    private void reenviar(List<MensagemPendente> lote, int tentativa, Throwable erro) {
+        if (tentativa >= maxTentativas || !ativo) {
+            log.error("Descartando {} mensagens após {} tentativas de envio para fila SQS {}", lote.size(), tentativa, QUEUE_NAME);
+            falhas.increment(lote.size());
+            lote.forEach(pendente -> pendente.resultado().completeExceptionally(erro));
+            return;
+        }
+
+        reenviadas.increment(lote.size());
+        long atrasoMs = calcularAtraso(tentativa);
+        reenvios.schedule(() -> publicarLote(lote, tentativa + 1), atrasoMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Backoff exponencial com jitter de ±50% para não sincronizar reenvios
+    long calcularAtraso(int tentativa) {
+        long base = backoffBase.toMillis() * (1L << Math.min(tentativa - 1, 10));
+        return (long) (base * ThreadLocalRandom.current().nextDouble(0.5, 1.5));
+    }
+
+    private void concluir(MensagemPendente pendente) {
+        enviadas.increment();
+        latencia.record(System.nanoTime() - pendente.enfileiradaEmNanos(), TimeUnit.NANOSECONDS);
+        pendente.resultado().complete(null);
+    }
+
+    record MensagemPendente(String mensagem, long enfileiradaEmNanos, CompletableFuture<Void> resultado) {
+    }
+}
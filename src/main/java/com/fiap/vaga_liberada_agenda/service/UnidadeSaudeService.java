@@ -26,6 +26,7 @@ public class UnidadeSaudeService {
     private final UnidadeSaudeMapper unidadeSaudeMapper;
     private final MedicoRepository medicoRepository;
     private final ConsultaRepository consultaRepository;
+    private final CacheReferenciaService cacheReferenciaService;
 
     @Transactional
     public UnidadeSaudeResponse criar(UnidadeSaudeRequest request) {
@@ -98,6 +99,7 @@ public class UnidadeSaudeService {
         unidadeSaudeMapper.updateEntityFromRequest(request, unidadeSaude);
 
         UnidadeSaude unidadeAtualizada = unidadeSaudeRepository.save(unidadeSaude);
+        cacheReferenciaService.invalidarUnidade(id);
         log.info("Unidade de Saúde atualizada com sucesso. ID: {}", unidadeAtualizada.getId());
 
         return unidadeSaudeMapper.toResponse(unidadeAtualizada);
@@ -121,6 +123,7 @@ public class UnidadeSaudeService {
         }
         
         unidadeSaudeRepository.deleteById(id);
+        cacheReferenciaService.invalidarUnidade(id);
         log.info("Unidade de Saúde deletada com sucesso. ID: {}", id);
     }
 }
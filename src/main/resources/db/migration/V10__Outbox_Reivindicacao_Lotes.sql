@@ -0,0 +1,14 @@
+-- Migration V10: Reivindicação de lotes do outbox
+-- O relay deixa de segurar os locks (e a conexão) enquanto espera o SQS: numa transação curta marca o
+-- lote como ENVIANDO e o reserva até proxima_tentativa_em; envia fora da transação e grava o resultado
+-- numa segunda transação curta. Se a instância cair no meio, o lote volta a ser elegível quando a
+-- reserva vence.
+
+ALTER TABLE notificacoes
+    ADD COLUMN proxima_tentativa_em TIMESTAMP NULL DEFAULT NULL;
+
+ALTER TABLE notificacoes
+    DROP CONSTRAINT chk_status_envio_notificacao;
+
+ALTER TABLE notificacoes
+    ADD CONSTRAINT chk_status_envio_notificacao CHECK (status_envio IN ('PENDENTE', 'ENVIANDO', 'ENVIADA', 'FALHA'));
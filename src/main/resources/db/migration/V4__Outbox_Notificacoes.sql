@@ -0,0 +1,28 @@
+-- Migration V4: Outbox transacional de notificações
+-- As mensagens passam a ser gravadas em notificacoes na mesma transação de negócio e
+-- um relay as envia ao SQS em lotes (SELECT ... FOR UPDATE SKIP LOCKED).
+
+-- 1. Campos de controle de envio (registros existentes já foram enviados)
+ALTER TABLE notificacoes
+    ADD COLUMN status_envio VARCHAR(20) NOT NULL DEFAULT 'ENVIADA';
+
+ALTER TABLE notificacoes
+    ADD COLUMN tentativas INT NOT NULL DEFAULT 0;
+
+ALTER TABLE notificacoes
+    ADD COLUMN ultimo_erro VARCHAR(500) NULL;
+
+ALTER TABLE notificacoes
+    ADD COLUMN criada_em TIMESTAMP DEFAULT CURRENT_TIMESTAMP;
+
+UPDATE notificacoes SET criada_em = enviada_em;
+
+-- 2. enviada_em passa a ser preenchida pelo relay no momento do envio
+ALTER TABLE notificacoes
+    MODIFY COLUMN enviada_em TIMESTAMP NULL DEFAULT NULL;
+
+ALTER TABLE notificacoes
+    ADD CONSTRAINT chk_status_envio_notificacao CHECK (status_envio IN ('PENDENTE', 'ENVIADA', 'FALHA'));
+
+-- 3. Índice para o relay buscar pendentes em ordem de inserção
+CREATE INDEX idx_notificacoes_status_envio ON notificacoes(status_envio, id);
@@ -0,0 +1,9 @@
+-- Migration V5: Controle de concorrência otimista
+-- Coluna de versão (@Version) em consultas e lista_espera: escritas concorrentes a partir de
+-- leituras desatualizadas falham em vez de sobrescrever a alteração vencedora.
+
+ALTER TABLE consultas
+    ADD COLUMN versao BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE lista_espera
+    ADD COLUMN versao BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,13 @@
+-- Migration V6: Garantia de agendamento único por médico e horário
+-- slot_ativo repete data_hora enquanto a consulta ocupa o horário (AGENDADA ou PENDENTE_CONFIRMACAO)
+-- e fica nulo nos demais status. O índice único em (medico_id, slot_ativo) faz o banco rejeitar o
+-- segundo agendamento concorrente sem lock de tabela; valores nulos não conflitam entre si. A coluna
+-- é VIRTUAL (o índice guarda o valor calculado), com a mesma definição do mapeamento em Consulta.
+-- Duplicidades já existentes precisam ser resolvidas antes de aplicar esta migration.
+
+ALTER TABLE consultas
+    ADD COLUMN slot_ativo TIMESTAMP GENERATED ALWAYS AS (
+        CASE WHEN status IN ('AGENDADA', 'PENDENTE_CONFIRMACAO') THEN data_hora END
+    );
+
+CREATE UNIQUE INDEX uk_consultas_medico_slot_ativo ON consultas(medico_id, slot_ativo);
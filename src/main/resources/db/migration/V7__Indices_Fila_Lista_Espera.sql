@@ -0,0 +1,19 @@
+-- Migration V7: Índices compostos da fila de espera
+-- As buscas da fila filtram por igualdade (status, especialidade, médico, unidade) e ordenam por
+-- prioridade DESC, data_cadastro ASC, id ASC. Com as colunas de ordenação no fim do índice o
+-- "próximo da fila" vira um range scan que para no primeiro registro (LIMIT 1), sem filesort.
+
+-- 1. Fila por status apenas (listagem sem filtros)
+CREATE INDEX idx_lista_espera_fila
+    ON lista_espera(status, prioridade DESC, data_cadastro, id);
+
+-- 2. Fila por especialidade (filtros parciais de médico/unidade são avaliados durante o scan)
+CREATE INDEX idx_lista_espera_fila_especialidade
+    ON lista_espera(status, especialidade_id, prioridade DESC, data_cadastro, id);
+
+-- 3. Fila pela chave completa (especialidade, médico, unidade), usada ao liberar uma vaga
+CREATE INDEX idx_lista_espera_fila_chave
+    ON lista_espera(status, especialidade_id, medico_id, unidade_id, prioridade DESC, data_cadastro, id);
+
+-- 4. idx_lista_espera_status passa a ser prefixo redundante de idx_lista_espera_fila
+DROP INDEX idx_lista_espera_status ON lista_espera;
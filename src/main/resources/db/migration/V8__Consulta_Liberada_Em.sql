@@ -0,0 +1,5 @@
+-- Migration V8: Instante em que a vaga da consulta foi liberada (desistência, cancelamento ou prazo de
+-- confirmação vencido). Base das métricas de tempo até a oferta e até a reocupação da vaga.
+
+ALTER TABLE consultas
+    ADD COLUMN liberada_em TIMESTAMP NULL;
@@ -0,0 +1,12 @@
+-- Migration V9: Oferta da vaga a vários pacientes da fila ao mesmo tempo (agenda.oferta.fan-out)
+-- A oferta passa a ser registrada só em cada registro da lista de espera (consulta_oferecida_id e
+-- data_oferta); consultas.vaga_oferecida_para_lista_espera_id comportava um único destinatário.
+
+ALTER TABLE consultas
+    DROP FOREIGN KEY fk_consulta_lista_espera;
+
+ALTER TABLE consultas
+    DROP COLUMN vaga_oferecida_para_lista_espera_id;
+
+-- Ofertas pendentes de uma consulta: revogação das concorrentes no aceite e expiração no timeout
+CREATE INDEX idx_lista_espera_oferta ON lista_espera(consulta_oferecida_id, status);
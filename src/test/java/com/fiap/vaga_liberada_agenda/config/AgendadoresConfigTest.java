@@ -0,0 +1,43 @@
+package com.fiap.vaga_liberada_agenda.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AgendadoresConfigTest {
+
+    @Test
+    void agendador_padrao_deveUsarThreadDePlataformaNomeadaPorJob() throws Exception {
+        Thread thread = threadDeExecucao(new AgendadoresConfig().agendadorConfirmacao());
+
+        assertThat(thread.isVirtual()).isFalse();
+        assertThat(thread.getName()).startsWith("agenda-confirmacao-");
+    }
+
+    @Test
+    void agendador_comThreadsVirtuais_deveExecutarEmThreadVirtual() throws Exception {
+        AgendadoresConfig config = new AgendadoresConfig();
+        ReflectionTestUtils.setField(config, "threadsVirtuais", true);
+
+        Thread thread = threadDeExecucao(config.agendadorLembretes());
+
+        assertThat(thread.isVirtual()).isTrue();
+        assertThat(thread.getName()).startsWith("agenda-lembretes-");
+    }
+
+    private static Thread threadDeExecucao(ThreadPoolTaskScheduler agendador) throws Exception {
+        agendador.initialize();
+        try {
+            CompletableFuture<Thread> thread = new CompletableFuture<>();
+            agendador.execute(() -> thread.complete(Thread.currentThread()));
+            return thread.get(2, TimeUnit.SECONDS);
+        } finally {
+            agendador.shutdown();
+        }
+    }
+}
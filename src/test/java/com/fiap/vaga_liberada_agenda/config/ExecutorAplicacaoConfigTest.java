@@ -0,0 +1,48 @@
+package com.fiap.vaga_liberada_agenda.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.task.SimpleAsyncTaskExecutorBuilder;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExecutorAplicacaoConfigTest {
+
+    @Test
+    void executorAplicacao_padrao_deveSerPoolDeThreadsDePlataforma() throws Exception {
+        ExecutorAplicacaoConfig config = new ExecutorAplicacaoConfig(
+                new ThreadPoolTaskExecutorBuilder().threadNamePrefix("task-"), new SimpleAsyncTaskExecutorBuilder());
+
+        AsyncTaskExecutor executor = config.applicationTaskExecutor();
+
+        assertThat(executor).isInstanceOf(ThreadPoolTaskExecutor.class);
+        ThreadPoolTaskExecutor pool = (ThreadPoolTaskExecutor) executor;
+        pool.initialize();
+        try {
+            Thread thread = pool.submit(Thread::currentThread).get(2, TimeUnit.SECONDS);
+            assertThat(thread.isVirtual()).isFalse();
+            assertThat(thread.getName()).startsWith("task-");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void executorAplicacao_comThreadsVirtuais_deveExecutarEmThreadVirtual() throws Exception {
+        ExecutorAplicacaoConfig config = new ExecutorAplicacaoConfig(
+                new ThreadPoolTaskExecutorBuilder(), new SimpleAsyncTaskExecutorBuilder().virtualThreads(true));
+        ReflectionTestUtils.setField(config, "threadsVirtuais", true);
+
+        AsyncTaskExecutor executor = config.applicationTaskExecutor();
+
+        assertThat(executor).isInstanceOf(SimpleAsyncTaskExecutor.class);
+        Thread thread = executor.submit(Thread::currentThread).get(2, TimeUnit.SECONDS);
+        assertThat(thread.isVirtual()).isTrue();
+    }
+}
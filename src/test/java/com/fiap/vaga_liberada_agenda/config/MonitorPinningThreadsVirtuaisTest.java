@@ -0,0 +1,49 @@
+package com.fiap.vaga_liberada_agenda.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MonitorPinningThreadsVirtuaisTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MonitorPinningThreadsVirtuais monitor =
+            new MonitorPinningThreadsVirtuais(meterRegistry, Duration.ofMillis(10));
+
+    @AfterEach
+    void tearDown() {
+        monitor.parar();
+    }
+
+    @Test
+    void bloqueioDentroDeSynchronized_deveSerRegistrado() throws Exception {
+        monitor.iniciar();
+        Object trava = new Object();
+        Timer pinning = meterRegistry.get("agenda.threads-virtuais.pinning").timer();
+
+        // O JFR entrega os eventos em blocos; repete o bloqueio até o primeiro chegar
+        long prazo = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+        while (pinning.count() == 0 && System.nanoTime() < prazo) {
+            Thread.ofVirtual().start(() -> {
+                synchronized (trava) {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }).join();
+            Thread.sleep(200);
+        }
+
+        assertThat(pinning.count()).isPositive();
+        assertThat(pinning.max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(10);
+    }
+}
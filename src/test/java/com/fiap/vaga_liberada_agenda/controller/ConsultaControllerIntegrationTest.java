@@ -1,8 +1,12 @@
 package com.fiap.vaga_liberada_agenda.controller;
 
+import com.fiap.vaga_liberada_agenda.dto.response.AgendamentoLoteResponse;
 import com.fiap.vaga_liberada_agenda.dto.response.ConsultaResponse;
+import com.fiap.vaga_liberada_agenda.dto.response.PaginaResponse;
 import com.fiap.vaga_liberada_agenda.entity.StatusConsulta;
+import com.fiap.vaga_liberada_agenda.exception.ConflitoException;
 import com.fiap.vaga_liberada_agenda.exception.GlobalExceptionHandler;
+import com.fiap.vaga_liberada_agenda.service.AgendamentoLoteService;
 import com.fiap.vaga_liberada_agenda.service.ConsultaService;
 import com.fiap.vaga_liberada_agenda.service.LiberacaoVagaService;
 import org.junit.jupiter.api.Test;
@@ -12,12 +16,14 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -35,6 +41,9 @@ class ConsultaControllerIntegrationTest {
     @MockBean
     private LiberacaoVagaService liberacaoVagaService;
 
+    @MockBean
+    private AgendamentoLoteService agendamentoLoteService;
+
     @Test
     void agendar_deveRetornar201() throws Exception {
         String body = "{\"pacienteId\":1,\"medicoId\":1,\"unidadeId\":1,\"dataHora\":\"2026-12-01T10:00:00\"}";
@@ -52,6 +61,35 @@ class ConsultaControllerIntegrationTest {
                 .andExpect(jsonPath("$.id").value(1));
     }
 
+    @Test
+    void agendarEmLote_deveRetornar200ComResultadoPorConsulta() throws Exception {
+        String body = "[{\"pacienteId\":1,\"medicoId\":1,\"unidadeId\":1,\"dataHora\":\"2026-12-01T10:00:00\"},"
+                + "{\"pacienteId\":1,\"medicoId\":1,\"unidadeId\":1,\"dataHora\":\"2026-12-01T10:00:00\"}]";
+        when(agendamentoLoteService.agendar(any())).thenReturn(new AgendamentoLoteResponse(2, 1, 1, List.of(
+                new AgendamentoLoteResponse.Item(0, 7, null),
+                new AgendamentoLoteResponse.Item(1, null, "Já existe uma consulta agendada para este médico no horário informado"))));
+
+        mockMvc.perform(post("/api/consultas/lote")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.agendadas").value(1))
+                .andExpect(jsonPath("$.rejeitadas").value(1))
+                .andExpect(jsonPath("$.itens[0].consultaId").value(7))
+                .andExpect(jsonPath("$.itens[1].erro").exists());
+    }
+
+    @Test
+    void agendarEmLote_acimaDoLimite_deveRetornar400() throws Exception {
+        when(agendamentoLoteService.agendar(any()))
+                .thenThrow(new IllegalArgumentException("O lote excede o limite de 20000 consultas por requisição"));
+
+        mockMvc.perform(post("/api/consultas/lote")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void buscarPorId_deveRetornar200() throws Exception {
         ConsultaResponse response = new ConsultaResponse();
@@ -67,12 +105,69 @@ class ConsultaControllerIntegrationTest {
     void listar_semFiltros_deveRetornar200() throws Exception {
         ConsultaResponse response = new ConsultaResponse();
         response.setId(1);
-        when(consultaService.listarTodas()).thenReturn(List.of(response));
+        when(consultaService.listarTodas(null, null)).thenReturn(new PaginaResponse<>(List.of(response), null));
 
         mockMvc.perform(get("/api/consultas"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$[0].id").value(1));
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(header().doesNotExist("X-Proximo-Cursor"));
+    }
+
+    @Test
+    void listar_comCursor_deveRetornarProximoCursorNoCabecalho() throws Exception {
+        ConsultaResponse response = new ConsultaResponse();
+        response.setId(20);
+        when(consultaService.listarTodas(10, 1)).thenReturn(new PaginaResponse<>(List.of(response), 20));
+
+        mockMvc.perform(get("/api/consultas").param("aposId", "10").param("limite", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(20))
+                .andExpect(header().string("X-Proximo-Cursor", "20"));
+    }
+
+    @Test
+    void listar_comLimiteInvalido_deveRetornar400() throws Exception {
+        when(consultaService.listarTodas(null, 0))
+                .thenThrow(new IllegalArgumentException("O limite da página deve ser maior que zero"));
+
+        mockMvc.perform(get("/api/consultas").param("limite", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void aceitarVaga_quandoVagaJaReivindicada_deveRetornar409() throws Exception {
+        doThrow(new ConflitoException("Esta vaga não está mais disponível"))
+                .when(liberacaoVagaService).aceitarVaga(1, 5);
+
+        mockMvc.perform(post("/api/consultas/1/aceitar-vaga").param("listaEsperaId", "5"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.mensagem").value("Esta vaga não está mais disponível"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportar_comAcceptNdjson_deveRetornarUmaConsultaPorLinha() throws Exception {
+        ConsultaResponse c1 = new ConsultaResponse();
+        c1.setId(1);
+        ConsultaResponse c2 = new ConsultaResponse();
+        c2.setId(2);
+        when(consultaService.exportar(any())).thenAnswer(inv -> {
+            java.util.function.Consumer<ConsultaResponse> consumidor = inv.getArgument(0);
+            consumidor.accept(c1);
+            consumidor.accept(c2);
+            return 2L;
+        });
+
+        MvcResult resultado = mockMvc.perform(get("/api/consultas").accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(org.hamcrest.Matchers.matchesPattern("(?s)\\{\"id\":1,.*}\n\\{\"id\":2,.*}\n")));
     }
 
     @Test
@@ -80,7 +175,7 @@ class ConsultaControllerIntegrationTest {
         ConsultaResponse response = new ConsultaResponse();
         response.setId(1);
         response.setPacienteId(1);
-        when(consultaService.listarPorPaciente(1)).thenReturn(List.of(response));
+        when(consultaService.listarPorPaciente(1, null, null)).thenReturn(new PaginaResponse<>(List.of(response), null));
 
         mockMvc.perform(get("/api/consultas").param("pacienteId", "1"))
                 .andExpect(status().isOk())
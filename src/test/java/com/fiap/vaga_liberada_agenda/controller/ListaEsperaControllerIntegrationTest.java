@@ -1,7 +1,10 @@
 package com.fiap.vaga_liberada_agenda.controller;
 
+import com.fiap.vaga_liberada_agenda.dto.response.ImportacaoListaEsperaResponse;
 import com.fiap.vaga_liberada_agenda.dto.response.ListaEsperaResponse;
+import com.fiap.vaga_liberada_agenda.dto.response.PaginaResponse;
 import com.fiap.vaga_liberada_agenda.exception.GlobalExceptionHandler;
+import com.fiap.vaga_liberada_agenda.service.ImportacaoListaEsperaService;
 import com.fiap.vaga_liberada_agenda.service.ListaEsperaService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,11 +13,14 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.List;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -29,6 +35,9 @@ class ListaEsperaControllerIntegrationTest {
     @MockBean
     private ListaEsperaService listaEsperaService;
 
+    @MockBean
+    private ImportacaoListaEsperaService importacaoListaEsperaService;
+
     @Test
     void adicionarNaLista_deveRetornar201() throws Exception {
         String body = "{\"pacienteId\":1,\"especialidadeId\":1,\"prioridade\":0}";
@@ -46,6 +55,44 @@ class ListaEsperaControllerIntegrationTest {
                 .andExpect(jsonPath("$.pacienteId").value(1));
     }
 
+    @Test
+    void importar_comNdjson_deveRetornarResultadoPorLinha() throws Exception {
+        when(importacaoListaEsperaService.importarNdjson(any())).thenReturn(new ImportacaoListaEsperaResponse(2, 1, 1, List.of(
+                new ImportacaoListaEsperaResponse.Linha(1, 30, null),
+                new ImportacaoListaEsperaResponse.Linha(2, null, "Paciente não encontrado com ID: 99"))));
+
+        mockMvc.perform(post("/api/lista-espera/importacao")
+                        .contentType("application/x-ndjson")
+                        .content("{\"pacienteId\":1,\"especialidadeId\":1}\n{\"pacienteId\":99,\"especialidadeId\":1}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importados").value(1))
+                .andExpect(jsonPath("$.linhas[0].listaEsperaId").value(30))
+                .andExpect(jsonPath("$.linhas[1].erro").value("Paciente não encontrado com ID: 99"));
+    }
+
+    @Test
+    void importar_comCsv_deveUsarLeitorCsv() throws Exception {
+        when(importacaoListaEsperaService.importarCsv(any())).thenReturn(new ImportacaoListaEsperaResponse(0, 0, 0, List.of()));
+
+        mockMvc.perform(post("/api/lista-espera/importacao")
+                        .contentType("text/csv")
+                        .content("pacienteId,especialidadeId\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(0));
+        verify(importacaoListaEsperaService, never()).importarNdjson(any());
+    }
+
+    @Test
+    void importar_comCsvSemCabecalhoValido_deveRetornar400() throws Exception {
+        when(importacaoListaEsperaService.importarCsv(any()))
+                .thenThrow(new IllegalArgumentException("O CSV deve ter as colunas pacienteId e especialidadeId"));
+
+        mockMvc.perform(post("/api/lista-espera/importacao")
+                        .contentType("text/csv")
+                        .content("x,y\n"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void buscarPorId_deveRetornar200() throws Exception {
         ListaEsperaResponse response = new ListaEsperaResponse();
@@ -61,23 +108,69 @@ class ListaEsperaControllerIntegrationTest {
     void listar_semFiltros_deveRetornar200() throws Exception {
         ListaEsperaResponse response = new ListaEsperaResponse();
         response.setId(1);
-        when(listaEsperaService.listarTodos()).thenReturn(List.of(response));
+        when(listaEsperaService.listarTodos(null, null)).thenReturn(new PaginaResponse<>(List.of(response), null));
 
         mockMvc.perform(get("/api/lista-espera"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$[0].id").value(1));
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(header().doesNotExist("X-Proximo-Cursor"));
+    }
+
+    @Test
+    void listar_comCursor_deveRetornarProximoCursorNoCabecalho() throws Exception {
+        ListaEsperaResponse response = new ListaEsperaResponse();
+        response.setId(8);
+        when(listaEsperaService.listarTodos(5, 1)).thenReturn(new PaginaResponse<>(List.of(response), 8));
+
+        mockMvc.perform(get("/api/lista-espera").param("aposId", "5").param("limite", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Proximo-Cursor", "8"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportar_comAcceptNdjson_deveRetornarUmRegistroPorLinha() throws Exception {
+        ListaEsperaResponse registro = new ListaEsperaResponse();
+        registro.setId(3);
+        when(listaEsperaService.exportar(any())).thenAnswer(inv -> {
+            ((java.util.function.Consumer<ListaEsperaResponse>) inv.getArgument(0)).accept(registro);
+            return 1L;
+        });
+
+        MvcResult resultado = mockMvc.perform(get("/api/lista-espera").accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(org.hamcrest.Matchers.startsWith("{\"id\":3,")));
     }
 
     @Test
     void listar_comFiltros_deveRetornar200() throws Exception {
         ListaEsperaResponse response = new ListaEsperaResponse();
         response.setId(1);
-        when(listaEsperaService.listarPorFiltros(1, null, null)).thenReturn(List.of(response));
+        when(listaEsperaService.listarPorFiltros(1, null, null, null, null)).thenReturn(new PaginaResponse<>(List.of(response), null));
 
         mockMvc.perform(get("/api/lista-espera").param("especialidadeId", "1"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$").isArray());
+                .andExpect(jsonPath("$").isArray())
+                .andExpect(header().doesNotExist("X-Proximo-Cursor"));
+    }
+
+    @Test
+    void listar_comFiltrosECursor_deveRetornarProximoCursorNoCabecalho() throws Exception {
+        ListaEsperaResponse response = new ListaEsperaResponse();
+        response.setId(4);
+        when(listaEsperaService.listarPorFiltros(1, null, 2, 7, 1)).thenReturn(new PaginaResponse<>(List.of(response), 4));
+
+        mockMvc.perform(get("/api/lista-espera").param("especialidadeId", "1").param("unidadeId", "2")
+                        .param("aposId", "7").param("limite", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(4))
+                .andExpect(header().string("X-Proximo-Cursor", "4"));
     }
 
     @Test
@@ -2,12 +2,17 @@ package com.fiap.vaga_liberada_agenda.exception;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.servlet.resource.NoResourceFoundException;
 
+import java.sql.SQLTransientConnectionException;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -35,6 +40,45 @@ class GlobalExceptionHandlerTest {
         assertThat(response.getBody().get("status")).isEqualTo("400");
     }
 
+    @Test
+    void handleConflito_deveRetornar409ComMensagemDaRegra() {
+        ResponseEntity<Map<String, String>> response = handler.handleConflito(new ConflitoException("Vaga indisponível"));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(response.getBody().get("mensagem")).isEqualTo("Vaga indisponível");
+        assertThat(response.getBody().get("status")).isEqualTo("409");
+    }
+
+    @Test
+    void handleConflito_deveRetornar409ParaFalhaDeLockOtimista() {
+        ObjectOptimisticLockingFailureException ex = new ObjectOptimisticLockingFailureException("Consulta", 1);
+
+        ResponseEntity<Map<String, String>> response = handler.handleConflito(ex);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(response.getBody().get("mensagem")).contains("alterado por outra operação");
+    }
+
+    @Test
+    void handleIndisponivel_deveRetornar503ComRetryAfter() {
+        CannotCreateTransactionException ex = new CannotCreateTransactionException("Could not open JPA EntityManager",
+                new SQLTransientConnectionException("HikariPool-1 - Connection is not available"));
+
+        ResponseEntity<Map<String, String>> response = handler.handleIndisponivel(ex);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(response.getBody().get("status")).isEqualTo("503");
+    }
+
+    @Test
+    void handleIndisponivel_deveRetornar503SemConexaoJdbc() {
+        ResponseEntity<Map<String, String>> response = handler.handleIndisponivel(
+                new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection"));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @Test
     void handleNoResourceFoundException_deveRetornar404() {
         NoResourceFoundException ex = new NoResourceFoundException(null, "api/health");
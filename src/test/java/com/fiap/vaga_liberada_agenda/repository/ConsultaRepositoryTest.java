@@ -0,0 +1,122 @@
+package com.fiap.vaga_liberada_agenda.repository;
+
+import com.fiap.vaga_liberada_agenda.dto.projection.SlotOcupadoProjection;
+import com.fiap.vaga_liberada_agenda.entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ConsultaRepositoryTest {
+
+    private static final int QUANTIDADE = 120;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+    @Autowired
+    private TestEntityManager em;
+
+    private Paciente paciente;
+    private Medico medico;
+    private UnidadeSaude unidade;
+    private final LocalDateTime inicio = LocalDateTime.now().plusDays(7).truncatedTo(ChronoUnit.HOURS);
+
+    @BeforeEach
+    void setup() {
+        paciente = new Paciente();
+        paciente.setNome("Paciente lote");
+        paciente.setCpf("77777777777");
+        em.persist(paciente);
+
+        Especialidade especialidade = new Especialidade();
+        especialidade.setNome("Cardiologia");
+        em.persist(especialidade);
+
+        unidade = new UnidadeSaude();
+        unidade.setNome("UBS Centro");
+        unidade.setLatitude(new BigDecimal("-23.55052000"));
+        unidade.setLongitude(new BigDecimal("-46.63330800"));
+        em.persist(unidade);
+
+        medico = new Medico();
+        medico.setNome("Dr. Lote");
+        medico.setCrm("CRM-LOTE");
+        medico.setEspecialidade(especialidade);
+        medico.setUnidade(unidade);
+        em.persist(medico);
+        em.flush();
+    }
+
+    @Test
+    void inserirEmLote_devePreencherIdsNaOrdemDoLote() {
+        List<Consulta> consultas = new ArrayList<>();
+        for (int i = 0; i < QUANTIDADE; i++) {
+            consultas.add(consulta(inicio.plusMinutes(30L * i), i == 0 ? StatusConsulta.CANCELADA : StatusConsulta.AGENDADA));
+        }
+
+        consultaRepository.inserirEmLote(consultas);
+
+        assertThat(consultas).extracting(Consulta::getId).doesNotHaveDuplicates().doesNotContainNull();
+        Consulta relida = em.find(Consulta.class, consultas.get(5).getId());
+        assertThat(relida.getDataHora()).isEqualTo(inicio.plusMinutes(150));
+        assertThat(relida.getVersao()).isZero();
+        assertThat(relida.getDataLimiteConfirmacao()).isEqualTo(inicio.plusMinutes(120));
+        // Consultas canceladas não ocupam o horário
+        assertThat(consultaRepository.buscarSlotsOcupados(Set.of(medico.getId()), inicio, inicio.plusMinutes(60)))
+                .extracting(SlotOcupadoProjection::dataHora)
+                .containsExactlyInAnyOrder(inicio.plusMinutes(30), inicio.plusMinutes(60));
+    }
+
+    @Test
+    void inserirEmLote_comHorarioJaOcupado_deveViolarIndiceUnico() {
+        consultaRepository.inserirEmLote(List.of(consulta(inicio, StatusConsulta.AGENDADA)));
+
+        assertThatThrownBy(() -> consultaRepository.inserirEmLote(List.of(
+                consulta(inicio.plusMinutes(30), StatusConsulta.AGENDADA),
+                consulta(inicio, StatusConsulta.PENDENTE_CONFIRMACAO))))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessageContaining(Consulta.UK_MEDICO_SLOT_ATIVO);
+    }
+
+    @Test
+    void marcarLembretesEnviados_deveIncrementarVersao() {
+        Consulta consulta = em.persistFlushFind(consulta(inicio, StatusConsulta.AGENDADA));
+        Long versaoLida = consulta.getVersao();
+
+        consultaRepository.marcarLembretesEnviados(List.of(consulta.getId()));
+
+        // O UPDATE em massa limpa o contexto: a leitura seguinte vem do banco
+        Consulta relida = em.find(Consulta.class, consulta.getId());
+        assertThat(relida).isNotSameAs(consulta);
+        assertThat(relida.getLembreteEnviado()).isTrue();
+        assertThat(relida.getVersao()).isEqualTo(versaoLida + 1);
+    }
+
+    private Consulta consulta(LocalDateTime dataHora, StatusConsulta status) {
+        Consulta consulta = new Consulta();
+        consulta.setPaciente(paciente);
+        consulta.setMedico(medico);
+        consulta.setUnidade(unidade);
+        consulta.setDataHora(dataHora);
+        consulta.setStatus(status);
+        consulta.setDataLimiteConfirmacao(dataHora.minusMinutes(30));
+        return consulta;
+    }
+}
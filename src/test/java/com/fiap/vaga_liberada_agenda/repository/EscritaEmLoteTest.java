@@ -0,0 +1,100 @@
+package com.fiap.vaga_liberada_agenda.repository;
+
+import com.fiap.vaga_liberada_agenda.entity.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Verifica que INSERTs e UPDATEs em massa saem em lotes JDBC (estatísticas do Hibernate)
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class EscritaEmLoteTest {
+
+    private static final int QUANTIDADE = 120;
+
+    @Autowired
+    private ListaEsperaRepository listaEsperaRepository;
+    @Autowired
+    private TestEntityManager em;
+
+    private Paciente paciente;
+    private Especialidade especialidade;
+    private Statistics estatisticas;
+
+    @BeforeEach
+    void setup() {
+        paciente = new Paciente();
+        paciente.setNome("Paciente lote");
+        paciente.setCpf("88888888888");
+        em.persist(paciente);
+
+        especialidade = new Especialidade();
+        especialidade.setNome("Especialidade lote");
+        em.persist(especialidade);
+        em.flush();
+
+        estatisticas = em.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+    }
+
+    @Test
+    void inserirListaEsperaEmLote_devePreencherIdsSemPassarPeloHibernate() {
+        List<ListaEspera> entradas = new ArrayList<>();
+        for (int i = 0; i < QUANTIDADE; i++) {
+            ListaEspera entrada = new ListaEspera();
+            entrada.setPaciente(paciente);
+            entrada.setEspecialidade(especialidade);
+            entrada.setPrioridade(i % 3);
+            entrada.setStatus(StatusListaEspera.ATIVA);
+            entradas.add(entrada);
+        }
+
+        listaEsperaRepository.inserirEmLote(entradas);
+
+        // Um único lote JDBC: nenhum INSERT pelo Hibernate
+        assertThat(estatisticas.getEntityInsertCount()).isZero();
+        assertThat(entradas).extracting(ListaEspera::getId).doesNotHaveDuplicates().doesNotContainNull();
+        assertThat(entradas).extracting(ListaEspera::getVersao).containsOnly(0L);
+        ListaEspera relida = em.find(ListaEspera.class, entradas.get(7).getId());
+        assertThat(relida.getPrioridade()).isEqualTo(1);
+        assertThat(relida.getDataCadastro()).isNotNull();
+        assertThat(relida.getMedico()).isNull();
+    }
+
+    @Test
+    void atualizarListaEspera_deveAgruparUpdatesVersionadosEmLotes() {
+        List<ListaEspera> entradas = new ArrayList<>();
+        for (int i = 0; i < QUANTIDADE; i++) {
+            ListaEspera entrada = new ListaEspera();
+            entrada.setPaciente(paciente);
+            entrada.setEspecialidade(especialidade);
+            entrada.setDataCadastro(LocalDateTime.now().minusMinutes(i));
+            entrada.setStatus(StatusListaEspera.ATIVA);
+            entradas.add(entrada);
+        }
+        listaEsperaRepository.saveAll(entradas);
+        em.flush();
+        estatisticas.clear();
+
+        entradas.forEach(entrada -> entrada.setStatus(StatusListaEspera.CANCELADA));
+        em.flush();
+
+        assertThat(estatisticas.getEntityUpdateCount()).isEqualTo(QUANTIDADE);
+        assertThat(estatisticas.getPrepareStatementCount()).isLessThan(QUANTIDADE / 10);
+        assertThat(entradas).extracting(ListaEspera::getVersao).containsOnly(1L);
+    }
+}
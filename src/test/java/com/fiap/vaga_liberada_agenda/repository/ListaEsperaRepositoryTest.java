@@ -0,0 +1,243 @@
+package com.fiap.vaga_liberada_agenda.repository;
+
+import com.fiap.vaga_liberada_agenda.dto.projection.EntradaFilaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.ListaEsperaProjection;
+import com.fiap.vaga_liberada_agenda.entity.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ListaEsperaRepositoryTest {
+
+    @Autowired
+    private ListaEsperaRepository listaEsperaRepository;
+    @Autowired
+    private TestEntityManager em;
+
+    private Especialidade cardiologia;
+    private Especialidade pediatria;
+    private Medico medico;
+    private UnidadeSaude unidade;
+    private final LocalDateTime base = LocalDateTime.now().minusDays(10);
+
+    private ListaEspera antigaSemPreferencia;
+    private ListaEspera recenteComChave;
+    private ListaEspera prioritariaComChave;
+
+    @BeforeEach
+    void setup() {
+        cardiologia = em.persist(especialidade("Cardiologia"));
+        pediatria = em.persist(especialidade("Pediatria"));
+
+        unidade = new UnidadeSaude();
+        unidade.setNome("UBS Centro");
+        unidade.setLatitude(new BigDecimal("-23.55052000"));
+        unidade.setLongitude(new BigDecimal("-46.63330800"));
+        unidade = em.persist(unidade);
+
+        medico = new Medico();
+        medico.setNome("Dr. João");
+        medico.setCrm("CRM-SP-1");
+        medico.setEspecialidade(cardiologia);
+        medico.setUnidade(unidade);
+        medico = em.persist(medico);
+
+        antigaSemPreferencia = em.persist(registro("11111111111", cardiologia, null, null, 0, base, StatusListaEspera.ATIVA));
+        recenteComChave = em.persist(registro("22222222222", cardiologia, medico, unidade, 0, base.plusDays(1), StatusListaEspera.ATIVA));
+        prioritariaComChave = em.persist(registro("33333333333", cardiologia, medico, unidade, 5, base.plusDays(2), StatusListaEspera.ATIVA));
+        em.persist(registro("44444444444", cardiologia, medico, unidade, 9, base, StatusListaEspera.CANCELADA));
+        em.persist(registro("55555555555", pediatria, null, unidade, 0, base, StatusListaEspera.ATIVA));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void buscarProximosCandidatos_deveRespeitarPrioridadeEDataCadastro() {
+        assertThat(listaEsperaRepository.buscarProximosCandidatos(StatusListaEspera.ATIVA, cardiologia.getId(), null, null, 2))
+                .extracting(ListaEspera::getId)
+                .containsExactly(prioritariaComChave.getId(), antigaSemPreferencia.getId());
+        assertThat(listaEsperaRepository.buscarProximosCandidatos(StatusListaEspera.ATIVA, cardiologia.getId(), medico.getId(), unidade.getId(), 10))
+                .extracting(ListaEspera::getId)
+                .containsExactly(prioritariaComChave.getId(), recenteComChave.getId());
+    }
+
+    @Test
+    void buscarProximosCandidatos_semCandidatos_deveRetornarVazio() {
+        assertThat(listaEsperaRepository.buscarProximosCandidatos(StatusListaEspera.ATIVA, pediatria.getId(), medico.getId(), null, 1))
+                .isEmpty();
+    }
+
+    @Test
+    void buscarProximosCandidatos_comQuantidadeForaDoLimite_deveLancar() {
+        // O proxy do repositório traduz o IllegalArgumentException para a hierarquia de DataAccessException
+        assertThatThrownBy(() -> listaEsperaRepository.buscarProximosCandidatos(StatusListaEspera.ATIVA, cardiologia.getId(), null, null, 0))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> listaEsperaRepository.buscarProximosCandidatos(StatusListaEspera.ATIVA, cardiologia.getId(), null, null,
+                ListaEsperaRepositoryCustom.LIMITE_MAXIMO_CANDIDATOS + 1))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class);
+    }
+
+    @Test
+    void buscarProximosCandidatos_comMilharesNaFila_deveExecutarUmaConsultaLimitada() {
+        Paciente paciente = new Paciente();
+        paciente.setNome("Paciente em massa");
+        paciente.setCpf("99999999999");
+        em.persist(paciente);
+        em.getEntityManager().createNativeQuery(
+                        "INSERT INTO lista_espera (paciente_id, especialidade_id, data_cadastro, prioridade, status, versao) " +
+                        "SELECT CAST(?1 AS INT), CAST(?2 AS INT), DATEADD('MINUTE', \"X\", CAST(?3 AS TIMESTAMP)), MOD(\"X\", 5), 'ATIVA', 0 " +
+                        "FROM SYSTEM_RANGE(1, 5000)")
+                .setParameter(1, paciente.getId())
+                .setParameter(2, pediatria.getId())
+                .setParameter(3, base)
+                .executeUpdate();
+        em.clear();
+        Statistics estatisticas = em.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+
+        List<ListaEspera> candidatos = listaEsperaRepository.buscarProximosCandidatos(
+                StatusListaEspera.ATIVA, pediatria.getId(), null, null, 5);
+
+        assertThat(candidatos).hasSize(5);
+        assertThat(candidatos).extracting(ListaEspera::getPrioridade).containsOnly(4);
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+        // Só os registros devolvidos são materializados, não a fila filtrada inteira
+        assertThat(estatisticas.getEntityLoadCount()).isEqualTo(5);
+    }
+
+    @Test
+    void buscarEntradasFila_deveTrazerCoordenadasDoPaciente() {
+        ListaEspera comCoordenadas = registro("77777777777", pediatria, null, null, 0, base, StatusListaEspera.ATIVA);
+        comCoordenadas.getPaciente().setLatitude(new BigDecimal("-23.56168000"));
+        comCoordenadas.getPaciente().setLongitude(new BigDecimal("-46.65598000"));
+        em.persist(comCoordenadas);
+        em.flush();
+
+        Map<Integer, EntradaFilaProjection> entradas = listaEsperaRepository.buscarEntradasFila(StatusListaEspera.ATIVA).stream()
+                .collect(Collectors.toMap(EntradaFilaProjection::id, Function.identity()));
+
+        assertThat(entradas.get(comCoordenadas.getId()).latitude()).isEqualByComparingTo("-23.56168");
+        assertThat(entradas.get(comCoordenadas.getId()).longitude()).isEqualByComparingTo("-46.65598");
+        assertThat(entradas.get(antigaSemPreferencia.getId()).temCoordenadas()).isFalse();
+    }
+
+    @Test
+    void buscarProjecoesPorFiltros_deveAplicarApenasFiltrosInformados() {
+        List<ListaEsperaProjection> porUnidade = listaEsperaRepository.buscarProjecoesPorFiltros(
+                StatusListaEspera.ATIVA, null, null, unidade.getId(), null, Limit.unlimited());
+        List<ListaEsperaProjection> cardiologiaAtiva = listaEsperaRepository.buscarProjecoesPorFiltros(
+                StatusListaEspera.ATIVA, cardiologia.getId(), null, null, null, Limit.unlimited());
+
+        assertThat(porUnidade).extracting(ListaEsperaProjection::unidadeId).containsOnly(unidade.getId());
+        assertThat(porUnidade).hasSize(3);
+        assertThat(cardiologiaAtiva).extracting(ListaEsperaProjection::id).containsExactly(
+                prioritariaComChave.getId(), antigaSemPreferencia.getId(), recenteComChave.getId());
+        assertThat(cardiologiaAtiva.get(0).medicoNome()).isEqualTo("Dr. João");
+        assertThat(cardiologiaAtiva.get(1).medicoId()).isNull();
+    }
+
+    @Test
+    void buscarProjecoesPorFiltros_comLimite_deveTruncarNaOrdemDaFila() {
+        List<ListaEsperaProjection> primeiros = listaEsperaRepository.buscarProjecoesPorFiltros(
+                StatusListaEspera.ATIVA, cardiologia.getId(), null, null, null, Limit.of(2));
+
+        assertThat(primeiros).extracting(ListaEsperaProjection::id)
+                .containsExactly(prioritariaComChave.getId(), antigaSemPreferencia.getId());
+    }
+
+    @Test
+    void buscarProjecoesPorFiltros_aposCursor_deveContinuarNaOrdemDaFila() {
+        // Mesma prioridade e data do cursor: o id desempata
+        ListaEspera empatada = em.persist(registro("88888888888", cardiologia, null, null, 0, base, StatusListaEspera.ATIVA));
+        em.flush();
+
+        List<ListaEsperaProjection> aposPrioritaria = listaEsperaRepository.buscarProjecoesPorFiltros(
+                StatusListaEspera.ATIVA, cardiologia.getId(), null, null, prioritariaComChave.getId(), Limit.of(2));
+        List<ListaEsperaProjection> aposAntiga = listaEsperaRepository.buscarProjecoesPorFiltros(
+                StatusListaEspera.ATIVA, cardiologia.getId(), null, null, antigaSemPreferencia.getId(), Limit.unlimited());
+        List<ListaEsperaProjection> aposUltima = listaEsperaRepository.buscarProjecoesPorFiltros(
+                StatusListaEspera.ATIVA, cardiologia.getId(), null, null, recenteComChave.getId(), Limit.unlimited());
+
+        assertThat(aposPrioritaria).extracting(ListaEsperaProjection::id)
+                .containsExactly(antigaSemPreferencia.getId(), empatada.getId());
+        assertThat(aposAntiga).extracting(ListaEsperaProjection::id)
+                .containsExactly(empatada.getId(), recenteComChave.getId());
+        assertThat(aposUltima).isEmpty();
+    }
+
+    @Test
+    void planos_dasBuscasDaFila_devemUsarIndicesCompostos() {
+        assertThat(explain("WHERE le.status = 'ATIVA' AND le.especialidade_id = 1"))
+                .contains("idx_lista_espera_fila_especialidade");
+        assertThat(explain("WHERE le.status = 'ATIVA' AND le.especialidade_id = 1 AND le.medico_id = 2 AND le.unidade_id = 3"))
+                .contains("idx_lista_espera_fila_chave");
+        assertThat(explain("WHERE le.status = 'ATIVA'"))
+                .contains("idx_lista_espera_fila:");
+    }
+
+    // Mesma forma do SQL gerado pelas buscas da fila: só igualdades, ordem da fila e LIMIT 1
+    private String explain(String where) {
+        return em.getEntityManager().createNativeQuery("EXPLAIN SELECT le.id FROM lista_espera le " + where +
+                        " ORDER BY le.prioridade DESC, le.data_cadastro, le.id FETCH FIRST 1 ROWS ONLY")
+                .getSingleResult().toString();
+    }
+
+    private static Especialidade especialidade(String nome) {
+        Especialidade especialidade = new Especialidade();
+        especialidade.setNome(nome);
+        return especialidade;
+    }
+
+    @Test
+    void buscarPacientesComStatus_deveDevolverSoPacientesComRegistroNoStatus() {
+        Integer ativo = antigaSemPreferencia.getPaciente().getId();
+        Integer outroAtivo = recenteComChave.getPaciente().getId();
+        ListaEspera cancelada = em.persist(registro("66666666666", pediatria, null, null, 0, base, StatusListaEspera.CANCELADA));
+        em.flush();
+
+        assertThat(listaEsperaRepository.buscarPacientesComStatus(
+                List.of(ativo, outroAtivo, cancelada.getPaciente().getId(), -1), StatusListaEspera.ATIVA))
+                .containsExactlyInAnyOrder(ativo, outroAtivo);
+    }
+
+    private ListaEspera registro(String cpf, Especialidade especialidade, Medico medico, UnidadeSaude unidade,
+                                 int prioridade, LocalDateTime dataCadastro, StatusListaEspera status) {
+        Paciente paciente = new Paciente();
+        paciente.setNome("Paciente " + cpf);
+        paciente.setCpf(cpf);
+        em.persist(paciente);
+
+        ListaEspera listaEspera = new ListaEspera();
+        listaEspera.setPaciente(paciente);
+        listaEspera.setEspecialidade(especialidade);
+        listaEspera.setMedico(medico);
+        listaEspera.setUnidade(unidade);
+        listaEspera.setPrioridade(prioridade);
+        listaEspera.setDataCadastro(dataCadastro);
+        listaEspera.setStatus(status);
+        return listaEspera;
+    }
+}
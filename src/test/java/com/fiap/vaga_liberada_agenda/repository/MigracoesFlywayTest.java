@@ -0,0 +1,137 @@
+package com.fiap.vaga_liberada_agenda.repository;
+
+import com.fiap.vaga_liberada_agenda.entity.*;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Aplica as migrations do Flyway no H2 em modo MySQL e valida o schema resultante contra as entidades
+ * (ddl-auto=validate), em vez do schema gerado pelo Hibernate dos demais testes. V1 e V3 entram como base
+ * (V3 reescrita para o H2 em db/base-h2; V2 só insere dados) e o Flyway executa de V4 em diante.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migracoes;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.flyway.enabled=true",
+        "spring.flyway.baseline-on-migrate=true",
+        "spring.flyway.baseline-version=3",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(MigracoesFlywayTest.EsquemaBase.class)
+class MigracoesFlywayTest {
+
+    @TestConfiguration
+    static class EsquemaBase {
+
+        @Bean
+        FlywayMigrationStrategy esquemaBaseAntesDoFlyway(DataSource dataSource) {
+            return flyway -> {
+                ResourceDatabasePopulator base = new ResourceDatabasePopulator(
+                        new ClassPathResource("db/migration/V1__Criar_Tabelas_Base.sql"),
+                        new ClassPathResource("db/base-h2/V3__Lista_Espera_E_Confirmacao.sql"));
+                base.setSqlScriptEncoding("UTF-8");
+                base.execute(dataSource);
+                flyway.migrate();
+            };
+        }
+    }
+
+    @Autowired
+    private Flyway flyway;
+    @Autowired
+    private ConsultaRepository consultaRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TestEntityManager em;
+
+    private Paciente paciente;
+    private Medico medico;
+    private UnidadeSaude unidade;
+    private final LocalDateTime horario = LocalDateTime.now().plusDays(7).truncatedTo(ChronoUnit.HOURS);
+
+    @BeforeEach
+    void setup() {
+        paciente = new Paciente();
+        paciente.setNome("Paciente migrations");
+        paciente.setCpf("66666666666");
+        em.persist(paciente);
+
+        Especialidade especialidade = new Especialidade();
+        especialidade.setNome("Dermatologia");
+        em.persist(especialidade);
+
+        unidade = new UnidadeSaude();
+        unidade.setNome("UBS Migrations");
+        unidade.setLatitude(new BigDecimal("-23.55052000"));
+        unidade.setLongitude(new BigDecimal("-46.63330800"));
+        em.persist(unidade);
+
+        medico = new Medico();
+        medico.setNome("Dr. Migrations");
+        medico.setCrm("CRM-MIGRATIONS");
+        medico.setEspecialidade(especialidade);
+        medico.setUnidade(unidade);
+        em.persist(medico);
+        em.flush();
+    }
+
+    @Test
+    void migrations_devemSerAplicadasAteAUltimaVersao() {
+        assertThat(flyway.info().pending()).isEmpty();
+        assertThat(flyway.info().current().getVersion().getVersion()).isEqualTo("10");
+    }
+
+    @Test
+    void slotAtivo_indiceUnicoDaMigrationRejeitaSegundaConsultaAtivaNoHorario() {
+        consultaRepository.saveAndFlush(consulta(StatusConsulta.CANCELADA));
+        consultaRepository.saveAndFlush(consulta(StatusConsulta.AGENDADA));
+
+        assertThatThrownBy(() -> consultaRepository.saveAndFlush(consulta(StatusConsulta.PENDENTE_CONFIRMACAO)))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessageContaining(Consulta.UK_MEDICO_SLOT_ATIVO);
+    }
+
+    @Test
+    void ofertasEmParalelo_colunaDeOfertaUnicaDeveTerSidoRemovida() {
+        Integer colunas = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_name = 'consultas' AND column_name = 'vaga_oferecida_para_lista_espera_id'",
+                Integer.class);
+
+        assertThat(colunas).isZero();
+    }
+
+    private Consulta consulta(StatusConsulta status) {
+        Consulta consulta = new Consulta();
+        consulta.setPaciente(paciente);
+        consulta.setMedico(medico);
+        consulta.setUnidade(unidade);
+        consulta.setDataHora(horario);
+        consulta.setStatus(status);
+        return consulta;
+    }
+}
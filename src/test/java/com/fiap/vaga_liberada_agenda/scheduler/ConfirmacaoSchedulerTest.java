@@ -1,16 +1,33 @@
 package com.fiap.vaga_liberada_agenda.scheduler;
 
-import com.fiap.vaga_liberada_agenda.entity.Consulta;
+import com.fiap.vaga_liberada_agenda.dto.projection.PrazoConsultaProjection;
+import com.fiap.vaga_liberada_agenda.event.ConsultaAgendadaEvent;
+import com.fiap.vaga_liberada_agenda.event.ConsultaCanceladaEvent;
+import com.fiap.vaga_liberada_agenda.event.ConsultaConfirmadaEvent;
+import com.fiap.vaga_liberada_agenda.scheduler.ConfirmacaoScheduler.PrazoConfirmacao;
 import com.fiap.vaga_liberada_agenda.service.ConsultaService;
 import com.fiap.vaga_liberada_agenda.service.LiberacaoVagaService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
-
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -22,38 +39,174 @@ class ConfirmacaoSchedulerTest {
     @Mock
     private LiberacaoVagaService liberacaoVagaService;
 
-    @InjectMocks
+    private MeterRegistry meterRegistry;
+
+    private ParticoesLiberacaoVagas particoesLiberacao;
+
     private ConfirmacaoScheduler confirmacaoScheduler;
 
+    private final LocalDateTime futuro = LocalDateTime.now().plusHours(1);
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        particoesLiberacao = new ParticoesLiberacaoVagas(meterRegistry, 2, 10, true, Duration.ofSeconds(1));
+        particoesLiberacao.iniciar();
+        confirmacaoScheduler = new ConfirmacaoScheduler(consultaService, liberacaoVagaService, particoesLiberacao, meterRegistry);
+        ReflectionTestUtils.setField(confirmacaoScheduler, "tamanhoLote", 2);
+        confirmacaoScheduler.iniciar();
+    }
+
+    @AfterEach
+    void encerrar() {
+        confirmacaoScheduler.parar();
+        particoesLiberacao.parar();
+    }
+
+    @Test
+    void aoAgendarConsulta_dentroDoHorizonte_registraPrazo() {
+        confirmacaoScheduler.aoAgendarConsulta(new ConsultaAgendadaEvent(1, 10, futuro));
+
+        assertThat(confirmacaoScheduler.prazosPendentes()).isEqualTo(1);
+        verifyNoInteractions(liberacaoVagaService);
+    }
+
+    @Test
+    void aoAgendarConsulta_foraDoHorizonte_naoRegistraPrazo() {
+        confirmacaoScheduler.aoAgendarConsulta(new ConsultaAgendadaEvent(1, 10, LocalDateTime.now().plusDays(2)));
+
+        assertThat(confirmacaoScheduler.prazosPendentes()).isZero();
+    }
+
+    @Test
+    void aoAgendarConsulta_quandoPrazoVence_liberaVaga() {
+        when(liberacaoVagaService.liberarVagaNaoConfirmada(1)).thenReturn(true);
+
+        confirmacaoScheduler.aoAgendarConsulta(new ConsultaAgendadaEvent(1, 10, LocalDateTime.now().plusNanos(50_000_000)));
+
+        verify(liberacaoVagaService, timeout(2000)).liberarVagaNaoConfirmada(1);
+        assertThat(confirmacaoScheduler.prazosPendentes()).isZero();
+    }
+
+    @Test
+    void aoConfirmarConsulta_removePrazo() {
+        confirmacaoScheduler.aoAgendarConsulta(new ConsultaAgendadaEvent(1, 10, futuro));
+
+        confirmacaoScheduler.aoConfirmarConsulta(new ConsultaConfirmadaEvent(1, 10));
+
+        assertThat(confirmacaoScheduler.prazosPendentes()).isZero();
+    }
+
+    @Test
+    void aoCancelarConsulta_removePrazo() {
+        confirmacaoScheduler.aoAgendarConsulta(new ConsultaAgendadaEvent(1, 10, futuro));
+
+        confirmacaoScheduler.aoCancelarConsulta(new ConsultaCanceladaEvent(1, 10));
+
+        assertThat(confirmacaoScheduler.prazosPendentes()).isZero();
+    }
+
+    @Test
+    void carregarPrazos_quandoVazio_naoRegistraPrazos() {
+        when(consultaService.verificarConsultasNaoConfirmadas(any(), any(), any(), anyInt())).thenReturn(List.of());
+
+        confirmacaoScheduler.carregarPrazos();
+
+        verify(consultaService).verificarConsultasNaoConfirmadas(any(), any(), eq(0), eq(2));
+        assertThat(confirmacaoScheduler.prazosPendentes()).isZero();
+        assertThat(meterRegistry.timer("agenda.confirmacao.execucao").count()).isEqualTo(1);
+    }
+
+    @Test
+    void carregarPrazos_buscaSomentePrazosDentroDoHorizonte() {
+        when(consultaService.verificarConsultasNaoConfirmadas(any(), any(), any(), anyInt())).thenReturn(List.of());
+        LocalDateTime antes = LocalDateTime.now();
+
+        confirmacaoScheduler.carregarPrazos();
+
+        verify(consultaService).verificarConsultasNaoConfirmadas(
+                argThat(ate -> !ate.isBefore(antes.plusHours(24)) && ate.isBefore(antes.plusHours(25))), any(), eq(0), eq(2));
+    }
+
+    @Test
+    void carregarPrazos_quandoLoteCheio_avancaCursorKeysetERegistraPrazos() {
+        when(consultaService.verificarConsultasNaoConfirmadas(any(), any(), eq(0), eq(2)))
+                .thenReturn(List.of(new PrazoConsultaProjection(1, futuro, 10), new PrazoConsultaProjection(2, futuro, 20)));
+        when(consultaService.verificarConsultasNaoConfirmadas(any(), eq(futuro), eq(2), eq(2)))
+                .thenReturn(List.of(new PrazoConsultaProjection(3, futuro.plusMinutes(5), 10)));
+
+        confirmacaoScheduler.carregarPrazos();
+
+        assertThat(confirmacaoScheduler.prazosPendentes()).isEqualTo(3);
+        verify(consultaService, times(2)).verificarConsultasNaoConfirmadas(any(), any(), any(), anyInt());
+        verifyNoInteractions(liberacaoVagaService);
+    }
+
+    @Test
+    void carregarPrazos_naoDuplicaPrazoJaRegistrado() {
+        confirmacaoScheduler.aoAgendarConsulta(new ConsultaAgendadaEvent(1, 10, futuro));
+        when(consultaService.verificarConsultasNaoConfirmadas(any(), any(), eq(0), eq(2)))
+                .thenReturn(List.of(new PrazoConsultaProjection(1, futuro, 10)));
+
+        confirmacaoScheduler.carregarPrazos();
+
+        assertThat(confirmacaoScheduler.prazosPendentes()).isEqualTo(1);
+    }
+
+    @Test
+    void carregarPrazos_comPrazoVencido_liberaVagaNaHora() {
+        when(consultaService.verificarConsultasNaoConfirmadas(any(), any(), eq(0), eq(2)))
+                .thenReturn(List.of(new PrazoConsultaProjection(1, LocalDateTime.now().minusHours(1), 10)));
+        when(liberacaoVagaService.liberarVagaNaoConfirmada(1)).thenReturn(true);
+
+        confirmacaoScheduler.carregarPrazos();
+
+        verify(liberacaoVagaService, timeout(2000)).liberarVagaNaoConfirmada(1);
+    }
+
+    @Test
+    void carregarPrazos_quandoExcecao_naoPropaga() {
+        when(consultaService.verificarConsultasNaoConfirmadas(any(), any(), any(), anyInt())).thenThrow(new RuntimeException("Erro"));
+
+        confirmacaoScheduler.carregarPrazos();
+
+        assertThat(confirmacaoScheduler.prazosPendentes()).isZero();
+        assertThat(meterRegistry.timer("agenda.confirmacao.execucao").count()).isEqualTo(1);
+    }
+
     @Test
-    void verificarConsultasNaoConfirmadas_quandoVazio_naoLiberaVaga() {
-        when(consultaService.verificarConsultasNaoConfirmadas()).thenReturn(List.of());
+    void liberarVaga_contabilizaResultado() {
+        when(liberacaoVagaService.liberarVagaNaoConfirmada(1)).thenReturn(true);
+        when(liberacaoVagaService.liberarVagaNaoConfirmada(2)).thenReturn(false);
 
-        confirmacaoScheduler.verificarConsultasNaoConfirmadas();
+        assertThat(confirmacaoScheduler.liberarVaga(new PrazoConfirmacao(1, 10)).join()).isTrue();
+        assertThat(confirmacaoScheduler.liberarVaga(new PrazoConfirmacao(2, 10)).join()).isFalse();
 
-        verify(consultaService).verificarConsultasNaoConfirmadas();
-        verify(liberacaoVagaService, never()).liberarVaga(any());
+        assertThat(meterRegistry.counter("agenda.confirmacao.vagas", "resultado", "liberada").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("agenda.confirmacao.vagas", "resultado", "ignorada").count()).isEqualTo(1);
     }
 
     @Test
-    void verificarConsultasNaoConfirmadas_quandoHaConsultas_liberaVagaParaCadaUma() {
-        Consulta consulta = new Consulta();
-        consulta.setId(1);
-        when(consultaService.verificarConsultasNaoConfirmadas()).thenReturn(List.of(consulta));
+    void liberarVaga_quandoFalha_contabilizaFalha() {
+        when(liberacaoVagaService.liberarVagaNaoConfirmada(1)).thenThrow(new RuntimeException("Erro"));
 
-        confirmacaoScheduler.verificarConsultasNaoConfirmadas();
+        assertThatThrownBy(() -> confirmacaoScheduler.liberarVaga(new PrazoConfirmacao(1, 10)).join())
+                .isInstanceOf(CompletionException.class);
 
-        verify(consultaService).verificarConsultasNaoConfirmadas();
-        verify(liberacaoVagaService).liberarVaga(consulta);
+        assertThat(meterRegistry.counter("agenda.confirmacao.vagas", "resultado", "falha").count()).isEqualTo(1);
     }
 
     @Test
-    void verificarConsultasNaoConfirmadas_quandoExcecao_naoPropaga() {
-        when(consultaService.verificarConsultasNaoConfirmadas()).thenThrow(new RuntimeException("Erro"));
+    void liberarVaga_liberaNaParticaoDaEspecialidade() {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        when(liberacaoVagaService.liberarVagaNaoConfirmada(1)).thenAnswer(invocacao -> {
+            threads.add(Thread.currentThread().getName());
+            return true;
+        });
 
-        confirmacaoScheduler.verificarConsultasNaoConfirmadas();
+        confirmacaoScheduler.liberarVaga(new PrazoConfirmacao(1, 10)).join();
 
-        verify(consultaService).verificarConsultasNaoConfirmadas();
-        verify(liberacaoVagaService, never()).liberarVaga(any());
+        assertThat(threads).containsExactly("liberacao-vaga-" + particoesLiberacao.particaoDe(10));
+        assertThat(particoesLiberacao.tamanhoFila()).isZero();
     }
 }
@@ -0,0 +1,68 @@
+package com.fiap.vaga_liberada_agenda.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilaPrazosTest {
+
+    private final List<Integer> executados = new CopyOnWriteArrayList<>();
+    private final CountDownLatch latch = new CountDownLatch(2);
+    private final FilaPrazos<Integer> fila = new FilaPrazos<>("teste", chave -> {
+        executados.add(chave);
+        latch.countDown();
+    });
+
+    @AfterEach
+    void tearDown() {
+        fila.parar();
+    }
+
+    @Test
+    void deveExecutarNaOrdemDosPrazos() throws InterruptedException {
+        fila.iniciar();
+        LocalDateTime agora = LocalDateTime.now();
+
+        fila.agendar(2, agora.plusNanos(150_000_000));
+        fila.agendar(1, agora.plusNanos(50_000_000));
+
+        assertThat(latch.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(executados).containsExactly(1, 2);
+        assertThat(fila.tamanho()).isZero();
+    }
+
+    @Test
+    void prazoVencidoDeveExecutarImediatamente() throws InterruptedException {
+        // Os dois prazos entram antes de a thread começar a consumir, senão o 1 pode sair antes do 2 entrar
+        fila.agendar(1, LocalDateTime.now().minusHours(1));
+        fila.agendar(2, LocalDateTime.now().minusHours(2));
+
+        fila.iniciar();
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(executados).containsExactly(2, 1);
+    }
+
+    @Test
+    void cancelarOuReagendarDeveDescartarPrazoAnterior() throws InterruptedException {
+        fila.iniciar();
+        LocalDateTime agora = LocalDateTime.now();
+
+        fila.agendar(1, agora.plusNanos(50_000_000));
+        fila.cancelar(1);
+        fila.agendar(2, agora.plusNanos(50_000_000));
+        fila.agendar(2, agora.plusNanos(100_000_000));
+        fila.agendar(3, agora.plusNanos(150_000_000));
+
+        assertThat(latch.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(executados).containsExactly(2, 3);
+        assertThat(fila.isAgendado(1)).isFalse();
+    }
+}
@@ -1,28 +1,40 @@
 package com.fiap.vaga_liberada_agenda.scheduler;
 
-import com.fiap.vaga_liberada_agenda.entity.Consulta;
-import com.fiap.vaga_liberada_agenda.entity.Medico;
-import com.fiap.vaga_liberada_agenda.entity.Paciente;
+import com.fiap.vaga_liberada_agenda.dto.notificacao.MensagemNotificacao;
+import com.fiap.vaga_liberada_agenda.dto.projection.LembreteConsultaProjection;
 import com.fiap.vaga_liberada_agenda.entity.StatusConsulta;
-import com.fiap.vaga_liberada_agenda.entity.UnidadeSaude;
 import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
 import com.fiap.vaga_liberada_agenda.service.NotificacaoService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.UnexpectedRollbackException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
 class NotificacaoSchedulerTest {
 
     @Mock
@@ -31,77 +43,125 @@ class NotificacaoSchedulerTest {
     @Mock
     private NotificacaoService notificacaoService;
 
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private NotificacaoScheduler notificacaoScheduler;
 
-    private Consulta consulta;
-    private Paciente paciente;
-    private UnidadeSaude unidade;
+    private final LocalDateTime dataHora = LocalDateTime.now().plusHours(12);
 
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void setup() {
-        paciente = new Paciente();
-        paciente.setId(1);
-        paciente.setNome("Paciente Teste");
-
-        unidade = new UnidadeSaude();
-        unidade.setId(1);
-        unidade.setNome("UBS Centro");
-
-        Medico medico = new Medico();
-        medico.setId(1);
-        medico.setNome("Dr. João");
-
-        consulta = new Consulta();
-        consulta.setId(10);
-        consulta.setPaciente(paciente);
-        consulta.setUnidade(unidade);
-        consulta.setMedico(medico);
-        consulta.setDataHora(LocalDateTime.now().plusHours(12));
-        consulta.setStatus(StatusConsulta.PENDENTE_CONFIRMACAO);
-        consulta.setLembreteEnviado(false);
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(null));
     }
 
     @Test
     void verificarConsultasProximas_quandoVazio_naoEnviaNotificacao() {
-        when(consultaRepository.buscarConsultasParaNotificar(any(), any(), eq(StatusConsulta.AGENDADA)))
+        when(consultaRepository.buscarLembretesPendentes(any(), any(), any(), eq(0), any()))
                 .thenReturn(List.of());
-        when(consultaRepository.buscarConsultasParaNotificar(any(), any(), eq(StatusConsulta.PENDENTE_CONFIRMACAO)))
+
+        notificacaoScheduler.verificarConsultasProximas();
+
+        verify(notificacaoService, never()).enviar(any(MensagemNotificacao.class));
+        verify(consultaRepository, never()).marcarLembretesEnviados(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void verificarConsultasProximas_deveBuscarAmbosStatusEmUmaConsulta() {
+        when(consultaRepository.buscarLembretesPendentes(any(), any(), any(), eq(0), any()))
                 .thenReturn(List.of());
 
         notificacaoScheduler.verificarConsultasProximas();
 
-        verify(notificacaoService, never()).enviar(any());
+        ArgumentCaptor<Collection<StatusConsulta>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(consultaRepository, times(1)).buscarLembretesPendentes(any(), any(), captor.capture(), anyInt(), any());
+        assertThat(captor.getValue()).containsExactlyInAnyOrder(StatusConsulta.AGENDADA, StatusConsulta.PENDENTE_CONFIRMACAO);
+    }
+
+    @Test
+    void verificarConsultasProximas_quandoHaConsultas_enviaNotificacaoEMarcaEmMassa() {
+        when(consultaRepository.buscarLembretesPendentes(any(), any(), any(), eq(0), any()))
+                .thenReturn(List.of(
+                        lembrete(10, StatusConsulta.PENDENTE_CONFIRMACAO),
+                        lembrete(11, StatusConsulta.AGENDADA)));
+
+        notificacaoScheduler.verificarConsultasProximas();
+
+        ArgumentCaptor<MensagemNotificacao> mensagens = ArgumentCaptor.forClass(MensagemNotificacao.class);
+        verify(notificacaoService, times(2)).enviar(mensagens.capture());
+        MensagemNotificacao confirmacao = mensagens.getAllValues().get(0);
+        assertThat(confirmacao.pacienteId()).isEqualTo(1);
+        assertThat(confirmacao.consultaId()).isEqualTo(10);
+        assertThat(confirmacao.listaEsperaId()).isNull();
+        assertThat(confirmacao.mensagem())
+                .contains("Olá Paciente Teste, confirme sua consulta")
+                .contains("UBS Centro")
+                .endsWith("confirmacao.html?id=10");
+        assertThat(mensagens.getAllValues().get(1).mensagem()).contains("lembrete: sua consulta");
+        verify(consultaRepository, times(1)).marcarLembretesEnviados(List.of(10, 11));
         verify(consultaRepository, never()).save(any());
     }
 
     @Test
-    void verificarConsultasProximas_quandoHaConsultas_enviaNotificacaoEMarcaEnviado() {
-        when(consultaRepository.buscarConsultasParaNotificar(any(), any(), eq(StatusConsulta.AGENDADA)))
-                .thenReturn(List.of());
-        when(consultaRepository.buscarConsultasParaNotificar(any(), any(), eq(StatusConsulta.PENDENTE_CONFIRMACAO)))
-                .thenReturn(List.of(consulta));
-        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+    void verificarConsultasProximas_quandoFalhaEnvio_naoMarcaConsulta() {
+        when(consultaRepository.buscarLembretesPendentes(any(), any(), any(), eq(0), any()))
+                .thenReturn(List.of(
+                        lembrete(10, StatusConsulta.AGENDADA),
+                        lembrete(11, StatusConsulta.AGENDADA)));
+        when(notificacaoService.enviar(argThat((MensagemNotificacao m) -> m.consultaId() == 10))).thenThrow(new RuntimeException("erro"));
 
         notificacaoScheduler.verificarConsultasProximas();
 
-        verify(notificacaoService).enviar(any(String.class));
-        verify(consultaRepository).save(consulta);
-        assertThat(consulta.getLembreteEnviado()).isTrue();
+        verify(consultaRepository).marcarLembretesEnviados(List.of(11));
     }
 
     @Test
-    void verificarConsultasProximas_quandoHaConsultasAgendadas_enviaNotificacao() {
-        consulta.setStatus(StatusConsulta.AGENDADA);
-        when(consultaRepository.buscarConsultasParaNotificar(any(), any(), eq(StatusConsulta.AGENDADA)))
-                .thenReturn(List.of(consulta));
-        when(consultaRepository.buscarConsultasParaNotificar(any(), any(), eq(StatusConsulta.PENDENTE_CONFIRMACAO)))
-                .thenReturn(List.of());
-        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+    void verificarConsultasProximas_quandoLoteCheio_deveAvancarCursor() {
+        ReflectionTestUtils.setField(notificacaoScheduler, "tamanhoLote", 2);
+        when(consultaRepository.buscarLembretesPendentes(any(), any(), any(), eq(0), any()))
+                .thenReturn(List.of(lembrete(10, StatusConsulta.AGENDADA), lembrete(11, StatusConsulta.AGENDADA)));
+        when(consultaRepository.buscarLembretesPendentes(any(), any(), any(), eq(11), any()))
+                .thenReturn(List.of(lembrete(12, StatusConsulta.AGENDADA)));
+
+        notificacaoScheduler.verificarConsultasProximas();
+
+        verify(consultaRepository).marcarLembretesEnviados(List.of(10, 11));
+        verify(consultaRepository).marcarLembretesEnviados(List.of(12));
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void verificarConsultasProximas_quandoTransacaoDoLoteFalha_refazConsultaAConsulta() {
+        when(consultaRepository.buscarLembretesPendentes(any(), any(), any(), eq(0), any()))
+                .thenReturn(List.of(lembrete(10, StatusConsulta.AGENDADA), lembrete(11, StatusConsulta.AGENDADA)));
+        Answer<Object> rollback = inv -> {
+            ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(null);
+            throw new UnexpectedRollbackException("Transação marcada como rollback-only");
+        };
+        // O lote e depois a consulta 10 sozinha sofrem rollback; a consulta 11 sozinha é gravada
+        doAnswer(rollback)
+                .doAnswer(rollback)
+                .doAnswer(inv -> ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
 
         notificacaoScheduler.verificarConsultasProximas();
 
-        verify(notificacaoService).enviar(any(String.class));
-        verify(consultaRepository).save(consulta);
+        verify(transactionTemplate, times(3)).execute(any());
+        verify(consultaRepository).marcarLembretesEnviados(List.of(10, 11));
+        verify(consultaRepository).marcarLembretesEnviados(List.of(10));
+        verify(consultaRepository).marcarLembretesEnviados(List.of(11));
+        assertThat(meterRegistry.timer("agenda.lembretes.execucao").count()).isEqualTo(1);
+    }
+
+    private LembreteConsultaProjection lembrete(Integer consultaId, StatusConsulta status) {
+        return new LembreteConsultaProjection(consultaId, 1, "Paciente Teste", "UBS Centro", dataHora, status);
     }
 }
@@ -0,0 +1,123 @@
+package com.fiap.vaga_liberada_agenda.scheduler;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParticoesLiberacaoVagasTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ParticoesLiberacaoVagas particoes =
+            new ParticoesLiberacaoVagas(meterRegistry, 4, 100, true, Duration.ofSeconds(1));
+
+    @AfterEach
+    void tearDown() {
+        particoes.parar();
+    }
+
+    @Test
+    void mesmaEspecialidade_deveExecutarNaOrdemDeEnvio() throws Exception {
+        particoes.iniciar();
+        List<Integer> executadas = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<Integer>> futuros = new ArrayList<>();
+
+        for (int i = 0; i < 50; i++) {
+            int consultaId = i;
+            futuros.add(particoes.enviar(7, () -> {
+                executadas.add(consultaId);
+                return consultaId;
+            }));
+        }
+
+        CompletableFuture.allOf(futuros.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertThat(executadas).hasSize(50).isSorted();
+    }
+
+    @Test
+    void especialidadesDiferentes_devemExecutarEmParalelo() throws Exception {
+        particoes.iniciar();
+        assertThat(particoes.particaoDe(1)).isNotEqualTo(particoes.particaoDe(2));
+        CountDownLatch segundaIniciou = new CountDownLatch(1);
+
+        // Se as partições fossem seriais, a primeira tarefa esperaria a segunda para sempre
+        CompletableFuture<Boolean> primeira = particoes.enviar(1, () -> await(segundaIniciou));
+        CompletableFuture<Boolean> segunda = particoes.enviar(2, () -> {
+            segundaIniciou.countDown();
+            return true;
+        });
+
+        assertThat(segunda.get(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(primeira.get(2, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void falhaNaTarefa_deveConcluirFuturoComErroSemPararParticao() throws Exception {
+        particoes.iniciar();
+
+        CompletableFuture<Boolean> falha = particoes.enviar(3, () -> {
+            throw new IllegalStateException("Erro");
+        });
+        CompletableFuture<Boolean> seguinte = particoes.enviar(3, () -> true);
+
+        assertThatThrownBy(() -> falha.get(2, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(seguinte.get(2, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void metricas_devemExporFilaEAtrasoPorParticao() throws Exception {
+        // Sem consumidores iniciados as tarefas ficam na fila
+        particoes.enviar(5, () -> true);
+        particoes.enviar(5, () -> true);
+        String particao = String.valueOf(particoes.particaoDe(5));
+        Thread.sleep(20);
+
+        assertThat(meterRegistry.get("agenda.liberacao.fila.tamanho").tag("particao", particao).gauge().value())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("agenda.liberacao.atraso").tag("particao", particao).timeGauge()
+                .value(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(20);
+        assertThat(particoes.tamanhoFila()).isEqualTo(2);
+
+        particoes.iniciar();
+        particoes.enviar(5, () -> true).get(2, TimeUnit.SECONDS);
+
+        assertThat(particoes.tamanhoFila()).isZero();
+        assertThat(meterRegistry.get("agenda.liberacao.espera").tag("particao", particao).timer().count())
+                .isEqualTo(3);
+    }
+
+    @Test
+    void aposParar_deveRejeitarPendentesENovosEnvios() {
+        CompletableFuture<Boolean> pendente = particoes.enviar(1, () -> true);
+
+        particoes.parar();
+
+        assertThat(pendente).isCompletedExceptionally();
+        assertThatThrownBy(() -> particoes.enviar(1, () -> true).join())
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.fiap.vaga_liberada_agenda.scheduler;
+
+import com.fiap.vaga_liberada_agenda.entity.Notificacao;
+import com.fiap.vaga_liberada_agenda.entity.StatusEnvioNotificacao;
+import com.fiap.vaga_liberada_agenda.event.NotificacaoRegistradaEvent;
+import com.fiap.vaga_liberada_agenda.repository.NotificacaoRepository;
+import com.fiap.vaga_liberada_agenda.service.PublicadorNotificacaoSqs;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RelayNotificacaoSchedulerTest {
+
+    @Mock
+    private NotificacaoRepository notificacaoRepository;
+
+    @Mock
+    private PublicadorNotificacaoSqs publicador;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private TaskScheduler agendadorOutbox;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RelayNotificacaoScheduler relay;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new RelayNotificacaoScheduler(notificacaoRepository, publicador, transactionTemplate, meterRegistry, agendadorOutbox);
+        ReflectionTestUtils.setField(relay, "tamanhoLote", 2);
+        ReflectionTestUtils.setField(relay, "maxTentativas", 3);
+        ReflectionTestUtils.setField(relay, "timeoutEnvio", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(relay, "backoffInicial", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(relay, "backoffMaximo", Duration.ofSeconds(10));
+    }
+
+    @Test
+    void aoRegistrarNotificacao_agendaUmaDrenagemPorRajada() {
+        relay.aoRegistrarNotificacao(new NotificacaoRegistradaEvent(1, 10));
+        relay.aoRegistrarNotificacao(new NotificacaoRegistradaEvent(2, 11));
+
+        ArgumentCaptor<Runnable> drenagem = ArgumentCaptor.forClass(Runnable.class);
+        verify(agendadorOutbox).schedule(drenagem.capture(), any(Instant.class));
+
+        when(transactionTemplate.execute(any())).thenReturn(List.of());
+        drenagem.getValue().run();
+        verify(transactionTemplate).execute(any());
+
+        // Registro após o início da drenagem dispara a próxima
+        relay.aoRegistrarNotificacao(new NotificacaoRegistradaEvent(3, 12));
+        verify(agendadorOutbox, times(2)).schedule(any(Runnable.class), any(Instant.class));
+    }
+
+    @Test
+    void processarLote_semPendentes_naoPublica() {
+        executarTransacoes();
+        when(notificacaoRepository.bloquearPendentes(any(), eq(2))).thenReturn(List.of());
+
+        assertThat(relay.processarLote()).isZero();
+        verifyNoInteractions(publicador);
+        verify(transactionTemplate, times(1)).execute(any());
+    }
+
+    @Test
+    void reivindicarLote_deveMarcarComoEnviandoComReserva() {
+        Notificacao notificacao = notificacao(1, 0);
+        when(notificacaoRepository.bloquearPendentes(any(), eq(2))).thenReturn(List.of(notificacao));
+        LocalDateTime antes = LocalDateTime.now();
+
+        assertThat(relay.reivindicarLote()).containsExactly(notificacao);
+
+        assertThat(notificacao.getStatusEnvio()).isEqualTo(StatusEnvioNotificacao.ENVIANDO);
+        // Reserva de duas vezes o timeout de envio (200 ms no teste)
+        assertThat(notificacao.getProximaTentativaEm()).isAfterOrEqualTo(antes.plusNanos(400_000_000));
+    }
+
+    @Test
+    void processarLote_deveEnviarForaDaTransacaoDaReivindicacao() {
+        AtomicBoolean emTransacao = new AtomicBoolean();
+        when(transactionTemplate.execute(any())).thenAnswer(inv -> {
+            emTransacao.set(true);
+            try {
+                return ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null);
+            } finally {
+                emTransacao.set(false);
+            }
+        });
+        when(notificacaoRepository.bloquearPendentes(any(), eq(2))).thenReturn(List.of(notificacao(1, 0)));
+        when(publicador.publicar("msg-1")).thenAnswer(inv -> {
+            assertThat(emTransacao).isFalse();
+            return CompletableFuture.completedFuture(null);
+        });
+
+        assertThat(relay.processarLote()).isEqualTo(1);
+
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    @Test
+    void processarLote_quandoEnviado_deveMarcarComoEnviada() {
+        executarTransacoes();
+        Notificacao notificacao = notificacao(1, 0);
+        when(notificacaoRepository.bloquearPendentes(any(), eq(2))).thenReturn(List.of(notificacao));
+        when(publicador.publicar("msg-1")).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThat(relay.processarLote()).isEqualTo(1);
+
+        verify(notificacaoRepository).marcarEnviadas(eq(List.of(1)), any(LocalDateTime.class));
+        verify(notificacaoRepository, never()).saveAll(any());
+        assertThat(meterRegistry.counter("agenda.notificacao.outbox", "resultado", "enviada").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void processarLote_quandoFalha_deveVoltarParaPendenteEContarTentativa() {
+        executarTransacoes();
+        Notificacao notificacao = notificacao(1, 0);
+        when(notificacaoRepository.bloquearPendentes(any(), eq(2))).thenReturn(List.of(notificacao));
+        when(publicador.publicar("msg-1")).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("SQS indisponível")));
+
+        assertThat(relay.processarLote()).isZero();
+
+        assertThat(notificacao.getStatusEnvio()).isEqualTo(StatusEnvioNotificacao.PENDENTE);
+        assertThat(notificacao.getTentativas()).isEqualTo(1);
+        assertThat(notificacao.getUltimoErro()).isEqualTo("SQS indisponível");
+        assertThat(notificacao.getEnviadaEm()).isNull();
+        // Só volta a ser reivindicada depois do backoff (1 s na primeira falha)
+        assertThat(notificacao.getProximaTentativaEm()).isAfter(LocalDateTime.now().plusNanos(500_000_000));
+        verify(notificacaoRepository).saveAll(List.of(notificacao));
+        verify(notificacaoRepository, never()).marcarEnviadas(any(), any());
+    }
+
+    @Test
+    void processarLote_quandoExcedeTentativas_deveMarcarComoFalha() {
+        executarTransacoes();
+        Notificacao notificacao = notificacao(1, 2);
+        when(notificacaoRepository.bloquearPendentes(any(), eq(2))).thenReturn(List.of(notificacao));
+        when(publicador.publicar("msg-1")).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("erro")));
+
+        relay.processarLote();
+
+        assertThat(notificacao.getStatusEnvio()).isEqualTo(StatusEnvioNotificacao.FALHA);
+        assertThat(notificacao.getTentativas()).isEqualTo(3);
+        assertThat(notificacao.getProximaTentativaEm()).isNull();
+    }
+
+    @Test
+    void backoff_deveDobrarACadaTentativaAteOMaximo() {
+        assertThat(relay.backoff(1)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(relay.backoff(2)).isEqualTo(Duration.ofSeconds(2));
+        assertThat(relay.backoff(4)).isEqualTo(Duration.ofSeconds(8));
+        assertThat(relay.backoff(5)).isEqualTo(Duration.ofSeconds(10));
+        assertThat(relay.backoff(40)).isEqualTo(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void processarLote_quandoSqsNaoResponde_deveContarTimeoutComoFalha() {
+        executarTransacoes();
+        Notificacao notificacao = notificacao(1, 0);
+        when(notificacaoRepository.bloquearPendentes(any(), eq(2))).thenReturn(List.of(notificacao));
+        when(publicador.publicar("msg-1")).thenReturn(new CompletableFuture<>());
+
+        assertThat(relay.processarLote()).isZero();
+
+        assertThat(notificacao.getStatusEnvio()).isEqualTo(StatusEnvioNotificacao.PENDENTE);
+        assertThat(notificacao.getTentativas()).isEqualTo(1);
+    }
+
+    @Test
+    void drenarOutbox_deveProcessarLotesCheiosAteEsvaziar() {
+        executarTransacoes();
+        List<Notificacao> primeiroLote = new ArrayList<>(List.of(notificacao(1, 0), notificacao(2, 0)));
+        List<Notificacao> segundoLote = List.of(notificacao(3, 0));
+        when(notificacaoRepository.bloquearPendentes(any(), anyInt())).thenReturn(primeiroLote, segundoLote);
+        when(publicador.publicar(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.drenarOutbox();
+
+        verify(notificacaoRepository, times(2)).bloquearPendentes(any(), eq(2));
+        verify(publicador, times(3)).publicar(any());
+    }
+
+    @Test
+    void drenarOutbox_quandoLoteComFalha_naoRepeteNaMesmaExecucao() {
+        executarTransacoes();
+        when(notificacaoRepository.bloquearPendentes(any(), eq(2))).thenReturn(List.of(notificacao(1, 0), notificacao(2, 0)));
+        when(publicador.publicar("msg-1")).thenReturn(CompletableFuture.completedFuture(null));
+        when(publicador.publicar("msg-2")).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("erro")));
+
+        relay.drenarOutbox();
+
+        verify(notificacaoRepository, times(1)).bloquearPendentes(any(), eq(2));
+        verify(notificacaoRepository).marcarEnviadas(eq(List.of(1)), any(LocalDateTime.class));
+    }
+
+    // O TransactionTemplate simulado executa o callback direto, sem transação
+    private void executarTransacoes() {
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+    }
+
+    private Notificacao notificacao(Integer id, int tentativas) {
+        Notificacao notificacao = new Notificacao();
+        notificacao.setId(id);
+        notificacao.setMensagem("msg-" + id);
+        notificacao.setTentativas(tentativas);
+        return notificacao;
+    }
+}
@@ -1,79 +1,138 @@
 package com.fiap.vaga_liberada_agenda.scheduler;
 
-import com.fiap.vaga_liberada_agenda.entity.Consulta;
-import com.fiap.vaga_liberada_agenda.entity.ListaEspera;
-import com.fiap.vaga_liberada_agenda.entity.StatusConsulta;
-import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
+import com.fiap.vaga_liberada_agenda.dto.projection.OfertaPendenteProjection;
+import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
+import com.fiap.vaga_liberada_agenda.event.VagaAceitaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaOferecidaEvent;
+import com.fiap.vaga_liberada_agenda.repository.ListaEsperaRepository;
 import com.fiap.vaga_liberada_agenda.service.LiberacaoVagaService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class TimeoutVagaSchedulerTest {
 
     @Mock
-    private ConsultaRepository consultaRepository;
+    private ListaEsperaRepository listaEsperaRepository;
 
     @Mock
     private LiberacaoVagaService liberacaoVagaService;
 
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private TimeoutVagaScheduler timeoutVagaScheduler;
 
+    @AfterEach
+    void tearDown() {
+        timeoutVagaScheduler.parar();
+    }
+
+    @Test
+    void reidratarPrazos_quandoNenhumaOferta_naoAgenda() {
+        when(listaEsperaRepository.buscarOfertasPendentes(StatusListaEspera.AGUARDANDO_RESPOSTA)).thenReturn(List.of());
+
+        timeoutVagaScheduler.reidratarPrazos();
+
+        assertThat(timeoutVagaScheduler.ofertasPendentes()).isZero();
+    }
+
     @Test
-    void processarTimeoutsDeVagas_quandoNenhumaLiberada_naoProcessa() {
-        when(consultaRepository.findByStatus(StatusConsulta.LIBERADA)).thenReturn(List.of());
+    void reidratarPrazos_deveAgendarOfertasPendentes() {
+        LocalDateTime dataOferta = LocalDateTime.now().minusMinutes(10);
+        when(listaEsperaRepository.buscarOfertasPendentes(StatusListaEspera.AGUARDANDO_RESPOSTA))
+                .thenReturn(List.of(new OfertaPendenteProjection(1, dataOferta)));
+        when(liberacaoVagaService.calcularExpiracaoOferta(dataOferta)).thenReturn(dataOferta.plusHours(2));
 
-        timeoutVagaScheduler.processarTimeoutsDeVagas();
+        timeoutVagaScheduler.reidratarPrazos();
 
-        verify(consultaRepository).findByStatus(StatusConsulta.LIBERADA);
-        verify(liberacaoVagaService, never()).processarTimeoutVaga(any());
+        assertThat(timeoutVagaScheduler.ofertasPendentes()).isEqualTo(1);
     }
 
     @Test
-    void processarTimeoutsDeVagas_quandoLiberadaSemOferta_naoProcessa() {
-        Consulta consulta = new Consulta();
-        consulta.setId(1);
-        consulta.setStatus(StatusConsulta.LIBERADA);
-        consulta.setVagaOferecidaParaListaEspera(null);
-        when(consultaRepository.findByStatus(StatusConsulta.LIBERADA)).thenReturn(List.of(consulta));
+    void aoOferecerVaga_deveRegistrarPrazo() {
+        timeoutVagaScheduler.aoOferecerVaga(oferta(1, 5, LocalDateTime.now().plusHours(2)));
+        timeoutVagaScheduler.aoOferecerVaga(oferta(1, 6, LocalDateTime.now().plusHours(2)));
 
-        timeoutVagaScheduler.processarTimeoutsDeVagas();
+        // Nova oferta da mesma consulta substitui o prazo anterior
+        assertThat(timeoutVagaScheduler.ofertasPendentes()).isEqualTo(1);
+    }
+
+    @Test
+    void aoAceitarVaga_deveRemoverPrazo() {
+        timeoutVagaScheduler.aoOferecerVaga(oferta(1, 5, LocalDateTime.now().plusHours(2)));
+
+        timeoutVagaScheduler.aoAceitarVaga(new VagaAceitaEvent(1, 5, 3, LocalDateTime.now()));
 
-        verify(consultaRepository).findByStatus(StatusConsulta.LIBERADA);
-        verify(liberacaoVagaService, never()).processarTimeoutVaga(any());
+        assertThat(timeoutVagaScheduler.ofertasPendentes()).isZero();
     }
 
     @Test
-    void processarTimeoutsDeVagas_quandoLiberadaComOferta_processaTimeout() {
-        Consulta consulta = new Consulta();
-        consulta.setId(1);
-        consulta.setStatus(StatusConsulta.LIBERADA);
-        ListaEspera listaEspera = new ListaEspera();
-        listaEspera.setId(5);
-        consulta.setVagaOferecidaParaListaEspera(listaEspera);
-        when(consultaRepository.findByStatus(StatusConsulta.LIBERADA)).thenReturn(List.of(consulta));
-
-        timeoutVagaScheduler.processarTimeoutsDeVagas();
-
-        verify(consultaRepository).findByStatus(StatusConsulta.LIBERADA);
-        verify(liberacaoVagaService).processarTimeoutVaga(consulta);
+    void aoOferecerVaga_quandoPrazoVence_processaTimeout() {
+        timeoutVagaScheduler.iniciar();
+
+        timeoutVagaScheduler.aoOferecerVaga(oferta(1, 5, LocalDateTime.now().plusNanos(50_000_000)));
+
+        verify(liberacaoVagaService, timeout(2000)).processarTimeoutVaga(1);
     }
 
     @Test
-    void processarTimeoutsDeVagas_quandoExcecao_naoPropaga() {
-        when(consultaRepository.findByStatus(StatusConsulta.LIBERADA)).thenThrow(new RuntimeException("Erro"));
+    void expirarOferta_quandoDisparoAntesDoPrazo_registraPrazoNovamente() {
+        LocalDateTime expiraEm = LocalDateTime.now().plusMinutes(1);
+        when(liberacaoVagaService.processarTimeoutVaga(1)).thenReturn(Optional.of(expiraEm));
 
-        timeoutVagaScheduler.processarTimeoutsDeVagas();
+        timeoutVagaScheduler.expirarOferta(1);
+
+        assertThat(timeoutVagaScheduler.ofertasPendentes()).isEqualTo(1);
+    }
+
+    @Test
+    void expirarOferta_quandoOfertaExpirada_naoRegistraPrazo() {
+        when(liberacaoVagaService.processarTimeoutVaga(1)).thenReturn(Optional.empty());
+
+        timeoutVagaScheduler.expirarOferta(1);
+
+        assertThat(timeoutVagaScheduler.ofertasPendentes()).isZero();
+    }
+
+    @Test
+    void expirarOferta_quandoExcecao_naoPropaga() {
+        doThrow(new RuntimeException("Erro")).when(liberacaoVagaService).processarTimeoutVaga(1);
+
+        timeoutVagaScheduler.expirarOferta(1);
+
+        verify(liberacaoVagaService).processarTimeoutVaga(1);
+        verify(liberacaoVagaService, never()).processarTimeoutVaga(any(com.fiap.vaga_liberada_agenda.entity.Consulta.class));
+    }
+
+    @Test
+    void expirarOferta_quandoOfertaAlteradaConcorrentemente_naoPropaga() {
+        doThrow(new ObjectOptimisticLockingFailureException("Consulta", 1))
+                .when(liberacaoVagaService).processarTimeoutVaga(1);
+
+        timeoutVagaScheduler.expirarOferta(1);
+
+        verify(liberacaoVagaService).processarTimeoutVaga(1);
+    }
 
-        verify(consultaRepository).findByStatus(StatusConsulta.LIBERADA);
-        verify(liberacaoVagaService, never()).processarTimeoutVaga(any());
+    private static VagaOferecidaEvent oferta(Integer consultaId, Integer listaEsperaId, LocalDateTime expiraEm) {
+        return new VagaOferecidaEvent(consultaId, listaEsperaId, 3, null, LocalDateTime.now(), expiraEm);
     }
 }
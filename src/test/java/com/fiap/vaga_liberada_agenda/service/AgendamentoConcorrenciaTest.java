@@ -0,0 +1,148 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.dto.request.ConsultaRequest;
+import com.fiap.vaga_liberada_agenda.entity.*;
+import com.fiap.vaga_liberada_agenda.exception.ConflitoException;
+import com.fiap.vaga_liberada_agenda.repository.*;
+import io.awspring.cloud.sqs.operations.SqsTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rajada de agendamentos concorrentes disputando os mesmos horários de um médico: mede a vazão e
+ * verifica que cada horário termina com exatamente uma consulta ativa.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Slf4j
+class AgendamentoConcorrenciaTest {
+
+    private static final int THREADS = 32;
+    private static final int HORARIOS = 20;
+    private static final int TENTATIVAS_POR_HORARIO = 16;
+
+    @MockBean
+    private SqsTemplate sqsTemplate;
+
+    @Autowired
+    private ConsultaService consultaService;
+    @Autowired
+    private ConsultaRepository consultaRepository;
+    @Autowired
+    private PacienteRepository pacienteRepository;
+    @Autowired
+    private MedicoRepository medicoRepository;
+    @Autowired
+    private UnidadeSaudeRepository unidadeSaudeRepository;
+    @Autowired
+    private EspecialidadeRepository especialidadeRepository;
+
+    @Test
+    void rajadaDeAgendamentos_nenhumHorarioComDuasConsultasAtivas() throws Exception {
+        String sufixo = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+        Medico medico = criarMedico(sufixo);
+        List<Integer> pacientes = new ArrayList<>();
+        for (int i = 0; i < TENTATIVAS_POR_HORARIO; i++) {
+            pacientes.add(criarPaciente(sufixo, i).getId());
+        }
+        LocalDateTime inicio = LocalDateTime.now().plusDays(7).truncatedTo(ChronoUnit.HOURS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch largada = new CountDownLatch(1);
+        AtomicInteger sucessos = new AtomicInteger();
+        AtomicInteger recusados = new AtomicInteger();
+        List<Throwable> inesperados = new CopyOnWriteArrayList<>();
+        List<Future<?>> futuros = new ArrayList<>();
+
+        for (int tentativa = 0; tentativa < TENTATIVAS_POR_HORARIO; tentativa++) {
+            for (int horario = 0; horario < HORARIOS; horario++) {
+                ConsultaRequest request = new ConsultaRequest();
+                request.setPacienteId(pacientes.get(tentativa));
+                request.setMedicoId(medico.getId());
+                request.setUnidadeId(medico.getUnidade().getId());
+                request.setDataHora(inicio.plusMinutes(30L * horario));
+                futuros.add(executor.submit(() -> {
+                    largada.await();
+                    try {
+                        consultaService.agendar(request);
+                        sucessos.incrementAndGet();
+                    } catch (ConflitoException | IllegalArgumentException e) {
+                        // Conflito detectado pelo índice único ou pela verificação prévia
+                        recusados.incrementAndGet();
+                    } catch (Throwable e) {
+                        inesperados.add(e);
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        long inicioNanos = System.nanoTime();
+        largada.countDown();
+        try {
+            for (Future<?> futuro : futuros) {
+                futuro.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double segundos = (System.nanoTime() - inicioNanos) / 1_000_000_000.0;
+        log.info("Agendamentos concorrentes: {} requisições em {} s ({} req/s), {} aceitos, {} recusados",
+                futuros.size(), String.format("%.2f", segundos), String.format("%.0f", futuros.size() / segundos),
+                sucessos.get(), recusados.get());
+
+        assertThat(inesperados).isEmpty();
+        assertThat(sucessos.get()).isEqualTo(HORARIOS);
+        assertThat(recusados.get()).isEqualTo(HORARIOS * (TENTATIVAS_POR_HORARIO - 1));
+
+        Map<LocalDateTime, Long> ativasPorHorario = consultaRepository.findAll().stream()
+                .filter(c -> c.getMedico().getId().equals(medico.getId()))
+                .filter(c -> c.getStatus() == StatusConsulta.AGENDADA || c.getStatus() == StatusConsulta.PENDENTE_CONFIRMACAO)
+                .collect(Collectors.groupingBy(Consulta::getDataHora, Collectors.counting()));
+        assertThat(ativasPorHorario).hasSize(HORARIOS);
+        assertThat(ativasPorHorario.values()).containsOnly(1L);
+    }
+
+    private Medico criarMedico(String sufixo) {
+        Especialidade especialidade = new Especialidade();
+        especialidade.setNome("Especialidade " + sufixo);
+        especialidade = especialidadeRepository.save(especialidade);
+
+        UnidadeSaude unidade = new UnidadeSaude();
+        unidade.setNome("Unidade " + sufixo);
+        unidade.setLatitude(new BigDecimal("-23.55052000"));
+        unidade.setLongitude(new BigDecimal("-46.63330800"));
+        unidade = unidadeSaudeRepository.save(unidade);
+
+        Medico medico = new Medico();
+        medico.setNome("Dr. " + sufixo);
+        medico.setCrm("CRM" + sufixo);
+        medico.setEspecialidade(especialidade);
+        medico.setUnidade(unidade);
+        return medicoRepository.save(medico);
+    }
+
+    private Paciente criarPaciente(String sufixo, int indice) {
+        Paciente paciente = new Paciente();
+        paciente.setNome("Paciente " + sufixo + " " + indice);
+        paciente.setCpf(String.valueOf(ThreadLocalRandom.current().nextLong(10_000_000_000L, 99_999_999_999L)));
+        return pacienteRepository.save(paciente);
+    }
+}
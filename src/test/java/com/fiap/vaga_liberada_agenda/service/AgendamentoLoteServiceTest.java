@@ -0,0 +1,255 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.dto.projection.MedicoReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.SlotOcupadoProjection;
+import com.fiap.vaga_liberada_agenda.dto.request.ConsultaRequest;
+import com.fiap.vaga_liberada_agenda.dto.response.AgendamentoLoteResponse;
+import com.fiap.vaga_liberada_agenda.entity.*;
+import com.fiap.vaga_liberada_agenda.event.ConsultaAgendadaEvent;
+import com.fiap.vaga_liberada_agenda.repository.*;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AgendamentoLoteServiceTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.now().plusDays(7).withHour(8).withMinute(0).withSecond(0).withNano(0);
+
+    @Mock
+    private ConsultaRepository consultaRepository;
+    @Mock
+    private PacienteRepository pacienteRepository;
+    @Mock
+    private MedicoRepository medicoRepository;
+    @Mock
+    private UnidadeSaudeRepository unidadeSaudeRepository;
+    @Mock
+    private CacheReferenciaService cacheReferenciaService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private AgendamentoLoteService agendamentoLoteService;
+    private final AtomicInteger proximoId = new AtomicInteger(100);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        agendamentoLoteService = new AgendamentoLoteService(consultaRepository, pacienteRepository, medicoRepository,
+                unidadeSaudeRepository, cacheReferenciaService, eventPublisher, transactionTemplate, Validation.buildDefaultValidatorFactory().getValidator());
+
+        doAnswer(inv -> {
+            ((Consumer<TransactionStatus>) inv.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(transactionTemplate.execute(any())).thenAnswer(inv -> ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+
+        // Existem pacientes 1..5, médicos 10 (ativo) e 11 (inativo) e unidade 20
+        when(pacienteRepository.buscarIdsExistentes(anyCollection())).thenAnswer(inv -> filtrar(inv.getArgument(0), 1, 5));
+        when(medicoRepository.buscarIdsExistentes(anyCollection())).thenAnswer(inv -> filtrar(inv.getArgument(0), 10, 11));
+        when(medicoRepository.buscarIdsAtivos(anyCollection())).thenAnswer(inv -> filtrar(inv.getArgument(0), 10, 10));
+        when(unidadeSaudeRepository.buscarIdsExistentes(anyCollection())).thenAnswer(inv -> filtrar(inv.getArgument(0), 20, 20));
+        when(consultaRepository.buscarSlotsOcupados(anyCollection(), any(), any())).thenReturn(List.of());
+        when(pacienteRepository.getReferenceById(anyInt())).thenAnswer(inv -> referencia(new Paciente(), inv.getArgument(0)));
+        when(medicoRepository.getReferenceById(anyInt())).thenAnswer(inv -> referencia(new Medico(), inv.getArgument(0)));
+        when(unidadeSaudeRepository.getReferenceById(anyInt())).thenAnswer(inv -> referencia(new UnidadeSaude(), inv.getArgument(0)));
+        doAnswer(this::gravar).when(consultaRepository).inserirEmLote(anyList());
+        when(cacheReferenciaService.buscarMedico(10))
+                .thenReturn(Optional.of(new MedicoReferenciaProjection(10, "Dr. Teste", "CRM10", true, 4, 20)));
+    }
+
+    @Test
+    void agendar_deveGravarValidasERelatarCadaConsulta() {
+        List<ConsultaRequest> requests = new ArrayList<>(List.of(
+                request(1, 10, 20, INICIO),
+                request(99, 10, 20, INICIO.plusMinutes(30)),
+                request(1, 12, 20, INICIO.plusMinutes(30)),
+                request(1, 11, 20, INICIO.plusMinutes(30)),
+                request(1, 10, 21, INICIO.plusMinutes(30)),
+                request(2, 10, 20, INICIO.minusDays(30)),
+                request(3, 10, null, INICIO.plusMinutes(30))));
+        requests.add(null);
+
+        AgendamentoLoteResponse resposta = agendamentoLoteService.agendar(requests);
+
+        assertThat(resposta.total()).isEqualTo(8);
+        assertThat(resposta.agendadas()).isEqualTo(1);
+        assertThat(resposta.rejeitadas()).isEqualTo(7);
+        assertThat(resposta.itens()).extracting(AgendamentoLoteResponse.Item::indice).containsExactly(0, 1, 2, 3, 4, 5, 6, 7);
+        assertThat(resposta.itens().get(0).consultaId()).isEqualTo(100);
+        assertThat(resposta.itens()).extracting(AgendamentoLoteResponse.Item::erro).containsExactly(
+                null,
+                "Paciente não encontrado com ID: 99",
+                "Médico não encontrado com ID: 12",
+                "Médico não está ativo",
+                "Unidade de saúde não encontrada com ID: 21",
+                "A data da consulta deve ser futura",
+                "ID da unidade de saúde é obrigatório",
+                "Consulta vazia");
+
+        ArgumentCaptor<List<Consulta>> salvas = ArgumentCaptor.captor();
+        verify(consultaRepository).inserirEmLote(salvas.capture());
+        Consulta salva = salvas.getValue().get(0);
+        assertThat(salva.getStatus()).isEqualTo(StatusConsulta.PENDENTE_CONFIRMACAO);
+        assertThat(salva.getDataLimiteConfirmacao()).isEqualTo(INICIO.minusMinutes(30));
+        assertThat(salva.getLembreteEnviado()).isFalse();
+        assertThat(salva.getMedico().getId()).isEqualTo(10);
+        verify(pacienteRepository, never()).findById(any());
+        verify(medicoRepository, never()).findById(any());
+        verify(eventPublisher).publishEvent(new ConsultaAgendadaEvent(100, 4, INICIO.minusMinutes(30)));
+    }
+
+    @Test
+    void agendar_deveRejeitarHorarioOcupadoNoBancoOuRepetidoNoLote() {
+        when(consultaRepository.buscarSlotsOcupados(anyCollection(), any(), any()))
+                .thenReturn(List.of(new SlotOcupadoProjection(10, INICIO)));
+
+        AgendamentoLoteResponse resposta = agendamentoLoteService.agendar(List.of(
+                request(1, 10, 20, INICIO),
+                request(2, 10, 20, INICIO.plusMinutes(30)),
+                request(3, 10, 20, INICIO.plusMinutes(30))));
+
+        assertThat(resposta.agendadas()).isEqualTo(1);
+        assertThat(resposta.itens()).extracting(AgendamentoLoteResponse.Item::erro).containsExactly(
+                AgendamentoLoteService.ERRO_CONFLITO, null, AgendamentoLoteService.ERRO_CONFLITO);
+        verify(consultaRepository).buscarSlotsOcupados(Set.of(10), INICIO, INICIO.plusMinutes(30));
+    }
+
+    @Test
+    void agendar_deveConsultarReferenciasUmaVezPorLote() {
+        ReflectionTestUtils.setField(agendamentoLoteService, "tamanhoLote", 2);
+        List<ConsultaRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            requests.add(request(1 + i, 10, 20, INICIO.plusMinutes(30L * i)));
+        }
+
+        AgendamentoLoteResponse resposta = agendamentoLoteService.agendar(requests);
+
+        assertThat(resposta.agendadas()).isEqualTo(5);
+        verify(transactionTemplate, times(3)).executeWithoutResult(any());
+        verify(pacienteRepository, times(3)).buscarIdsExistentes(anyCollection());
+        verify(medicoRepository, times(3)).buscarIdsExistentes(anyCollection());
+        verify(medicoRepository, times(3)).buscarIdsAtivos(anyCollection());
+        verify(unidadeSaudeRepository, times(3)).buscarIdsExistentes(anyCollection());
+        verify(consultaRepository, times(3)).buscarSlotsOcupados(anyCollection(), any(), any());
+        verify(consultaRepository, times(3)).inserirEmLote(anyList());
+    }
+
+    @Test
+    void agendar_quandoIndiceUnicoRejeitaLote_deveGravarUmaPorVez() {
+        DataIntegrityViolationException conflito = new DataIntegrityViolationException("conflito",
+                new SQLIntegrityConstraintViolationException("Duplicate entry for key '" + Consulta.UK_MEDICO_SLOT_ATIVO + "'"));
+        // Lote inteiro rejeitado; depois, uma a uma, só a segunda consulta conflita
+        doThrow(conflito).doAnswer(this::gravar).doThrow(conflito).when(consultaRepository).inserirEmLote(anyList());
+
+        AgendamentoLoteResponse resposta = agendamentoLoteService.agendar(List.of(
+                request(1, 10, 20, INICIO),
+                request(2, 10, 20, INICIO.plusMinutes(30)),
+                request(99, 10, 20, INICIO.plusMinutes(60))));
+
+        assertThat(resposta.agendadas()).isEqualTo(1);
+        assertThat(resposta.itens().get(0).consultaId()).isNotNull();
+        assertThat(resposta.itens().get(1).consultaId()).isNull();
+        assertThat(resposta.itens()).extracting(AgendamentoLoteResponse.Item::erro).containsExactly(
+                null, AgendamentoLoteService.ERRO_CONFLITO, "Paciente não encontrado com ID: 99");
+        verify(consultaRepository, times(3)).inserirEmLote(anyList());
+    }
+
+    @Test
+    void agendar_quandoLoteFalha_deveRejeitarSoAsConsultasDoLote() {
+        ReflectionTestUtils.setField(agendamentoLoteService, "tamanhoLote", 2);
+        doAnswer(this::gravar).doThrow(new DataAccessResourceFailureException("Conexão perdida"))
+                .when(consultaRepository).inserirEmLote(anyList());
+
+        AgendamentoLoteResponse resposta = agendamentoLoteService.agendar(List.of(
+                request(1, 10, 20, INICIO),
+                request(2, 10, 20, INICIO.plusMinutes(30)),
+                request(3, 10, 20, INICIO.plusMinutes(60)),
+                request(99, 10, 20, INICIO.plusMinutes(90))));
+
+        assertThat(resposta.agendadas()).isEqualTo(2);
+        assertThat(resposta.itens().get(2).consultaId()).isNull();
+        assertThat(resposta.itens().get(2).erro()).startsWith("Erro ao gravar o lote");
+        assertThat(resposta.itens().get(3).erro()).isEqualTo("Paciente não encontrado com ID: 99");
+    }
+
+    @Test
+    void agendar_quandoLoteFalha_deveLiberarOsHorariosParaOsLotesSeguintes() {
+        ReflectionTestUtils.setField(agendamentoLoteService, "tamanhoLote", 1);
+        doThrow(new DataAccessResourceFailureException("Conexão perdida")).doAnswer(this::gravar)
+                .when(consultaRepository).inserirEmLote(anyList());
+
+        // A mesma consulta reenviada na mesma carga: a primeira tentativa falhou sem gravar nada
+        AgendamentoLoteResponse resposta = agendamentoLoteService.agendar(List.of(
+                request(1, 10, 20, INICIO),
+                request(1, 10, 20, INICIO)));
+
+        assertThat(resposta.itens().get(0).erro()).startsWith("Erro ao gravar o lote");
+        assertThat(resposta.itens().get(1).erro()).isNull();
+        assertThat(resposta.itens().get(1).consultaId()).isNotNull();
+    }
+
+    @Test
+    void agendar_acimaDoLimite_deveLancarExcecao() {
+        ReflectionTestUtils.setField(agendamentoLoteService, "maxConsultas", 1);
+
+        assertThatThrownBy(() -> agendamentoLoteService.agendar(List.of(
+                request(1, 10, 20, INICIO), request(2, 10, 20, INICIO.plusMinutes(30)))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("limite de 1 consultas");
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    private Object gravar(InvocationOnMock inv) {
+        List<Consulta> novas = inv.getArgument(0);
+        novas.forEach(nova -> nova.setId(proximoId.getAndIncrement()));
+        return null;
+    }
+
+    private static ConsultaRequest request(Integer pacienteId, Integer medicoId, Integer unidadeId, LocalDateTime dataHora) {
+        ConsultaRequest request = new ConsultaRequest();
+        request.setPacienteId(pacienteId);
+        request.setMedicoId(medicoId);
+        request.setUnidadeId(unidadeId);
+        request.setDataHora(dataHora);
+        return request;
+    }
+
+    private static Set<Integer> filtrar(Collection<Integer> ids, int minimo, int maximo) {
+        return ids.stream().filter(id -> id >= minimo && id <= maximo).collect(Collectors.toSet());
+    }
+
+    private static <T> T referencia(T entidade, Integer id) {
+        ReflectionTestUtils.setField(entidade, "id", id);
+        return entidade;
+    }
+}
@@ -0,0 +1,116 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.dto.projection.MedicoReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.repository.EspecialidadeRepository;
+import com.fiap.vaga_liberada_agenda.repository.MedicoRepository;
+import com.fiap.vaga_liberada_agenda.repository.UnidadeSaudeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig(CacheReferenciaServiceTest.Config.class)
+class CacheReferenciaServiceTest {
+
+    @Configuration
+    @EnableCaching
+    @Import(CacheReferenciaService.class)
+    static class Config {
+
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager(CacheReferenciaService.CACHE_MEDICOS,
+                    CacheReferenciaService.CACHE_UNIDADES, CacheReferenciaService.CACHE_ESPECIALIDADES);
+        }
+
+        @Bean
+        MedicoRepository medicoRepository() {
+            return Mockito.mock(MedicoRepository.class);
+        }
+
+        @Bean
+        UnidadeSaudeRepository unidadeSaudeRepository() {
+            return Mockito.mock(UnidadeSaudeRepository.class);
+        }
+
+        @Bean
+        EspecialidadeRepository especialidadeRepository() {
+            return Mockito.mock(EspecialidadeRepository.class);
+        }
+    }
+
+    @Autowired
+    private CacheReferenciaService cacheReferenciaService;
+    @Autowired
+    private MedicoRepository medicoRepository;
+    @Autowired
+    private UnidadeSaudeRepository unidadeSaudeRepository;
+    @Autowired
+    private CacheManager cacheManager;
+
+    private MedicoReferenciaProjection medico;
+
+    @BeforeEach
+    void setup() {
+        reset(medicoRepository, unidadeSaudeRepository);
+        cacheManager.getCacheNames().forEach(nome -> cacheManager.getCache(nome).clear());
+
+        medico = new MedicoReferenciaProjection(1, "Dr. Teste", "12345", true, 1, 1);
+    }
+
+    @Test
+    void buscarMedico_segundaLeituraDeveVirDoCache() {
+        when(medicoRepository.buscarReferencia(1)).thenReturn(Optional.of(medico));
+
+        assertThat(cacheReferenciaService.buscarMedico(1)).contains(medico);
+        assertThat(cacheReferenciaService.buscarMedico(1)).contains(medico);
+
+        verify(medicoRepository, times(1)).buscarReferencia(1);
+    }
+
+    @Test
+    void invalidarMedico_deveForcarNovaLeitura() {
+        when(medicoRepository.buscarReferencia(1)).thenReturn(Optional.of(medico));
+        cacheReferenciaService.buscarMedico(1);
+
+        cacheReferenciaService.invalidarMedico(1);
+        cacheReferenciaService.buscarMedico(1);
+
+        verify(medicoRepository, times(2)).buscarReferencia(1);
+    }
+
+    @Test
+    void invalidarUnidade_emTransacao_deveRemoverNovamenteAposConclusao() {
+        UnidadeReferenciaProjection unidade = new UnidadeReferenciaProjection(7, "UBS Teste", null, null);
+        when(unidadeSaudeRepository.buscarReferencia(7)).thenReturn(Optional.of(unidade));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cacheReferenciaService.invalidarUnidade(7);
+            // Leitura concorrente antes do commit recarrega o cache
+            cacheReferenciaService.buscarUnidade(7);
+            assertThat(cacheManager.getCache(CacheReferenciaService.CACHE_UNIDADES).get(7)).isNotNull();
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            assertThat(cacheManager.getCache(CacheReferenciaService.CACHE_UNIDADES).get(7)).isNull();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fiap.vaga_liberada_agenda.dto.notificacao.MensagemNotificacao;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CodificadorMensagemNotificacaoTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CodificadorMensagemNotificacao codificador = new CodificadorMensagemNotificacao(objectMapper);
+
+    @Test
+    void codificar_deveEscreverTodosOsCampos() {
+        String json = codificador.codificar(new MensagemNotificacao(1, 10, 5, "Olá"));
+
+        assertThat(json).isEqualTo("{\"pacienteId\":1,\"consultaId\":10,\"listaEsperaId\":5,\"mensagem\":\"Olá\"}");
+    }
+
+    @Test
+    void codificar_deveOmitirCamposNulos() {
+        String json = codificador.codificar(new MensagemNotificacao(1, 10, null, null));
+
+        assertThat(json).isEqualTo("{\"pacienteId\":1,\"consultaId\":10}");
+    }
+
+    @Test
+    void codificar_deveEscaparAspasEControlesNoTexto() throws Exception {
+        String texto = "Olá Maria \"Mari\" D'Ávila\\Silva\nUBS \u0001Centro";
+
+        String json = codificador.codificar(new MensagemNotificacao(1, 10, null, texto));
+
+        JsonNode lido = objectMapper.readTree(json);
+        assertThat(lido.get("mensagem").asText()).isEqualTo(texto);
+        assertThat(lido.get("pacienteId").asInt()).isEqualTo(1);
+    }
+
+    @Test
+    void codificar_chamadasSucessivas_naoDevemCompartilharConteudo() {
+        String primeira = codificador.codificar(new MensagemNotificacao(1, 10, null, "primeira mensagem mais longa"));
+        String segunda = codificador.codificar(new MensagemNotificacao(2, 20, null, "segunda"));
+
+        assertThat(primeira).contains("primeira mensagem mais longa").doesNotContain("segunda");
+        assertThat(segunda).isEqualTo("{\"pacienteId\":2,\"consultaId\":20,\"mensagem\":\"segunda\"}");
+    }
+}
@@ -1,8 +1,17 @@
 package com.fiap.vaga_liberada_agenda.service;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.ConsultaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.MedicoReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.PrazoConsultaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection;
 import com.fiap.vaga_liberada_agenda.dto.request.ConsultaRequest;
 import com.fiap.vaga_liberada_agenda.dto.response.ConsultaResponse;
+import com.fiap.vaga_liberada_agenda.dto.response.PaginaResponse;
 import com.fiap.vaga_liberada_agenda.entity.*;
+import com.fiap.vaga_liberada_agenda.event.ConsultaAgendadaEvent;
+import com.fiap.vaga_liberada_agenda.event.ConsultaCanceladaEvent;
+import com.fiap.vaga_liberada_agenda.event.ConsultaConfirmadaEvent;
+import com.fiap.vaga_liberada_agenda.exception.ConflitoException;
 import com.fiap.vaga_liberada_agenda.mapper.ConsultaMapper;
 import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
 import com.fiap.vaga_liberada_agenda.repository.MedicoRepository;
@@ -16,6 +25,9 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -41,12 +53,18 @@ class ConsultaServiceTest {
     @Mock
     private UnidadeSaudeRepository unidadeSaudeRepository;
 
+    @Mock
+    private CacheReferenciaService cacheReferenciaService;
+
     @Mock
     private ConsultaMapper consultaMapper;
 
     @Mock
     private LiberacaoVagaService liberacaoVagaService;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private ConsultaService consultaService;
 
@@ -56,6 +74,8 @@ class ConsultaServiceTest {
     private Paciente paciente;
     private Medico medico;
     private UnidadeSaude unidade;
+    private MedicoReferenciaProjection medicoReferencia;
+    private UnidadeReferenciaProjection unidadeReferencia;
 
     @BeforeEach
     void setup() {
@@ -67,10 +87,16 @@ class ConsultaServiceTest {
         medico.setId(2);
         medico.setNome("Medico Teste");
         medico.setAtivo(true);
+        Especialidade especialidade = new Especialidade();
+        especialidade.setId(4);
+        medico.setEspecialidade(especialidade);
 
         unidade = new UnidadeSaude();
         unidade.setId(3);
         unidade.setNome("Unidade Teste");
+
+        medicoReferencia = new MedicoReferenciaProjection(2, "Medico Teste", "CRM123", true, 4, 3);
+        unidadeReferencia = new UnidadeReferenciaProjection(3, "Unidade Teste", null, null);
     }
 
     @Test
@@ -85,9 +111,11 @@ class ConsultaServiceTest {
         request.setObservacoes("obs");
 
         when(pacienteRepository.findById(paciente.getId())).thenReturn(Optional.of(paciente));
-        when(medicoRepository.findById(medico.getId())).thenReturn(Optional.of(medico));
-        when(unidadeSaudeRepository.findById(unidade.getId())).thenReturn(Optional.of(unidade));
+        when(cacheReferenciaService.buscarMedico(medico.getId())).thenReturn(Optional.of(medicoReferencia));
+        when(cacheReferenciaService.buscarUnidade(unidade.getId())).thenReturn(Optional.of(unidadeReferencia));
         when(consultaRepository.existsConsultaNoHorario(medico.getId(), dataHora)).thenReturn(false);
+        when(medicoRepository.getReferenceById(medico.getId())).thenReturn(medico);
+        when(unidadeSaudeRepository.getReferenceById(unidade.getId())).thenReturn(unidade);
 
         Consulta salvo = new Consulta();
         salvo.setId(10);
@@ -96,25 +124,27 @@ class ConsultaServiceTest {
         salvo.setUnidade(unidade);
         salvo.setDataHora(dataHora);
         salvo.setStatus(StatusConsulta.PENDENTE_CONFIRMACAO);
+        salvo.setDataLimiteConfirmacao(dataHora.minusMinutes(30));
 
-        when(consultaRepository.save(any())).thenReturn(salvo);
+        when(consultaRepository.saveAndFlush(any())).thenReturn(salvo);
 
         ConsultaResponse resposta = new ConsultaResponse();
         resposta.setId(10);
-        when(consultaMapper.toResponse(salvo)).thenReturn(resposta);
+        when(consultaMapper.toResponse(salvo, medicoReferencia, unidadeReferencia)).thenReturn(resposta);
 
         ConsultaResponse result = consultaService.agendar(request);
 
         assertThat(result).isNotNull();
         assertThat(result.getId()).isEqualTo(10);
 
-        verify(consultaRepository).save(consultaCaptor.capture());
+        verify(consultaRepository).saveAndFlush(consultaCaptor.capture());
         Consulta capturada = consultaCaptor.getValue();
         assertThat(capturada.getPaciente()).isEqualTo(paciente);
         assertThat(capturada.getMedico()).isEqualTo(medico);
         assertThat(capturada.getUnidade()).isEqualTo(unidade);
         assertThat(capturada.getDataHora()).isEqualTo(dataHora);
         assertThat(capturada.getStatus()).isEqualTo(StatusConsulta.PENDENTE_CONFIRMACAO);
+        verify(eventPublisher).publishEvent(new ConsultaAgendadaEvent(10, 4, dataHora.minusMinutes(30)));
     }
 
     @Test
@@ -133,7 +163,7 @@ class ConsultaServiceTest {
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("Paciente não encontrado");
 
-        verify(consultaRepository, never()).save(any());
+        verify(consultaRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -146,16 +176,16 @@ class ConsultaServiceTest {
         request.setUnidadeId(unidade.getId());
         request.setDataHora(dataHora);
 
-        medico.setAtivo(false);
+        MedicoReferenciaProjection medicoInativo = new MedicoReferenciaProjection(2, "Medico Teste", "CRM123", false, 4, 3);
 
         when(pacienteRepository.findById(paciente.getId())).thenReturn(Optional.of(paciente));
-        when(medicoRepository.findById(medico.getId())).thenReturn(Optional.of(medico));
+        when(cacheReferenciaService.buscarMedico(medico.getId())).thenReturn(Optional.of(medicoInativo));
 
         assertThatThrownBy(() -> consultaService.agendar(request))
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("Médico não está ativo");
 
-        verify(consultaRepository, never()).save(any());
+        verify(consultaRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -182,13 +212,14 @@ class ConsultaServiceTest {
         Consulta consulta = new Consulta();
         consulta.setId(30);
         consulta.setStatus(StatusConsulta.PENDENTE_CONFIRMACAO);
+        consulta.setMedico(medico);
 
         when(consultaRepository.findById(30)).thenReturn(Optional.of(consulta));
         when(consultaRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
 
         ConsultaResponse response = new ConsultaResponse();
         response.setId(30);
-        when(consultaMapper.toResponse(any())).thenReturn(response);
+        when(consultaMapper.toResponse(any(Consulta.class))).thenReturn(response);
 
         ConsultaResponse result = consultaService.desistirConsulta(30);
 
@@ -197,6 +228,7 @@ class ConsultaServiceTest {
 
         verify(consultaRepository).save(any());
         verify(liberacaoVagaService).liberarVaga(any());
+        verify(eventPublisher).publishEvent(new ConsultaCanceladaEvent(30, 4));
     }
 
     @Test
@@ -209,13 +241,13 @@ class ConsultaServiceTest {
         request.setDataHora(dataHora);
 
         when(pacienteRepository.findById(paciente.getId())).thenReturn(Optional.of(paciente));
-        when(medicoRepository.findById(medico.getId())).thenReturn(Optional.of(medico));
-        when(unidadeSaudeRepository.findById(999)).thenReturn(Optional.empty());
+        when(cacheReferenciaService.buscarMedico(medico.getId())).thenReturn(Optional.of(medicoReferencia));
+        when(cacheReferenciaService.buscarUnidade(999)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> consultaService.agendar(request))
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("Unidade de saúde não encontrada");
-        verify(consultaRepository, never()).save(any());
+        verify(consultaRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -228,14 +260,36 @@ class ConsultaServiceTest {
         request.setDataHora(dataHora);
 
         when(pacienteRepository.findById(paciente.getId())).thenReturn(Optional.of(paciente));
-        when(medicoRepository.findById(medico.getId())).thenReturn(Optional.of(medico));
-        when(unidadeSaudeRepository.findById(unidade.getId())).thenReturn(Optional.of(unidade));
+        when(cacheReferenciaService.buscarMedico(medico.getId())).thenReturn(Optional.of(medicoReferencia));
+        when(cacheReferenciaService.buscarUnidade(unidade.getId())).thenReturn(Optional.of(unidadeReferencia));
         when(consultaRepository.existsConsultaNoHorario(medico.getId(), dataHora)).thenReturn(true);
 
         assertThatThrownBy(() -> consultaService.agendar(request))
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("Já existe uma consulta agendada");
-        verify(consultaRepository, never()).save(any());
+        verify(consultaRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void agendar_quandoHorarioOcupadoConcorrentemente_deveLancarConflito() {
+        ConsultaRequest request = requestAgendamento(LocalDateTime.now().plusDays(1));
+        stubValidacoesAgendamento(request);
+        when(consultaRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException(
+                "Duplicate entry for key 'consultas." + Consulta.UK_MEDICO_SLOT_ATIVO + "'"));
+
+        assertThatThrownBy(() -> consultaService.agendar(request))
+                .isInstanceOf(ConflitoException.class)
+                .hasMessageContaining("Já existe uma consulta agendada");
+    }
+
+    @Test
+    void agendar_quandoOutraViolacaoDeIntegridade_devePropagar() {
+        ConsultaRequest request = requestAgendamento(LocalDateTime.now().plusDays(1));
+        stubValidacoesAgendamento(request);
+        when(consultaRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("fk_consultas_paciente"));
+
+        assertThatThrownBy(() -> consultaService.agendar(request))
+                .isInstanceOf(DataIntegrityViolationException.class);
     }
 
     @Test
@@ -248,14 +302,14 @@ class ConsultaServiceTest {
         request.setDataHora(dataHora);
 
         when(pacienteRepository.findById(paciente.getId())).thenReturn(Optional.of(paciente));
-        when(medicoRepository.findById(medico.getId())).thenReturn(Optional.of(medico));
-        when(unidadeSaudeRepository.findById(unidade.getId())).thenReturn(Optional.of(unidade));
+        when(cacheReferenciaService.buscarMedico(medico.getId())).thenReturn(Optional.of(medicoReferencia));
+        when(cacheReferenciaService.buscarUnidade(unidade.getId())).thenReturn(Optional.of(unidadeReferencia));
         when(consultaRepository.existsConsultaNoHorario(medico.getId(), dataHora)).thenReturn(false);
 
         assertThatThrownBy(() -> consultaService.agendar(request))
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("data da consulta deve ser futura");
-        verify(consultaRepository, never()).save(any());
+        verify(consultaRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -264,19 +318,21 @@ class ConsultaServiceTest {
         consulta.setId(20);
         consulta.setStatus(StatusConsulta.PENDENTE_CONFIRMACAO);
         consulta.setDataLimiteConfirmacao(LocalDateTime.now().plusHours(1));
+        consulta.setMedico(medico);
 
         when(consultaRepository.findById(20)).thenReturn(Optional.of(consulta));
         when(consultaRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
         ConsultaResponse response = new ConsultaResponse();
         response.setId(20);
-        when(consultaMapper.toResponse(any())).thenReturn(response);
+        when(consultaMapper.toResponse(any(Consulta.class))).thenReturn(response);
 
         ConsultaResponse result = consultaService.confirmarConsulta(20);
 
         assertThat(result).isNotNull();
         assertThat(consulta.getStatus()).isEqualTo(StatusConsulta.AGENDADA);
         verify(consultaRepository).save(consulta);
+        verify(eventPublisher).publishEvent(new ConsultaConfirmadaEvent(20, 4));
     }
 
     @Test
@@ -298,18 +354,20 @@ class ConsultaServiceTest {
         Consulta consulta = new Consulta();
         consulta.setId(25);
         consulta.setStatus(StatusConsulta.PENDENTE_CONFIRMACAO);
+        consulta.setMedico(medico);
 
         when(consultaRepository.findById(25)).thenReturn(Optional.of(consulta));
         when(consultaRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
         ConsultaResponse response = new ConsultaResponse();
         response.setId(25);
-        when(consultaMapper.toResponse(any())).thenReturn(response);
+        when(consultaMapper.toResponse(any(Consulta.class))).thenReturn(response);
 
         ConsultaResponse result = consultaService.cancelarConsulta(25);
 
         assertThat(result).isNotNull();
         assertThat(consulta.getStatus()).isEqualTo(StatusConsulta.CANCELADA);
         verify(consultaRepository).save(consulta);
+        verify(eventPublisher).publishEvent(new ConsultaCanceladaEvent(25, 4));
     }
 
     @Test
@@ -356,22 +414,22 @@ class ConsultaServiceTest {
 
     @Test
     void buscarPorId_deveRetornarConsulta() {
-        Consulta consulta = new Consulta();
-        consulta.setId(40);
-        when(consultaRepository.findById(40)).thenReturn(Optional.of(consulta));
+        ConsultaProjection projecao = projecao(40);
+        when(consultaRepository.buscarProjecaoPorId(40)).thenReturn(Optional.of(projecao));
         ConsultaResponse response = new ConsultaResponse();
         response.setId(40);
-        when(consultaMapper.toResponse(consulta)).thenReturn(response);
+        when(consultaMapper.toResponse(projecao)).thenReturn(response);
 
         ConsultaResponse result = consultaService.buscarPorId(40);
 
         assertThat(result).isNotNull();
         assertThat(result.getId()).isEqualTo(40);
+        verify(consultaRepository, never()).findById(any());
     }
 
     @Test
     void buscarPorId_deveLancarQuandoNaoEncontrada() {
-        when(consultaRepository.findById(999)).thenReturn(Optional.empty());
+        when(consultaRepository.buscarProjecaoPorId(999)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> consultaService.buscarPorId(999))
                 .isInstanceOf(IllegalArgumentException.class)
@@ -380,50 +438,114 @@ class ConsultaServiceTest {
 
     @Test
     void listarPorPaciente_deveRetornarLista() {
-        Consulta consulta = new Consulta();
-        consulta.setId(1);
-        when(consultaRepository.findByPacienteId(1)).thenReturn(java.util.List.of(consulta));
+        ConsultaProjection projecao = projecao(1);
+        when(consultaRepository.buscarPagina(0, 1, null, Limit.of(PaginaResponse.LIMITE_PADRAO + 1)))
+                .thenReturn(java.util.List.of(projecao));
         ConsultaResponse response = new ConsultaResponse();
-        when(consultaMapper.toResponse(consulta)).thenReturn(response);
+        when(consultaMapper.toResponse(projecao)).thenReturn(response);
 
-        java.util.List<ConsultaResponse> result = consultaService.listarPorPaciente(1);
+        PaginaResponse<ConsultaResponse> result = consultaService.listarPorPaciente(1, null, null);
 
-        assertThat(result).hasSize(1);
+        assertThat(result.itens()).hasSize(1);
+        assertThat(result.proximoCursor()).isNull();
     }
 
     @Test
     void listarPorStatus_deveRetornarLista() {
-        Consulta consulta = new Consulta();
-        when(consultaRepository.findByStatus(StatusConsulta.AGENDADA)).thenReturn(java.util.List.of(consulta));
+        ConsultaProjection projecao = projecao(1);
+        when(consultaRepository.buscarPagina(0, null, StatusConsulta.AGENDADA, Limit.of(PaginaResponse.LIMITE_PADRAO + 1)))
+                .thenReturn(java.util.List.of(projecao));
         ConsultaResponse response = new ConsultaResponse();
-        when(consultaMapper.toResponse(consulta)).thenReturn(response);
+        when(consultaMapper.toResponse(projecao)).thenReturn(response);
 
-        java.util.List<ConsultaResponse> result = consultaService.listarPorStatus(StatusConsulta.AGENDADA);
+        PaginaResponse<ConsultaResponse> result = consultaService.listarPorStatus(StatusConsulta.AGENDADA, null, null);
 
-        assertThat(result).hasSize(1);
+        assertThat(result.itens()).hasSize(1);
     }
 
     @Test
     void listarTodas_deveRetornarLista() {
-        Consulta consulta = new Consulta();
-        when(consultaRepository.findAll()).thenReturn(java.util.List.of(consulta));
+        ConsultaProjection projecao = projecao(1);
+        when(consultaRepository.buscarPagina(0, null, null, Limit.of(PaginaResponse.LIMITE_PADRAO + 1)))
+                .thenReturn(java.util.List.of(projecao));
         ConsultaResponse response = new ConsultaResponse();
-        when(consultaMapper.toResponse(consulta)).thenReturn(response);
+        when(consultaMapper.toResponse(projecao)).thenReturn(response);
 
-        java.util.List<ConsultaResponse> result = consultaService.listarTodas();
+        PaginaResponse<ConsultaResponse> result = consultaService.listarTodas(null, null);
 
-        assertThat(result).hasSize(1);
+        assertThat(result.itens()).hasSize(1);
     }
 
     @Test
-    void verificarConsultasNaoConfirmadas_deveRetornarLista() {
-        Consulta consulta = new Consulta();
-        consulta.setId(1);
-        when(consultaRepository.buscarConsultasNaoConfirmadas(eq(StatusConsulta.PENDENTE_CONFIRMACAO), any(LocalDateTime.class)))
-                .thenReturn(java.util.List.of(consulta));
+    void listarTodas_quandoHaMaisRegistros_deveRetornarProximoCursor() {
+        when(consultaRepository.buscarPagina(10, null, null, Limit.of(3)))
+                .thenReturn(java.util.List.of(projecao(11), projecao(12), projecao(13)));
+        when(consultaMapper.toResponse(any(ConsultaProjection.class))).thenReturn(new ConsultaResponse());
+
+        PaginaResponse<ConsultaResponse> result = consultaService.listarTodas(10, 2);
+
+        assertThat(result.itens()).hasSize(2);
+        assertThat(result.proximoCursor()).isEqualTo(12);
+    }
+
+    @Test
+    void listarTodas_deveLimitarTamanhoMaximoDaPagina() {
+        when(consultaRepository.buscarPagina(0, null, null, Limit.of(PaginaResponse.LIMITE_MAXIMO + 1)))
+                .thenReturn(java.util.List.of());
+
+        assertThat(consultaService.listarTodas(null, 100_000).itens()).isEmpty();
+    }
+
+    @Test
+    void listarTodas_comLimiteInvalido_deveLancar() {
+        assertThatThrownBy(() -> consultaService.listarTodas(null, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("limite");
+    }
+
+    @Test
+    void exportar_deveEnviarTodasAsConsultasEmStreaming() {
+        when(consultaRepository.streamTodas()).thenReturn(java.util.stream.Stream.of(projecao(1), projecao(2)));
+        when(consultaMapper.toResponse(any(ConsultaProjection.class))).thenReturn(new ConsultaResponse());
+        java.util.List<ConsultaResponse> recebidas = new java.util.ArrayList<>();
+
+        long total = consultaService.exportar(recebidas::add);
+
+        assertThat(total).isEqualTo(2);
+        assertThat(recebidas).hasSize(2);
+    }
 
-        java.util.List<Consulta> result = consultaService.verificarConsultasNaoConfirmadas();
+    @Test
+    void verificarConsultasNaoConfirmadas_deveRetornarLoteAposCursor() {
+        LocalDateTime cursor = LocalDateTime.now().minusDays(1);
+        LocalDateTime ate = LocalDateTime.now().plusDays(1);
+        PrazoConsultaProjection pendente = new PrazoConsultaProjection(1, LocalDateTime.now(), 1);
+        when(consultaRepository.buscarLoteNaoConfirmadas(StatusConsulta.PENDENTE_CONFIRMACAO, ate, cursor, 7, Limit.of(50)))
+                .thenReturn(java.util.List.of(pendente));
+
+        java.util.List<PrazoConsultaProjection> result = consultaService.verificarConsultasNaoConfirmadas(ate, cursor, 7, 50);
+
+        assertThat(result).containsExactly(pendente);
+    }
+
+    private ConsultaProjection projecao(Integer id) {
+        return new ConsultaProjection(id, 1, "Paciente", 1, "Dr. Teste", "CRM123", 1, "UBS",
+                LocalDateTime.now().plusDays(1), StatusConsulta.AGENDADA, null, false, null, null, null);
+    }
+
+    private ConsultaRequest requestAgendamento(LocalDateTime dataHora) {
+        ConsultaRequest request = new ConsultaRequest();
+        request.setPacienteId(paciente.getId());
+        request.setMedicoId(medico.getId());
+        request.setUnidadeId(unidade.getId());
+        request.setDataHora(dataHora);
+        return request;
+    }
 
-        assertThat(result).hasSize(1);
+    private void stubValidacoesAgendamento(ConsultaRequest request) {
+        when(pacienteRepository.findById(paciente.getId())).thenReturn(Optional.of(paciente));
+        when(cacheReferenciaService.buscarMedico(medico.getId())).thenReturn(Optional.of(medicoReferencia));
+        when(cacheReferenciaService.buscarUnidade(unidade.getId())).thenReturn(Optional.of(unidadeReferencia));
+        when(consultaRepository.existsConsultaNoHorario(medico.getId(), request.getDataHora())).thenReturn(false);
     }
 }
@@ -0,0 +1,45 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class GradeGeograficaTest {
+
+    // Praça da Sé e Avenida Paulista (MASP), em São Paulo
+    private static final double SE_LATITUDE = -23.55052;
+    private static final double SE_LONGITUDE = -46.63331;
+    private static final double MASP_LATITUDE = -23.56168;
+    private static final double MASP_LONGITUDE = -46.65598;
+
+    @Test
+    void distanciaKm_deveCalcularDistanciaSobreASuperficie() {
+        assertThat(GradeGeografica.distanciaKm(SE_LATITUDE, SE_LONGITUDE, MASP_LATITUDE, MASP_LONGITUDE))
+                .isCloseTo(2.6, within(0.1));
+        // Um grau de latitude tem cerca de 111 km
+        assertThat(GradeGeografica.distanciaKm(-23.0, -46.0, -24.0, -46.0)).isCloseTo(111.2, within(0.5));
+        assertThat(GradeGeografica.distanciaKm(SE_LATITUDE, SE_LONGITUDE, SE_LATITUDE, SE_LONGITUDE)).isZero();
+    }
+
+    @Test
+    void celulasNoRaio_deveCobrirAsCelulasDosPontosDentroDoRaio() {
+        assertThat(GradeGeografica.celulasNoRaio(SE_LATITUDE, SE_LONGITUDE, 5))
+                .contains(GradeGeografica.celula(SE_LATITUDE, SE_LONGITUDE))
+                .contains(GradeGeografica.celula(MASP_LATITUDE, MASP_LONGITUDE));
+    }
+
+    @Test
+    void celulasNoRaio_naoDeveIncluirCelulasForaDoRetangulo() {
+        // Campinas fica a cerca de 85 km da Sé
+        assertThat(GradeGeografica.celulasNoRaio(SE_LATITUDE, SE_LONGITUDE, 20))
+                .doesNotContain(GradeGeografica.celula(-22.90556, -47.06083));
+    }
+
+    @Test
+    void celula_deveDiferenciarHemisferiosELadosDoMeridiano() {
+        assertThat(GradeGeografica.celula(0.01, 0.01)).isNotEqualTo(GradeGeografica.celula(-0.01, 0.01));
+        assertThat(GradeGeografica.celula(0.01, 0.01)).isNotEqualTo(GradeGeografica.celula(0.01, -0.01));
+        assertThat(GradeGeografica.celula(-0.01, -0.01)).isNotEqualTo(GradeGeografica.celula(-0.01, 0.01));
+    }
+}
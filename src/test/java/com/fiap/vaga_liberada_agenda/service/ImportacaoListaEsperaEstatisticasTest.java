@@ -0,0 +1,87 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.dto.response.ImportacaoListaEsperaResponse;
+import com.fiap.vaga_liberada_agenda.entity.Especialidade;
+import com.fiap.vaga_liberada_agenda.entity.Paciente;
+import com.fiap.vaga_liberada_agenda.repository.EspecialidadeRepository;
+import com.fiap.vaga_liberada_agenda.repository.PacienteRepository;
+import io.awspring.cloud.sqs.operations.SqsTemplate;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Verifica pelas estatísticas do Hibernate que a importação não carrega os pacientes linha a linha
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class ImportacaoListaEsperaEstatisticasTest {
+
+    private static final int QUANTIDADE = 120;
+
+    @MockBean
+    private SqsTemplate sqsTemplate;
+
+    @Autowired
+    private ImportacaoListaEsperaService importacaoService;
+    @Autowired
+    private IndiceListaEspera indiceListaEspera;
+    @Autowired
+    private PacienteRepository pacienteRepository;
+    @Autowired
+    private EspecialidadeRepository especialidadeRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void importar_naoDeveCarregarUmPacientePorLinha() throws Exception {
+        String sufixo = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+        Especialidade especialidade = new Especialidade();
+        especialidade.setNome("Especialidade " + sufixo);
+        especialidade = especialidadeRepository.save(especialidade);
+
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < QUANTIDADE; i++) {
+            Paciente paciente = new Paciente();
+            paciente.setNome("Paciente " + sufixo + " " + i);
+            paciente.setCpf(String.valueOf(ThreadLocalRandom.current().nextLong(10_000_000_000L, 99_999_999_999L)));
+            paciente.setLatitude(new BigDecimal("-23.55052000"));
+            paciente.setLongitude(new BigDecimal("-46.63330800"));
+            paciente = pacienteRepository.save(paciente);
+            ndjson.append("{\"pacienteId\":").append(paciente.getId())
+                    .append(",\"especialidadeId\":").append(especialidade.getId()).append("}\n");
+        }
+
+        Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+
+        ImportacaoListaEsperaResponse resposta = importacaoService.importarNdjson(
+                new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(resposta.importados()).isEqualTo(QUANTIDADE);
+        // Existência e coordenadas vêm da consulta IN do lote, nenhum proxy de paciente é inicializado
+        assertThat(estatisticas.getEntityStatistics(Paciente.class.getName()).getLoadCount()).isZero();
+        assertThat(estatisticas.getEntityStatistics(Paciente.class.getName()).getFetchCount()).isZero();
+        assertThat(estatisticas.getPrepareStatementCount()).isLessThan(QUANTIDADE / 10);
+
+        // As entradas entram na grade do índice com as coordenadas do paciente
+        List<Integer> importados = new ArrayList<>();
+        resposta.linhas().forEach(linha -> importados.add(linha.listaEsperaId()));
+        assertThat(indiceListaEspera.proximosPorDistancia(especialidade.getId(), -23.55052, -46.633308, 1,
+                Duration.ZERO, QUANTIDADE)).containsExactlyInAnyOrderElementsOf(importados);
+    }
+}
@@ -0,0 +1,272 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fiap.vaga_liberada_agenda.dto.projection.CoordenadasPacienteProjection;
+import com.fiap.vaga_liberada_agenda.dto.response.ImportacaoListaEsperaResponse;
+import com.fiap.vaga_liberada_agenda.entity.*;
+import com.fiap.vaga_liberada_agenda.repository.*;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ImportacaoListaEsperaServiceTest {
+
+    @Mock
+    private ListaEsperaRepository listaEsperaRepository;
+    @Mock
+    private PacienteRepository pacienteRepository;
+    @Mock
+    private EspecialidadeRepository especialidadeRepository;
+    @Mock
+    private MedicoRepository medicoRepository;
+    @Mock
+    private UnidadeSaudeRepository unidadeSaudeRepository;
+    @Mock
+    private IndiceListaEspera indiceListaEspera;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private ImportacaoListaEsperaService importacaoService;
+    private static final BigDecimal LATITUDE = new BigDecimal("-23.550520");
+    private static final BigDecimal LONGITUDE = new BigDecimal("-46.633308");
+
+    private final AtomicInteger proximoId = new AtomicInteger(100);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        importacaoService = new ImportacaoListaEsperaService(listaEsperaRepository, pacienteRepository,
+                especialidadeRepository, medicoRepository, unidadeSaudeRepository, indiceListaEspera,
+                transactionTemplate, new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator());
+
+        doAnswer(inv -> {
+            ((Consumer<TransactionStatus>) inv.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        // Existem pacientes 1..5, especialidades 1..2, médico 10 e unidade 20
+        when(pacienteRepository.buscarCoordenadas(anyCollection())).thenAnswer(inv -> filtrar(inv.getArgument(0), 1, 5)
+                .stream()
+                .map(id -> new CoordenadasPacienteProjection(id, LATITUDE, LONGITUDE))
+                .toList());
+        when(especialidadeRepository.buscarIdsExistentes(anyCollection())).thenAnswer(inv -> filtrar(inv.getArgument(0), 1, 2));
+        when(medicoRepository.buscarIdsExistentes(anyCollection())).thenAnswer(inv -> filtrar(inv.getArgument(0), 10, 10));
+        when(unidadeSaudeRepository.buscarIdsExistentes(anyCollection())).thenAnswer(inv -> filtrar(inv.getArgument(0), 20, 20));
+        when(listaEsperaRepository.buscarPacientesComStatus(anyCollection(), eq(StatusListaEspera.ATIVA))).thenReturn(Set.of());
+        when(pacienteRepository.getReferenceById(anyInt())).thenAnswer(inv -> referencia(new Paciente(), inv.getArgument(0)));
+        when(especialidadeRepository.getReferenceById(anyInt())).thenAnswer(inv -> referencia(new Especialidade(), inv.getArgument(0)));
+        when(medicoRepository.getReferenceById(anyInt())).thenAnswer(inv -> referencia(new Medico(), inv.getArgument(0)));
+        when(unidadeSaudeRepository.getReferenceById(anyInt())).thenAnswer(inv -> referencia(new UnidadeSaude(), inv.getArgument(0)));
+        doAnswer(inv -> {
+            List<ListaEspera> novas = inv.getArgument(0);
+            novas.forEach(nova -> nova.setId(proximoId.getAndIncrement()));
+            return null;
+        }).when(listaEsperaRepository).inserirEmLote(anyList());
+    }
+
+    @Test
+    void importarNdjson_deveGravarValidasERelatarCadaLinha() throws Exception {
+        String ndjson = """
+                {"pacienteId":1,"especialidadeId":1,"medicoId":10,"unidadeId":20,"prioridade":3}
+                {"pacienteId":99,"especialidadeId":1}
+
+                {"pacienteId":2,"especialidadeId":7}
+                {"pacienteId":3}
+                {"pacienteId":4,"especialidadeId":1,"medicoId":11}
+                {"pacienteId":5,"especialidadeId":2,"unidadeId":21}
+                {pacienteId
+                {"pacienteId":1,"especialidadeId":2}
+                """;
+
+        ImportacaoListaEsperaResponse resposta = importacaoService.importarNdjson(corpo(ndjson));
+
+        assertThat(resposta.total()).isEqualTo(8);
+        assertThat(resposta.importados()).isEqualTo(1);
+        assertThat(resposta.rejeitados()).isEqualTo(7);
+        assertThat(resposta.linhas()).extracting(ImportacaoListaEsperaResponse.Linha::linha)
+                .containsExactly(1, 2, 4, 5, 6, 7, 8, 9);
+        assertThat(resposta.linhas().get(0).listaEsperaId()).isEqualTo(100);
+        assertThat(resposta.linhas()).extracting(ImportacaoListaEsperaResponse.Linha::erro).containsExactly(
+                null,
+                "Paciente não encontrado com ID: 99",
+                "Especialidade não encontrada com ID: 7",
+                "ID da especialidade é obrigatório",
+                "Médico não encontrado com ID: 11",
+                "Unidade de saúde não encontrada com ID: 21",
+                resposta.linhas().get(6).erro(),
+                "Paciente já está na lista de espera ativa");
+        assertThat(resposta.linhas().get(6).erro()).startsWith("JSON inválido");
+
+        ArgumentCaptor<List<ListaEspera>> salvas = ArgumentCaptor.captor();
+        verify(listaEsperaRepository).inserirEmLote(salvas.capture());
+        ListaEspera salva = salvas.getValue().get(0);
+        assertThat(salva.getPrioridade()).isEqualTo(3);
+        assertThat(salva.getStatus()).isEqualTo(StatusListaEspera.ATIVA);
+        assertThat(salva.getMedico().getId()).isEqualTo(10);
+        assertThat(salva.getUnidade().getId()).isEqualTo(20);
+        verify(indiceListaEspera).adicionar(salva, LATITUDE, LONGITUDE);
+    }
+
+    @Test
+    void importar_deveConsultarReferenciasUmaVezPorLote() throws Exception {
+        ReflectionTestUtils.setField(importacaoService, "tamanhoLote", 2);
+        String ndjson = """
+                {"pacienteId":1,"especialidadeId":1}
+                {"pacienteId":2,"especialidadeId":1}
+                {"pacienteId":3,"especialidadeId":1}
+                {"pacienteId":4,"especialidadeId":2}
+                {"pacienteId":5,"especialidadeId":2}
+                """;
+
+        ImportacaoListaEsperaResponse resposta = importacaoService.importarNdjson(corpo(ndjson));
+
+        assertThat(resposta.importados()).isEqualTo(5);
+        verify(transactionTemplate, times(3)).executeWithoutResult(any());
+        verify(pacienteRepository, times(3)).buscarCoordenadas(anyCollection());
+        verify(especialidadeRepository, times(3)).buscarIdsExistentes(anyCollection());
+        verify(listaEsperaRepository, times(3)).buscarPacientesComStatus(anyCollection(), eq(StatusListaEspera.ATIVA));
+        verify(listaEsperaRepository, times(3)).inserirEmLote(anyList());
+        // Sem médico nem unidade nas linhas: nenhuma consulta dessas tabelas
+        verify(medicoRepository, never()).buscarIdsExistentes(anyCollection());
+        verify(unidadeSaudeRepository, never()).buscarIdsExistentes(anyCollection());
+        verify(pacienteRepository, never()).findById(any());
+    }
+
+    @Test
+    void importar_quandoPacienteJaEstaNaFila_deveRejeitarLinha() throws Exception {
+        when(listaEsperaRepository.buscarPacientesComStatus(anyCollection(), eq(StatusListaEspera.ATIVA))).thenReturn(Set.of(2));
+
+        ImportacaoListaEsperaResponse resposta = importacaoService.importarNdjson(corpo("""
+                {"pacienteId":1,"especialidadeId":1}
+                {"pacienteId":2,"especialidadeId":1}
+                """));
+
+        assertThat(resposta.importados()).isEqualTo(1);
+        assertThat(resposta.linhas().get(1).erro()).isEqualTo("Paciente já está na lista de espera ativa");
+    }
+
+    @Test
+    void importar_quandoLoteFalha_deveRejeitarSoAsLinhasDoLote() throws Exception {
+        ReflectionTestUtils.setField(importacaoService, "tamanhoLote", 2);
+        doAnswer(inv -> {
+            List<ListaEspera> novas = inv.getArgument(0);
+            novas.forEach(nova -> nova.setId(proximoId.getAndIncrement()));
+            return null;
+        }).doThrow(new DataAccessResourceFailureException("Conexão perdida"))
+                .when(listaEsperaRepository).inserirEmLote(anyList());
+
+        ImportacaoListaEsperaResponse resposta = importacaoService.importarNdjson(corpo("""
+                {"pacienteId":1,"especialidadeId":1}
+                {"pacienteId":2,"especialidadeId":1}
+                {"pacienteId":3,"especialidadeId":1}
+                {"pacienteId":99,"especialidadeId":1}
+                """));
+
+        assertThat(resposta.importados()).isEqualTo(2);
+        assertThat(resposta.linhas().get(2).listaEsperaId()).isNull();
+        assertThat(resposta.linhas().get(2).erro()).startsWith("Erro ao gravar o lote");
+        assertThat(resposta.linhas().get(3).erro()).isEqualTo("Paciente não encontrado com ID: 99");
+    }
+
+    @Test
+    void importar_quandoLoteFalhaAntesDosIds_devePermitirOPacienteEmOutroLote() throws Exception {
+        ReflectionTestUtils.setField(importacaoService, "tamanhoLote", 1);
+        doThrow(new DataAccessResourceFailureException("Conexão perdida"))
+                .doAnswer(inv -> {
+                    List<ListaEspera> novas = inv.getArgument(0);
+                    novas.forEach(nova -> nova.setId(proximoId.getAndIncrement()));
+                    return null;
+                })
+                .when(listaEsperaRepository).inserirEmLote(anyList());
+
+        ImportacaoListaEsperaResponse resposta = importacaoService.importarNdjson(corpo("""
+                {"pacienteId":1,"especialidadeId":1}
+                {"pacienteId":1,"especialidadeId":1,"prioridade":2}
+                """));
+
+        assertThat(resposta.linhas().get(0).erro()).startsWith("Erro ao gravar o lote");
+        assertThat(resposta.linhas().get(1).erro()).isNull();
+        assertThat(resposta.linhas().get(1).listaEsperaId()).isNotNull();
+        assertThat(resposta.importados()).isEqualTo(1);
+    }
+
+    @Test
+    void importarCsv_deveAceitarPontoEVirgulaBomEColunasEmQualquerOrdem() throws Exception {
+        String csv = "\uFEFFespecialidadeId;pacienteId;prioridade;medicoId\n"
+                + "1;1;2;10\n"
+                + "1;2;;\n"
+                + "1;abc;0;\n";
+
+        ImportacaoListaEsperaResponse resposta = importacaoService.importarCsv(corpo(csv));
+
+        assertThat(resposta.total()).isEqualTo(3);
+        assertThat(resposta.importados()).isEqualTo(2);
+        assertThat(resposta.linhas()).extracting(ImportacaoListaEsperaResponse.Linha::linha).containsExactly(2, 3, 4);
+        assertThat(resposta.linhas().get(2).erro()).isEqualTo("Valor inválido na coluna pacienteId: abc");
+
+        ArgumentCaptor<List<ListaEspera>> salvas = ArgumentCaptor.captor();
+        verify(listaEsperaRepository).inserirEmLote(salvas.capture());
+        assertThat(salvas.getValue()).extracting(ListaEspera::getPrioridade).containsExactly(2, 0);
+        assertThat(salvas.getValue().get(1).getMedico()).isNull();
+    }
+
+    @Test
+    void importarCsv_semColunasObrigatorias_deveLancarExcecao() {
+        assertThatThrownBy(() -> importacaoService.importarCsv(corpo("pacienteId,prioridade\n1,0\n")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("especialidadeId");
+        assertThatThrownBy(() -> importacaoService.importarCsv(corpo("")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void importar_acimaDoLimiteDeLinhas_deveLancarExcecao() {
+        ReflectionTestUtils.setField(importacaoService, "maxLinhas", 2);
+
+        assertThatThrownBy(() -> importacaoService.importarCsv(corpo("pacienteId,especialidadeId\n1,1\n2,1\n3,1\n")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("limite de 2 linhas");
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    private static InputStream corpo(String texto) {
+        return new ByteArrayInputStream(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Set<Integer> filtrar(Collection<Integer> ids, int minimo, int maximo) {
+        return ids.stream().filter(id -> id >= minimo && id <= maximo).collect(Collectors.toSet());
+    }
+
+    private static <T> T referencia(T entidade, Integer id) {
+        ReflectionTestUtils.setField(entidade, "id", id);
+        return entidade;
+    }
+}
@@ -0,0 +1,238 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.dto.projection.EntradaFilaProjection;
+import com.fiap.vaga_liberada_agenda.entity.*;
+import com.fiap.vaga_liberada_agenda.repository.ListaEsperaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IndiceListaEsperaTest {
+
+    @Mock
+    private ListaEsperaRepository listaEsperaRepository;
+
+    @InjectMocks
+    private IndiceListaEspera indice;
+
+    private final LocalDateTime base = LocalDateTime.now().minusDays(10);
+
+    @BeforeEach
+    void setup() {
+        when(listaEsperaRepository.buscarEntradasFila(StatusListaEspera.ATIVA)).thenReturn(List.of(
+                new EntradaFilaProjection(1, 1, null, null, 0, base),
+                new EntradaFilaProjection(2, 1, 10, 100, 0, base.plusDays(1)),
+                new EntradaFilaProjection(3, 1, 10, 100, 5, base.plusDays(2)),
+                new EntradaFilaProjection(4, 2, null, 100, 0, base)
+        ));
+        indice.reconstruir();
+    }
+
+    @Test
+    void reconstruir_deveCarregarRegistrosAtivos() {
+        assertThat(indice.isPronto()).isTrue();
+        assertThat(indice.tamanho()).isEqualTo(4);
+    }
+
+    @Test
+    void reconstruir_deveManterAlteracoesConfirmadasDuranteALeitura() {
+        // A leitura do banco não vê o registro 9 nem a saída do 3, confirmados enquanto ela rodava
+        when(listaEsperaRepository.buscarEntradasFila(StatusListaEspera.ATIVA)).thenAnswer(inv -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                indice.adicionar(novoRegistro(9, 10));
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+            indice.remover(3);
+            return List.of(
+                    new EntradaFilaProjection(1, 1, null, null, 0, base),
+                    new EntradaFilaProjection(3, 1, 10, 100, 5, base.plusDays(2)));
+        });
+
+        indice.reconstruir();
+
+        assertThat(indice.proximos(1, null, null, 10)).containsExactly(9, 1);
+        assertThat(indice.tamanho()).isEqualTo(2);
+    }
+
+    @Test
+    void proximo_porEspecialidade_deveRespeitarPrioridadeEDataCadastro() {
+        assertThat(indice.proximo(1, null, null)).contains(3);
+        assertThat(indice.proximo(2, null, null)).contains(4);
+        assertThat(indice.proximo(3, null, null)).isEmpty();
+    }
+
+    @Test
+    void proximo_porChaveCompleta_deveIgnorarRegistrosSemMedicoOuUnidade() {
+        assertThat(indice.proximo(1, 10, 100)).contains(3);
+        assertThat(indice.proximo(1, 11, 100)).isEmpty();
+    }
+
+    @Test
+    void proximo_comFiltroParcial_deveFiltrarDentroDaEspecialidade() {
+        assertThat(indice.proximo(2, null, 100)).contains(4);
+        assertThat(indice.proximo(1, 10, null)).contains(3);
+        assertThat(indice.proximo(2, 10, null)).isEmpty();
+    }
+
+    @Test
+    void proximos_deveRetornarCandidatosNaOrdemDaFilaAteAQuantidade() {
+        assertThat(indice.proximos(1, null, null, 2)).containsExactly(3, 1);
+        assertThat(indice.proximos(1, null, null, 10)).containsExactly(3, 1, 2);
+        assertThat(indice.proximos(1, 10, 100, 10)).containsExactly(3, 2);
+        assertThat(indice.proximos(1, null, 100, 10)).containsExactly(3, 2);
+    }
+
+    @Test
+    void remover_deveRetirarDoIndice() {
+        indice.remover(3);
+
+        assertThat(indice.proximo(1, 10, 100)).contains(2);
+        assertThat(indice.proximo(1, null, null)).contains(1);
+        assertThat(indice.tamanho()).isEqualTo(3);
+    }
+
+    @Test
+    void adicionar_semTransacao_deveInserirImediatamente() {
+        indice.adicionar(novoRegistro(9, 10));
+
+        assertThat(indice.proximo(1, null, null)).contains(9);
+    }
+
+    @Test
+    void adicionar_emTransacao_soInsereAposCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            indice.adicionar(novoRegistro(9, 10));
+            assertThat(indice.proximo(1, null, null)).contains(3);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(indice.proximo(1, null, null)).contains(9);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void remover_emTransacaoComRollback_deveDevolverEntrada() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            indice.remover(3);
+            assertThat(indice.proximo(1, null, null)).contains(1);
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            assertThat(indice.proximo(1, null, null)).contains(3);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void proximosPorDistancia_deveFiltrarPeloRaioEOrdenarPorPrioridadeEEsperaComDistancia() {
+        indice.adicionar(novoRegistro(20, 0, base, "-23.56168", "-46.65598"));              // MASP, ~2,6 km
+        indice.adicionar(novoRegistro(21, 0, base.plusHours(1), "-23.55052", "-46.63331")); // na unidade
+        indice.adicionar(novoRegistro(22, 9, base, "-22.90556", "-47.06083"));              // Campinas, ~85 km
+        indice.adicionar(novoRegistro(23, 1, base.plusDays(1), "-23.56168", "-46.65598"));
+
+        // Cada km vale 1h de espera: o registro na unidade passa à frente do cadastrado 1h antes a 2,6 km
+        assertThat(indice.proximosPorDistancia(1, -23.55052, -46.63331, 20, Duration.ofHours(1), 10))
+                .containsExactly(23, 21, 20);
+        assertThat(indice.proximosPorDistancia(1, -23.55052, -46.63331, 20, Duration.ZERO, 10))
+                .containsExactly(23, 20, 21);
+        assertThat(indice.proximosPorDistancia(1, -23.55052, -46.63331, 100, Duration.ZERO, 2))
+                .containsExactly(22, 23);
+        assertThat(indice.proximosPorDistancia(2, -23.55052, -46.63331, 20, Duration.ZERO, 10)).isEmpty();
+    }
+
+    @Test
+    void proximosPorDistancia_deveRefletirRemocoes() {
+        indice.adicionar(novoRegistro(20, 0, base, "-23.56168", "-46.65598"));
+        indice.adicionar(novoRegistro(21, 0, base.plusHours(1), "-23.55052", "-46.63331"));
+
+        indice.remover(20);
+
+        assertThat(indice.proximosPorDistancia(1, -23.55052, -46.63331, 20, Duration.ZERO, 10)).containsExactly(21);
+        assertThat(indice.tamanho()).isEqualTo(5);
+    }
+
+    @Test
+    void adicionar_comCoordenadasInformadas_deveEntrarNaGradeSemLerOPaciente() {
+        ListaEspera registro = novoRegistro(20, 0);
+        registro.setPaciente(mock(Paciente.class));
+
+        indice.adicionar(registro, new BigDecimal("-23.56168"), new BigDecimal("-46.65598"));
+
+        assertThat(indice.proximosPorDistancia(1, -23.55052, -46.63331, 20, Duration.ZERO, 10)).containsExactly(20);
+        verifyNoInteractions(registro.getPaciente());
+    }
+
+    @Test
+    void reindexar_emTransacao_soMoveAEntradaAposCommit() {
+        ListaEspera registro = novoRegistro(22, 0, base, "-22.90556", "-47.06083");   // Campinas, ~85 km
+        indice.adicionar(registro);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            registro.getPaciente().setLatitude(new BigDecimal("-23.56168"));
+            registro.getPaciente().setLongitude(new BigDecimal("-46.65598"));
+            indice.reindexar(registro);
+            assertThat(indice.proximosPorDistancia(1, -23.55052, -46.63331, 20, Duration.ZERO, 10)).isEmpty();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(indice.proximosPorDistancia(1, -23.55052, -46.63331, 20, Duration.ZERO, 10)).containsExactly(22);
+            assertThat(indice.tamanho()).isEqualTo(5);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void reindexar_entradaForaDoIndice_naoDeveReinserir() {
+        ListaEspera registro = novoRegistro(22, 0, base, "-23.56168", "-46.65598");
+
+        indice.reindexar(registro);
+
+        assertThat(indice.proximosPorDistancia(1, -23.55052, -46.63331, 20, Duration.ZERO, 10)).isEmpty();
+        assertThat(indice.tamanho()).isEqualTo(4);
+    }
+
+    private ListaEspera novoRegistro(Integer id, Integer prioridade, LocalDateTime dataCadastro,
+                                     String latitude, String longitude) {
+        Paciente paciente = new Paciente();
+        paciente.setLatitude(new BigDecimal(latitude));
+        paciente.setLongitude(new BigDecimal(longitude));
+        ListaEspera listaEspera = novoRegistro(id, prioridade);
+        listaEspera.setPaciente(paciente);
+        listaEspera.setDataCadastro(dataCadastro);
+        return listaEspera;
+    }
+
+    private ListaEspera novoRegistro(Integer id, Integer prioridade) {
+        Especialidade especialidade = new Especialidade();
+        especialidade.setId(1);
+        ListaEspera listaEspera = new ListaEspera();
+        listaEspera.setId(id);
+        listaEspera.setEspecialidade(especialidade);
+        listaEspera.setPrioridade(prioridade);
+        listaEspera.setDataCadastro(LocalDateTime.now());
+        return listaEspera;
+    }
+}
@@ -0,0 +1,234 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.entity.*;
+import com.fiap.vaga_liberada_agenda.exception.ConflitoException;
+import com.fiap.vaga_liberada_agenda.repository.*;
+import io.awspring.cloud.sqs.operations.SqsTemplate;
+import org.junit.jupiter.api.RepeatedTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Disputa real no banco (H2) entre aceites simultâneos e o timeout da oferta: a vaga nunca pode
+ * terminar atribuída a mais de um vencedor nem ficar aceita e devolvida à fila ao mesmo tempo,
+ * inclusive quando foi oferecida em paralelo a vários registros da lista de espera.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LiberacaoVagaConcorrenciaTest {
+
+    private static final int THREADS = 16;
+
+    @MockBean
+    private SqsTemplate sqsTemplate;
+
+    @Autowired
+    private LiberacaoVagaService liberacaoVagaService;
+    @Autowired
+    private ConsultaRepository consultaRepository;
+    @Autowired
+    private ListaEsperaRepository listaEsperaRepository;
+    @Autowired
+    private PacienteRepository pacienteRepository;
+    @Autowired
+    private MedicoRepository medicoRepository;
+    @Autowired
+    private UnidadeSaudeRepository unidadeSaudeRepository;
+    @Autowired
+    private EspecialidadeRepository especialidadeRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @RepeatedTest(5)
+    void aceitesSimultaneos_apenasUmVence() throws Exception {
+        Cenario cenario = criarOferta(LocalDateTime.now(), 1);
+
+        Resultado resultado = disputar(THREADS, i -> () -> liberacaoVagaService.aceitarVaga(cenario.consultaId(), cenario.listaEsperaId()));
+
+        assertThat(resultado.sucessos()).isEqualTo(1);
+        assertThat(resultado.conflitos()).isEqualTo(THREADS - 1);
+        assertThat(resultado.inesperados()).isEmpty();
+
+        Consulta consulta = consultaRepository.findById(cenario.consultaId()).orElseThrow();
+        ListaEspera listaEspera = listaEsperaRepository.findById(cenario.listaEsperaId()).orElseThrow();
+        assertThat(consulta.getStatus()).isEqualTo(StatusConsulta.AGENDADA);
+        assertThat(consulta.getVersao()).isEqualTo(cenario.versaoConsulta() + 1);
+        assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.ATENDIDA);
+        assertThat(pacienteDaConsulta(cenario.consultaId())).isEqualTo(cenario.pacienteListaId());
+    }
+
+    @RepeatedTest(5)
+    void aceiteConcorrendoComTimeout_vagaTemUmUnicoDestino() throws Exception {
+        // Oferta já vencida: o timeout pode expirá-la enquanto o paciente tenta aceitar
+        Cenario cenario = criarOferta(LocalDateTime.now().minusDays(1), 1);
+
+        Resultado resultado = disputar(2, i -> i == 0
+                ? () -> liberacaoVagaService.aceitarVaga(cenario.consultaId(), cenario.listaEsperaId())
+                : () -> liberacaoVagaService.processarTimeoutVaga(cenario.consultaId()));
+
+        assertThat(resultado.inesperados()).isEmpty();
+
+        Consulta consulta = consultaRepository.findById(cenario.consultaId()).orElseThrow();
+        ListaEspera listaEspera = listaEsperaRepository.findById(cenario.listaEsperaId()).orElseThrow();
+        if (consulta.getStatus() == StatusConsulta.AGENDADA) {
+            assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.ATENDIDA);
+            assertThat(pacienteDaConsulta(cenario.consultaId())).isEqualTo(cenario.pacienteListaId());
+        } else {
+            assertThat(consulta.getStatus()).isEqualTo(StatusConsulta.LIBERADA);
+            assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.ATIVA);
+            assertThat(listaEspera.getConsultaOferecida()).isNull();
+            assertThat(pacienteDaConsulta(cenario.consultaId())).isEqualTo(cenario.pacienteOriginalId());
+        }
+    }
+
+    @RepeatedTest(5)
+    void aceitesSimultaneosDeOfertasParalelas_primeiroVenceEDemaisSaoRevogadas() throws Exception {
+        int ofertas = 4;
+        Cenario cenario = criarOferta(LocalDateTime.now(), ofertas);
+
+        Resultado resultado = disputar(ofertas, i -> () -> liberacaoVagaService.aceitarVaga(
+                cenario.consultaId(), cenario.listaEsperaIds().get(i)));
+
+        assertThat(resultado.sucessos()).isEqualTo(1);
+        assertThat(resultado.conflitos()).isEqualTo(ofertas - 1);
+        assertThat(resultado.inesperados()).isEmpty();
+
+        Consulta consulta = consultaRepository.findById(cenario.consultaId()).orElseThrow();
+        List<ListaEspera> registros = listaEsperaRepository.findAllById(cenario.listaEsperaIds());
+        assertThat(consulta.getStatus()).isEqualTo(StatusConsulta.AGENDADA);
+        assertThat(registros).filteredOn(registro -> registro.getStatus() == StatusListaEspera.ATENDIDA).hasSize(1);
+        assertThat(registros).filteredOn(registro -> registro.getStatus() == StatusListaEspera.ATIVA)
+                .hasSize(ofertas - 1)
+                .allSatisfy(registro -> assertThat(registro.getConsultaOferecida()).isNull());
+        assertThat(cenario.pacientesListaIds()).contains(pacienteDaConsulta(cenario.consultaId()));
+    }
+
+    private Resultado disputar(int threads, IntFunction<Runnable> tarefas) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch largada = new CountDownLatch(1);
+        AtomicInteger sucessos = new AtomicInteger();
+        AtomicInteger conflitos = new AtomicInteger();
+        List<Throwable> inesperados = new CopyOnWriteArrayList<>();
+        List<Future<?>> futuros = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                Runnable tarefa = tarefas.apply(i);
+                futuros.add(executor.submit(() -> {
+                    largada.await();
+                    try {
+                        tarefa.run();
+                        sucessos.incrementAndGet();
+                    } catch (ConflitoException | ConcurrencyFailureException e) {
+                        conflitos.incrementAndGet();
+                    } catch (Throwable e) {
+                        inesperados.add(e);
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> futuro : futuros) {
+                futuro.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Resultado(sucessos.get(), conflitos.get(), inesperados);
+    }
+
+    private Cenario criarOferta(LocalDateTime dataOferta, int ofertas) {
+        return transactionTemplate.execute(status -> {
+            String sufixo = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+
+            Especialidade especialidade = new Especialidade();
+            especialidade.setNome("Especialidade " + sufixo);
+            especialidade = especialidadeRepository.save(especialidade);
+
+            UnidadeSaude unidade = new UnidadeSaude();
+            unidade.setNome("Unidade " + sufixo);
+            unidade.setLatitude(new BigDecimal("-23.55052000"));
+            unidade.setLongitude(new BigDecimal("-46.63330800"));
+            unidade = unidadeSaudeRepository.save(unidade);
+
+            Medico medico = new Medico();
+            medico.setNome("Dr. " + sufixo);
+            medico.setCrm("CRM" + sufixo);
+            medico.setEspecialidade(especialidade);
+            medico.setUnidade(unidade);
+            medico = medicoRepository.save(medico);
+
+            Paciente original = pacienteRepository.save(novoPaciente("Original " + sufixo));
+
+            Consulta consulta = new Consulta();
+            consulta.setPaciente(original);
+            consulta.setMedico(medico);
+            consulta.setUnidade(unidade);
+            consulta.setDataHora(LocalDateTime.now().plusDays(3));
+            consulta.setStatus(StatusConsulta.LIBERADA);
+            consulta = consultaRepository.save(consulta);
+
+            List<Integer> listaEsperaIds = new ArrayList<>();
+            List<Integer> pacientesListaIds = new ArrayList<>();
+            for (int i = 0; i < ofertas; i++) {
+                Paciente daLista = pacienteRepository.save(novoPaciente("Lista " + i + " " + sufixo));
+
+                ListaEspera listaEspera = new ListaEspera();
+                listaEspera.setPaciente(daLista);
+                listaEspera.setEspecialidade(especialidade);
+                listaEspera.setStatus(StatusListaEspera.AGUARDANDO_RESPOSTA);
+                listaEspera.setConsultaOferecida(consulta);
+                listaEspera.setDataOferta(dataOferta);
+                listaEspera = listaEsperaRepository.save(listaEspera);
+                listaEsperaIds.add(listaEspera.getId());
+                pacientesListaIds.add(daLista.getId());
+            }
+
+            consulta.setVagaOferecidaEm(dataOferta);
+            consulta = consultaRepository.saveAndFlush(consulta);
+
+            return new Cenario(consulta.getId(), listaEsperaIds, original.getId(), pacientesListaIds, consulta.getVersao());
+        });
+    }
+
+    private Integer pacienteDaConsulta(Integer consultaId) {
+        return transactionTemplate.execute(status ->
+                consultaRepository.findById(consultaId).orElseThrow().getPaciente().getId());
+    }
+
+    private static Paciente novoPaciente(String nome) {
+        Paciente paciente = new Paciente();
+        paciente.setNome(nome);
+        paciente.setCpf(String.valueOf(ThreadLocalRandom.current().nextLong(10_000_000_000L, 99_999_999_999L)));
+        return paciente;
+    }
+
+    private record Cenario(Integer consultaId, List<Integer> listaEsperaIds, Integer pacienteOriginalId,
+                           List<Integer> pacientesListaIds, Long versaoConsulta) {
+
+        Integer listaEsperaId() {
+            return listaEsperaIds.get(0);
+        }
+
+        Integer pacienteListaId() {
+            return pacientesListaIds.get(0);
+        }
+    }
+
+    private record Resultado(int sucessos, int conflitos, List<Throwable> inesperados) {
+    }
+}
@@ -1,16 +1,32 @@
 package com.fiap.vaga_liberada_agenda.service;
 
+import com.fiap.vaga_liberada_agenda.dto.notificacao.MensagemNotificacao;
 import com.fiap.vaga_liberada_agenda.entity.*;
+import com.fiap.vaga_liberada_agenda.event.OfertaExpiradaEvent;
+import com.fiap.vaga_liberada_agenda.event.OfertaRevogadaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaAceitaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaLiberadaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaOferecidaEvent;
+import com.fiap.vaga_liberada_agenda.exception.ConflitoException;
 import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
 import com.fiap.vaga_liberada_agenda.repository.ListaEsperaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -27,6 +43,15 @@ class LiberacaoVagaServiceTest {
     private ListaEsperaRepository listaEsperaRepository;
     @Mock
     private NotificacaoService notificacaoService;
+    @Mock
+    private IndiceListaEspera indiceListaEspera;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    @Spy
+    private MetricasLiberacaoVaga metricas = new MetricasLiberacaoVaga(meterRegistry, mock(ListaEsperaRepository.class),
+            mock(ConsultaRepository.class));
 
     @InjectMocks
     private LiberacaoVagaService liberacaoVagaService;
@@ -75,83 +100,124 @@ class LiberacaoVagaServiceTest {
 
     @Test
     void liberarVaga_deveMarcarConsultaComoLiberada() {
-        when(listaEsperaRepository.findFirstByFiltros(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1)))
-                .thenReturn(Optional.empty());
-        when(listaEsperaRepository.findFirstByFiltros(eq(StatusListaEspera.ATIVA), eq(1), isNull(), isNull()))
-                .thenReturn(Optional.empty());
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1), anyInt()))
+                .thenReturn(List.of());
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), isNull(), isNull(), anyInt()))
+                .thenReturn(List.of());
         when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
 
         liberacaoVagaService.liberarVaga(consulta);
 
         assertThat(consulta.getStatus()).isEqualTo(StatusConsulta.LIBERADA);
+        assertThat(consulta.getLiberadaEm()).isNotNull();
         verify(consultaRepository).save(consulta);
+        verify(eventPublisher).publishEvent(new VagaLiberadaEvent(10, 1, consulta.getLiberadaEm()));
+        assertThat(meterRegistry.get("agenda.vaga.operacao").tags("operacao", "liberar", "excecao", "nenhuma").timer().count())
+                .isEqualTo(1);
     }
 
     @Test
     void liberarVaga_quandoHaProximoNaFila_deveOferecerVaga() {
-        when(listaEsperaRepository.findFirstByFiltros(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1)))
-                .thenReturn(Optional.of(listaEspera));
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1), anyInt()))
+                .thenReturn(List.of(listaEspera));
         when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(listaEsperaRepository.save(any(ListaEspera.class))).thenAnswer(inv -> inv.getArgument(0));
 
         liberacaoVagaService.liberarVaga(consulta);
 
         assertThat(consulta.getStatus()).isEqualTo(StatusConsulta.LIBERADA);
-        verify(notificacaoService).enviar(any(String.class));
-        verify(listaEsperaRepository).save(listaEspera);
+        verify(notificacaoService).enviar(any(MensagemNotificacao.class));
+        verify(listaEsperaRepository).saveAll(List.of(listaEspera));
         assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.AGUARDANDO_RESPOSTA);
     }
 
+    @Test
+    void montarMensagemVagaLiberada_deveMontarPayloadTipado() {
+        consulta.setDataHora(LocalDateTime.of(2025, 3, 14, 9, 30));
+
+        MensagemNotificacao mensagem = LiberacaoVagaService.montarMensagemVagaLiberada(consulta, listaEspera);
+
+        assertThat(mensagem.pacienteId()).isEqualTo(1);
+        assertThat(mensagem.consultaId()).isEqualTo(10);
+        assertThat(mensagem.listaEsperaId()).isEqualTo(5);
+        assertThat(mensagem.mensagem()).isEqualTo("Olá Paciente Teste, uma vaga foi liberada! Você tem uma consulta "
+                + "disponível em 2025-03-14 às 09:30 com Dr(a). Dr. João na UBS Centro. "
+                + "Por favor, confirme sua presença através do sistema.");
+    }
+
     @Test
     void liberarVaga_quandoProximoSoPorEspecialidade_deveOferecerVaga() {
-        when(listaEsperaRepository.findFirstByFiltros(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1)))
-                .thenReturn(Optional.empty());
-        when(listaEsperaRepository.findFirstByFiltros(eq(StatusListaEspera.ATIVA), eq(1), isNull(), isNull()))
-                .thenReturn(Optional.of(listaEspera));
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1), anyInt()))
+                .thenReturn(List.of());
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), isNull(), isNull(), anyInt()))
+                .thenReturn(List.of(listaEspera));
         when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(listaEsperaRepository.save(any(ListaEspera.class))).thenAnswer(inv -> inv.getArgument(0));
 
         liberacaoVagaService.liberarVaga(consulta);
 
         assertThat(consulta.getStatus()).isEqualTo(StatusConsulta.LIBERADA);
-        verify(notificacaoService).enviar(any(String.class));
-        verify(listaEsperaRepository).save(listaEspera);
+        verify(notificacaoService).enviar(any(MensagemNotificacao.class));
+        verify(listaEsperaRepository).saveAll(List.of(listaEspera));
     }
 
     @Test
     void oferecerVagaParaListaEspera_deveAtualizarEEnviarNotificacao() {
         when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(listaEsperaRepository.save(any(ListaEspera.class))).thenAnswer(inv -> inv.getArgument(0));
 
-        liberacaoVagaService.oferecerVagaParaListaEspera(consulta, listaEspera);
+        liberacaoVagaService.oferecerVagaParaListaEspera(consulta, List.of(listaEspera));
 
         assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.AGUARDANDO_RESPOSTA);
         assertThat(listaEspera.getConsultaOferecida()).isEqualTo(consulta);
-        verify(notificacaoService).enviar(any(String.class));
+        verify(notificacaoService).enviar(any(MensagemNotificacao.class));
+        verify(eventPublisher).publishEvent(new VagaOferecidaEvent(10, 5, 1, null,
+                listaEspera.getDataOferta(), listaEspera.getDataOferta().plusHours(2)));
     }
 
     @Test
-    void aceitarVaga_deveReatribuirConsulta() {
-        consulta.setStatus(StatusConsulta.LIBERADA);
-        consulta.setVagaOferecidaParaListaEspera(listaEspera);
-        listaEspera.setStatus(StatusListaEspera.AGUARDANDO_RESPOSTA);
-        listaEspera.setConsultaOferecida(consulta);
+    void oferecerVagaParaListaEspera_devePublicarInicioDaLiberacao() {
+        LocalDateTime liberadaEm = LocalDateTime.now().minusMinutes(5);
+        consulta.setLiberadaEm(liberadaEm);
 
-        when(consultaRepository.findById(10)).thenReturn(Optional.of(consulta));
+        liberacaoVagaService.oferecerVagaParaListaEspera(consulta, List.of(listaEspera));
+
+        verify(eventPublisher).publishEvent(argThat((Object evento) ->
+                evento instanceof VagaOferecidaEvent oferta && liberadaEm.equals(oferta.liberadaEm())));
+    }
+
+    @Test
+    void aceitarVaga_deveReivindicarConsultaEEncerrarOferta() {
         when(listaEsperaRepository.findById(5)).thenReturn(Optional.of(listaEspera));
-        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(listaEsperaRepository.save(any(ListaEspera.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(consultaRepository.reivindicarVagaOferecida(eq(10), eq(5), eq(paciente), any(LocalDateTime.class))).thenReturn(1);
+        when(listaEsperaRepository.marcarOfertaAtendida(5, 10)).thenReturn(1);
 
         liberacaoVagaService.aceitarVaga(10, 5);
 
-        assertThat(consulta.getStatus()).isEqualTo(StatusConsulta.AGENDADA);
-        assertThat(consulta.getPaciente()).isEqualTo(paciente);
-        assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.ATENDIDA);
+        verify(indiceListaEspera).remover(5);
+        verify(consultaRepository, never()).save(any());
+        verify(listaEsperaRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void aceitarVaga_devePublicarVagaAceitaPorEspecialidade() {
+        when(listaEsperaRepository.findById(5)).thenReturn(Optional.of(listaEspera));
+        when(consultaRepository.reivindicarVagaOferecida(eq(10), eq(5), eq(paciente), any(LocalDateTime.class))).thenReturn(1);
+        when(listaEsperaRepository.marcarOfertaAtendida(5, 10)).thenReturn(1);
+
+        liberacaoVagaService.aceitarVaga(10, 5);
+
+        ArgumentCaptor<VagaAceitaEvent> evento = ArgumentCaptor.forClass(VagaAceitaEvent.class);
+        verify(eventPublisher).publishEvent(evento.capture());
+        assertThat(evento.getValue().consultaId()).isEqualTo(10);
+        assertThat(evento.getValue().listaEsperaId()).isEqualTo(5);
+        assertThat(evento.getValue().especialidadeId()).isEqualTo(1);
+        // O tempo até a reocupação é calculado pelo consumidor do evento, fora da transação do aceite
+        verify(consultaRepository, never()).buscarLiberadaEm(any());
     }
 
     @Test
     void aceitarVaga_deveLancarQuandoConsultaNaoEncontrada() {
-        when(consultaRepository.findById(999)).thenReturn(Optional.empty());
+        when(listaEsperaRepository.findById(5)).thenReturn(Optional.of(listaEspera));
+        when(consultaRepository.reivindicarVagaOferecida(eq(999), eq(5), any(), any())).thenReturn(0);
+        when(consultaRepository.existsById(999)).thenReturn(false);
 
         assertThatThrownBy(() -> liberacaoVagaService.aceitarVaga(999, 5))
                 .isInstanceOf(IllegalArgumentException.class)
@@ -159,39 +225,78 @@ class LiberacaoVagaServiceTest {
     }
 
     @Test
-    void aceitarVaga_deveLancarQuandoVagaNaoDisponivel() {
-        consulta.setStatus(StatusConsulta.AGENDADA); // não está mais liberada
-        when(consultaRepository.findById(10)).thenReturn(Optional.of(consulta));
+    void aceitarVaga_deveLancarConflitoQuandoVagaNaoDisponivel() {
         when(listaEsperaRepository.findById(5)).thenReturn(Optional.of(listaEspera));
+        when(consultaRepository.reivindicarVagaOferecida(eq(10), eq(5), any(), any())).thenReturn(0);
+        when(consultaRepository.existsById(10)).thenReturn(true);
 
         assertThatThrownBy(() -> liberacaoVagaService.aceitarVaga(10, 5))
-                .isInstanceOf(IllegalArgumentException.class)
+                .isInstanceOf(ConflitoException.class)
                 .hasMessageContaining("não está mais disponível");
+        verify(listaEsperaRepository, never()).marcarOfertaAtendida(any(), any());
+        verify(indiceListaEspera, never()).remover(any());
+        assertThat(meterRegistry.get("agenda.vaga.operacao").tags("operacao", "aceitar", "excecao", "ConflitoException").timer().count())
+                .isEqualTo(1);
     }
 
     @Test
-    void processarTimeoutVaga_quandoSemOferta_naoFazNada() {
-        consulta.setVagaOferecidaParaListaEspera(null);
+    void aceitarVaga_deveLancarConflitoQuandoOfertaJaEncerrada() {
+        when(listaEsperaRepository.findById(5)).thenReturn(Optional.of(listaEspera));
+        when(consultaRepository.reivindicarVagaOferecida(eq(10), eq(5), any(), any())).thenReturn(1);
+        when(listaEsperaRepository.marcarOfertaAtendida(5, 10)).thenReturn(0);
 
-        liberacaoVagaService.processarTimeoutVaga(consulta);
+        assertThatThrownBy(() -> liberacaoVagaService.aceitarVaga(10, 5))
+                .isInstanceOf(ConflitoException.class)
+                .hasMessageContaining("para este paciente");
+        verify(indiceListaEspera, never()).remover(any());
+    }
+
+    @Test
+    void aceitarVaga_deveLancarConflitoQuandoHorarioFoiOcupado() {
+        when(listaEsperaRepository.findById(5)).thenReturn(Optional.of(listaEspera));
+        when(consultaRepository.reivindicarVagaOferecida(eq(10), eq(5), any(), any()))
+                .thenThrow(new DataIntegrityViolationException(Consulta.UK_MEDICO_SLOT_ATIVO));
 
-        verify(listaEsperaRepository, never()).save(any());
+        assertThatThrownBy(() -> liberacaoVagaService.aceitarVaga(10, 5))
+                .isInstanceOf(ConflitoException.class)
+                .hasMessageContaining("já foi ocupado");
+        verify(listaEsperaRepository, never()).marcarOfertaAtendida(any(), any());
     }
 
     @Test
-    void processarTimeoutVaga_quandoDentroDoPrazo_naoFazNada() {
-        listaEspera.setDataOferta(LocalDateTime.now().minusMinutes(30)); // 30 min atrás
-        consulta.setVagaOferecidaParaListaEspera(listaEspera);
+    void aceitarVaga_deveLancarQuandoListaEsperaNaoEncontrada() {
+        when(listaEsperaRepository.findById(5)).thenReturn(Optional.empty());
 
+        assertThatThrownBy(() -> liberacaoVagaService.aceitarVaga(10, 5))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Registro não encontrado");
+        verify(consultaRepository, never()).reivindicarVagaOferecida(any(), any(), any(), any());
+    }
+
+    @Test
+    void processarTimeoutVaga_quandoSemOferta_naoFazNada() {
         liberacaoVagaService.processarTimeoutVaga(consulta);
 
-        verify(listaEsperaRepository, never()).save(any());
+        verify(listaEsperaRepository, never()).saveAll(any());
+        verify(consultaRepository, never()).save(any());
+    }
+
+    @Test
+    void processarTimeoutVaga_quandoDentroDoPrazo_naoFazNadaERetornaPrazo() {
+        LocalDateTime dataOferta = LocalDateTime.now().minusMinutes(30); // 30 min atrás
+        listaEspera.setDataOferta(dataOferta);
+        ofertasPendentes(listaEspera);
+
+        Optional<LocalDateTime> pendente = liberacaoVagaService.processarTimeoutVaga(consulta);
+
+        assertThat(pendente).contains(dataOferta.plusHours(2));
+        verify(listaEsperaRepository, never()).saveAll(any());
     }
 
     @Test
     void processarTimeoutVaga_quandoExpiradoEHaProximoComIdDiferente_deveOferecerParaProximo() {
         listaEspera.setDataOferta(LocalDateTime.now().minusHours(3));
-        consulta.setVagaOferecidaParaListaEspera(listaEspera);
+        ofertasPendentes(listaEspera);
 
         ListaEspera proximoNaFila = new ListaEspera();
         proximoNaFila.setId(99);
@@ -199,75 +304,379 @@ class LiberacaoVagaServiceTest {
         proximoNaFila.setEspecialidade(especialidade);
         proximoNaFila.setStatus(StatusListaEspera.ATIVA);
 
-        when(listaEsperaRepository.findFirstByFiltros(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1)))
-                .thenReturn(Optional.of(proximoNaFila));
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1), anyInt()))
+                .thenReturn(List.of(proximoNaFila));
         when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(listaEsperaRepository.save(any(ListaEspera.class))).thenAnswer(inv -> inv.getArgument(0));
 
         liberacaoVagaService.processarTimeoutVaga(consulta);
 
-        verify(listaEsperaRepository, times(2)).save(any(ListaEspera.class));
+        verify(listaEsperaRepository, times(2)).saveAll(any());
         verify(consultaRepository, times(2)).save(consulta);
         assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.ATIVA);
         assertThat(listaEspera.getConsultaOferecida()).isNull();
-        verify(notificacaoService).enviar(any(String.class));
+        verify(notificacaoService).enviar(any(MensagemNotificacao.class));
         assertThat(proximoNaFila.getStatus()).isEqualTo(StatusListaEspera.AGUARDANDO_RESPOSTA);
+        verify(eventPublisher).publishEvent(new OfertaExpiradaEvent(10, 5, 1));
     }
 
     @Test
     void processarTimeoutVaga_quandoExpiradoSemProximo_naoOferece() {
         listaEspera.setDataOferta(LocalDateTime.now().minusHours(3));
-        consulta.setVagaOferecidaParaListaEspera(listaEspera);
+        ofertasPendentes(listaEspera);
 
-        when(listaEsperaRepository.findFirstByFiltros(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1)))
-                .thenReturn(Optional.empty());
-        when(listaEsperaRepository.findFirstByFiltros(eq(StatusListaEspera.ATIVA), eq(1), isNull(), isNull()))
-                .thenReturn(Optional.empty());
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1), anyInt()))
+                .thenReturn(List.of());
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), isNull(), isNull(), anyInt()))
+                .thenReturn(List.of());
         when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(listaEsperaRepository.save(any(ListaEspera.class))).thenAnswer(inv -> inv.getArgument(0));
 
         liberacaoVagaService.processarTimeoutVaga(consulta);
 
-        verify(listaEsperaRepository).save(listaEspera);
+        verify(listaEsperaRepository).saveAll(List.of(listaEspera));
         verify(consultaRepository).save(consulta);
-        verify(notificacaoService, never()).enviar(any());
+        verify(notificacaoService, never()).enviar(any(MensagemNotificacao.class));
     }
 
     @Test
     void processarTimeoutVaga_quandoExpiradoProximoEhMesmoRegistro_naoOfereceNovamente() {
         listaEspera.setDataOferta(LocalDateTime.now().minusHours(3));
-        consulta.setVagaOferecidaParaListaEspera(listaEspera);
-        when(listaEsperaRepository.findFirstByFiltros(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1)))
-                .thenReturn(Optional.of(listaEspera));
+        ofertasPendentes(listaEspera);
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1), anyInt()))
+                .thenReturn(List.of(listaEspera));
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        liberacaoVagaService.processarTimeoutVaga(consulta);
+
+        verify(listaEsperaRepository).saveAll(List.of(listaEspera));
+        verify(notificacaoService, never()).enviar(any(MensagemNotificacao.class));
+    }
+
+    @Test
+    void processarTimeoutVaga_quandoMesmoRegistroEncabecaLote_deveOferecerAoSeguinteSemNovaBusca() {
+        listaEspera.setDataOferta(LocalDateTime.now().minusHours(3));
+        ofertasPendentes(listaEspera);
+        ListaEspera seguinte = new ListaEspera();
+        seguinte.setId(77);
+        seguinte.setPaciente(paciente);
+        seguinte.setEspecialidade(especialidade);
+        seguinte.setStatus(StatusListaEspera.ATIVA);
+
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1), eq(10)))
+                .thenReturn(List.of(listaEspera, seguinte));
         when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(listaEsperaRepository.save(any(ListaEspera.class))).thenAnswer(inv -> inv.getArgument(0));
 
         liberacaoVagaService.processarTimeoutVaga(consulta);
 
-        verify(listaEsperaRepository).save(listaEspera);
-        verify(notificacaoService, never()).enviar(any());
+        assertThat(seguinte.getStatus()).isEqualTo(StatusListaEspera.AGUARDANDO_RESPOSTA);
+        assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.ATIVA);
+        verify(listaEsperaRepository, times(1)).buscarProximosCandidatos(any(), any(), any(), any(), anyInt());
     }
 
     @Test
     void processarTimeoutVaga_quandoExpiradoProximoSoNaBuscaPorEspecialidade_deveOferecer() {
         listaEspera.setDataOferta(LocalDateTime.now().minusHours(3));
-        consulta.setVagaOferecidaParaListaEspera(listaEspera);
+        ofertasPendentes(listaEspera);
         ListaEspera proximoSoEspecialidade = new ListaEspera();
         proximoSoEspecialidade.setId(88);
         proximoSoEspecialidade.setPaciente(paciente);
         proximoSoEspecialidade.setEspecialidade(especialidade);
         proximoSoEspecialidade.setStatus(StatusListaEspera.ATIVA);
 
-        when(listaEsperaRepository.findFirstByFiltros(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1)))
-                .thenReturn(Optional.empty());
-        when(listaEsperaRepository.findFirstByFiltros(eq(StatusListaEspera.ATIVA), eq(1), isNull(), isNull()))
-                .thenReturn(Optional.of(proximoSoEspecialidade));
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1), anyInt()))
+                .thenReturn(List.of());
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), isNull(), isNull(), anyInt()))
+                .thenReturn(List.of(proximoSoEspecialidade));
         when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(listaEsperaRepository.save(any(ListaEspera.class))).thenAnswer(inv -> inv.getArgument(0));
 
         liberacaoVagaService.processarTimeoutVaga(consulta);
 
-        verify(notificacaoService).enviar(any(String.class));
+        verify(notificacaoService).enviar(any(MensagemNotificacao.class));
         assertThat(proximoSoEspecialidade.getStatus()).isEqualTo(StatusListaEspera.AGUARDANDO_RESPOSTA);
     }
+
+    @Test
+    void liberarVaga_comIndicePronto_deveUsarIndiceSemConsultarFiltros() {
+        when(indiceListaEspera.isPronto()).thenReturn(true);
+        when(indiceListaEspera.proximos(1, 1, 1, 10)).thenReturn(List.of(5));
+        when(listaEsperaRepository.findAllById(List.of(5))).thenReturn(List.of(listaEspera));
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        liberacaoVagaService.liberarVaga(consulta);
+
+        assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.AGUARDANDO_RESPOSTA);
+        verify(indiceListaEspera).remover(5);
+        verify(listaEsperaRepository, never()).buscarProximosCandidatos(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void liberarVaga_comIndicePronto_deveDescartarEntradaObsoleta() {
+        ListaEspera obsoleta = new ListaEspera();
+        obsoleta.setId(7);
+        obsoleta.setStatus(StatusListaEspera.CANCELADA);
+
+        when(indiceListaEspera.isPronto()).thenReturn(true);
+        when(indiceListaEspera.proximos(1, 1, 1, 10)).thenReturn(List.of(7, 5));
+        when(listaEsperaRepository.findAllById(List.of(7, 5))).thenReturn(List.of(obsoleta, listaEspera));
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        liberacaoVagaService.liberarVaga(consulta);
+
+        verify(indiceListaEspera).descartar(7);
+        verify(listaEsperaRepository, times(1)).findAllById(any());
+        assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.AGUARDANDO_RESPOSTA);
+    }
+
+    @Test
+    void liberarVaga_comIndicePronto_quandoLoteTodoObsoleto_deveBuscarProximoLote() {
+        ListaEspera obsoleta = new ListaEspera();
+        obsoleta.setId(7);
+        obsoleta.setStatus(StatusListaEspera.ATENDIDA);
+
+        when(indiceListaEspera.isPronto()).thenReturn(true);
+        when(indiceListaEspera.proximos(1, 1, 1, 10)).thenReturn(List.of(7), List.of(5));
+        when(listaEsperaRepository.findAllById(List.of(7))).thenReturn(List.of(obsoleta));
+        when(listaEsperaRepository.findAllById(List.of(5))).thenReturn(List.of(listaEspera));
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        liberacaoVagaService.liberarVaga(consulta);
+
+        verify(indiceListaEspera).descartar(7);
+        assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.AGUARDANDO_RESPOSTA);
+    }
+
+    @Test
+    void processarTimeoutVaga_quandoExpirado_deveDevolverRegistroAoIndice() {
+        listaEspera.setDataOferta(LocalDateTime.now().minusHours(3));
+        ofertasPendentes(listaEspera);
+
+        when(indiceListaEspera.isPronto()).thenReturn(true);
+        when(indiceListaEspera.proximos(eq(1), any(), any(), anyInt())).thenReturn(List.of());
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        liberacaoVagaService.processarTimeoutVaga(consulta);
+
+        verify(indiceListaEspera).adicionar(listaEspera);
+        verify(notificacaoService, never()).enviar(any(MensagemNotificacao.class));
+    }
+
+    @Test
+    void liberarVagaNaoConfirmada_quandoPendente_deveLiberar() {
+        when(consultaRepository.findById(10)).thenReturn(Optional.of(consulta));
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), any(), any(), anyInt()))
+                .thenReturn(List.of());
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        boolean liberada = liberacaoVagaService.liberarVagaNaoConfirmada(10);
+
+        assertThat(liberada).isTrue();
+        assertThat(consulta.getStatus()).isEqualTo(StatusConsulta.LIBERADA);
+    }
+
+    @Test
+    void liberarVagaNaoConfirmada_quandoJaConfirmada_naoLibera() {
+        consulta.setStatus(StatusConsulta.AGENDADA);
+        consulta.setConfirmadaEm(LocalDateTime.now());
+        when(consultaRepository.findById(10)).thenReturn(Optional.of(consulta));
+
+        boolean liberada = liberacaoVagaService.liberarVagaNaoConfirmada(10);
+
+        assertThat(liberada).isFalse();
+        verify(consultaRepository, never()).save(any());
+    }
+
+    @Test
+    void processarTimeoutVaga_porId_quandoConsultaNaoLiberada_ignora() {
+        consulta.setStatus(StatusConsulta.AGENDADA);
+        listaEspera.setDataOferta(LocalDateTime.now().minusHours(3));
+        when(consultaRepository.findById(10)).thenReturn(Optional.of(consulta));
+
+        liberacaoVagaService.processarTimeoutVaga(10);
+
+        verify(listaEsperaRepository, never()).findByConsultaOferecidaIdAndStatus(any(), any());
+        verify(listaEsperaRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void processarTimeoutVaga_porId_quandoLiberadaEExpirada_devolveRegistroAFila() {
+        consulta.setStatus(StatusConsulta.LIBERADA);
+        ofertasPendentes(listaEspera);
+        listaEspera.setDataOferta(LocalDateTime.now().minusHours(3));
+        when(consultaRepository.findById(10)).thenReturn(Optional.of(consulta));
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), any(), any(), anyInt()))
+                .thenReturn(List.of());
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        Optional<LocalDateTime> pendente = liberacaoVagaService.processarTimeoutVaga(10);
+
+        assertThat(pendente).isEmpty();
+        assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.ATIVA);
+        assertThat(consulta.getVagaOferecidaEm()).isNull();
+    }
+
+    @Test
+    void processarTimeoutVaga_respeitaTtlConfigurado() {
+        ReflectionTestUtils.setField(liberacaoVagaService, "ttlOferta", Duration.ofMinutes(15));
+        listaEspera.setDataOferta(LocalDateTime.now().minusMinutes(20));
+        ofertasPendentes(listaEspera);
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), any(), any(), anyInt()))
+                .thenReturn(List.of());
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        liberacaoVagaService.processarTimeoutVaga(consulta);
+
+        assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.ATIVA);
+    }
+
+    @Test
+    void liberarVaga_comFanOut_deveOferecerAosPrimeirosDaFilaAoMesmoTempo() {
+        ReflectionTestUtils.setField(liberacaoVagaService, "fanOut", 3);
+        ListaEspera segundo = novoRegistro(6);
+        ListaEspera terceiro = novoRegistro(7);
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1), anyInt()))
+                .thenReturn(List.of(listaEspera));
+        // Completa com a especialidade sem repetir quem já recebeu a oferta
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), isNull(), isNull(), anyInt()))
+                .thenReturn(List.of(listaEspera, segundo, terceiro));
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        liberacaoVagaService.liberarVaga(consulta);
+
+        verify(listaEsperaRepository).saveAll(List.of(listaEspera, segundo, terceiro));
+        assertThat(List.of(listaEspera, segundo, terceiro)).allSatisfy(registro -> {
+            assertThat(registro.getStatus()).isEqualTo(StatusListaEspera.AGUARDANDO_RESPOSTA);
+            assertThat(registro.getConsultaOferecida()).isSameAs(consulta);
+            assertThat(registro.getDataOferta()).isEqualTo(consulta.getVagaOferecidaEm());
+        });
+        verify(notificacaoService, times(3)).enviar(any(MensagemNotificacao.class));
+        verify(eventPublisher, times(3)).publishEvent(any(VagaOferecidaEvent.class));
+    }
+
+    @Test
+    void liberarVaga_comFanOut_quandoChaveCompletaOsCandidatos_naoBuscaPorEspecialidade() {
+        ReflectionTestUtils.setField(liberacaoVagaService, "fanOut", 2);
+        ListaEspera segundo = novoRegistro(6);
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1), anyInt()))
+                .thenReturn(List.of(listaEspera, segundo, novoRegistro(7)));
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        liberacaoVagaService.liberarVaga(consulta);
+
+        verify(listaEsperaRepository).saveAll(List.of(listaEspera, segundo));
+        verify(listaEsperaRepository, times(1)).buscarProximosCandidatos(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void aceitarVaga_comOfertasParalelas_deveRevogarAsDemaisEDevolverAFila() {
+        ListaEspera concorrente = novoRegistro(6);
+        concorrente.setStatus(StatusListaEspera.AGUARDANDO_RESPOSTA);
+        concorrente.setConsultaOferecida(consulta);
+        concorrente.setDataOferta(LocalDateTime.now().minusMinutes(10));
+        when(listaEsperaRepository.findById(5)).thenReturn(Optional.of(listaEspera));
+        when(consultaRepository.reivindicarVagaOferecida(eq(10), eq(5), eq(paciente), any(LocalDateTime.class))).thenReturn(1);
+        when(listaEsperaRepository.marcarOfertaAtendida(5, 10)).thenReturn(1);
+        when(listaEsperaRepository.findByConsultaOferecidaIdAndStatus(10, StatusListaEspera.AGUARDANDO_RESPOSTA))
+                .thenReturn(List.of(concorrente));
+
+        liberacaoVagaService.aceitarVaga(10, 5);
+
+        assertThat(concorrente.getStatus()).isEqualTo(StatusListaEspera.ATIVA);
+        assertThat(concorrente.getConsultaOferecida()).isNull();
+        assertThat(concorrente.getDataOferta()).isNull();
+        verify(listaEsperaRepository).saveAll(List.of(concorrente));
+        verify(indiceListaEspera).adicionar(concorrente);
+        verify(notificacaoService).enviar(argThat((MensagemNotificacao mensagem) ->
+                mensagem.listaEsperaId().equals(6) && mensagem.mensagem().contains("já foi preenchida")));
+        verify(eventPublisher).publishEvent(new OfertaRevogadaEvent(10, 6, 1));
+    }
+
+    @Test
+    void processarTimeoutVaga_comOfertasParalelas_deveExpirarTodasEOferecerAOutros() {
+        ReflectionTestUtils.setField(liberacaoVagaService, "fanOut", 2);
+        ListaEspera concorrente = novoRegistro(6);
+        LocalDateTime dataOferta = LocalDateTime.now().minusHours(3);
+        listaEspera.setDataOferta(dataOferta);
+        concorrente.setDataOferta(dataOferta);
+        ofertasPendentes(listaEspera, concorrente);
+        ListaEspera proximo = novoRegistro(7);
+        when(listaEsperaRepository.buscarProximosCandidatos(eq(StatusListaEspera.ATIVA), eq(1), eq(1), eq(1), anyInt()))
+                .thenReturn(List.of(listaEspera, concorrente, proximo));
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        liberacaoVagaService.processarTimeoutVaga(consulta);
+
+        verify(eventPublisher).publishEvent(new OfertaExpiradaEvent(10, 5, 1));
+        verify(eventPublisher).publishEvent(new OfertaExpiradaEvent(10, 6, 1));
+        assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.ATIVA);
+        assertThat(concorrente.getStatus()).isEqualTo(StatusListaEspera.ATIVA);
+        assertThat(proximo.getStatus()).isEqualTo(StatusListaEspera.AGUARDANDO_RESPOSTA);
+        verify(notificacaoService, times(1)).enviar(any(MensagemNotificacao.class));
+    }
+
+    @Test
+    void liberarVaga_comSelecaoPorDistancia_deveOferecerAoProximoDaUnidadeAntesDaEspecialidade() {
+        habilitarSelecaoPorDistancia();
+        when(indiceListaEspera.isPronto()).thenReturn(true);
+        when(indiceListaEspera.proximos(1, 1, 1, 10)).thenReturn(List.of());
+        when(indiceListaEspera.proximosPorDistancia(eq(1), eq(-23.55052), eq(-46.63331), eq(15.0), eq(Duration.ofMinutes(30)), eq(10)))
+                .thenReturn(List.of(5));
+        when(listaEsperaRepository.findAllById(List.of(5))).thenReturn(List.of(listaEspera));
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        liberacaoVagaService.liberarVaga(consulta);
+
+        assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.AGUARDANDO_RESPOSTA);
+        verify(indiceListaEspera, never()).proximos(eq(1), isNull(), isNull(), anyInt());
+    }
+
+    @Test
+    void liberarVaga_comSelecaoPorDistancia_semNinguemNoRaio_deveOferecerPelaEspecialidade() {
+        habilitarSelecaoPorDistancia();
+        when(indiceListaEspera.isPronto()).thenReturn(true);
+        when(indiceListaEspera.proximos(1, 1, 1, 10)).thenReturn(List.of());
+        when(indiceListaEspera.proximosPorDistancia(eq(1), anyDouble(), anyDouble(), anyDouble(), any(), anyInt()))
+                .thenReturn(List.of());
+        when(indiceListaEspera.proximos(1, null, null, 10)).thenReturn(List.of(5));
+        when(listaEsperaRepository.findAllById(List.of(5))).thenReturn(List.of(listaEspera));
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        liberacaoVagaService.liberarVaga(consulta);
+
+        assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.AGUARDANDO_RESPOSTA);
+    }
+
+    @Test
+    void liberarVaga_comSelecaoPorDistancia_unidadeSemCoordenadas_naoConsultaAGrade() {
+        habilitarSelecaoPorDistancia();
+        unidade.setLatitude(null);
+        when(indiceListaEspera.isPronto()).thenReturn(true);
+        when(indiceListaEspera.proximos(eq(1), any(), any(), anyInt())).thenReturn(List.of());
+        when(consultaRepository.save(any(Consulta.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        liberacaoVagaService.liberarVaga(consulta);
+
+        verify(indiceListaEspera, never()).proximosPorDistancia(any(), anyDouble(), anyDouble(), anyDouble(), any(), anyInt());
+        verify(indiceListaEspera).proximos(1, null, null, 10);
+    }
+
+    private void habilitarSelecaoPorDistancia() {
+        ReflectionTestUtils.setField(liberacaoVagaService, "geoHabilitado", true);
+        ReflectionTestUtils.setField(liberacaoVagaService, "raioKm", 15.0);
+        ReflectionTestUtils.setField(liberacaoVagaService, "esperaPorKm", Duration.ofMinutes(30));
+        unidade.setLatitude(new BigDecimal("-23.55052"));
+        unidade.setLongitude(new BigDecimal("-46.63331"));
+    }
+
+    private void ofertasPendentes(ListaEspera... ofertas) {
+        when(listaEsperaRepository.findByConsultaOferecidaIdAndStatus(10, StatusListaEspera.AGUARDANDO_RESPOSTA))
+                .thenReturn(List.of(ofertas));
+    }
+
+    private ListaEspera novoRegistro(Integer id) {
+        ListaEspera registro = new ListaEspera();
+        registro.setId(id);
+        registro.setPaciente(paciente);
+        registro.setEspecialidade(especialidade);
+        registro.setStatus(StatusListaEspera.ATIVA);
+        return registro;
+    }
 }
@@ -1,23 +1,32 @@
 package com.fiap.vaga_liberada_agenda.service;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.EspecialidadeReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.ListaEsperaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.MedicoReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection;
 import com.fiap.vaga_liberada_agenda.dto.request.ListaEsperaRequest;
 import com.fiap.vaga_liberada_agenda.dto.response.ListaEsperaResponse;
+import com.fiap.vaga_liberada_agenda.dto.response.PaginaResponse;
 import com.fiap.vaga_liberada_agenda.entity.*;
 import com.fiap.vaga_liberada_agenda.mapper.ListaEsperaMapper;
 import com.fiap.vaga_liberada_agenda.repository.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,16 +43,22 @@ class ListaEsperaServiceTest {
     @Mock
     private UnidadeSaudeRepository unidadeSaudeRepository;
     @Mock
+    private CacheReferenciaService cacheReferenciaService;
+    @Mock
     private ListaEsperaMapper listaEsperaMapper;
+    @Mock
+    private IndiceListaEspera indiceListaEspera;
 
     @InjectMocks
     private ListaEsperaService listaEsperaService;
 
     private Paciente paciente;
     private Especialidade especialidade;
+    private EspecialidadeReferenciaProjection especialidadeReferencia;
     private ListaEspera listaEspera;
     private ListaEsperaRequest request;
     private ListaEsperaResponse response;
+    private ListaEsperaProjection projecao;
 
     @BeforeEach
     void setup() {
@@ -54,6 +69,7 @@ class ListaEsperaServiceTest {
         especialidade = new Especialidade();
         especialidade.setId(1);
         especialidade.setNome("Clínico Geral");
+        especialidadeReferencia = new EspecialidadeReferenciaProjection(1, "Clínico Geral");
 
         listaEspera = new ListaEspera();
         listaEspera.setId(1);
@@ -71,21 +87,25 @@ class ListaEsperaServiceTest {
         response.setId(1);
         response.setPacienteId(1);
         response.setEspecialidadeId(1);
+
+        projecao = new ListaEsperaProjection(1, 1, "Paciente Teste", 1, "Clínico Geral",
+                null, null, null, null, LocalDateTime.now(), 0, StatusListaEspera.ATIVA, null, null);
     }
 
     @Test
     void adicionarNaLista_deveRetornarListaEsperaCriada() {
         when(pacienteRepository.findById(1)).thenReturn(Optional.of(paciente));
-        when(especialidadeRepository.findById(1)).thenReturn(Optional.of(especialidade));
+        when(cacheReferenciaService.buscarEspecialidade(1)).thenReturn(Optional.of(especialidadeReferencia));
         when(listaEsperaRepository.findByPacienteIdAndStatus(1, StatusListaEspera.ATIVA)).thenReturn(List.of());
         when(listaEsperaRepository.save(any(ListaEspera.class))).thenReturn(listaEspera);
-        when(listaEsperaMapper.toResponseWithDetails(any(ListaEspera.class))).thenReturn(response);
+        when(listaEsperaMapper.toResponse(listaEspera, especialidadeReferencia, null, null)).thenReturn(response);
 
         ListaEsperaResponse result = listaEsperaService.adicionarNaLista(request);
 
         assertThat(result).isNotNull();
         assertThat(result.getId()).isEqualTo(1);
         verify(listaEsperaRepository).save(any(ListaEspera.class));
+        verify(indiceListaEspera).adicionar(listaEspera);
     }
 
     @Test
@@ -102,7 +122,7 @@ class ListaEsperaServiceTest {
     @Test
     void adicionarNaLista_deveLancarQuandoJaNaListaAtiva() {
         when(pacienteRepository.findById(1)).thenReturn(Optional.of(paciente));
-        when(especialidadeRepository.findById(1)).thenReturn(Optional.of(especialidade));
+        when(cacheReferenciaService.buscarEspecialidade(1)).thenReturn(Optional.of(especialidadeReferencia));
         when(listaEsperaRepository.findByPacienteIdAndStatus(1, StatusListaEspera.ATIVA)).thenReturn(List.of(listaEspera));
 
         assertThatThrownBy(() -> listaEsperaService.adicionarNaLista(request))
@@ -119,28 +139,38 @@ class ListaEsperaServiceTest {
         UnidadeSaude unidade = new UnidadeSaude();
         unidade.setId(1);
         unidade.setNome("UBS");
+        MedicoReferenciaProjection medicoReferencia = new MedicoReferenciaProjection(1, "Dr. João", "12345", true, 1, 1);
+        UnidadeReferenciaProjection unidadeReferencia = new UnidadeReferenciaProjection(1, "UBS", null, null);
         when(pacienteRepository.findById(1)).thenReturn(Optional.of(paciente));
-        when(especialidadeRepository.findById(1)).thenReturn(Optional.of(especialidade));
+        when(cacheReferenciaService.buscarEspecialidade(1)).thenReturn(Optional.of(especialidadeReferencia));
         when(listaEsperaRepository.findByPacienteIdAndStatus(1, StatusListaEspera.ATIVA)).thenReturn(List.of());
-        when(medicoRepository.findById(1)).thenReturn(Optional.of(medico));
-        when(unidadeSaudeRepository.findById(1)).thenReturn(Optional.of(unidade));
-        when(listaEsperaRepository.save(any(ListaEspera.class))).thenReturn(listaEspera);
-        when(listaEsperaMapper.toResponseWithDetails(any(ListaEspera.class))).thenReturn(response);
+        when(cacheReferenciaService.buscarMedico(1)).thenReturn(Optional.of(medicoReferencia));
+        when(cacheReferenciaService.buscarUnidade(1)).thenReturn(Optional.of(unidadeReferencia));
+        when(especialidadeRepository.getReferenceById(1)).thenReturn(especialidade);
+        when(medicoRepository.getReferenceById(1)).thenReturn(medico);
+        when(unidadeSaudeRepository.getReferenceById(1)).thenReturn(unidade);
+        when(listaEsperaRepository.save(any(ListaEspera.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(listaEsperaMapper.toResponse(any(ListaEspera.class), eq(especialidadeReferencia),
+                eq(medicoReferencia), eq(unidadeReferencia))).thenReturn(response);
         request.setMedicoId(1);
         request.setUnidadeId(1);
 
         ListaEsperaResponse result = listaEsperaService.adicionarNaLista(request);
 
         assertThat(result).isNotNull();
-        verify(listaEsperaRepository).save(any(ListaEspera.class));
+        ArgumentCaptor<ListaEspera> captor = ArgumentCaptor.forClass(ListaEspera.class);
+        verify(listaEsperaRepository).save(captor.capture());
+        assertThat(captor.getValue().getEspecialidade()).isSameAs(especialidade);
+        assertThat(captor.getValue().getMedico()).isSameAs(medico);
+        assertThat(captor.getValue().getUnidade()).isSameAs(unidade);
     }
 
     @Test
     void adicionarNaLista_deveLancarQuandoMedicoNaoEncontrado() {
         when(pacienteRepository.findById(1)).thenReturn(Optional.of(paciente));
-        when(especialidadeRepository.findById(1)).thenReturn(Optional.of(especialidade));
+        when(cacheReferenciaService.buscarEspecialidade(1)).thenReturn(Optional.of(especialidadeReferencia));
         when(listaEsperaRepository.findByPacienteIdAndStatus(1, StatusListaEspera.ATIVA)).thenReturn(List.of());
-        when(medicoRepository.findById(999)).thenReturn(Optional.empty());
+        when(cacheReferenciaService.buscarMedico(999)).thenReturn(Optional.empty());
         request.setMedicoId(999);
 
         assertThatThrownBy(() -> listaEsperaService.adicionarNaLista(request))
@@ -152,9 +182,9 @@ class ListaEsperaServiceTest {
     @Test
     void adicionarNaLista_deveLancarQuandoUnidadeNaoEncontrada() {
         when(pacienteRepository.findById(1)).thenReturn(Optional.of(paciente));
-        when(especialidadeRepository.findById(1)).thenReturn(Optional.of(especialidade));
+        when(cacheReferenciaService.buscarEspecialidade(1)).thenReturn(Optional.of(especialidadeReferencia));
         when(listaEsperaRepository.findByPacienteIdAndStatus(1, StatusListaEspera.ATIVA)).thenReturn(List.of());
-        when(unidadeSaudeRepository.findById(999)).thenReturn(Optional.empty());
+        when(cacheReferenciaService.buscarUnidade(999)).thenReturn(Optional.empty());
         request.setUnidadeId(999);
 
         assertThatThrownBy(() -> listaEsperaService.adicionarNaLista(request))
@@ -166,7 +196,7 @@ class ListaEsperaServiceTest {
     @Test
     void adicionarNaLista_deveLancarQuandoEspecialidadeNaoEncontrada() {
         when(pacienteRepository.findById(1)).thenReturn(Optional.of(paciente));
-        when(especialidadeRepository.findById(999)).thenReturn(Optional.empty());
+        when(cacheReferenciaService.buscarEspecialidade(999)).thenReturn(Optional.empty());
         request.setEspecialidadeId(999);
 
         assertThatThrownBy(() -> listaEsperaService.adicionarNaLista(request))
@@ -177,19 +207,36 @@ class ListaEsperaServiceTest {
 
     @Test
     void listarPorFiltros_deveRetornarLista() {
-        when(listaEsperaRepository.findByFiltros(StatusListaEspera.ATIVA, 1, null, null)).thenReturn(List.of(listaEspera));
-        when(listaEsperaMapper.toResponseWithDetails(listaEspera)).thenReturn(response);
+        when(listaEsperaRepository.buscarProjecoesPorFiltros(StatusListaEspera.ATIVA, 1, null, null, null,
+                Limit.of(PaginaResponse.LIMITE_PADRAO + 1)))
+                .thenReturn(List.of(projecao));
+        when(listaEsperaMapper.toResponse(projecao)).thenReturn(response);
 
-        List<ListaEsperaResponse> result = listaEsperaService.listarPorFiltros(1, null, null);
+        PaginaResponse<ListaEsperaResponse> result = listaEsperaService.listarPorFiltros(1, null, null, null, null);
 
-        assertThat(result).hasSize(1);
+        assertThat(result.itens()).hasSize(1);
+        assertThat(result.proximoCursor()).isNull();
+    }
+
+    @Test
+    void listarPorFiltros_comMaisRegistrosQueOLimite_deveRetornarProximoCursor() {
+        ListaEsperaProjection seguinte = new ListaEsperaProjection(2, 1, "Outro", 1, "Cardiologia",
+                null, null, null, null, LocalDateTime.now(), 0, StatusListaEspera.ATIVA, null, null);
+        when(listaEsperaRepository.buscarProjecoesPorFiltros(StatusListaEspera.ATIVA, 1, null, null, 9, Limit.of(2)))
+                .thenReturn(List.of(projecao, seguinte));
+        when(listaEsperaMapper.toResponse(projecao)).thenReturn(response);
+
+        PaginaResponse<ListaEsperaResponse> result = listaEsperaService.listarPorFiltros(1, null, null, 9, 1);
+
+        assertThat(result.itens()).containsExactly(response);
+        assertThat(result.proximoCursor()).isEqualTo(projecao.id());
     }
 
     @Test
     void obterProximoDaFila_deveRetornarOptional() {
-        when(listaEsperaRepository.findFirstByFiltros(StatusListaEspera.ATIVA, 1, null, null))
-                .thenReturn(Optional.of(listaEspera));
-        when(listaEsperaMapper.toResponseWithDetails(listaEspera)).thenReturn(response);
+        when(listaEsperaRepository.buscarProjecoesPorFiltros(StatusListaEspera.ATIVA, 1, null, null, null, Limit.of(1)))
+                .thenReturn(List.of(projecao));
+        when(listaEsperaMapper.toResponse(projecao)).thenReturn(response);
 
         Optional<ListaEsperaResponse> result = listaEsperaService.obterProximoDaFila(1, null, null);
 
@@ -199,12 +246,57 @@ class ListaEsperaServiceTest {
 
     @Test
     void obterProximoDaFila_deveRetornarVazioQuandoNaoHaNinguem() {
-        when(listaEsperaRepository.findFirstByFiltros(StatusListaEspera.ATIVA, 1, null, null))
-                .thenReturn(Optional.empty());
+        when(listaEsperaRepository.buscarProjecoesPorFiltros(StatusListaEspera.ATIVA, 1, null, null, null, Limit.of(1)))
+                .thenReturn(List.of());
+
+        Optional<ListaEsperaResponse> result = listaEsperaService.obterProximoDaFila(1, null, null);
+
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void obterProximoDaFila_comIndicePronto_deveUsarIndice() {
+        when(indiceListaEspera.isPronto()).thenReturn(true);
+        when(indiceListaEspera.proximo(1, null, null)).thenReturn(Optional.of(1));
+        when(listaEsperaRepository.buscarProjecaoPorId(1)).thenReturn(Optional.of(projecao));
+        when(listaEsperaMapper.toResponse(projecao)).thenReturn(response);
+
+        Optional<ListaEsperaResponse> result = listaEsperaService.obterProximoDaFila(1, null, null);
+
+        assertThat(result).isPresent();
+        verify(listaEsperaRepository, never()).buscarProjecoesPorFiltros(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void obterProximoDaFila_comEntradaObsoletaNoIndice_deveDescartarEBuscarProxima() {
+        ListaEsperaProjection atendida = new ListaEsperaProjection(2, 2, "Paciente Atendido", 1, "Clínico Geral",
+                null, null, null, null, LocalDateTime.now(), 5, StatusListaEspera.ATENDIDA, null, null);
+        when(indiceListaEspera.isPronto()).thenReturn(true);
+        when(indiceListaEspera.proximo(1, null, null)).thenReturn(Optional.of(2), Optional.of(3), Optional.of(1));
+        when(listaEsperaRepository.buscarProjecaoPorId(2)).thenReturn(Optional.of(atendida));
+        when(listaEsperaRepository.buscarProjecaoPorId(3)).thenReturn(Optional.empty());
+        when(listaEsperaRepository.buscarProjecaoPorId(1)).thenReturn(Optional.of(projecao));
+        when(listaEsperaMapper.toResponse(projecao)).thenReturn(response);
+
+        Optional<ListaEsperaResponse> result = listaEsperaService.obterProximoDaFila(1, null, null);
+
+        assertThat(result).isPresent();
+        assertThat(result.get().getId()).isEqualTo(1);
+        verify(indiceListaEspera).descartar(2);
+        verify(indiceListaEspera).descartar(3);
+        verify(listaEsperaMapper, never()).toResponse(atendida);
+    }
+
+    @Test
+    void obterProximoDaFila_comIndiceSoComEntradasObsoletas_deveRetornarVazio() {
+        when(indiceListaEspera.isPronto()).thenReturn(true);
+        when(indiceListaEspera.proximo(1, null, null)).thenReturn(Optional.of(3), Optional.empty());
+        when(listaEsperaRepository.buscarProjecaoPorId(3)).thenReturn(Optional.empty());
 
         Optional<ListaEsperaResponse> result = listaEsperaService.obterProximoDaFila(1, null, null);
 
         assertThat(result).isEmpty();
+        verify(indiceListaEspera).descartar(3);
     }
 
     @Test
@@ -216,6 +308,7 @@ class ListaEsperaServiceTest {
 
         verify(listaEsperaRepository).save(listaEspera);
         assertThat(listaEspera.getStatus()).isEqualTo(StatusListaEspera.CANCELADA);
+        verify(indiceListaEspera).remover(1);
     }
 
     @Test
@@ -231,8 +324,8 @@ class ListaEsperaServiceTest {
 
     @Test
     void buscarPorId_deveRetornarListaEspera() {
-        when(listaEsperaRepository.findById(1)).thenReturn(Optional.of(listaEspera));
-        when(listaEsperaMapper.toResponseWithDetails(listaEspera)).thenReturn(response);
+        when(listaEsperaRepository.buscarProjecaoPorId(1)).thenReturn(Optional.of(projecao));
+        when(listaEsperaMapper.toResponse(projecao)).thenReturn(response);
 
         ListaEsperaResponse result = listaEsperaService.buscarPorId(1);
 
@@ -242,10 +335,33 @@ class ListaEsperaServiceTest {
 
     @Test
     void buscarPorId_deveLancarQuandoNaoEncontrado() {
-        when(listaEsperaRepository.findById(999)).thenReturn(Optional.empty());
+        when(listaEsperaRepository.buscarProjecaoPorId(999)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> listaEsperaService.buscarPorId(999))
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("não encontrado na lista de espera");
     }
+
+    @Test
+    void listarTodos_deveRetornarPaginaComProximoCursor() {
+        ListaEsperaProjection segundo = new ListaEsperaProjection(2, 1, "Outro", 1, "Cardiologia",
+                null, null, null, null, LocalDateTime.now(), 0, StatusListaEspera.ATIVA, null, null);
+        when(listaEsperaRepository.buscarPagina(0, Limit.of(2))).thenReturn(List.of(projecao, segundo));
+        when(listaEsperaMapper.toResponse(projecao)).thenReturn(response);
+
+        PaginaResponse<ListaEsperaResponse> result = listaEsperaService.listarTodos(null, 1);
+
+        assertThat(result.itens()).containsExactly(response);
+        assertThat(result.proximoCursor()).isEqualTo(1);
+    }
+
+    @Test
+    void exportar_deveEnviarTodosOsRegistros() {
+        when(listaEsperaRepository.streamTodos()).thenReturn(java.util.stream.Stream.of(projecao));
+        when(listaEsperaMapper.toResponse(projecao)).thenReturn(response);
+        List<ListaEsperaResponse> recebidos = new java.util.ArrayList<>();
+
+        assertThat(listaEsperaService.exportar(recebidos::add)).isEqualTo(1);
+        assertThat(recebidos).containsExactly(response);
+    }
 }
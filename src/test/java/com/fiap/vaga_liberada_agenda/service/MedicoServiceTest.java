@@ -1,5 +1,7 @@
 package com.fiap.vaga_liberada_agenda.service;
 
+import com.fiap.vaga_liberada_agenda.dto.projection.EspecialidadeReferenciaProjection;
+import com.fiap.vaga_liberada_agenda.dto.projection.UnidadeReferenciaProjection;
 import com.fiap.vaga_liberada_agenda.dto.request.MedicoRequest;
 import com.fiap.vaga_liberada_agenda.dto.response.MedicoResponse;
 import com.fiap.vaga_liberada_agenda.entity.Especialidade;
@@ -27,6 +29,7 @@ import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.lenient;
 
@@ -40,6 +43,8 @@ class MedicoServiceTest {
     @Mock
     private UnidadeSaudeRepository unidadeSaudeRepository;
     @Mock
+    private CacheReferenciaService cacheReferenciaService;
+    @Mock
     private MedicoMapper medicoMapper;
     @Mock
     private ConsultaRepository consultaRepository;
@@ -50,6 +55,8 @@ class MedicoServiceTest {
     private Medico medico;
     private Especialidade especialidade;
     private UnidadeSaude unidade;
+    private EspecialidadeReferenciaProjection especialidadeReferencia;
+    private UnidadeReferenciaProjection unidadeReferencia;
     private MedicoRequest request;
     private MedicoResponse response;
 
@@ -63,6 +70,9 @@ class MedicoServiceTest {
         unidade.setId(1);
         unidade.setNome("UBS Centro");
 
+        especialidadeReferencia = new EspecialidadeReferenciaProjection(1, "Clínico Geral");
+        unidadeReferencia = new UnidadeReferenciaProjection(1, "UBS Centro", null, null);
+
         medico = new Medico();
         medico.setId(1);
         medico.setNome("Dr. João");
@@ -86,11 +96,11 @@ class MedicoServiceTest {
     @Test
     void criar_deveRetornarMedicoCriado() {
         when(medicoRepository.existsByCrm(request.getCrm())).thenReturn(false);
-        when(especialidadeRepository.findById(1)).thenReturn(Optional.of(especialidade));
-        when(unidadeSaudeRepository.findById(1)).thenReturn(Optional.of(unidade));
+        when(cacheReferenciaService.buscarEspecialidade(1)).thenReturn(Optional.of(especialidadeReferencia));
+        when(cacheReferenciaService.buscarUnidade(1)).thenReturn(Optional.of(unidadeReferencia));
         when(medicoMapper.toEntity(request)).thenReturn(medico);
         when(medicoRepository.save(any(Medico.class))).thenReturn(medico);
-        when(medicoMapper.toResponse(medico)).thenReturn(response);
+        when(medicoMapper.toResponse(medico, especialidadeReferencia, unidadeReferencia)).thenReturn(response);
 
         MedicoResponse result = medicoService.criar(request);
 
@@ -109,11 +119,11 @@ class MedicoServiceTest {
         medicoSemAtivo.setEspecialidade(especialidade);
         medicoSemAtivo.setUnidade(unidade);
         when(medicoRepository.existsByCrm(request.getCrm())).thenReturn(false);
-        when(especialidadeRepository.findById(1)).thenReturn(Optional.of(especialidade));
-        when(unidadeSaudeRepository.findById(1)).thenReturn(Optional.of(unidade));
+        when(cacheReferenciaService.buscarEspecialidade(1)).thenReturn(Optional.of(especialidadeReferencia));
+        when(cacheReferenciaService.buscarUnidade(1)).thenReturn(Optional.of(unidadeReferencia));
         when(medicoMapper.toEntity(request)).thenReturn(medicoSemAtivo);
         when(medicoRepository.save(any(Medico.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(medicoMapper.toResponse(any(Medico.class))).thenReturn(response);
+        when(medicoMapper.toResponse(any(Medico.class), eq(especialidadeReferencia), eq(unidadeReferencia))).thenReturn(response);
 
         medicoService.criar(request);
 
@@ -133,7 +143,7 @@ class MedicoServiceTest {
     @Test
     void criar_deveLancarQuandoEspecialidadeNaoEncontrada() {
         when(medicoRepository.existsByCrm(request.getCrm())).thenReturn(false);
-        when(especialidadeRepository.findById(999)).thenReturn(Optional.empty());
+        when(cacheReferenciaService.buscarEspecialidade(999)).thenReturn(Optional.empty());
         request.setEspecialidadeId(999);
 
         assertThatThrownBy(() -> medicoService.criar(request))
@@ -289,8 +299,8 @@ class MedicoServiceTest {
     @Test
     void criar_deveLancarQuandoUnidadeNaoEncontrada() {
         when(medicoRepository.existsByCrm(request.getCrm())).thenReturn(false);
-        when(especialidadeRepository.findById(1)).thenReturn(Optional.of(especialidade));
-        when(unidadeSaudeRepository.findById(999)).thenReturn(Optional.empty());
+        when(cacheReferenciaService.buscarEspecialidade(1)).thenReturn(Optional.of(especialidadeReferencia));
+        when(cacheReferenciaService.buscarUnidade(999)).thenReturn(Optional.empty());
         request.setUnidadeId(999);
 
         assertThatThrownBy(() -> medicoService.criar(request))
@@ -315,7 +325,7 @@ class MedicoServiceTest {
     void atualizar_deveLancarQuandoEspecialidadeNaoEncontrada() {
         when(medicoRepository.findById(1)).thenReturn(Optional.of(medico));
         lenient().when(medicoRepository.existsByCrm(any())).thenReturn(false);
-        when(especialidadeRepository.findById(999)).thenReturn(Optional.empty());
+        when(cacheReferenciaService.buscarEspecialidade(999)).thenReturn(Optional.empty());
         request.setEspecialidadeId(999);
 
         assertThatThrownBy(() -> medicoService.atualizar(1, request))
@@ -328,8 +338,8 @@ class MedicoServiceTest {
     void atualizar_deveLancarQuandoUnidadeNaoEncontrada() {
         when(medicoRepository.findById(1)).thenReturn(Optional.of(medico));
         lenient().when(medicoRepository.existsByCrm(any())).thenReturn(false);
-        when(especialidadeRepository.findById(1)).thenReturn(Optional.of(especialidade));
-        when(unidadeSaudeRepository.findById(999)).thenReturn(Optional.empty());
+        when(cacheReferenciaService.buscarEspecialidade(1)).thenReturn(Optional.of(especialidadeReferencia));
+        when(cacheReferenciaService.buscarUnidade(999)).thenReturn(Optional.empty());
         request.setUnidadeId(999);
 
         assertThatThrownBy(() -> medicoService.atualizar(1, request))
@@ -342,15 +352,16 @@ class MedicoServiceTest {
     void atualizar_deveRetornarMedicoAtualizado() {
         when(medicoRepository.findById(1)).thenReturn(Optional.of(medico));
         lenient().when(medicoRepository.existsByCrm(any())).thenReturn(false);
-        when(especialidadeRepository.findById(1)).thenReturn(Optional.of(especialidade));
-        when(unidadeSaudeRepository.findById(1)).thenReturn(Optional.of(unidade));
+        when(cacheReferenciaService.buscarEspecialidade(1)).thenReturn(Optional.of(especialidadeReferencia));
+        when(cacheReferenciaService.buscarUnidade(1)).thenReturn(Optional.of(unidadeReferencia));
         when(medicoRepository.save(any(Medico.class))).thenReturn(medico);
-        when(medicoMapper.toResponse(medico)).thenReturn(response);
+        when(medicoMapper.toResponse(medico, especialidadeReferencia, unidadeReferencia)).thenReturn(response);
 
         MedicoResponse result = medicoService.atualizar(1, request);
 
         assertThat(result).isNotNull();
         verify(medicoRepository).save(medico);
+        verify(cacheReferenciaService).invalidarMedico(1);
     }
 
     @Test
@@ -361,6 +372,7 @@ class MedicoServiceTest {
         medicoService.desativar(1);
 
         verify(medicoRepository).save(medico);
+        verify(cacheReferenciaService).invalidarMedico(1);
         assertThat(medico.getAtivo()).isFalse();
     }
 
@@ -384,6 +396,7 @@ class MedicoServiceTest {
         medicoService.deletar(1);
 
         verify(medicoRepository).deleteById(1);
+        verify(cacheReferenciaService).invalidarMedico(1);
     }
 
     @Test
@@ -0,0 +1,109 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
+import com.fiap.vaga_liberada_agenda.event.OfertaExpiradaEvent;
+import com.fiap.vaga_liberada_agenda.event.OfertaRevogadaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaAceitaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaLiberadaEvent;
+import com.fiap.vaga_liberada_agenda.event.VagaOferecidaEvent;
+import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
+import com.fiap.vaga_liberada_agenda.repository.ListaEsperaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MetricasLiberacaoVagaTest {
+
+    @Mock
+    private ListaEsperaRepository listaEsperaRepository;
+
+    @Mock
+    private ConsultaRepository consultaRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MetricasLiberacaoVaga metricas;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        metricas = new MetricasLiberacaoVaga(meterRegistry, listaEsperaRepository, consultaRepository);
+    }
+
+    @Test
+    void tamanhoListaEspera_deveContarPorStatusNaColeta() {
+        when(listaEsperaRepository.countByStatus(StatusListaEspera.ATIVA)).thenReturn(42L);
+        when(listaEsperaRepository.countByStatus(StatusListaEspera.AGUARDANDO_RESPOSTA)).thenReturn(3L);
+
+        assertThat(meterRegistry.get("agenda.lista-espera.tamanho").tag("status", "ATIVA").gauge().value()).isEqualTo(42);
+        assertThat(meterRegistry.get("agenda.lista-espera.tamanho").tag("status", "AGUARDANDO_RESPOSTA").gauge().value()).isEqualTo(3);
+    }
+
+    @Test
+    void medir_deveRegistrarExcecaoERelancar() {
+        assertThatThrownBy(() -> metricas.medir(MetricasLiberacaoVaga.OPERACAO_ACEITAR, () -> {
+            throw new IllegalStateException("falha");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(meterRegistry.get("agenda.vaga.operacao")
+                .tags("operacao", "aceitar", "excecao", "IllegalStateException").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void registrarReocupacao_semInicioDaLiberacao_naoRegistra() {
+        LocalDateTime agora = LocalDateTime.now();
+
+        metricas.registrarReocupacao(1, null, agora);
+        metricas.registrarReocupacao(1, agora.plusMinutes(1), agora);
+
+        assertThat(meterRegistry.find("agenda.vaga.tempo-ate-reocupacao").timer()).isNull();
+    }
+
+    @Test
+    void aoOferecerVaga_deveRegistrarTempoDesdeALiberacao() {
+        LocalDateTime agora = LocalDateTime.now();
+
+        metricas.aoOferecerVaga(new VagaOferecidaEvent(10, 5, 1, agora.minusMinutes(5), agora, agora.plusHours(2)));
+
+        assertThat(meterRegistry.get("agenda.vaga.tempo-ate-oferta").tag("especialidade", "1").timer().totalTime(TimeUnit.MINUTES))
+                .isEqualTo(5);
+        assertThat(meterRegistry.get("agenda.vaga.eventos").tags("evento", "oferecida", "especialidade", "1").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void aoAceitarVaga_deveRegistrarTempoAteReocupacaoPorEspecialidade() {
+        LocalDateTime agora = LocalDateTime.now();
+        when(consultaRepository.buscarLiberadaEm(10)).thenReturn(Optional.of(agora.minusHours(1)));
+
+        metricas.aoAceitarVaga(new VagaAceitaEvent(10, 5, 1, agora));
+
+        assertThat(meterRegistry.get("agenda.vaga.tempo-ate-reocupacao").tag("especialidade", "1").timer().totalTime(TimeUnit.MINUTES))
+                .isEqualTo(60);
+    }
+
+    @Test
+    void eventosDeVaga_deveContarTransicoesPorEspecialidade() {
+        metricas.aoLiberarVaga(new VagaLiberadaEvent(10, 1, LocalDateTime.now()));
+        metricas.aoExpirarOferta(new OfertaExpiradaEvent(10, 5, 1));
+        metricas.aoRevogarOferta(new OfertaRevogadaEvent(10, 6, 1));
+
+        assertThat(meterRegistry.get("agenda.vaga.eventos").tags("evento", "liberada", "especialidade", "1").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("agenda.vaga.eventos").tags("evento", "oferta-expirada", "especialidade", "1").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("agenda.vaga.eventos").tags("evento", "oferta-revogada", "especialidade", "1").counter().count())
+                .isEqualTo(1);
+    }
+}
@@ -1,32 +1,145 @@
 package com.fiap.vaga_liberada_agenda.service;
 
-import io.awspring.cloud.sqs.operations.SqsTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fiap.vaga_liberada_agenda.dto.notificacao.MensagemNotificacao;
+import com.fiap.vaga_liberada_agenda.entity.Consulta;
+import com.fiap.vaga_liberada_agenda.entity.Notificacao;
+import com.fiap.vaga_liberada_agenda.entity.Paciente;
+import com.fiap.vaga_liberada_agenda.entity.StatusEnvioNotificacao;
+import com.fiap.vaga_liberada_agenda.event.NotificacaoRegistradaEvent;
+import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
+import com.fiap.vaga_liberada_agenda.repository.NotificacaoRepository;
+import com.fiap.vaga_liberada_agenda.repository.PacienteRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class NotificacaoServiceTest {
 
     @Mock
-    private SqsTemplate sqsTemplate;
+    private PublicadorNotificacaoSqs publicador;
+
+    @Mock
+    private NotificacaoRepository notificacaoRepository;
+
+    @Mock
+    private PacienteRepository pacienteRepository;
+
+    @Mock
+    private ConsultaRepository consultaRepository;
+
+    @Spy
+    private CodificadorMensagemNotificacao codificador = new CodificadorMensagemNotificacao(new ObjectMapper());
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private NotificacaoService notificacaoService;
 
+    private final String mensagem = "{\"pacienteId\": 1, \"mensagem\": \"Teste\"}";
+    private Paciente paciente;
+    private Consulta consulta;
+
+    @BeforeEach
+    void setup() {
+        paciente = new Paciente();
+        paciente.setId(1);
+        consulta = new Consulta();
+        consulta.setId(10);
+        ReflectionTestUtils.setField(notificacaoService, "outboxHabilitado", false);
+    }
+
+    @Test
+    void enviar_comOutbox_deveGravarPendenteSemPublicar() {
+        ReflectionTestUtils.setField(notificacaoService, "outboxHabilitado", true);
+        when(pacienteRepository.getReferenceById(1)).thenReturn(paciente);
+        when(consultaRepository.getReferenceById(10)).thenReturn(consulta);
+
+        CompletableFuture<Void> resultado = notificacaoService.enviar(1, 10, mensagem);
+
+        ArgumentCaptor<Notificacao> captor = ArgumentCaptor.forClass(Notificacao.class);
+        verify(notificacaoRepository).save(captor.capture());
+        assertThat(captor.getValue().getStatusEnvio()).isEqualTo(StatusEnvioNotificacao.PENDENTE);
+        assertThat(captor.getValue().getMensagem()).isEqualTo(mensagem);
+        assertThat(captor.getValue().getPaciente()).isSameAs(paciente);
+        assertThat(captor.getValue().getConsulta()).isSameAs(consulta);
+        assertThat(resultado).isCompleted();
+        verifyNoInteractions(publicador);
+        verify(eventPublisher).publishEvent(new NotificacaoRegistradaEvent(1, 10));
+    }
+
+    @Test
+    void enviar_semTransacao_deveEnfileirarImediatamente() {
+        when(publicador.publicar(mensagem)).thenReturn(CompletableFuture.completedFuture(null));
+
+        CompletableFuture<Void> resultado = notificacaoService.enviar(1, 10, mensagem);
+
+        assertThat(resultado).isCompleted();
+        verify(publicador).publicar(mensagem);
+        verifyNoInteractions(notificacaoRepository, eventPublisher);
+    }
+
+    @Test
+    void enviar_mensagemTipada_devePublicarJsonCodificado() {
+        when(publicador.publicar(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        notificacaoService.enviar(new MensagemNotificacao(1, 10, null, "Teste"));
+
+        verify(publicador).publicar("{\"pacienteId\":1,\"consultaId\":10,\"mensagem\":\"Teste\"}");
+    }
+
+    @Test
+    void enviar_emTransacao_soEnfileiraAposCommit() {
+        when(publicador.publicar(mensagem)).thenReturn(CompletableFuture.completedFuture(null));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            CompletableFuture<Void> resultado = notificacaoService.enviar(1, 10, mensagem);
+            verify(publicador, never()).publicar(any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            verify(publicador).publicar(mensagem);
+            assertThat(resultado).isCompleted();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
     @Test
-    void enviar_deveChamarSqsTemplate() {
-        String mensagem = "{\"pacienteId\": 1, \"mensagem\": \"Teste\"}";
+    void enviar_emTransacaoComRollback_naoEnfileira() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            CompletableFuture<Void> resultado = notificacaoService.enviar(1, 10, mensagem);
 
-        notificacaoService.enviar(mensagem);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
 
-        verify(sqsTemplate).send(any());
+            verify(publicador, never()).publicar(any());
+            assertThat(resultado).isCancelled();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
     }
 }
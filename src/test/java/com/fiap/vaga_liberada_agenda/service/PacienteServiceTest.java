@@ -2,7 +2,9 @@ package com.fiap.vaga_liberada_agenda.service;
 
 import com.fiap.vaga_liberada_agenda.dto.request.PacienteRequest;
 import com.fiap.vaga_liberada_agenda.dto.response.PacienteResponse;
+import com.fiap.vaga_liberada_agenda.entity.ListaEspera;
 import com.fiap.vaga_liberada_agenda.entity.Paciente;
+import com.fiap.vaga_liberada_agenda.entity.StatusListaEspera;
 import com.fiap.vaga_liberada_agenda.mapper.PacienteMapper;
 import com.fiap.vaga_liberada_agenda.repository.ConsultaRepository;
 import com.fiap.vaga_liberada_agenda.repository.ListaEsperaRepository;
@@ -18,12 +20,14 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.lenient;
 
@@ -38,6 +42,8 @@ class PacienteServiceTest {
     private ConsultaRepository consultaRepository;
     @Mock
     private ListaEsperaRepository listaEsperaRepository;
+    @Mock
+    private IndiceListaEspera indiceListaEspera;
 
     @InjectMocks
     private PacienteService pacienteService;
@@ -204,6 +210,42 @@ class PacienteServiceTest {
         verify(pacienteRepository).save(paciente);
     }
 
+    @Test
+    void atualizar_semMudarCoordenadas_naoReindexaListaEspera() {
+        paciente.setLatitude(new BigDecimal("-23.550000"));
+        paciente.setLongitude(new BigDecimal("-46.630000"));
+        when(pacienteRepository.findById(1)).thenReturn(Optional.of(paciente));
+        when(pacienteRepository.save(any(Paciente.class))).thenReturn(paciente);
+        when(pacienteMapper.toResponse(paciente)).thenReturn(response);
+
+        pacienteService.atualizar(1, request);
+
+        verifyNoInteractions(listaEsperaRepository, indiceListaEspera);
+    }
+
+    @Test
+    void atualizar_comNovasCoordenadas_deveReindexarEntradasAtivas() {
+        paciente.setLatitude(new BigDecimal("-23.550000"));
+        paciente.setLongitude(new BigDecimal("-46.630000"));
+        ListaEspera ativa = new ListaEspera();
+        ativa.setId(10);
+        ativa.setPaciente(paciente);
+        when(pacienteRepository.findById(1)).thenReturn(Optional.of(paciente));
+        doAnswer(invocation -> {
+            Paciente alvo = invocation.getArgument(1);
+            alvo.setLatitude(new BigDecimal("-22.900000"));
+            alvo.setLongitude(new BigDecimal("-43.170000"));
+            return null;
+        }).when(pacienteMapper).updateEntityFromRequest(request, paciente);
+        when(pacienteRepository.save(any(Paciente.class))).thenReturn(paciente);
+        when(pacienteMapper.toResponse(paciente)).thenReturn(response);
+        when(listaEsperaRepository.findByPacienteIdAndStatus(1, StatusListaEspera.ATIVA)).thenReturn(List.of(ativa));
+
+        pacienteService.atualizar(1, request);
+
+        verify(indiceListaEspera).reindexar(ativa);
+    }
+
     @Test
     void atualizar_deveLancarQuandoNaoEncontrado() {
         when(pacienteRepository.findById(999)).thenReturn(Optional.empty());
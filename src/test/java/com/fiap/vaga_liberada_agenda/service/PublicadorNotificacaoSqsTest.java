@@ -0,0 +1,153 @@
+package com.fiap.vaga_liberada_agenda.service;
+
+import io.awspring.cloud.sqs.operations.SendResult;
+import io.awspring.cloud.sqs.operations.SqsTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PublicadorNotificacaoSqsTest {
+
+    @Mock
+    private SqsTemplate sqsTemplate;
+
+    private MeterRegistry meterRegistry;
+    private PublicadorNotificacaoSqs publicador;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        publicador = new PublicadorNotificacaoSqs(sqsTemplate, meterRegistry, 100,
+                Duration.ofMillis(20), Duration.ofMillis(10), 3, Duration.ofMillis(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        publicador.parar();
+    }
+
+    @Test
+    void publicar_deveAgruparMensagensEmLotesDeAteDez() throws Exception {
+        List<Integer> tamanhos = new ArrayList<>();
+        when(sqsTemplate.<String>sendManyAsync(eq(PublicadorNotificacaoSqs.QUEUE_NAME), anyCollection()))
+                .thenAnswer(inv -> {
+                    Collection<Message<String>> mensagens = inv.getArgument(1);
+                    synchronized (tamanhos) {
+                        tamanhos.add(mensagens.size());
+                    }
+                    return CompletableFuture.completedFuture(sucesso(mensagens));
+                });
+
+        List<CompletableFuture<Void>> futuros = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futuros.add(publicador.publicar("msg-" + i));
+        }
+        publicador.iniciar();
+
+        CompletableFuture.allOf(futuros.toArray(CompletableFuture[]::new)).get(2, TimeUnit.SECONDS);
+        assertThat(tamanhos).containsExactly(10, 10, 5);
+        assertThat(meterRegistry.counter("agenda.notificacao.mensagens", "resultado", "enviada").count()).isEqualTo(25);
+        assertThat(meterRegistry.timer("agenda.notificacao.latencia").count()).isEqualTo(25);
+        assertThat(meterRegistry.get("agenda.notificacao.fila.tamanho").gauge().value()).isZero();
+    }
+
+    @Test
+    void publicar_quandoFalhaTemporaria_deveReenviar() throws Exception {
+        when(sqsTemplate.<String>sendManyAsync(eq(PublicadorNotificacaoSqs.QUEUE_NAME), anyCollection()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("SQS indisponível")))
+                .thenAnswer(inv -> CompletableFuture.completedFuture(sucesso(inv.getArgument(1))));
+        publicador.iniciar();
+
+        publicador.publicar("msg").get(2, TimeUnit.SECONDS);
+
+        verify(sqsTemplate, times(2)).sendManyAsync(any(), anyCollection());
+        assertThat(meterRegistry.counter("agenda.notificacao.reenvios").count()).isEqualTo(1);
+    }
+
+    @Test
+    void publicar_quandoSqsRejeitaEntrada_reenviaSomenteAsFalhas() throws Exception {
+        when(sqsTemplate.<String>sendManyAsync(eq(PublicadorNotificacaoSqs.QUEUE_NAME), anyCollection()))
+                .thenAnswer(inv -> {
+                    List<Message<String>> mensagens = new ArrayList<>(inv.<Collection<Message<String>>>getArgument(1));
+                    Message<String> rejeitada = mensagens.get(0);
+                    return CompletableFuture.completedFuture(new SendResult.Batch<>(
+                            List.of(),
+                            List.of(new SendResult.Failed<>("throttled", PublicadorNotificacaoSqs.QUEUE_NAME, rejeitada, Map.of()))));
+                })
+                .thenAnswer(inv -> CompletableFuture.completedFuture(sucesso(inv.getArgument(1))));
+
+        CompletableFuture<Void> primeira = publicador.publicar("msg-1");
+        CompletableFuture<Void> segunda = publicador.publicar("msg-2");
+        publicador.iniciar();
+
+        CompletableFuture.allOf(primeira, segunda).get(2, TimeUnit.SECONDS);
+        assertThat(meterRegistry.counter("agenda.notificacao.reenvios").count()).isEqualTo(1);
+    }
+
+    @Test
+    void publicar_quandoEsgotaTentativas_deveFalharFuturo() {
+        when(sqsTemplate.<String>sendManyAsync(eq(PublicadorNotificacaoSqs.QUEUE_NAME), anyCollection()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("SQS indisponível")));
+        publicador.iniciar();
+
+        CompletableFuture<Void> resultado = publicador.publicar("msg");
+
+        assertThatThrownBy(() -> resultado.get(2, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        verify(sqsTemplate, times(3)).sendManyAsync(any(), anyCollection());
+        assertThat(meterRegistry.counter("agenda.notificacao.mensagens", "resultado", "falha").count()).isEqualTo(1);
+    }
+
+    @Test
+    void publicar_quandoFilaCheia_deveRejeitarComBackpressure() {
+        PublicadorNotificacaoSqs pequeno = new PublicadorNotificacaoSqs(sqsTemplate, meterRegistry, 1,
+                Duration.ofMillis(20), Duration.ofMillis(10), 3, Duration.ofMillis(1));
+
+        pequeno.publicar("msg-1");
+        CompletableFuture<Void> rejeitada = pequeno.publicar("msg-2");
+
+        assertThat(rejeitada).isCompletedExceptionally();
+        assertThatThrownBy(rejeitada::join).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(pequeno.tamanhoFila()).isEqualTo(1);
+    }
+
+    @Test
+    void calcularAtraso_deveCrescerExponencialmenteComJitter() {
+        PublicadorNotificacaoSqs comBackoff = new PublicadorNotificacaoSqs(sqsTemplate, meterRegistry, 1,
+                Duration.ofMillis(20), Duration.ofMillis(10), 3, Duration.ofMillis(100));
+
+        assertThat(comBackoff.calcularAtraso(1)).isBetween(50L, 150L);
+        assertThat(comBackoff.calcularAtraso(3)).isBetween(200L, 600L);
+    }
+
+    private static SendResult.Batch<String> sucesso(Collection<Message<String>> mensagens) {
+        List<SendResult<String>> enviados = mensagens.stream()
+                .map(m -> new SendResult<>(UUID.randomUUID(), PublicadorNotificacaoSqs.QUEUE_NAME, m, Map.<String, Object>of()))
+                .toList();
+        return new SendResult.Batch<>(enviados, List.of());
+    }
+}
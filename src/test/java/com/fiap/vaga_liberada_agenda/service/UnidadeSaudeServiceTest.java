@@ -39,6 +39,8 @@ class UnidadeSaudeServiceTest {
     private MedicoRepository medicoRepository;
     @Mock
     private ConsultaRepository consultaRepository;
+    @Mock
+    private CacheReferenciaService cacheReferenciaService;
 
     @InjectMocks
     private UnidadeSaudeService unidadeSaudeService;
@@ -188,6 +190,7 @@ class UnidadeSaudeServiceTest {
 
         assertThat(result).isNotNull();
         verify(unidadeSaudeRepository).save(unidade);
+        verify(cacheReferenciaService).invalidarUnidade(1);
     }
 
     @Test
@@ -211,6 +214,7 @@ class UnidadeSaudeServiceTest {
         unidadeSaudeService.deletar(1);
 
         verify(unidadeSaudeRepository).deleteById(1);
+        verify(cacheReferenciaService).invalidarUnidade(1);
     }
 
     @Test